@@ -0,0 +1,145 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.bench;
+
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DataUtils;
+import edu.cmu.tetrad.data.Discretizer;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.sem.LargeScaleSimulation;
+import edu.cmu.tetrad.util.RandomUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seeded data for the benchmarks, so that every run (and every fork of every run) times the same
+ * problem. Graphs are random forward-edge DAGs; continuous data is simulated from them in reduced
+ * form with LargeScaleSimulation, and discrete and mixed data are had by discretizing it.
+ *
+ * @author Joseph Ramsey
+ */
+public final class BenchmarkData {
+
+    /**
+     * The seed used unless a benchmark says otherwise.
+     */
+    public static final long SEED = 490248394L;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @return a random DAG over variables X1,...,Xn with about avgDegree * numVars / 2 edges.
+     */
+    public static Graph randomDag(int numVars, double avgDegree, long seed) {
+        RandomUtil.getInstance().setSeed(seed);
+
+        List<Node> vars = new ArrayList<>();
+
+        for (int i = 0; i < numVars; i++) {
+            vars.add(new ContinuousVariable("X" + (i + 1)));
+        }
+
+        int numEdges = (int) (avgDegree * numVars / 2);
+        return GraphUtils.randomGraphRandomForwardEdges(vars, 0, numEdges, 30, 15, 15, false, true);
+    }
+
+    /**
+     * @return linear Gaussian data simulated from the given DAG.
+     */
+    public static DataSet continuous(Graph dag, int sampleSize, long seed) {
+        RandomUtil.getInstance().setSeed(seed);
+
+        LargeScaleSimulation simulation = new LargeScaleSimulation(dag);
+        simulation.setSeed(seed);
+        return simulation.simulateDataReducedForm(sampleSize);
+    }
+
+    /**
+     * @return the data from continuous(), with every variable discretized into numCategories equal
+     * intervals.
+     */
+    public static DataSet discrete(Graph dag, int sampleSize, int numCategories, long seed) {
+        return DataUtils.discretize(continuous(dag, sampleSize, seed), numCategories, true);
+    }
+
+    /**
+     * @return the data from continuous(), with every other variable (X1, X3, ...) discretized into
+     * numCategories equal intervals and the rest left continuous.
+     */
+    public static DataSet mixed(Graph dag, int sampleSize, int numCategories, long seed) {
+        DataSet data = continuous(dag, sampleSize, seed);
+        Discretizer discretizer = new Discretizer(data);
+        discretizer.setVariablesCopied(true);
+
+        for (int j = 0; j < data.getNumColumns(); j += 2) {
+            discretizer.equalIntervals(data.getVariable(j), numCategories);
+        }
+
+        return discretizer.discretize();
+    }
+
+    /**
+     * @return count random (child, parents) families over numVars variables, each with exactly
+     * numParents distinct parents different from the child, as rows {child, p1, ..., pk}.
+     */
+    public static int[][] randomFamilies(int numVars, int numParents, int count, long seed) {
+        if (numParents >= numVars) {
+            throw new IllegalArgumentException("Need more than " + numParents + " variables.");
+        }
+
+        RandomUtil random = RandomUtil.getInstance();
+        random.setSeed(seed);
+
+        int[][] families = new int[count][];
+
+        for (int f = 0; f < count; f++) {
+            int[] family = new int[numParents + 1];
+
+            for (int k = 0; k <= numParents; k++) {
+                int v;
+
+                do {
+                    v = random.nextInt(numVars);
+                } while (contains(family, k, v));
+
+                family[k] = v;
+            }
+
+            families[f] = family;
+        }
+
+        return families;
+    }
+
+    private static boolean contains(int[] array, int n, int v) {
+        for (int i = 0; i < n; i++) {
+            if (array[i] == v) return true;
+        }
+
+        return false;
+    }
+}
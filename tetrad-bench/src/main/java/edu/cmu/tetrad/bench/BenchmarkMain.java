@@ -0,0 +1,74 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks, taking the usual JMH command line, but writing results as JSON to
+ * tetrad-bench.json by default. A result format given with -rf but no file given with -rff
+ * is written to a file named after the format, e.g. tetrad-bench.csv for -rf csv. For example,
+ * <pre>
+ * java -jar tetrad-bench/target/benchmarks.jar SearchBenchmarks -p numVars=50
+ * </pre>
+ *
+ * @author Joseph Ramsey
+ */
+public final class BenchmarkMain {
+
+    /**
+     * The result format used when none is given.
+     */
+    public static final String DEFAULT_RESULT_FORMAT = "json";
+
+    /**
+     * The result file name, less its extension, used when none is given; the extension is the
+     * result format.
+     */
+    public static final String DEFAULT_RESULT_FILE_PREFIX = "tetrad-bench";
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> _args = new ArrayList<>(Arrays.asList(args));
+
+        int rf = _args.indexOf("-rf");
+        String format = DEFAULT_RESULT_FORMAT;
+
+        if (rf == -1) {
+            _args.add("-rf");
+            _args.add(format);
+        } else if (rf < _args.size() - 1) {
+            format = _args.get(rf + 1).toLowerCase();
+        }
+
+        if (!_args.contains("-rff") && rf < _args.size() - 1) {
+            _args.add("-rff");
+            _args.add(DEFAULT_RESULT_FILE_PREFIX + "." + format);
+        }
+
+        org.openjdk.jmh.Main.main(_args.toArray(new String[_args.size()]));
+    }
+}
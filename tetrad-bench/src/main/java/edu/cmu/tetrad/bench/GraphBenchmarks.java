@@ -0,0 +1,129 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.bench;
+
+import edu.cmu.tetrad.graph.EdgeListGraph;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the EdgeListGraph queries the searches lean on--adjacency, neighbors, parents, directed
+ * paths and d-connection--over a fixed list of random node pairs in a random DAG.
+ *
+ * @author Joseph Ramsey
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GraphBenchmarks {
+
+    private static final int NUM_QUERIES = 256;
+
+    @Param({"100", "1000"})
+    public int numNodes;
+
+    @Param({"2", "4"})
+    public double avgDegree;
+
+    private Graph graph;
+
+    // Queries are {x, y, z1, z2}; z is only used for d-connection.
+    private Node[] xs;
+    private Node[] ys;
+    private List<List<Node>> zs;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        graph = new EdgeListGraph(BenchmarkData.randomDag(numNodes, avgDegree, BenchmarkData.SEED));
+
+        List<Node> nodes = graph.getNodes();
+        int[][] queries = BenchmarkData.randomFamilies(nodes.size(), 3, NUM_QUERIES, BenchmarkData.SEED);
+
+        xs = new Node[NUM_QUERIES];
+        ys = new Node[NUM_QUERIES];
+        zs = new ArrayList<>();
+
+        for (int q = 0; q < NUM_QUERIES; q++) {
+            xs[q] = nodes.get(queries[q][0]);
+            ys[q] = nodes.get(queries[q][1]);
+
+            List<Node> z = new ArrayList<>();
+            z.add(nodes.get(queries[q][2]));
+            z.add(nodes.get(queries[q][3]));
+            zs.add(z);
+        }
+    }
+
+    @Benchmark
+    public boolean isAdjacentTo() {
+        int q = nextQuery();
+        return graph.isAdjacentTo(xs[q], ys[q]);
+    }
+
+    @Benchmark
+    public List<Node> getAdjacentNodes() {
+        return graph.getAdjacentNodes(xs[nextQuery()]);
+    }
+
+    @Benchmark
+    public List<Node> getParents() {
+        return graph.getParents(xs[nextQuery()]);
+    }
+
+    @Benchmark
+    public boolean existsDirectedPathFromTo() {
+        int q = nextQuery();
+        return graph.existsDirectedPathFromTo(xs[q], ys[q]);
+    }
+
+    @Benchmark
+    public boolean isDConnectedTo() {
+        int q = nextQuery();
+        return graph.isDConnectedTo(xs[q], ys[q], zs.get(q));
+    }
+
+    private int nextQuery() {
+        int q = next;
+        next = (q + 1) % NUM_QUERIES;
+        return q;
+    }
+}
@@ -0,0 +1,149 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.bench;
+
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.IndTestChiSquare;
+import edu.cmu.tetrad.search.IndTestConditionalGaussianLRT;
+import edu.cmu.tetrad.search.IndTestFisherZ;
+import edu.cmu.tetrad.search.IndependenceTest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times a single conditional independence judgment for IndTestFisherZ (continuous),
+ * IndTestChiSquare (discrete) and IndTestConditionalGaussianLRT (mixed), cycling through a fixed
+ * list of random (x, y | z) facts with |z| = condSize.
+ *
+ * @author Joseph Ramsey
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IndependenceTestBenchmarks {
+
+    private static final int NUM_FACTS = 256;
+
+    @Param({"50"})
+    public int numVars;
+
+    @Param({"1000", "10000"})
+    public int sampleSize;
+
+    @Param({"0", "1", "3"})
+    public int condSize;
+
+    private IndependenceTest fisherZ;
+    private IndependenceTest chiSquare;
+    private IndependenceTest conditionalGaussianLrt;
+
+    // The same facts over each test's own variables.
+    private Fact[] fisherZFacts;
+    private Fact[] chiSquareFacts;
+    private Fact[] conditionalGaussianLrtFacts;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Graph dag = BenchmarkData.randomDag(numVars, 2, BenchmarkData.SEED);
+
+        fisherZ = new IndTestFisherZ(BenchmarkData.continuous(dag, sampleSize, BenchmarkData.SEED), 0.01);
+        chiSquare = new IndTestChiSquare(BenchmarkData.discrete(dag, sampleSize, 3, BenchmarkData.SEED), 0.01);
+        conditionalGaussianLrt = new IndTestConditionalGaussianLRT(
+                BenchmarkData.mixed(dag, sampleSize, 3, BenchmarkData.SEED), 0.01, false);
+
+        int[][] facts = BenchmarkData.randomFamilies(numVars, condSize + 1, NUM_FACTS, BenchmarkData.SEED);
+        fisherZFacts = facts(fisherZ, facts);
+        chiSquareFacts = facts(chiSquare, facts);
+        conditionalGaussianLrtFacts = facts(conditionalGaussianLrt, facts);
+    }
+
+    @Benchmark
+    public boolean fisherZ() {
+        return test(fisherZ, fisherZFacts);
+    }
+
+    @Benchmark
+    public boolean chiSquare() {
+        return test(chiSquare, chiSquareFacts);
+    }
+
+    @Benchmark
+    public boolean conditionalGaussianLrt() {
+        return test(conditionalGaussianLrt, conditionalGaussianLrtFacts);
+    }
+
+    private boolean test(IndependenceTest test, Fact[] facts) {
+        Fact fact = facts[next];
+        next = (next + 1) % NUM_FACTS;
+        return test.isIndependent(fact.x, fact.y, fact.z);
+    }
+
+    // Facts are given as rows of variable indices {x, y, z1, ..., zk}.
+    private static Fact[] facts(IndependenceTest test, int[][] indices) {
+        List<Node> variables = test.getVariables();
+        Fact[] facts = new Fact[indices.length];
+
+        for (int f = 0; f < indices.length; f++) {
+            int[] row = indices[f];
+            List<Node> z = new ArrayList<>();
+
+            for (int k = 2; k < row.length; k++) {
+                z.add(variables.get(row[k]));
+            }
+
+            facts[f] = new Fact(variables.get(row[0]), variables.get(row[1]), z);
+        }
+
+        return facts;
+    }
+
+    private static class Fact {
+        private final Node x;
+        private final Node y;
+        private final List<Node> z;
+
+        private Fact(Node x, Node y, List<Node> z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.bench;
+
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.search.BDeuScore;
+import edu.cmu.tetrad.search.ConditionalGaussianScore;
+import edu.cmu.tetrad.search.SemBicScore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times a single local score evaluation for SemBicScore (continuous), BDeuScore (discrete) and
+ * ConditionalGaussianScore (mixed). Each call scores the next of a fixed list of random families,
+ * so the timings aren't those of one lucky (or unlucky) family.
+ *
+ * @author Joseph Ramsey
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScoreBenchmarks {
+
+    private static final int NUM_FAMILIES = 256;
+
+    @Param({"50"})
+    public int numVars;
+
+    @Param({"1000", "10000"})
+    public int sampleSize;
+
+    @Param({"0", "2", "4"})
+    public int numParents;
+
+    private SemBicScore semBicScore;
+    private BDeuScore bDeuScore;
+    private ConditionalGaussianScore conditionalGaussianScore;
+
+    private int[] children;
+    private int[][] parents;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Graph dag = BenchmarkData.randomDag(numVars, 2, BenchmarkData.SEED);
+
+        semBicScore = new SemBicScore(new CovarianceMatrix(
+                BenchmarkData.continuous(dag, sampleSize, BenchmarkData.SEED)));
+        bDeuScore = new BDeuScore(BenchmarkData.discrete(dag, sampleSize, 3, BenchmarkData.SEED));
+        conditionalGaussianScore = new ConditionalGaussianScore(
+                BenchmarkData.mixed(dag, sampleSize, 3, BenchmarkData.SEED), 1, false);
+
+        int[][] families = BenchmarkData.randomFamilies(numVars, numParents, NUM_FAMILIES, BenchmarkData.SEED);
+        children = new int[NUM_FAMILIES];
+        parents = new int[NUM_FAMILIES][];
+
+        for (int f = 0; f < NUM_FAMILIES; f++) {
+            children[f] = families[f][0];
+            parents[f] = Arrays.copyOfRange(families[f], 1, families[f].length);
+        }
+    }
+
+    @Benchmark
+    public double semBicLocalScore() {
+        int f = nextFamily();
+        return semBicScore.localScore(children[f], parents[f]);
+    }
+
+    @Benchmark
+    public double bDeuLocalScore() {
+        int f = nextFamily();
+        return bDeuScore.localScore(children[f], parents[f]);
+    }
+
+    @Benchmark
+    public double conditionalGaussianLocalScore() {
+        int f = nextFamily();
+        return conditionalGaussianScore.localScore(children[f], parents[f]);
+    }
+
+    private int nextFamily() {
+        int f = next;
+        next = (f + 1) % NUM_FAMILIES;
+        return f;
+    }
+}
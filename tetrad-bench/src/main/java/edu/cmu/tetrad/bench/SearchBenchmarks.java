@@ -0,0 +1,116 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.bench;
+
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.search.Fges;
+import edu.cmu.tetrad.search.GFci;
+import edu.cmu.tetrad.search.IndTestFisherZ;
+import edu.cmu.tetrad.search.PcAll;
+import edu.cmu.tetrad.search.SemBicScore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times whole searches--FGES, PC (as PcAll with FAS-stable) and GFCI--from a continuous data set
+ * to an output graph, including building the covariance matrix, at several problem sizes. Each
+ * search is long enough that single shots, rather than calls per second, are measured.
+ *
+ * @author Joseph Ramsey
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmarks {
+
+    @Param({"20", "50", "100"})
+    public int numVars;
+
+    @Param({"2", "4"})
+    public double avgDegree;
+
+    @Param({"1000"})
+    public int sampleSize;
+
+    @Param({"0.01"})
+    public double alpha;
+
+    @Param({"2"})
+    public double penaltyDiscount;
+
+    private DataSet data;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        data = BenchmarkData.continuous(BenchmarkData.randomDag(numVars, avgDegree, BenchmarkData.SEED),
+                sampleSize, BenchmarkData.SEED);
+    }
+
+    @Benchmark
+    public Graph fges() {
+        SemBicScore score = new SemBicScore(new CovarianceMatrix(data));
+        score.setPenaltyDiscount(penaltyDiscount);
+
+        Fges fges = new Fges(score);
+        fges.setVerbose(false);
+        fges.setNumPatternsToStore(0);
+        return fges.search();
+    }
+
+    @Benchmark
+    public Graph pc() {
+        PcAll pc = new PcAll(new IndTestFisherZ(new CovarianceMatrix(data), alpha), null);
+        pc.setFasRule(PcAll.FasRule.FAS_STABLE);
+        pc.setColliderDiscovery(PcAll.ColliderDiscovery.FAS_SEPSETS);
+        pc.setConflictRule(PcAll.ConflictRule.OVERWRITE);
+        return pc.search();
+    }
+
+    @Benchmark
+    public Graph gfci() {
+        ICovarianceMatrix cov = new CovarianceMatrix(data);
+        SemBicScore score = new SemBicScore(cov);
+        score.setPenaltyDiscount(penaltyDiscount);
+
+        GFci gfci = new GFci(new IndTestFisherZ(cov, alpha), score);
+        gfci.setVerbose(false);
+        return gfci.search();
+    }
+}
@@ -50,10 +50,11 @@ import org.reflections.Reflections;
 
 import java.io.*;
 import java.lang.reflect.Constructor;
+import java.nio.file.Files;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
-import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.*;
 
 /**
  * Script to do a comparison of a list of algorithms using a list of statistics and a list
@@ -78,7 +79,10 @@ public class Comparison {
     private boolean sortByUtility = false;
     private String dataPath = null;
     private String resultsPath = null;
-    private boolean parallelized = true;
+    private boolean parallelized = false;
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+    private long maxMemory = Runtime.getRuntime().maxMemory() / 2;
+    private boolean saveCheckpoints = false;
     private boolean savePatterns = false;
     private boolean savePags = false;
     private ArrayList<String> dirs = null;
@@ -832,69 +836,114 @@ public class Comparison {
         double[][][][] allStats = new double[4][algorithmSimulationWrappers.size()][statistics.size() + 1][numRuns];
 
         List<AlgorithmTask> tasks = new ArrayList<>();
+        List<AlgorithmTask> serialTasks = new ArrayList<>();
         int index = 0;
 
         for (int algSimIndex = 0; algSimIndex < algorithmSimulationWrappers.size(); algSimIndex++) {
             for (int runIndex = 0; runIndex < numRuns; runIndex++) {
                 AlgorithmSimulationWrapper algorithmSimulationWrapper = algorithmSimulationWrappers.get(algSimIndex);
                 Run run = new Run(algSimIndex, runIndex, index++, algorithmSimulationWrapper);
+
+                if (saveCheckpoints && loadCheckpoint(run, statistics, allStats)) {
+                    System.out.println("Restored run " + (runIndex + 1) + " of " + (algSimIndex + 1) + ". "
+                            + algorithmSimulationWrapper.getAlgorithmWrapper().getDescription()
+                            + " from checkpoint");
+                    restoreGraph(run, algorithmWrappers, simulationWrappers);
+                    continue;
+                }
+
                 AlgorithmTask task = new AlgorithmTask(algorithmSimulationWrappers,
                         algorithmWrappers, simulationWrappers,
                         statistics, numGraphTypes, allStats, run);
-                task.compute();
-//                tasks.add(task);
+
+                if (isParallelized() && !hasSharedState(algorithmSimulationWrapper)) {
+                    tasks.add(task);
+                } else {
+                    serialTasks.add(task);
+                }
             }
         }
 
-//        if (!isParallelized()) {
-//            for (AlgorithmTask task : tasks) {
-//                task.compute();
-//            }
-//        } else {
-//            class Task extends RecursiveTask<Boolean> {
-//                List<AlgorithmTask> tasks;
-//
-//                public Task(List<AlgorithmTask> tasks) {
-//                    this.tasks = tasks;
-//                }
-//
-//                @Override
-//                protected Boolean compute() {
-//                    Queue<AlgorithmTask> tasks = new ArrayDeque<>();
-//
-//                    for (AlgorithmTask task : this.tasks) {
-//                        tasks.add(task);
-//                        task.fork();
-//
-//                        for (AlgorithmTask _task : new ArrayList<>(tasks)) {
-//                            if (_task.isDone()) {
-//                                _task.join();
-//                                tasks.remove(_task);
-//                            }
-//                        }
-//
-//                        while (tasks.size() > Runtime.getRuntime().availableProcessors()) {
-//                            AlgorithmTask _task = tasks.poll();
-//                            _task.join();
-//                        }
-//                    }
-//
-//                    for (AlgorithmTask task : tasks) {
-//                        task.join();
-//                    }
-//
-//                    return true;
-//                }
-//            }
+        if (isParallelized() && numThreads > 1 && tasks.size() > 1) {
+            runInParallel(tasks);
+        } else {
+            serialTasks.addAll(0, tasks);
+        }
 
-//            Task task = new Task(tasks);
-//
-//            ForkJoinPoolInstance.getInstance().getPool().invoke(task);
-//        }
+        for (AlgorithmTask task : serialTasks) {
+            task.call();
+        }
 
         return allStats;
     }
 
+    // Runs the tasks on a pool of numThreads workers. A task starts only when its memory estimate
+    // fits into what remains of maxMemory, so that a few large runs do not exhaust the heap.
+    private void runInParallel(List<AlgorithmTask> tasks) {
+        final int megabytes = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxMemory >> 20));
+        final Semaphore memory = new Semaphore(megabytes);
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        List<Future<Boolean>> futures = new ArrayList<>();
+
+        try {
+            for (final AlgorithmTask task : tasks) {
+                final int needed = (int) Math.max(1, Math.min(megabytes, estimateMemory(task.run) >> 20));
+
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws InterruptedException {
+                        memory.acquire(needed);
+
+                        try {
+                            return task.call();
+                        } finally {
+                            memory.release(needed);
+                        }
+                    }
+                }));
+            }
+
+            for (Future<Boolean> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Comparison interrupted", e);
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // A rough estimate of the memory a run needs: its data (and the copy of it, if data is
+    // copied) plus a covariance-sized working set, with room for the algorithm's own structures.
+    private long estimateMemory(Run run) {
+        DataModel data = run.getWrapper().getSimulationWrapper().getDataModel(run.getRunIndex());
+        long bytes = 0;
+
+        if (data instanceof DataSet) {
+            bytes = 8L * ((DataSet) data).getNumRows() * ((DataSet) data).getNumColumns();
+            if (copyData) bytes *= 2;
+        }
+
+        long numVars = data.getVariables().size();
+        bytes += 8L * numVars * numVars;
+
+        return 4 * bytes;
+    }
+
+    // External algorithms and algorithms handed the simulation's knowledge are configured per
+    // run on the one algorithm object they share, so their runs are not done concurrently.
+    private boolean hasSharedState(AlgorithmSimulationWrapper wrapper) {
+        Algorithm algorithm = wrapper.getAlgorithmWrapper().getAlgorithm();
+        Simulation simulation = wrapper.getSimulationWrapper().getSimulation();
+        return algorithm instanceof ExternalAlgorithm
+                || (algorithm instanceof HasKnowledge && simulation instanceof HasKnowledge);
+    }
+
     public boolean isShowSimulationIndices() {
         return showSimulationIndices;
     }
@@ -951,6 +1000,54 @@ public class Comparison {
         this.parallelized = parallelized;
     }
 
+    /**
+     * @return the number of runs done at once when the comparison is parallelized.
+     */
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * @param numThreads The number of runs to do at once when the comparison is parallelized.
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) throw new IllegalArgumentException("Number of threads must be at least 1: " + numThreads);
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * @return the memory, in bytes, that the runs done at once may together be estimated to use.
+     */
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * @param maxMemory The memory, in bytes, that the runs done at once may together be estimated
+     *                  to use. By default half the maximum heap.
+     */
+    public void setMaxMemory(long maxMemory) {
+        if (maxMemory <= 0) throw new IllegalArgumentException("Max memory must be positive: " + maxMemory);
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * @return true if each run's graph and statistics are saved as it completes.
+     */
+    public boolean isSaveCheckpoints() {
+        return saveCheckpoints;
+    }
+
+    /**
+     * @param saveCheckpoints True if each run's graph and statistics should be saved under
+     *                        resultsPath/checkpoints as soon as the run completes. Runs already
+     *                        saved there, by a comparison that was interrupted, are then not done
+     *                        again.
+     */
+    public void setSaveCheckpoints(boolean saveCheckpoints) {
+        this.saveCheckpoints = saveCheckpoints;
+    }
+
     /**
      * @return True if patterns should be saved out.
      */
@@ -1040,7 +1137,7 @@ public class Comparison {
     }
 
 
-    private class AlgorithmTask extends RecursiveTask<Boolean> {
+    private class AlgorithmTask implements Callable<Boolean> {
         private List<AlgorithmSimulationWrapper> algorithmSimulationWrappers;
         private List<AlgorithmWrapper> algorithmWrappers;
         private List<SimulationWrapper> simulationWrappers;
@@ -1062,7 +1159,7 @@ public class Comparison {
         }
 
         @Override
-        protected Boolean compute() {
+        public Boolean call() {
             doRun(algorithmSimulationWrappers, algorithmWrappers,
                     simulationWrappers, statistics, numGraphTypes, allStats, run);
             return true;
@@ -1178,6 +1275,7 @@ public class Comparison {
         long stop = System.currentTimeMillis();
 
         long elapsed = stop - start;
+        long searchElapsed = elapsed;
 
         saveGraph(resultsPath, out, run.getRunIndex(), simIndex, algIndex, algorithmWrapper, elapsed);
 
@@ -1255,10 +1353,172 @@ public class Comparison {
                 }
             }
         }
+
+        if (saveCheckpoints) {
+            int numTypes = comparisonGraph == null ? 0 : data.isMixed() ? numGraphTypes : 1;
+            saveCheckpoint(run, out, elapsed, searchElapsed, numTypes, statistics, allStats);
+        }
+    }
+
+    // Saves the run's graph, then its statistics. The statistics file is written last, and
+    // renamed into place, so its presence means the run completed.
+    private void saveCheckpoint(Run run, Graph graph, long elapsed, long searchElapsed, int numTypes,
+                                Statistics statistics, double[][][][] allStats) {
+        File dir = getCheckpointDir(run);
+        dir.mkdirs();
+
+        File file = new File(dir, "stats." + (run.getRunIndex() + 1) + ".txt");
+        File temp = new File(dir, "stats." + (run.getRunIndex() + 1) + ".tmp");
+
+        try {
+            PrintStream graphOut = new PrintStream(new File(dir, "graph." + (run.getRunIndex() + 1) + ".txt"));
+            graphOut.println(graph);
+            graphOut.close();
+
+            PrintStream out = new PrintStream(temp);
+            out.println("run\t" + run.getKey());
+            out.println("elapsed\t" + elapsed);
+            out.println("searchElapsed\t" + searchElapsed);
+
+            for (int u = 0; u < numTypes; u++) {
+                for (int statIndex = 0; statIndex < statistics.size(); statIndex++) {
+                    Statistic stat = statistics.getStatistics().get(statIndex);
+                    if (stat instanceof ParameterColumn) continue;
+                    out.println("stat\t" + u + "\t" + stat.getAbbreviation() + "\t"
+                            + allStats[u][run.getAlgSimIndex()][statIndex][run.getRunIndex()]);
+                }
+            }
+
+            out.close();
+
+            if (!(temp.renameTo(file) || (file.delete() && temp.renameTo(file)))) {
+                throw new IOException("Could not rename " + temp + " to " + file);
+            }
+        } catch (IOException e) {
+            System.out.println("Could not save checkpoint for run " + (run.getRunIndex() + 1) + " of "
+                    + run.getKey());
+            e.printStackTrace();
+        }
+    }
+
+    // Fills in the run's statistics from its checkpoint, if there is one for the same algorithm
+    // and simulation with every statistic present.
+    private boolean loadCheckpoint(Run run, Statistics statistics, double[][][][] allStats) {
+        File file = new File(getCheckpointDir(run), "stats." + (run.getRunIndex() + 1) + ".txt");
+        if (!file.exists()) return false;
+
+        int numStats = statistics.size();
+        double[][] stats = new double[allStats.length][numStats];
+        boolean[][] found = new boolean[allStats.length][numStats];
+        boolean[] used = new boolean[allStats.length];
+        String key = null;
+
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+
+            while ((line = in.readLine()) != null) {
+                String[] tokens = line.split("\t");
+
+                if (tokens[0].equals("run") && tokens.length == 2) {
+                    key = tokens[1];
+                } else if (tokens[0].equals("stat") && tokens.length == 4) {
+                    int u = Integer.parseInt(tokens[1]);
+
+                    for (int statIndex = 0; statIndex < numStats; statIndex++) {
+                        if (statistics.getStatistics().get(statIndex).getAbbreviation().equals(tokens[2])) {
+                            stats[u][statIndex] = Double.parseDouble(tokens[3]);
+                            found[u][statIndex] = true;
+                            used[u] = true;
+                        }
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Ignoring unreadable checkpoint " + file);
+            return false;
+        }
+
+        if (!run.getKey().equals(key)) {
+            return false;
+        }
+
+        for (int u = 0; u < allStats.length; u++) {
+            if (!used[u]) continue;
+
+            for (int statIndex = 0; statIndex < numStats; statIndex++) {
+                if (statistics.getStatistics().get(statIndex) instanceof ParameterColumn) continue;
+                if (!found[u][statIndex]) return false;
+            }
+        }
+
+        for (int u = 0; u < allStats.length; u++) {
+            if (!used[u]) continue;
+            graphTypeUsed[u] = true;
+
+            for (int statIndex = 0; statIndex < numStats; statIndex++) {
+                allStats[u][run.getAlgSimIndex()][statIndex][run.getRunIndex()] = stats[u][statIndex];
+            }
+        }
+
+        return true;
     }
 
+    // Writes the graph and elapsed time files that saveGraph() would have written for a run restored
+    // from its checkpoint, so that a resumed comparison leaves the same results directory.
+    private void restoreGraph(Run run, List<AlgorithmWrapper> algorithmWrappers,
+                              List<SimulationWrapper> simulationWrappers) {
+        if (!saveGraphs) return;
+
+        File dir = getCheckpointDir(run);
+        File graphFile = new File(dir, "graph." + (run.getRunIndex() + 1) + ".txt");
+        File statsFile = new File(dir, "stats." + (run.getRunIndex() + 1) + ".txt");
+
+        try {
+            String graph = new String(Files.readAllBytes(graphFile.toPath()), "UTF-8");
+            long elapsed = -1;
+
+            try (BufferedReader in = new BufferedReader(new FileReader(statsFile))) {
+                String line;
+
+                while ((line = in.readLine()) != null) {
+                    String[] tokens = line.split("\t");
+
+                    if (tokens.length == 2 && tokens[0].equals("searchElapsed")) {
+                        elapsed = Long.parseLong(tokens[1]);
+                    } else if (tokens.length == 2 && tokens[0].equals("elapsed") && elapsed == -1) {
+                        elapsed = Long.parseLong(tokens[1]);
+                    }
+                }
+            }
+
+            AlgorithmWrapper algorithmWrapper = run.getWrapper().getAlgorithmWrapper();
+            int simIndex = simulationWrappers.indexOf(run.getWrapper().getSimulationWrapper()) + 1;
+            int algIndex = algorithmWrappers.indexOf(algorithmWrapper) + 1;
+
+            saveGraph(resultsPath, graph, run.getRunIndex(), simIndex, algIndex, algorithmWrapper, elapsed);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Could not restore the graph for run " + (run.getRunIndex() + 1) + " of "
+                    + run.getKey());
+            e.printStackTrace();
+        }
+    }
+
+    private File getCheckpointDir(Run run) {
+        if (resultsPath == null) {
+            throw new IllegalArgumentException("Results path not provided.");
+        }
+
+        return new File(resultsPath, "checkpoints/" + (run.getAlgSimIndex() + 1));
+    }
+
+
     private void saveGraph(String resultsPath, Graph graph, int i, int simIndex, int algIndex,
                            AlgorithmWrapper algorithmWrapper, long elapsed) {
+        saveGraph(resultsPath, graph + System.lineSeparator(), i, simIndex, algIndex, algorithmWrapper, elapsed);
+    }
+
+    private void saveGraph(String resultsPath, String graph, int i, int simIndex, int algIndex,
+                           AlgorithmWrapper algorithmWrapper, long elapsed) {
         if (!saveGraphs) {
             return;
         }
@@ -1285,7 +1545,7 @@ public class Comparison {
 
             PrintStream out = new PrintStream(file);
             System.out.println("Saving graph to " + file.getAbsolutePath());
-            out.println(graph);
+            out.print(graph);
             out.close();
 
             PrintStream outElapsed = new PrintStream(fileElapsed);
@@ -1821,12 +2081,21 @@ public class Comparison {
         private final int runIndex;
         private final int index;
         private final AlgorithmSimulationWrapper wrapper;
+        private final String description;
+        private String key = null;
 
         public Run(int algSimIndex, int runIndex, int index, AlgorithmSimulationWrapper wrapper) {
             this.runIndex = runIndex;
             this.algSimIndex = algSimIndex;
             this.index = index;
             this.wrapper = wrapper;
+
+            // Taken before any run starts, since some descriptions show the parameters of
+            // whichever run was done last.
+            this.description = wrapper.getAlgorithmWrapper().getDescription() + " / "
+                    + wrapper.getSimulationWrapper().getDescription()
+                    + " / seed " + RandomUtil.getInstance().getSeed()
+                    + " / run " + (runIndex + 1);
         }
 
         public int getAlgSimIndex() {
@@ -1844,6 +2113,75 @@ public class Comparison {
         public AlgorithmSimulationWrapper getWrapper() {
             return wrapper;
         }
+
+        /**
+         * @return a description of the algorithm and simulation, with the seed, run index and
+         * hashes of the parameters and data, on one line, identifying the run's checkpoint. The
+         * seed, the parameters and a fingerprint of the run's data set keep a checkpoint from
+         * being restored after any of them changes. The hashes are only taken when the key is
+         * first asked for, since fingerprinting reads every value of the data set.
+         */
+        public synchronized String getKey() {
+            if (key == null) {
+                AlgorithmWrapper algorithmWrapper = wrapper.getAlgorithmWrapper();
+                SimulationWrapper simulationWrapper = wrapper.getSimulationWrapper();
+
+                String key = description
+                        + " / parameters " + Integer.toHexString(
+                        parametersHash(algorithmWrapper.getAlgorithm().getParameters(),
+                                algorithmWrapper.getAlgorithmSpecificParameters()) * 31
+                                + parametersHash(simulationWrapper.getParameters(),
+                                simulationWrapper.getSimulationSpecificParameters()))
+                        + " / data " + Long.toHexString(fingerprint(simulationWrapper.getDataModel(runIndex)));
+                this.key = key.replace('\n', ' ').replace('\r', ' ').replace('\t', ' ');
+            }
+
+            return key;
+        }
+
+        private int parametersHash(List<String> names, Parameters parameters) {
+            List<String> sorted = new ArrayList<>(names);
+            Collections.sort(sorted);
+            int hash = 1;
+
+            for (String name : sorted) {
+                hash = 31 * hash + (name + "=" + Arrays.toString(parameters.getValues(name))).hashCode();
+            }
+
+            return hash;
+        }
+
+        private long fingerprint(DataModel data) {
+            long hash = 1;
+
+            if (data instanceof DataSet) {
+                DataSet dataSet = (DataSet) data;
+                hash = 31 * hash + dataSet.getNumRows();
+
+                for (int j = 0; j < dataSet.getNumColumns(); j++) {
+                    for (int i = 0; i < dataSet.getNumRows(); i++) {
+                        hash = 31 * hash + Double.doubleToLongBits(dataSet.getDouble(i, j));
+                    }
+                }
+            } else if (data instanceof ICovarianceMatrix) {
+                ICovarianceMatrix cov = (ICovarianceMatrix) data;
+                hash = 31 * hash + cov.getSampleSize();
+
+                for (int i = 0; i < cov.getDimension(); i++) {
+                    for (int j = 0; j < cov.getDimension(); j++) {
+                        hash = 31 * hash + Double.doubleToLongBits(cov.getValue(i, j));
+                    }
+                }
+            } else if (data != null) {
+                hash = 31 * hash + data.toString().hashCode();
+            }
+
+            if (data != null) {
+                hash = 31 * hash + data.getVariableNames().hashCode();
+            }
+
+            return hash;
+        }
     }
 }
 
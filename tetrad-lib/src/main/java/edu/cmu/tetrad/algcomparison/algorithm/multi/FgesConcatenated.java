@@ -9,8 +9,10 @@ import edu.cmu.tetrad.data.*;
 import edu.cmu.tetrad.graph.Edge;
 import edu.cmu.tetrad.graph.EdgeListGraph;
 import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.search.CachingScore;
 import edu.cmu.tetrad.search.CcdMax;
 import edu.cmu.tetrad.search.IndependenceTest;
+import edu.cmu.tetrad.search.Score;
 import edu.cmu.tetrad.search.SearchGraphUtils;
 import edu.cmu.tetrad.util.Parameters;
 import edu.pitt.dbmi.algo.bootstrap.BootstrapEdgeEnsemble;
@@ -67,7 +69,13 @@ public class FgesConcatenated implements MultiDataSetAlgorithm, HasKnowledge {
 				initial = initialGraph.search(dataSet, parameters);
 			}
 
-			edu.cmu.tetrad.search.Fges search = new edu.cmu.tetrad.search.Fges(score.getScore(dataSet, parameters));
+			Score score = this.score.getScore(dataSet, parameters);
+
+			if (parameters.getBoolean("cacheScores")) {
+				score = new CachingScore(score);
+			}
+
+			edu.cmu.tetrad.search.Fges search = new edu.cmu.tetrad.search.Fges(score);
 			search.setFaithfulnessAssumed(parameters.getBoolean("faithfulnessAssumed"));
 			search.setKnowledge(knowledge);
 			search.setVerbose(parameters.getBoolean("verbose"));
@@ -170,6 +178,7 @@ public class FgesConcatenated implements MultiDataSetAlgorithm, HasKnowledge {
 		List<String> parameters = new ArrayList<>();
 		parameters.add("faithfulnessAssumed");
 		parameters.add("maxDegree");
+		parameters.add("cacheScores");
 		parameters.add("verbose");
 
 		parameters.add("numRuns");
@@ -14,6 +14,8 @@ import edu.cmu.tetrad.data.DataType;
 import edu.cmu.tetrad.data.IKnowledge;
 import edu.cmu.tetrad.graph.EdgeListGraph;
 import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.search.CachingScore;
+import edu.cmu.tetrad.search.Score;
 import edu.cmu.tetrad.search.TsDagToPag;
 import edu.cmu.tetrad.util.Parameters;
 import edu.pitt.dbmi.algo.bootstrap.BootstrapEdgeEnsemble;
@@ -56,8 +58,14 @@ public class TsGfci implements Algorithm, TakesInitialGraph, HasKnowledge, Takes
     @Override
     public Graph search(DataModel dataSet, Parameters parameters) {
     	if (parameters.getInt("bootstrapSampleSize") < 1) {
+            Score score = this.score.getScore(dataSet, parameters);
+
+            if (parameters.getBoolean("cacheScores")) {
+                score = new CachingScore(score);
+            }
+
             edu.cmu.tetrad.search.TsGFci search = new edu.cmu.tetrad.search.TsGFci(test.getTest(dataSet, parameters),
-                    score.getScore(dataSet, parameters));
+                    score);
             search.setKnowledge(dataSet.getKnowledge());
             return search.search();
         } else {
@@ -107,6 +115,7 @@ public class TsGfci implements Algorithm, TakesInitialGraph, HasKnowledge, Takes
         parameters.addAll(score.getParameters());
         parameters.add("faithfulnessAssumed");
         parameters.add("maxIndegree");
+        parameters.add("cacheScores");
         parameters.add("printStream");
         // Bootstrapping
         parameters.add("bootstrapSampleSize");
@@ -13,6 +13,8 @@ import edu.cmu.tetrad.data.IKnowledge;
 import edu.cmu.tetrad.data.Knowledge2;
 import edu.cmu.tetrad.graph.EdgeListGraph;
 import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.search.CachingScore;
+import edu.cmu.tetrad.search.Score;
 import edu.cmu.tetrad.search.SearchGraphUtils;
 import edu.cmu.tetrad.util.Parameters;
 import edu.pitt.dbmi.algo.bootstrap.BootstrapEdgeEnsemble;
@@ -74,8 +76,13 @@ public class Fges implements Algorithm, TakesInitialGraph, HasKnowledge, UsesSco
 //                initialGraph = algorithm.search(dataSet, parameters);
             }
 
-            edu.cmu.tetrad.search.Fges search
-                    = new edu.cmu.tetrad.search.Fges(score.getScore(dataSet, parameters));
+            Score score = this.score.getScore(dataSet, parameters);
+
+            if (parameters.getBoolean("cacheScores")) {
+                score = new CachingScore(score);
+            }
+
+            edu.cmu.tetrad.search.Fges search = new edu.cmu.tetrad.search.Fges(score);
             search.setFaithfulnessAssumed(parameters.getBoolean("faithfulnessAssumed"));
             search.setKnowledge(knowledge);
             search.setVerbose(parameters.getBoolean("verbose"));
@@ -144,6 +151,7 @@ public class Fges implements Algorithm, TakesInitialGraph, HasKnowledge, UsesSco
         parameters.add("faithfulnessAssumed");
         parameters.add("symmetricFirstStep");
         parameters.add("maxDegree");
+        parameters.add("cacheScores");
         parameters.add("verbose");
         // Bootstrapping
         parameters.add("bootstrapSampleSize");
@@ -11,6 +11,7 @@ import edu.cmu.tetrad.graph.EdgeListGraph;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.graph.GraphUtils;
 import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.CachingScore;
 import edu.cmu.tetrad.search.Score;
 import edu.cmu.tetrad.util.Parameters;
 import edu.pitt.dbmi.algo.bootstrap.BootstrapEdgeEnsemble;
@@ -65,6 +66,11 @@ public class FgesMb implements Algorithm, TakesInitialGraph, HasKnowledge, UsesS
             }
 
             Score score = this.score.getScore(dataSet, parameters);
+
+            if (parameters.getBoolean("cacheScores")) {
+                score = new CachingScore(score);
+            }
+
             edu.cmu.tetrad.search.FgesMb search = new edu.cmu.tetrad.search.FgesMb(score);
             search.setFaithfulnessAssumed(parameters.getBoolean("faithfulnessAssumed"));
             search.setKnowledge(knowledge);
@@ -128,6 +134,7 @@ public class FgesMb implements Algorithm, TakesInitialGraph, HasKnowledge, UsesS
         List<String> parameters = score.getParameters();
         parameters.add("targetName");
         parameters.add("faithfulnessAssumed");
+        parameters.add("cacheScores");
         // Bootstrapping
         parameters.add("bootstrapSampleSize");
         parameters.add("bootstrapEnsemble");
@@ -7,7 +7,9 @@ import edu.cmu.tetrad.algcomparison.utils.TakesInitialGraph;
 import edu.cmu.tetrad.data.*;
 import edu.cmu.tetrad.graph.EdgeListGraph;
 import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.search.CachingScore;
 import edu.cmu.tetrad.search.IndTestFisherZ;
+import edu.cmu.tetrad.search.Score;
 import edu.cmu.tetrad.search.SearchGraphUtils;
 import edu.cmu.tetrad.util.Parameters;
 import edu.pitt.dbmi.algo.bootstrap.BootstrapEdgeEnsemble;
@@ -43,7 +45,13 @@ public class PcFges implements Algorithm, TakesInitialGraph, HasKnowledge {
             edu.cmu.tetrad.search.FasStable fas = new edu.cmu.tetrad.search.FasStable(new IndTestFisherZ(cov, 0.001));//parameters.getDouble("alpha")));
             Graph bound = fas.search();
 
-            edu.cmu.tetrad.search.Fges search = new edu.cmu.tetrad.search.Fges(score.getScore(cov, parameters));
+            Score score = this.score.getScore(cov, parameters);
+
+            if (parameters.getBoolean("cacheScores")) {
+                score = new CachingScore(score);
+            }
+
+            edu.cmu.tetrad.search.Fges search = new edu.cmu.tetrad.search.Fges(score);
             search.setVerbose(parameters.getBoolean("verbose"));
             search.setFaithfulnessAssumed(parameters.getBoolean("faithfulnessAssumed"));
             search.setKnowledge(knowledge);
@@ -115,6 +123,7 @@ public class PcFges implements Algorithm, TakesInitialGraph, HasKnowledge {
         parameters.add("faithfulnessAssumed");
         parameters.add("symmetricFirstStep");
         parameters.add("maxDegree");
+        parameters.add("cacheScores");
         parameters.add("verbose");
         // Bootstrapping
         parameters.add("bootstrapSampleSize");
@@ -256,7 +256,7 @@ public final class BoxDataSet implements DataSet, TetradSerializable {
      */
     public final void setDouble(int row, int column, double value) {
         try {
-            dataBox.set(row, column, value);
+            dataBox.setDouble(row, column, value);
         } catch (Exception e) {
             if (row < 0 || column < 0) {
                 throw new IllegalArgumentException(
@@ -266,7 +266,7 @@ public final class BoxDataSet implements DataSet, TetradSerializable {
             int newRows = Math.max(row + 1, dataBox.numRows());
             int newCols = Math.max(column + 1, dataBox.numCols());
             resize(newRows, newCols);
-            dataBox.set(row, column, value);
+            dataBox.setDouble(row, column, value);
         }
     }
 
@@ -867,13 +867,7 @@ public final class BoxDataSet implements DataSet, TetradSerializable {
      * integer, or DiscreteVariable.MISSING_VALUE if the value is missing.
      */
     public final int getInt(int row, int column) {
-        Number value = dataBox.get(row, column);
-
-        if (value == null) {
-            return DiscreteVariable.MISSING_VALUE;
-        } else {
-            return value.intValue();
-        }
+        return dataBox.getInt(row, column);
     }
 
     /**
@@ -883,13 +877,61 @@ public final class BoxDataSet implements DataSet, TetradSerializable {
      * returned.
      */
     public final double getDouble(int row, int column) {
-        Number value = dataBox.get(row, column);
+        return dataBox.getDouble(row, column);
+    }
 
-        if (value == null) {
-            return ContinuousVariable.getDoubleMissingValue();
-        } else {
-            return value.doubleValue();
+    /**
+     * @return the values in the given column as doubles, with Double.NaN for
+     * missing values. If the data box stores the column as a double array
+     * (VerticalDoubleDataBox, or a continuous column of a MixedDataBox), that
+     * array itself is returned, so it must not be modified; otherwise this is
+     * a copy.
+     */
+    public final double[] getDoubleColumn(int column) {
+        if (dataBox instanceof VerticalDoubleDataBox) {
+            return ((VerticalDoubleDataBox) dataBox).getVariableVectors()[column];
+        } else if (dataBox instanceof MixedDataBox) {
+            double[] col = ((MixedDataBox) dataBox).getContinuousData()[column];
+            if (col != null) return col;
+        } else if (dataBox instanceof BufferDataBox) {
+            double[] col = ((BufferDataBox) dataBox).getDoubleColumn(column);
+            if (col != null) return col;
+        }
+
+        double[] col = new double[dataBox.numRows()];
+
+        for (int i = 0; i < col.length; i++) {
+            col[i] = dataBox.getDouble(i, column);
+        }
+
+        return col;
+    }
+
+    /**
+     * @return the values in the given column as ints, with
+     * DiscreteVariable.MISSING_VALUE for missing values. If the data box
+     * stores the column as an int array (VerticalIntDataBox, or a discrete
+     * column of a MixedDataBox), that array itself is returned, so it must not
+     * be modified; otherwise this is a copy.
+     */
+    public final int[] getIntColumn(int column) {
+        if (dataBox instanceof VerticalIntDataBox) {
+            return ((VerticalIntDataBox) dataBox).getVariableVectors()[column];
+        } else if (dataBox instanceof MixedDataBox) {
+            int[] col = ((MixedDataBox) dataBox).getDiscreteData()[column];
+            if (col != null) return col;
+        } else if (dataBox instanceof BufferDataBox) {
+            int[] col = ((BufferDataBox) dataBox).getIntColumn(column);
+            if (col != null) return col;
         }
+
+        int[] col = new int[dataBox.numRows()];
+
+        for (int i = 0; i < col.length; i++) {
+            col[i] = dataBox.getInt(i, column);
+        }
+
+        return col;
     }
 
 //    /**
@@ -1011,12 +1053,7 @@ public final class BoxDataSet implements DataSet, TetradSerializable {
 
         for (int i = 0; i < dataBox.numRows(); i++) {
             for (int j = 0; j < dataBox.numCols(); j++) {
-                Number number = dataBox.get(i, j);
-                if (number == null) {
-                    copy.set(i, j, Double.NaN);
-                } else {
-                    copy.set(i, j, number.doubleValue());
-                }
+                copy.set(i, j, dataBox.getDouble(i, j));
             }
         }
 
@@ -1270,11 +1307,7 @@ public final class BoxDataSet implements DataSet, TetradSerializable {
 
     //===============================PRIVATE METHODS=====================//
     private void setIntPrivate(int row, int col, int value) {
-        if (value == -99) {
-            dataBox.set(row, col, null);
-        } else {
-            dataBox.set(row, col, value);
-        }
+        dataBox.setDouble(row, col, value == -99 ? Double.NaN : value);
     }
 
     /**
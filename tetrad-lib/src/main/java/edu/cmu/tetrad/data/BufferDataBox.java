@@ -0,0 +1,505 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Node;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stores data column by column in NIO buffers rather than Java arrays--continuous columns in
+ * DoubleBuffers and discrete columns in IntBuffers. The buffers may be on the heap, in direct
+ * memory (allocateDirect) or in a memory mapped file (allocateMapped, or a ColumnarDataFile), so
+ * data sets of more cells than fit on the heap can be held without long garbage collection
+ * pauses. As with MixedDataBox, the variables only say which columns are continuous and which
+ * discrete. Missing values are Double.NaN and -99.
+ * <p>
+ * Off-heap memory is released when the box is garbage collected, or at once by close(), after
+ * which reading or writing the box throws IllegalStateException; close() must not race with
+ * other threads still using the box. Copies and views of an off-heap box are held in direct
+ * memory, which is freed when they are garbage collected, so they never leave scratch files
+ * behind; only allocateMapped() creates a file. Buffers mapped read only can't be set; set()
+ * and setDouble() throw ReadOnlyBufferException for them. Serializing a BufferDataBox writes a
+ * heap copy of it.
+ *
+ * @author Joseph Ramsey
+ */
+public class BufferDataBox implements DataBox, Closeable {
+    static final long serialVersionUID = 23L;
+
+    // Where new buffers for copies of this box are allocated.
+    private enum Storage {HEAP, DIRECT, MAPPED}
+
+    private final transient List<Node> variables;
+    private final transient int numRows;
+    private final transient DoubleBuffer[] continuousData;
+    private final transient IntBuffer[] discreteData;
+    private final transient Storage storage;
+
+    // The buffers this box allocated, freed by close(), and the scratch file it mapped, if any.
+    private final transient List<ByteBuffer> owned;
+    private final transient File file;
+    private transient boolean closed = false;
+
+    /**
+     * Wraps the given buffers, which are not freed by close().
+     *
+     * @param variables      The variables, one for each column.
+     * @param numRows        The number of rows.
+     * @param continuousData For each continuous column, a buffer of numRows doubles; null for
+     *                       the others.
+     * @param discreteData   For each discrete column, a buffer of numRows ints; null for the
+     *                       others.
+     */
+    public BufferDataBox(List<Node> variables, int numRows, DoubleBuffer[] continuousData, IntBuffer[] discreteData) {
+        this(variables, numRows, continuousData, discreteData, null, new ArrayList<ByteBuffer>(), null);
+    }
+
+    private BufferDataBox(List<Node> variables, int numRows, DoubleBuffer[] continuousData, IntBuffer[] discreteData,
+                          Storage storage, List<ByteBuffer> owned, File file) {
+        if (variables == null) throw new NullPointerException("Variables cannot be null.");
+        if (numRows < 0) throw new IllegalArgumentException("Number of rows cannot be negative.");
+
+        if (continuousData.length != variables.size() || discreteData.length != variables.size()) {
+            throw new IllegalArgumentException("Expecting one buffer for each of " + variables.size() + " variables.");
+        }
+
+        boolean direct = false;
+
+        for (int j = 0; j < variables.size(); j++) {
+            if (!(continuousData[j] == null ^ discreteData[j] == null)) {
+                throw new IllegalArgumentException("Column " + j + " should have exactly one buffer.");
+            }
+
+            int length = continuousData[j] != null ? continuousData[j].limit() : discreteData[j].limit();
+
+            if (length != numRows) {
+                throw new IllegalArgumentException("Column " + j + " has " + length + " rows; expecting " + numRows);
+            }
+
+            direct |= continuousData[j] != null ? continuousData[j].isDirect() : discreteData[j].isDirect();
+        }
+
+        this.variables = new ArrayList<>(variables);
+        this.numRows = numRows;
+        this.continuousData = continuousData;
+        this.discreteData = discreteData;
+        this.storage = storage != null ? storage : direct ? Storage.DIRECT : Storage.HEAP;
+        this.owned = owned;
+        this.file = file;
+    }
+
+    /**
+     * Allocates a box of missing values in direct memory, which is limited by
+     * -XX:MaxDirectMemorySize.
+     */
+    public static BufferDataBox allocateDirect(List<Node> variables, int numRows) {
+        DoubleBuffer[] continuous = new DoubleBuffer[variables.size()];
+        IntBuffer[] discrete = new IntBuffer[variables.size()];
+        List<ByteBuffer> owned = new ArrayList<>();
+
+        for (int j = 0; j < variables.size(); j++) {
+            long bytes = (isDiscrete(variables.get(j)) ? 4L : 8L) * numRows;
+
+            if (bytes > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Column " + variables.get(j) + " is too long for a direct buffer.");
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+            owned.add(buffer);
+
+            if (isDiscrete(variables.get(j))) {
+                discrete[j] = buffer.asIntBuffer();
+            } else {
+                continuous[j] = buffer.asDoubleBuffer();
+            }
+        }
+
+        BufferDataBox box = new BufferDataBox(variables, numRows, continuous, discrete, Storage.DIRECT, owned, null);
+        box.fillMissing();
+        return box;
+    }
+
+    /**
+     * Allocates a box of missing values in a temporary file, mapped into memory, so that only
+     * the pages in use need be in memory. The file is deleted when the box is closed, or else
+     * when the virtual machine exits.
+     */
+    public static BufferDataBox allocateMapped(List<Node> variables, int numRows) throws IOException {
+        File file = File.createTempFile("tetrad", ".box");
+        file.deleteOnExit();
+
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw"); FileChannel channel = out.getChannel()) {
+            long length = 0;
+            for (Node variable : variables) length += columnBytes(variable, numRows);
+            out.setLength(length);
+
+            DoubleBuffer[] continuous = new DoubleBuffer[variables.size()];
+            IntBuffer[] discrete = new IntBuffer[variables.size()];
+            List<ByteBuffer> owned = map(channel, FileChannel.MapMode.READ_WRITE, 0, numRows, variables,
+                    continuous, discrete);
+
+            BufferDataBox box = new BufferDataBox(variables, numRows, continuous, discrete, Storage.MAPPED, owned, file);
+            box.fillMissing();
+            return box;
+        }
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     */
+    public static BufferDataBox serializableInstance() {
+        List<Node> variables = new ArrayList<>();
+        variables.add(new ContinuousVariable("X"));
+        variables.add(new DiscreteVariable("Y"));
+
+        return new BufferDataBox(variables, 2,
+                new DoubleBuffer[]{DoubleBuffer.wrap(new double[]{1.0, 2.0}), null},
+                new IntBuffer[]{null, IntBuffer.wrap(new int[]{0, 1})});
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    public int numCols() {
+        return variables.size();
+    }
+
+    /**
+     * Sets the value at the given row and column; null means missing.
+     */
+    public void set(int row, int col, Number value) {
+        if (continuousData[col] != null) {
+            continuousData[col].put(row, value == null ? Double.NaN : value.doubleValue());
+        } else {
+            discrete(col).put(row, value == null ? -99 : value.intValue());
+        }
+    }
+
+    /**
+     * @return the value at the given row and column, or null if it is missing.
+     */
+    public Number get(int row, int col) {
+        if (continuousData[col] != null) {
+            double value = continuousData[col].get(row);
+            return Double.isNaN(value) ? null : value;
+        } else {
+            int value = discrete(col).get(row);
+            return value == -99 ? null : value;
+        }
+    }
+
+    public double getDouble(int row, int col) {
+        if (continuousData[col] != null) {
+            return continuousData[col].get(row);
+        } else {
+            int value = discrete(col).get(row);
+            return value == -99 ? Double.NaN : value;
+        }
+    }
+
+    public int getInt(int row, int col) {
+        if (discreteData[col] != null) {
+            return discreteData[col].get(row);
+        } else {
+            double value = continuous(col).get(row);
+            return Double.isNaN(value) ? -99 : (int) value;
+        }
+    }
+
+    public void setDouble(int row, int col, double value) {
+        if (continuousData[col] != null) {
+            continuousData[col].put(row, value);
+        } else {
+            discrete(col).put(row, Double.isNaN(value) ? -99 : (int) value);
+        }
+    }
+
+    /**
+     * @return a heap copy of the given continuous column, read in bulk.
+     */
+    public double[] getDoubleColumn(int col) {
+        if (continuousData[col] == null) {
+            discrete(col);
+            return null;
+        }
+
+        double[] column = new double[numRows];
+        continuousData[col].duplicate().get(column);
+        return column;
+    }
+
+    /**
+     * @return a heap copy of the given discrete column, read in bulk.
+     */
+    public int[] getIntColumn(int col) {
+        if (discreteData[col] == null) {
+            continuous(col);
+            return null;
+        }
+
+        int[] column = new int[numRows];
+        discreteData[col].duplicate().get(column);
+        return column;
+    }
+
+    /**
+     * @return true if the data are in direct memory or a mapped file rather than on the heap.
+     */
+    public boolean isOffHeap() {
+        return storage != Storage.HEAP;
+    }
+
+    /**
+     * @return a copy of this data box--a MixedDataBox for a heap box, otherwise a new BufferDataBox
+     * in direct memory.
+     */
+    public DataBox copy() {
+        if (storage == Storage.HEAP) {
+            return toHeap();
+        }
+
+        BufferDataBox copy = allocate(variables, numRows);
+
+        for (int j = 0; j < numCols(); j++) {
+            if (continuousData[j] != null) {
+                copy.continuousData[j].duplicate().put(continuousData[j].duplicate());
+            } else {
+                copy.discreteData[j].duplicate().put(discreteData[j].duplicate());
+            }
+        }
+
+        return copy;
+    }
+
+    /**
+     * @return an empty data box over the same variables, on the heap for a heap box and otherwise
+     * in direct memory.
+     */
+    public DataBox like() {
+        if (storage == Storage.HEAP) {
+            return new MixedDataBox(new ArrayList<>(variables), numRows);
+        }
+
+        return allocate(variables, numRows);
+    }
+
+    /**
+     * @return a copy of the given rows and columns, on the heap for a heap box and otherwise in
+     * direct memory.
+     */
+    public DataBox viewSelection(int[] rows, int[] cols) {
+        List<Node> selected = new ArrayList<>();
+        for (int col : cols) selected.add(variables.get(col));
+
+        DataBox box = storage == Storage.HEAP ? new MixedDataBox(selected, rows.length) : allocate(selected, rows.length);
+
+        for (int i = 0; i < rows.length; i++) {
+            for (int j = 0; j < cols.length; j++) {
+                box.setDouble(i, j, getDouble(rows[i], cols[j]));
+            }
+        }
+
+        return box;
+    }
+
+    /**
+     * Frees the direct memory or unmaps the file this box allocated, and deletes the file. Boxes
+     * over buffers that were passed in are just marked closed. The box can't be used afterward.
+     */
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+
+        Arrays.fill(continuousData, null);
+        Arrays.fill(discreteData, null);
+
+        for (ByteBuffer buffer : owned) free(buffer);
+        owned.clear();
+
+        if (file != null && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    private DataBox toHeap() {
+        double[][] continuous = new double[numCols()][];
+        int[][] discrete = new int[numCols()][];
+
+        for (int j = 0; j < numCols(); j++) {
+            continuous[j] = getDoubleColumn(j);
+            discrete[j] = getIntColumn(j);
+        }
+
+        return new MixedDataBox(new ArrayList<>(variables), numRows, continuous, discrete);
+    }
+
+    // Copies go to direct memory, not to a mapped file: nothing would close a scratch file made
+    // for them, so it would stay on disk until the virtual machine exits.
+    private BufferDataBox allocate(List<Node> variables, int numRows) {
+        return allocateDirect(variables, numRows);
+    }
+
+    // The buffer of a column taken to be discrete, or IllegalStateException if the box is closed.
+    private IntBuffer discrete(int col) {
+        if (discreteData[col] == null) throw new IllegalStateException("This data box has been closed.");
+        return discreteData[col];
+    }
+
+    private DoubleBuffer continuous(int col) {
+        if (continuousData[col] == null) throw new IllegalStateException("This data box has been closed.");
+        return continuousData[col];
+    }
+
+    private void fillMissing() {
+        for (int j = 0; j < numCols(); j++) {
+            if (continuousData[j] != null) {
+                for (int i = 0; i < numRows; i++) continuousData[j].put(i, Double.NaN);
+            } else {
+                for (int i = 0; i < numRows; i++) discreteData[j].put(i, -99);
+            }
+        }
+    }
+
+    private static boolean isDiscrete(Node variable) {
+        return variable instanceof DiscreteVariable;
+    }
+
+    /**
+     * The number of bytes a column takes in a mapped file, padded to a multiple of 8.
+     */
+    static long columnBytes(Node variable, int numRows) {
+        return ((isDiscrete(variable) ? 4L : 8L) * numRows + 7) & ~7L;
+    }
+
+    /**
+     * Maps the columns of a file laid out as by ColumnarDataFile--each column numRows little
+     * endian doubles (continuous) or ints (discrete), padded to 8 bytes, starting at the given
+     * position--in as few regions as the 2 GB limit on a mapped buffer allows.
+     *
+     * @return the mapped regions.
+     */
+    static List<ByteBuffer> map(FileChannel channel, FileChannel.MapMode mode, long position, int numRows,
+                                List<Node> variables, DoubleBuffer[] continuousData,
+                                IntBuffer[] discreteData) throws IOException {
+        List<ByteBuffer> regions = new ArrayList<>();
+        int j = 0;
+
+        while (j < variables.size()) {
+            int first = j;
+            long length = 0;
+
+            while (j < variables.size() && length + columnBytes(variables.get(j), numRows) <= Integer.MAX_VALUE) {
+                length += columnBytes(variables.get(j), numRows);
+                j++;
+            }
+
+            if (j == first) {
+                throw new IOException("Column " + variables.get(j) + " is too long to map.");
+            }
+
+            ByteBuffer region = channel.map(mode, position, length);
+            regions.add(region);
+            int offset = 0;
+
+            for (int k = first; k < j; k++) {
+                ByteBuffer column = region.duplicate();
+                column.position(offset);
+                column = column.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+                if (isDiscrete(variables.get(k))) {
+                    IntBuffer ints = column.asIntBuffer();
+                    ints.limit(numRows);
+                    discreteData[k] = ints.slice();
+                } else {
+                    DoubleBuffer doubles = column.asDoubleBuffer();
+                    doubles.limit(numRows);
+                    continuousData[k] = doubles.slice();
+                }
+
+                offset += columnBytes(variables.get(k), numRows);
+            }
+
+            position += length;
+        }
+
+        return regions;
+    }
+
+    /**
+     * Releases direct or mapped memory now rather than when the buffer is garbage collected,
+     * where the virtual machine allows it.
+     */
+    static void free(ByteBuffer buffer) {
+        if (!buffer.isDirect()) return;
+
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (NoSuchMethodException e) {
+            // Java 8.
+            try {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) cleaner.getClass().getMethod("clean").invoke(cleaner);
+            } catch (Exception e2) {
+                // Left to the garbage collector.
+            }
+        } catch (Exception e) {
+            // Left to the garbage collector.
+        }
+    }
+
+    /**
+     * Buffers can't be serialized, so a heap copy is written in place of this box.
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        return toHeap();
+    }
+}
+
+
@@ -112,6 +112,21 @@ public class ByteDataBox implements DataBox {
         }
     }
 
+    public double getDouble(int row, int col) {
+        byte datum = data[row][col];
+        return datum == -99 ? Double.NaN : datum;
+    }
+
+    public int getInt(int row, int col) {
+        return (int) data[row][col];
+    }
+
+    public void setDouble(int row, int col, double value) {
+        synchronized (data) {
+            data[row][col] = Double.isNaN(value) ? -99 : (byte) value;
+        }
+    }
+
     /**
      * @return a copy of this data box.
      */
@@ -120,7 +135,7 @@ public class ByteDataBox implements DataBox {
 
         for (int i = 0; i < numRows(); i++) {
             for (int j = 0; j < numCols(); j++) {
-                box.set(i, j, get(i, j));
+                box.setDouble(i, j, getDouble(i, j));
             }
         }
 
@@ -146,7 +161,7 @@ public class ByteDataBox implements DataBox {
 
         for (int i = 0; i < rows.length; i++) {
             for (int j = 0; j < cols.length; j++) {
-                _dataBox.set(i, j, get(rows[i], cols[j]));
+                _dataBox.setDouble(i, j, getDouble(rows[i], cols[j]));
             }
         }
 
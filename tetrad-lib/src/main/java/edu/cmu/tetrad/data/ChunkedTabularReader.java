@@ -0,0 +1,1052 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.NamingProtocol;
+import edu.cmu.tetrad.util.TetradLogger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a plain tabular data file--an optional row of variable names followed by rows of
+ * values--in one parse, in parallel. The file is split at line boundaries into chunks, each of
+ * which is memory mapped and handled by its own task in the common ForkJoinPoolInstance; tokens
+ * are found by scanning bytes for the delimiter, without regular expressions, and values are
+ * written straight into the column arrays of the BoxDataSet returned. Before parsing, rows are
+ * counted (a scan for line ends only) so the columns can be allocated at their final size.
+ * <p>
+ * Column types are guessed from the first rows, by the same rules DataReader uses for the whole
+ * file. After parsing, any column whose values don't fit its guessed type--a non-number in a
+ * continuous column, say, or too many distinct integers in a discrete one--is parsed again as
+ * the right type; other columns are not read again.
+ * <p>
+ * Lines may end in \n, \r or \r\n, as for BufferedReader.readLine(). Files with /variables,
+ * /data or /knowledge sections, or with case IDs, aren't handled here; read(file) returns null
+ * for those, and DataReader should be used.
+ * <p>
+ * Otherwise the data set is the one DataReader reads from the same file, except that tokens are
+ * trimmed before anything else is done with them, where DataReader trims them only when it
+ * stores values. So a field of nothing but spaces is a missing value here, where DataReader
+ * makes it a category of its column (and so a column of numbers with such a field discrete);
+ * and a number with spaces around it counts here toward a column's being integral. As in
+ * DataReader, a value that isn't among the categories of a known discrete variable is stored as
+ * missing; tokens beyond the number of variables are ignored, and lines with too few or too
+ * many tokens are logged; and variable names are checked for duplicates after being lowercased.
+ *
+ * @author Joseph Ramsey
+ */
+public final class ChunkedTabularReader {
+
+    // The number of rows column types are guessed from.
+    private static final int SAMPLE_ROWS = 1000;
+
+    // Don't split files into chunks smaller than this just to keep every core busy.
+    private static final long MIN_SPLIT_BYTES = 1L << 20;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private DelimiterType delimiterType = DelimiterType.WHITESPACE;
+    private boolean varNamesSupplied = true;
+    private String commentMarker = "//";
+    private char quoteChar = '"';
+    private String missingValueMarker = "*";
+    private int maxIntegralDiscrete = 0;
+    private List<Node> knownVariables = new LinkedList<>();
+    private boolean readVariablesLowercase = false;
+
+    // The approximate size of the chunks the file is split into.
+    private long chunkSize = 64L << 20;
+
+    private final Charset charset = Charset.defaultCharset();
+    private final TetradLogger logger = TetradLogger.getInstance();
+
+    public ChunkedTabularReader() {
+    }
+
+    /**
+     * @return true if files with the given delimiter can be read by this reader. Custom delimiters
+     * can only be read by DataReader.
+     */
+    public static boolean isSupported(DelimiterType delimiterType) {
+        return delimiterType == DelimiterType.WHITESPACE || delimiterType == DelimiterType.TAB
+                || delimiterType == DelimiterType.COMMA || delimiterType == DelimiterType.COLON;
+    }
+
+    public void setDelimiter(DelimiterType delimiterType) {
+        if (!isSupported(delimiterType)) {
+            throw new IllegalArgumentException("Unsupported delimiter: " + delimiterType);
+        }
+
+        this.delimiterType = delimiterType;
+    }
+
+    public void setVariablesSupplied(boolean varNamesSupplied) {
+        this.varNamesSupplied = varNamesSupplied;
+    }
+
+    public void setCommentMarker(String commentMarker) {
+        if (commentMarker == null) throw new NullPointerException("Cannot be null.");
+        this.commentMarker = commentMarker;
+    }
+
+    public void setQuoteChar(char quoteChar) {
+        this.quoteChar = quoteChar;
+    }
+
+    public void setMissingValueMarker(String missingValueMarker) {
+        if (missingValueMarker == null) throw new NullPointerException("Cannot be null.");
+        this.missingValueMarker = missingValueMarker;
+    }
+
+    public void setMaxIntegralDiscrete(int maxIntegralDiscrete) {
+        if (maxIntegralDiscrete < -1) {
+            throw new IllegalArgumentException("Must be >= -1: " + maxIntegralDiscrete);
+        }
+
+        this.maxIntegralDiscrete = maxIntegralDiscrete;
+    }
+
+    public void setKnownVariables(List<Node> knownVariables) {
+        if (knownVariables == null) throw new NullPointerException();
+        this.knownVariables = knownVariables;
+    }
+
+    public void setReadVariablesLowercase(boolean readVariablesLowercase) {
+        this.readVariablesLowercase = readVariablesLowercase;
+    }
+
+    /**
+     * @param chunkSize The approximate number of bytes in each chunk the file is split into. By
+     *                  default 64 MB; files of more than a megabyte are also split so that each
+     *                  core gets a few chunks.
+     */
+    public void setChunkSize(long chunkSize) {
+        if (chunkSize < 1) throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Reads the given file.
+     *
+     * @return the data set, over continuous and discrete variables as the data indicate, or null
+     * if the file has /variables, /data or /knowledge sections.
+     * @throws IOException if the file cannot be read.
+     */
+    public DataSet read(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file); FileChannel channel = in.getChannel()) {
+            return read(channel);
+        }
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    private DataSet read(FileChannel channel) throws IOException {
+        long size = channel.size();
+
+        // Find the first line that isn't blank or a comment.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long pos = 0;
+        long next;
+        byte[] first;
+
+        while (true) {
+            out.reset();
+            next = readLine(channel, pos, out);
+
+            if (next < 0) {
+                throw new IllegalArgumentException("Data source is empty.");
+            }
+
+            first = out.toByteArray();
+
+            if (lineType(ByteBuffer.wrap(first), 0, first.length) != SKIP) break;
+            pos = next;
+        }
+
+        String firstLine = new String(first, charset);
+
+        if (firstLine.startsWith("/variables") || firstLine.startsWith("/data")
+                || firstLine.startsWith("/knowledge")) {
+            return null;
+        }
+
+        List<String> varNames = new ArrayList<>();
+        long dataStart;
+        Scanner scanner = new Scanner();
+
+        if (varNamesSupplied) {
+            if (first.length > 0 && first[first.length - 1] == '\t') {
+                first = Arrays.copyOf(first, first.length - 1);
+            }
+
+            scanner.reset(ByteBuffer.wrap(first), 0, first.length);
+
+            while (scanner.next()) {
+                String name = scanner.string();
+
+                if ("".equals(name)) {
+                    throw new IllegalArgumentException("Expected variable name, got empty token: " + firstLine);
+                }
+
+                if (readVariablesLowercase) name = name.toLowerCase();
+
+                if (varNames.contains(name)) {
+                    throw new IllegalArgumentException("Duplicate variable name (" + name + ").");
+                }
+
+                varNames.add(name);
+            }
+
+            dataStart = next;
+        } else {
+            scanner.reset(ByteBuffer.wrap(first), 0, first.length);
+            int i = 0;
+            while (scanner.next()) varNames.add("X" + (++i));
+            dataStart = pos;
+        }
+
+        final int numCols = varNames.size();
+        final List<Chunk> chunks = split(channel, dataStart, size);
+
+        // Count the rows in each chunk, so the columns can be allocated once.
+        List<Callable<Boolean>> counts = new ArrayList<>();
+
+        for (final Chunk chunk : chunks) {
+            counts.add(new Callable<Boolean>() {
+                public Boolean call() {
+                    return chunk.count();
+                }
+            });
+        }
+
+        for (Boolean ok : invokeAll(counts)) {
+            if (!ok) return null;
+        }
+
+        int numRows = 0;
+
+        for (Chunk chunk : chunks) {
+            chunk.rowOffset = numRows;
+            numRows += chunk.numRows;
+        }
+
+        this.logger.log("info", "\nNumber of data rows = " + numRows);
+
+        // Guess the column types from the first rows, unless the variables are known.
+        final Node[] known = new Node[numCols];
+
+        for (int j = 0; j < numCols; j++) {
+            for (Node variable : knownVariables) {
+                if (variable.getName().equals(varNames.get(j))) known[j] = variable;
+            }
+        }
+
+        boolean[] continuous = guessTypes(chunks, numCols, known);
+
+        final double[][] doubles = new double[numCols][];
+        final int[][] ints = new int[numCols][];
+        final ByteDictionary[] knownCategories = new ByteDictionary[numCols];
+
+        for (int j = 0; j < numCols; j++) {
+            if (continuous[j]) {
+                doubles[j] = new double[numRows];
+            } else {
+                ints[j] = new int[numRows];
+            }
+
+            if (known[j] instanceof DiscreteVariable) {
+                knownCategories[j] = new ByteDictionary();
+
+                for (String category : ((DiscreteVariable) known[j]).getCategories()) {
+                    knownCategories[j].add(category.getBytes(charset));
+                }
+            }
+        }
+
+        boolean[] columns = new boolean[numCols];
+        Arrays.fill(columns, true);
+
+        List<Node> variables = new ArrayList<>(Collections.<Node>nCopies(numCols, null));
+
+        // Parse, then parse again any columns that turned out to be of the other type. The second
+        // time around, a column's type is settled by all of its values, so it can't change again.
+        for (int pass = 0; pass < 3; pass++) {
+            parse(chunks, columns, doubles, ints, knownCategories, pass == 0);
+
+            if (pass == 0) {
+                for (Chunk chunk : chunks) {
+                    for (String message : chunk.messages) this.logger.log("info", message);
+                }
+            }
+
+            boolean[] redo = new boolean[numCols];
+            boolean any = false;
+
+            for (int j = 0; j < numCols; j++) {
+                if (!columns[j]) continue;
+
+                if (known[j] != null) {
+                    variables.set(j, known[j]);
+                    continue;
+                }
+
+                Set<String> strings = new HashSet<>();
+                boolean nonNumeric = false;
+
+                for (Chunk chunk : chunks) {
+                    if (doubles[j] != null) {
+                        nonNumeric |= chunk.nonNumeric[j];
+                    } else {
+                        strings.addAll(Arrays.asList(chunk.dictionaries[j].strings(charset)));
+                    }
+                }
+
+                if (nonNumeric) {
+                    redo[j] = true;
+                    doubles[j] = null;
+                    ints[j] = new int[numRows];
+                } else if (doubles[j] != null) {
+                    variables.set(j, new ContinuousVariable(varNames.get(j)));
+                } else {
+                    Node variable = makeVariable(varNames.get(j), strings);
+
+                    if (variable instanceof ContinuousVariable) {
+                        if (pass == 2) throw new IllegalStateException("Column " + j + " changed type twice.");
+                        redo[j] = true;
+                        ints[j] = null;
+                        doubles[j] = new double[numRows];
+                    } else {
+                        recode(chunks, j, ints[j], ((DiscreteVariable) variable).getCategories());
+                        variables.set(j, variable);
+                    }
+                }
+
+                any |= redo[j];
+            }
+
+            if (!any) break;
+            columns = redo;
+        }
+
+        boolean allContinuous = true;
+        boolean allDiscrete = true;
+
+        for (int j = 0; j < numCols; j++) {
+            if (doubles[j] == null) allContinuous = false;
+            if (ints[j] == null) allDiscrete = false;
+        }
+
+        DataBox box;
+
+        if (allContinuous) {
+            box = new VerticalDoubleDataBox(doubles);
+        } else if (allDiscrete) {
+            box = new VerticalIntDataBox(ints);
+        } else {
+            box = new MixedDataBox(new ArrayList<>(variables), numRows, doubles, ints);
+        }
+
+        return new BoxDataSet(box, variables);
+    }
+
+    // Splits the data into chunks that start at line starts.
+    private List<Chunk> split(FileChannel channel, long dataStart, long size) throws IOException {
+        long dataBytes = size - dataStart;
+        int parallelism = ForkJoinPoolInstance.getInstance().getPool().getParallelism();
+        long bySize = (dataBytes + chunkSize - 1) / chunkSize;
+        long byCores = Math.min(4L * parallelism, dataBytes / MIN_SPLIT_BYTES);
+        long numChunks = Math.max(1, Math.max(bySize, byCores));
+
+        List<Chunk> chunks = new ArrayList<>();
+        long start = dataStart;
+
+        for (long k = 1; k <= numChunks && start < size; k++) {
+            long end = k == numChunks ? size : nextLineStart(channel, dataStart + k * (dataBytes / numChunks), size);
+            if (end <= start) continue;
+
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException("Line too long near byte " + start);
+            }
+
+            chunks.add(new Chunk(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start)));
+            start = end;
+        }
+
+        return chunks;
+    }
+
+    private boolean[] guessTypes(List<Chunk> chunks, int numCols, Node[] known) {
+        List<Set<String>> strings = new ArrayList<>();
+        for (int j = 0; j < numCols; j++) strings.add(new HashSet<String>());
+
+        Scanner scanner = new Scanner();
+        int rows = 0;
+
+        CHUNKS:
+        for (Chunk chunk : chunks) {
+            ByteBuffer b = chunk.buffer;
+            int limit = b.limit();
+            int s = 0;
+
+            while (s < limit) {
+                int e = lineEnd(b, s, limit);
+                int next = nextLineStart(b, e, limit);
+
+                if (lineType(b, s, e) == DATA) {
+                    scanner.reset(b, s, e);
+
+                    for (int col = 0; scanner.next() && col < numCols; col++) {
+                        if (!scanner.isMissing()) strings.get(col).add(scanner.string());
+                    }
+
+                    if (++rows >= SAMPLE_ROWS) break CHUNKS;
+                }
+
+                s = next;
+            }
+        }
+
+        boolean[] continuous = new boolean[numCols];
+
+        for (int j = 0; j < numCols; j++) {
+            if (known[j] != null) {
+                continuous[j] = known[j] instanceof ContinuousVariable;
+            } else {
+                continuous[j] = isContinuous(strings.get(j));
+            }
+        }
+
+        return continuous;
+    }
+
+    private void parse(List<Chunk> chunks, final boolean[] columns, final double[][] doubles,
+                       final int[][] ints, final ByteDictionary[] knownCategories, final boolean checkTokens) {
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+
+        for (final Chunk chunk : chunks) {
+            tasks.add(new Callable<Boolean>() {
+                public Boolean call() {
+                    chunk.parse(columns, doubles, ints, knownCategories, checkTokens);
+                    return true;
+                }
+            });
+        }
+
+        invokeAll(tasks);
+    }
+
+    // Replaces each chunk's codes for column j by indices into the given sorted categories.
+    private void recode(List<Chunk> chunks, final int j, final int[] column, List<String> categories) {
+        final Map<String, Integer> indices = new HashMap<>();
+        for (int k = 0; k < categories.size(); k++) indices.put(categories.get(k), k);
+
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+
+        for (final Chunk chunk : chunks) {
+            tasks.add(new Callable<Boolean>() {
+                public Boolean call() {
+                    String[] strings = chunk.dictionaries[j].strings(charset);
+                    int[] map = new int[strings.length];
+                    for (int c = 0; c < strings.length; c++) map[c] = indices.get(strings[c]);
+
+                    for (int i = chunk.rowOffset; i < chunk.rowOffset + chunk.numRows; i++) {
+                        if (column[i] != -99) column[i] = map[column[i]];
+                    }
+
+                    return true;
+                }
+            });
+        }
+
+        invokeAll(tasks);
+    }
+
+    // As in DataReader: non-integral numbers, or more distinct integers than maxIntegralDiscrete.
+    private boolean isContinuous(Set<String> strings) {
+        boolean integral = isIntegral(strings);
+        return (isDouble(strings) && !integral) || (integral && strings.size() > maxIntegralDiscrete);
+    }
+
+    private Node makeVariable(String name, Set<String> strings) {
+        if (isDouble(strings) && !isIntegral(strings)) {
+            return new ContinuousVariable(name);
+        }
+
+        if (name.contains(" ")) {
+            name = name.replaceAll(" ", "_");
+        }
+
+        if (!NamingProtocol.isLegalName(name)) {
+            throw new IllegalArgumentException("This cannot be used as a variable name: " + name + ".");
+        }
+
+        if (isContinuous(strings)) {
+            return new ContinuousVariable(name);
+        }
+
+        List<String> categories = new ArrayList<>(strings);
+        Collections.sort(categories);
+        return new DiscreteVariable(name, categories);
+    }
+
+    private static boolean isIntegral(Set<String> strings) {
+        for (String s : strings) {
+            try {
+                Integer.parseInt(s);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isDouble(Set<String> strings) {
+        for (String s : strings) {
+            try {
+                Double.parseDouble(s);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+        List<T> results = new ArrayList<>();
+
+        try {
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while reading data.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+
+        return results;
+    }
+
+    // Reads the line starting at pos into out, without the line end. Returns the position after
+    // the line end, or -1 if pos is at the end of the file. As in BufferedReader.readLine(), a
+    // line ends at \n, \r or \r\n.
+    private static long readLine(FileChannel channel, long pos, ByteArrayOutputStream out) throws IOException {
+        if (pos >= channel.size()) return -1;
+        ByteBuffer block = ByteBuffer.allocate(1 << 16);
+
+        while (true) {
+            block.clear();
+            int n = channel.read(block, pos);
+            if (n <= 0) return pos;
+
+            for (int i = 0; i < n; i++) {
+                byte c = block.get(i);
+
+                if (c == '\n' || c == '\r') {
+                    out.write(block.array(), 0, i);
+                    return afterLineEnd(channel, pos + i, c);
+                }
+            }
+
+            out.write(block.array(), 0, n);
+            pos += n;
+        }
+    }
+
+    // The first line start at or after pos.
+    private static long nextLineStart(FileChannel channel, long pos, long size) throws IOException {
+        if (pos <= 0) return 0;
+        ByteBuffer block = ByteBuffer.allocate(1 << 16);
+        long p = pos - 1;
+
+        while (p < size) {
+            block.clear();
+            int n = channel.read(block, p);
+            if (n <= 0) break;
+
+            for (int i = 0; i < n; i++) {
+                byte c = block.get(i);
+                if (c == '\n' || c == '\r') return afterLineEnd(channel, p + i, c);
+            }
+
+            p += n;
+        }
+
+        return size;
+    }
+
+    // The position after the line end at pos, which is the given \n or \r, taking a \r\n as one.
+    private static long afterLineEnd(FileChannel channel, long pos, byte c) throws IOException {
+        if (c == '\r' && pos + 1 < channel.size()) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            if (channel.read(one, pos + 1) == 1 && one.get(0) == '\n') return pos + 2;
+        }
+
+        return pos + 1;
+    }
+
+    // The position of the first \n or \r at or after from.
+    private static int lineEnd(ByteBuffer b, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            byte c = b.get(i);
+            if (c == '\n' || c == '\r') return i;
+        }
+
+        return limit;
+    }
+
+    // The start of the line after the one ending at e.
+    private static int nextLineStart(ByteBuffer b, int e, int limit) {
+        if (e + 1 < limit && b.get(e) == '\r' && b.get(e + 1) == '\n') return e + 2;
+        return e + 1;
+    }
+
+    private static final int DATA = 0;
+    private static final int SKIP = 1;
+    private static final int KNOWLEDGE = 2;
+
+    // Blank and comment lines are skipped, as by Lineizer.
+    private int lineType(ByteBuffer b, int s, int e) {
+        if (e == s) return SKIP;
+        if (startsWith(b, s, e, commentMarker)) return SKIP;
+        if (b.get(s) == '/' && startsWith(b, s, e, "/knowledge")) return KNOWLEDGE;
+        return DATA;
+    }
+
+    private static boolean startsWith(ByteBuffer b, int s, int e, String prefix) {
+        if (e - s < prefix.length()) return false;
+
+        for (int i = 0; i < prefix.length(); i++) {
+            if (b.get(s + i) != prefix.charAt(i)) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * A range of whole lines of the file, with what's been learned about them.
+     */
+    private final class Chunk {
+        private final ByteBuffer buffer;
+        private int numRows;
+        private int rowOffset;
+
+        // For continuous columns, whether a value that isn't a number was seen.
+        private boolean[] nonNumeric;
+
+        // For discrete columns, the values seen, coded in order of appearance.
+        private ByteDictionary[] dictionaries;
+
+        // Lines with too few or too many tokens, reported as DataReader reports them.
+        private final List<String> messages = new ArrayList<>();
+
+        private Chunk(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        // Counts the data lines; returns false if a /knowledge section is found.
+        private boolean count() {
+            int limit = buffer.limit();
+            int s = 0;
+            int rows = 0;
+
+            while (s < limit) {
+                int e = lineEnd(buffer, s, limit);
+                int next = nextLineStart(buffer, e, limit);
+
+                int type = lineType(buffer, s, e);
+                if (type == KNOWLEDGE) return false;
+                if (type == DATA) rows++;
+
+                s = next;
+            }
+
+            this.numRows = rows;
+            return true;
+        }
+
+        private void parse(boolean[] columns, double[][] doubles, int[][] ints, ByteDictionary[] knownCategories,
+                           boolean checkTokens) {
+            int numCols = columns.length;
+            if (nonNumeric == null) nonNumeric = new boolean[numCols];
+            if (dictionaries == null) dictionaries = new ByteDictionary[numCols];
+
+            for (int j = 0; j < numCols; j++) {
+                if (!columns[j]) continue;
+                nonNumeric[j] = false;
+                dictionaries[j] = ints[j] != null && knownCategories[j] == null ? new ByteDictionary() : null;
+            }
+
+            Scanner scanner = new Scanner();
+            int limit = buffer.limit();
+            int s = 0;
+            int row = rowOffset;
+
+            while (s < limit) {
+                int e = lineEnd(buffer, s, limit);
+                int next = nextLineStart(buffer, e, limit);
+
+                if (lineType(buffer, s, e) == DATA) {
+                    scanner.reset(buffer, s, e);
+                    int col = 0;
+
+                    for (; col < numCols && scanner.next(); col++) {
+                        if (!columns[col]) continue;
+
+                        if (doubles[col] != null) {
+                            double value = Double.NaN;
+
+                            if (!scanner.isMissing()) {
+                                value = scanner.toDouble();
+                                if (Double.isNaN(value) && !scanner.numeric) nonNumeric[col] = true;
+                            }
+
+                            doubles[col][row] = value;
+                        } else if (scanner.isMissing()) {
+                            ints[col][row] = -99;
+                        } else if (knownCategories[col] != null) {
+                            ints[col][row] = knownCategories[col].find(buffer, scanner.start, scanner.stop);
+                        } else {
+                            ints[col][row] = dictionaries[col].code(buffer, scanner.start, scanner.stop);
+                        }
+                    }
+
+                    if (checkTokens) checkTokens(scanner, col, numCols, row);
+
+                    // Too few tokens; the rest are missing.
+                    for (; col < numCols; col++) {
+                        if (!columns[col]) continue;
+                        if (doubles[col] != null) doubles[col][row] = Double.NaN;
+                        else ints[col][row] = -99;
+                    }
+
+                    row++;
+                }
+
+                s = next;
+            }
+        }
+
+        // Line numbers count the lines that aren't blank or comments, the variable names included, as
+        // Lineizer does. Extra tokens are ignored.
+        private void checkTokens(Scanner scanner, int col, int numCols, int row) {
+            int tokens = col;
+            while (scanner.next()) tokens++;
+            if (tokens == numCols) return;
+
+            int line = row + (varNamesSupplied ? 2 : 1);
+
+            messages.add("Line " + line + ": Too " + (tokens < numCols ? "few" : "many") + " tokens; expected "
+                    + numCols + " tokens but got " + tokens + " tokens.");
+        }
+    }
+
+    /**
+     * Finds the tokens in a line, as RegexTokenizer does with the same delimiter and quote char,
+     * trimming each.
+     */
+    private final class Scanner {
+        private final boolean whitespace = delimiterType == DelimiterType.WHITESPACE;
+        private final byte delimiter = whitespace ? 0 : (byte) delimiterType.getPattern().pattern().charAt(0);
+        private final byte quote = (byte) quoteChar;
+        private final byte[] missing = missingValueMarker.getBytes(charset);
+
+        private ByteBuffer b;
+        private int pos;
+        private int end;
+        private boolean done;
+
+        // The current token.
+        private int start;
+        private int stop;
+
+        // Whether the last token given to toDouble() was a number.
+        private boolean numeric;
+
+        private void reset(ByteBuffer b, int s, int e) {
+            this.b = b;
+            this.end = e;
+            this.done = false;
+
+            // Like RegexTokenizer, skip leading spaces.
+            while (s < e && b.get(s) == ' ') s++;
+            this.pos = s;
+        }
+
+        private boolean next() {
+            if (done) return false;
+            int d;
+
+            if (pos < end && b.get(pos) == quote) {
+                int q = pos + 1;
+                while (q < end && b.get(q) != quote) q++;
+                start = pos + 1;
+                stop = q;
+                d = findDelimiter(Math.min(q + 1, end));
+            } else {
+                d = findDelimiter(pos);
+                start = pos;
+                stop = d < 0 ? end : d;
+            }
+
+            if (d < 0) {
+                done = true;
+                pos = end;
+            } else {
+                pos = d + 1;
+                if (whitespace) while (pos < end && isWhitespace(b.get(pos))) pos++;
+            }
+
+            while (start < stop && (b.get(start) & 0xff) <= ' ') start++;
+            while (stop > start && (b.get(stop - 1) & 0xff) <= ' ') stop--;
+            return true;
+        }
+
+        private int findDelimiter(int from) {
+            for (int i = from; i < end; i++) {
+                byte c = b.get(i);
+                if (whitespace ? isWhitespace(c) : c == delimiter) return i;
+            }
+
+            return -1;
+        }
+
+        private boolean isMissing() {
+            int length = stop - start;
+            if (length == 0) return true;
+            if (length != missing.length) return false;
+
+            for (int i = 0; i < length; i++) {
+                if (b.get(start + i) != missing[i]) return false;
+            }
+
+            return true;
+        }
+
+        private String string() {
+            byte[] bytes = new byte[stop - start];
+            for (int i = 0; i < bytes.length; i++) bytes[i] = b.get(start + i);
+            return new String(bytes, charset);
+        }
+
+        // Parses plain decimals of up to 15 significant digits exactly, without allocating;
+        // anything else goes to Double.parseDouble.
+        private double toDouble() {
+            numeric = true;
+            int i = start;
+            boolean negative = false;
+
+            if (i < stop && (b.get(i) == '-' || b.get(i) == '+')) {
+                negative = b.get(i) == '-';
+                i++;
+            }
+
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean anyDigits = false;
+            int c;
+
+            while (i < stop && (c = b.get(i) - '0') >= 0 && c <= 9) {
+                mantissa = 10 * mantissa + c;
+                if (mantissa != 0) digits++;
+                anyDigits = true;
+                i++;
+            }
+
+            if (i < stop && b.get(i) == '.') {
+                i++;
+
+                while (i < stop && (c = b.get(i) - '0') >= 0 && c <= 9) {
+                    mantissa = 10 * mantissa + c;
+                    if (mantissa != 0) digits++;
+                    exponent--;
+                    anyDigits = true;
+                    i++;
+                }
+            }
+
+            if (anyDigits && i < stop && (b.get(i) == 'e' || b.get(i) == 'E')) {
+                i++;
+                boolean negativeExponent = false;
+
+                if (i < stop && (b.get(i) == '-' || b.get(i) == '+')) {
+                    negativeExponent = b.get(i) == '-';
+                    i++;
+                }
+
+                int e = 0;
+                boolean anyExponentDigits = false;
+
+                while (i < stop && (c = b.get(i) - '0') >= 0 && c <= 9 && e < 1000) {
+                    e = 10 * e + c;
+                    anyExponentDigits = true;
+                    i++;
+                }
+
+                if (!anyExponentDigits) return slowDouble();
+                exponent += negativeExponent ? -e : e;
+            }
+
+            if (!anyDigits || i != stop || digits > 15) {
+                return slowDouble();
+            }
+
+            double value;
+
+            if (mantissa == 0) {
+                value = 0.0;
+            } else if (exponent >= 0 && exponent <= 22) {
+                value = mantissa * POWERS_OF_TEN[exponent];
+            } else if (exponent < 0 && exponent >= -22) {
+                value = mantissa / POWERS_OF_TEN[-exponent];
+            } else {
+                return slowDouble();
+            }
+
+            return negative ? -value : value;
+        }
+
+        private double slowDouble() {
+            try {
+                numeric = true;
+                return Double.parseDouble(string());
+            } catch (NumberFormatException e) {
+                numeric = false;
+                return Double.NaN;
+            }
+        }
+    }
+
+    private static boolean isWhitespace(byte c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == 0x0B || c == '\f';
+    }
+
+    /**
+     * Codes byte strings by order of first appearance, without allocating for ones already seen.
+     */
+    private static final class ByteDictionary {
+        private byte[][] keys = new byte[16][];
+        private int[] codes = new int[16];
+        private final List<byte[]> byCode = new ArrayList<>();
+
+        // The code of the given bytes, adding them if they haven't been seen.
+        private int code(ByteBuffer b, int s, int e) {
+            int slot = slot(b, s, e);
+            if (keys[slot] != null) return codes[slot];
+
+            byte[] key = new byte[e - s];
+            for (int i = 0; i < key.length; i++) key[i] = b.get(s + i);
+            return insert(slot, key);
+        }
+
+        // The code of the given bytes, or -99 if they haven't been seen.
+        private int find(ByteBuffer b, int s, int e) {
+            int slot = slot(b, s, e);
+            return keys[slot] == null ? -99 : codes[slot];
+        }
+
+        private void add(byte[] key) {
+            int slot = slot(ByteBuffer.wrap(key), 0, key.length);
+            if (keys[slot] == null) insert(slot, key);
+        }
+
+        private String[] strings(Charset charset) {
+            String[] strings = new String[byCode.size()];
+            for (int c = 0; c < strings.length; c++) strings[c] = new String(byCode.get(c), charset);
+            return strings;
+        }
+
+        private int insert(int slot, byte[] key) {
+            int code = byCode.size();
+            keys[slot] = key;
+            codes[slot] = code;
+            byCode.add(key);
+            if (2 * byCode.size() > keys.length) rehash();
+            return code;
+        }
+
+        private int slot(ByteBuffer b, int s, int e) {
+            int mask = keys.length - 1;
+            int slot = hash(b, s, e) & mask;
+
+            while (keys[slot] != null && !equal(keys[slot], b, s, e)) {
+                slot = (slot + 1) & mask;
+            }
+
+            return slot;
+        }
+
+        private void rehash() {
+            byte[][] oldKeys = keys;
+            int[] oldCodes = codes;
+            keys = new byte[2 * oldKeys.length][];
+            codes = new int[2 * oldKeys.length];
+
+            for (int k = 0; k < oldKeys.length; k++) {
+                if (oldKeys[k] == null) continue;
+                int slot = slot(ByteBuffer.wrap(oldKeys[k]), 0, oldKeys[k].length);
+                keys[slot] = oldKeys[k];
+                codes[slot] = oldCodes[k];
+            }
+        }
+
+        private static int hash(ByteBuffer b, int s, int e) {
+            int h = 1;
+            for (int i = s; i < e; i++) h = 31 * h + b.get(i);
+            return h ^ (h >>> 16);
+        }
+
+        private static boolean equal(byte[] key, ByteBuffer b, int s, int e) {
+            if (key.length != e - s) return false;
+
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != b.get(s + i)) return false;
+            }
+
+            return true;
+        }
+    }
+}
+
+
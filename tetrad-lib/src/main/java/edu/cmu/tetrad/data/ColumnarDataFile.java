@@ -0,0 +1,437 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.stat.correlation.BlockedCovariance;
+import edu.cmu.tetrad.util.TetradMatrix;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A binary, column by column file format for data sets and covariance matrices, meant for
+ * data that's loaded over and over, where parsing text would dominate. A file holds the
+ * variables (with the categories of discrete ones), then optionally a block of means and
+ * covariances, then optionally the data, one column after another--doubles for continuous
+ * columns, ints for discrete ones, little endian, each column starting at a multiple of 8
+ * bytes.
+ * <p>
+ * open(file) reads the variables and covariances but only memory maps the columns; the data set
+ * it gives is backed by a BufferDataBox over the mapped file, so values are paged in by the
+ * operating system as they're used rather than copied onto the heap. The mapping is released
+ * when the file and all of its data sets have been garbage collected; it isn't unmapped
+ * eagerly, since data sets handed out may still be reading it.
+ *
+ * @author Joseph Ramsey
+ */
+public final class ColumnarDataFile implements Closeable {
+
+    private static final int MAGIC = 0x46434454; // "TDCF", little endian.
+    private static final int VERSION = 1;
+
+    private static final byte CONTINUOUS = 0;
+    private static final byte DISCRETE = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final List<Node> variables;
+    private final int numRows;
+    private final int sampleSize;
+    private final double[] means;
+    private final TetradMatrix covariances;
+    private final DoubleBuffer[] continuousData;
+    private final IntBuffer[] discreteData;
+    private boolean closed = false;
+
+    private ColumnarDataFile(List<Node> variables, int numRows, int sampleSize, double[] means,
+                             TetradMatrix covariances, DoubleBuffer[] continuousData, IntBuffer[] discreteData) {
+        this.variables = variables;
+        this.numRows = numRows;
+        this.sampleSize = sampleSize;
+        this.means = means;
+        this.covariances = covariances;
+        this.continuousData = continuousData;
+        this.discreteData = discreteData;
+    }
+
+    //============================PUBLIC METHODS========================//
+
+    /**
+     * Writes the given data set, without covariances.
+     */
+    public static void write(DataSet dataSet, File file) throws IOException {
+        write(dataSet, false, file);
+    }
+
+    /**
+     * Writes the given data set, and if includeCovariances is true, its means and covariance
+     * matrix as well, so that covariance searches can start without a pass over the data. The
+     * data must then be continuous.
+     */
+    public static void write(DataSet dataSet, boolean includeCovariances, File file) throws IOException {
+        if (includeCovariances) {
+            if (!dataSet.isContinuous()) {
+                throw new IllegalArgumentException("Covariances can only be stored for continuous data.");
+            }
+
+            double[][] columns = new double[dataSet.getNumColumns()][];
+
+            for (int j = 0; j < columns.length; j++) {
+                columns[j] = dataSet.getDoubleColumn(j);
+            }
+
+            // Over the values present, as for the covariances.
+            double[] means = BlockedCovariance.means(columns);
+
+            write(dataSet.getVariables(), dataSet, new CovarianceMatrix(dataSet), means, file);
+        } else {
+            write(dataSet.getVariables(), dataSet, null, null, file);
+        }
+    }
+
+    /**
+     * Writes the given covariance matrix alone, with the given means, which may be null.
+     */
+    public static void write(ICovarianceMatrix covariances, double[] means, File file) throws IOException {
+        if (means != null && means.length != covariances.getDimension()) {
+            throw new IllegalArgumentException("Expecting " + covariances.getDimension() + " means.");
+        }
+
+        write(covariances.getVariables(), null, covariances, means, file);
+    }
+
+    /**
+     * Opens the given file, mapping its data into memory, read only.
+     */
+    public static ColumnarDataFile open(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file); FileChannel channel = in.getChannel()) {
+            ByteBuffer header = ByteBuffer.allocate((int) Math.min(channel.size(), 1 << 16)).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, 0);
+
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a columnar data file: " + file);
+            }
+
+            int version = header.getInt();
+
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of columnar data file: " + file);
+            }
+
+            int headerBytes = header.getInt();
+
+            if (headerBytes > header.capacity()) {
+                header = ByteBuffer.allocate(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, header, 0);
+                header.position(12);
+            }
+
+            int numVars = header.getInt();
+            int numRows = header.getInt();
+            int sampleSize = header.getInt();
+            boolean hasMeans = header.get() != 0;
+
+            List<Node> variables = new ArrayList<>();
+
+            for (int j = 0; j < numVars; j++) {
+                byte type = header.get();
+                String name = getString(header);
+
+                if (type == CONTINUOUS) {
+                    variables.add(new ContinuousVariable(name));
+                } else {
+                    int numCategories = header.getInt();
+                    List<String> categories = new ArrayList<>();
+                    for (int k = 0; k < numCategories; k++) categories.add(getString(header));
+                    variables.add(new DiscreteVariable(name, categories));
+                }
+            }
+
+            long position = pad(headerBytes);
+            double[] means = null;
+            TetradMatrix covariances = null;
+
+            if (sampleSize >= 0) {
+                int size = (hasMeans ? numVars : 0) + numVars * numVars;
+                ByteBuffer block = ByteBuffer.allocate(8 * size).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, block, position);
+                DoubleBuffer doubles = block.asDoubleBuffer();
+
+                if (hasMeans) {
+                    means = new double[numVars];
+                    doubles.get(means);
+                }
+
+                covariances = new TetradMatrix(numVars, numVars);
+
+                for (int i = 0; i < numVars; i++) {
+                    for (int j = 0; j < numVars; j++) {
+                        covariances.set(i, j, doubles.get());
+                    }
+                }
+
+                position += 8L * size;
+            }
+
+            DoubleBuffer[] continuousData = null;
+            IntBuffer[] discreteData = null;
+
+            if (numRows >= 0) {
+                continuousData = new DoubleBuffer[numVars];
+                discreteData = new IntBuffer[numVars];
+                BufferDataBox.map(channel, FileChannel.MapMode.READ_ONLY, position, numRows,
+                        variables, continuousData, discreteData);
+            }
+
+            return new ColumnarDataFile(Collections.unmodifiableList(variables), numRows, sampleSize, means,
+                    covariances, continuousData, discreteData);
+        }
+    }
+
+    /**
+     * @return the variables in the file.
+     */
+    public List<Node> getVariables() {
+        return variables;
+    }
+
+    /**
+     * @return true if the file holds data.
+     */
+    public boolean hasData() {
+        return numRows >= 0;
+    }
+
+    /**
+     * @return the number of rows of data, or -1 if there is no data.
+     */
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * @return the data, served from the mapped file. Each call returns a new data set over
+     * the same buffers.
+     * @throws IllegalStateException if the file has been closed.
+     */
+    public synchronized DataSet getDataSet() {
+        if (!hasData()) throw new IllegalStateException("This file holds no data.");
+        if (closed) throw new IllegalStateException("This file has been closed.");
+
+        List<Node> nodes = new ArrayList<>(variables);
+        DoubleBuffer[] continuous = new DoubleBuffer[continuousData.length];
+        IntBuffer[] discrete = new IntBuffer[discreteData.length];
+
+        for (int j = 0; j < nodes.size(); j++) {
+            if (continuousData[j] != null) continuous[j] = continuousData[j].duplicate();
+            if (discreteData[j] != null) discrete[j] = discreteData[j].duplicate();
+        }
+
+        return new BoxDataSet(new BufferDataBox(nodes, numRows, continuous, discrete), nodes);
+    }
+
+    /**
+     * @return true if the file holds a covariance matrix.
+     */
+    public boolean hasCovarianceMatrix() {
+        return covariances != null;
+    }
+
+    /**
+     * @return the stored covariance matrix.
+     */
+    public ICovarianceMatrix getCovarianceMatrix() {
+        if (!hasCovarianceMatrix()) throw new IllegalStateException("This file holds no covariance matrix.");
+        return new CovarianceMatrix(new ArrayList<>(variables), covariances.copy(), sampleSize);
+    }
+
+    /**
+     * @return the stored means, or null if there are none.
+     */
+    public double[] getMeans() {
+        return means == null ? null : means.clone();
+    }
+
+    /**
+     * Drops this file's hold on the mapping, so that it's released once the data sets from
+     * getDataSet() are garbage collected as well. Those data sets stay readable; further calls
+     * to getDataSet() throw IllegalStateException.
+     */
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+
+        if (hasData()) {
+            Arrays.fill(continuousData, null);
+            Arrays.fill(discreteData, null);
+        }
+    }
+
+    //============================PRIVATE METHODS========================//
+
+    private static void write(List<Node> variables, DataSet dataSet, ICovarianceMatrix covariances,
+                              double[] means, File file) throws IOException {
+        List<byte[]> strings = new ArrayList<>();
+        int headerBytes = 4 * 6 + 1;
+
+        for (Node variable : variables) {
+            byte[] name = variable.getName().getBytes(UTF8);
+            strings.add(name);
+            headerBytes += 1 + 4 + name.length;
+
+            if (variable instanceof DiscreteVariable) {
+                headerBytes += 4;
+
+                for (String category : ((DiscreteVariable) variable).getCategories()) {
+                    byte[] bytes = category.getBytes(UTF8);
+                    strings.add(bytes);
+                    headerBytes += 4 + bytes.length;
+                }
+            } else if (!(variable instanceof ContinuousVariable)) {
+                throw new IllegalArgumentException("Only continuous and discrete variables can be written: " + variable);
+            }
+        }
+
+        ByteBuffer header = ByteBuffer.allocate((int) pad(headerBytes)).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(headerBytes);
+        header.putInt(variables.size());
+        header.putInt(dataSet == null ? -1 : dataSet.getNumRows());
+        header.putInt(covariances == null ? -1 : covariances.getSampleSize());
+        header.put((byte) (means != null ? 1 : 0));
+
+        int s = 0;
+
+        for (Node variable : variables) {
+            header.put(variable instanceof DiscreteVariable ? DISCRETE : CONTINUOUS);
+            putString(header, strings.get(s++));
+
+            if (variable instanceof DiscreteVariable) {
+                header.putInt(((DiscreteVariable) variable).getNumCategories());
+
+                for (int k = 0; k < ((DiscreteVariable) variable).getNumCategories(); k++) {
+                    putString(header, strings.get(s++));
+                }
+            }
+        }
+
+        header.clear();
+
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw"); FileChannel channel = out.getChannel()) {
+            channel.truncate(0);
+            writeFully(channel, header);
+
+            ByteBuffer block = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+            if (covariances != null) {
+                int p = variables.size();
+
+                if (means != null) {
+                    for (double mean : means) block = putDouble(channel, block, mean);
+                }
+
+                for (int i = 0; i < p; i++) {
+                    for (int j = 0; j < p; j++) {
+                        block = putDouble(channel, block, covariances.getValue(i, j));
+                    }
+                }
+            }
+
+            if (dataSet != null) {
+                for (int j = 0; j < variables.size(); j++) {
+                    if (variables.get(j) instanceof DiscreteVariable) {
+                        for (int value : dataSet.getIntColumn(j)) {
+                            if (block.remaining() < 4) flush(channel, block);
+                            block.putInt(value);
+                        }
+
+                        if (block.position() % 8 != 0) block.putInt(0);
+                    } else {
+                        for (double value : dataSet.getDoubleColumn(j)) {
+                            block = putDouble(channel, block, value);
+                        }
+                    }
+                }
+            }
+
+            flush(channel, block);
+        }
+    }
+
+    private static long pad(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static ByteBuffer putDouble(FileChannel channel, ByteBuffer block, double value) throws IOException {
+        if (block.remaining() < 8) flush(channel, block);
+        block.putDouble(value);
+        return block;
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer block) throws IOException {
+        block.flip();
+        writeFully(channel, block);
+        block.clear();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) break;
+            position += n;
+        }
+
+        buffer.flip();
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+}
+
+
@@ -22,11 +22,15 @@ package edu.cmu.tetrad.data;
 
 //import cern.colt.matrix.DoubleMatrix2D;
 import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.stat.correlation.BlockedCovariance;
 import edu.cmu.tetrad.util.*;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.RecursiveTask;
 import java.util.stream.Collectors;
 import org.apache.commons.math3.linear.RealMatrix;
@@ -90,7 +94,6 @@ public class CovarianceMatrix implements ICovarianceMatrix {
      */
     private IKnowledge knowledge = new Knowledge2();
 
-    private double[][] vectors = null;
 
     //=============================CONSTRUCTORS=========================//
     /**
@@ -108,108 +111,105 @@ public class CovarianceMatrix implements ICovarianceMatrix {
         this.variables = Collections.unmodifiableList(dataSet.getVariables());
         this.sampleSize = dataSet.getNumRows();
 
-        if (dataSet instanceof BoxDataSet) {
+        // Off-heap data are read a block of rows at a time rather than copied onto the heap.
+        if (dataSet instanceof BoxDataSet && ((BoxDataSet) dataSet).getDataBox() instanceof BufferDataBox
+                && ((BufferDataBox) ((BoxDataSet) dataSet).getDataBox()).isOffHeap()) {
+            setByRowBlocks(((BoxDataSet) dataSet).getDataBox());
+            return;
+        }
 
-            DataBox box = ((BoxDataSet) dataSet).getDataBox().copy();
+        // Column views; for a VerticalDoubleDataBox these are the data themselves, so they're
+        // read in place, not copied or demeaned.
+        final double[][] vectors = new double[variables.size()][];
 
-            if (box instanceof VerticalDoubleDataBox) {
-                if (!dataSet.getVariables().equals(variables)) {
-                    throw new IllegalArgumentException();
-                }
+        for (int j = 0; j < variables.size(); j++) {
+            vectors[j] = dataSet.getDoubleColumn(j);
+        }
 
-                vectors = ((VerticalDoubleDataBox) box).getVariableVectors();
+        double[] means = BlockedCovariance.means(vectors);
+        this.matrix = new TetradMatrix(BlockedCovariance.compute(vectors, means, true));
 
-//                final TetradMatrix doubleData = dataSet.getDoubleData();
-//                DataUtils.remean(doubleData, means);
+        for (int i = 0; i < variables.size(); i++) {
+            if (matrix.get(i, i) == 0) {
+                System.out.println("    Zero variance! " + variables.get(i));
             }
-
         }
+    }
 
-        if (vectors == null) {
-            final TetradMatrix doubleData = dataSet.getDoubleData().copy();
-            TetradVector means = DataUtils.means(doubleData);
-            DataUtils.demean(doubleData, means);
-
-            final RealMatrix realMatrix = doubleData.getRealMatrix();
-
-            vectors = new double[variables.size()][];
-
-            for (int i = 0; i < variables.size(); i++) {
-                vectors[i] = realMatrix.getColumnVector(i).toArray();
-            }
+    /**
+     * Constructs the covariance matrix of a sample in which row i of the given
+     * data set occurs weights[i] times--a bootstrap sample, for instance, with
+     * weights from DataUtils.getBootstrapWeights--without making a copy of the
+     * sample. Rows of weight zero are skipped. Missing values are handled
+     * pairwise, as in CovarianceMatrix(dataSet). If the data are in a
+     * VerticalDoubleDataBox, they aren't copied either, so many of these may
+     * be made from the same data at once.
+     *
+     * @throws IllegalArgumentException if this is not a continuous data set,
+     * or there isn't one nonnegative weight per row.
+     */
+    public CovarianceMatrix(DataSet dataSet, int[] weights) {
+        if (!dataSet.isContinuous()) {
+            throw new IllegalArgumentException("Not a continuous data set.");
         }
 
-        TetradVector means = DataUtils.means(vectors);
+        if (weights.length != dataSet.getNumRows()) {
+            throw new IllegalArgumentException("Expecting one weight per row.");
+        }
 
-        int NTHREADS = Runtime.getRuntime().availableProcessors() * 10;
-        int _chunk = variables.size() / NTHREADS + 1;
-        int minChunk = 100;
-        final int chunk = _chunk < minChunk ? minChunk : _chunk;
+        int numWeighted = 0;
+        int sampleSize = 0;
 
-        class VarianceTask extends RecursiveTask<Boolean> {
+        for (int w : weights) {
+            if (w < 0) throw new IllegalArgumentException("Weights must be nonnegative: " + w);
+            if (w > 0) numWeighted++;
+            sampleSize += w;
+        }
 
-            private int chunk;
-            private int from;
-            private int to;
+        // The rows that occur in the sample, and how often.
+        final int[] rows = new int[numWeighted];
+        final double[] w = new double[numWeighted];
 
-            public VarianceTask(int chunk, int from, int to) {
-                this.chunk = chunk;
-                this.from = from;
-                this.to = to;
+        for (int i = 0, k = 0; i < weights.length; i++) {
+            if (weights[i] > 0) {
+                rows[k] = i;
+                w[k++] = weights[i];
             }
+        }
 
-            @Override
-            protected Boolean compute() {
-                if (to - from <= chunk) {
-                    for (int i = from; i < to; i++) {
-                        double d = 0.0D;
-
-                        int count = 0;
-
-                        double[] v1 = vectors[i];
-
-                        for (int k = 0; k < sampleSize; ++k) {
-                            if (Double.isNaN(v1[k])) {
-                                continue;
-                            }
-
-                            d += v1[k] * v1[k];
-                            count++;
-                        }
-
-                        double v = d;
-                        v /= (count - 1);
-
-                        matrix.set(i, i, v);
+        final double[][] columns = new double[dataSet.getNumColumns()][];
 
-                        if (v == 0) {
-                            System.out.println("    Zero variance! " + variables.get(i));
-                        }
-                    }
-
-                    return true;
-                } else {
-                    int mid = (to + from) / 2;
+        for (int j = 0; j < columns.length; j++) {
+            columns[j] = dataSet.getDoubleColumn(j);
+        }
 
-                    VarianceTask left = new VarianceTask(chunk, from, mid);
-                    VarianceTask right = new VarianceTask(chunk, mid, to);
+        final int numVars = dataSet.getNumColumns();
+        final double[] means = new double[numVars];
 
-                    left.fork();
-                    right.compute();
-                    left.join();
-
-                    return true;
-                }
+        for (int j = 0; j < numVars; j++) {
+            double sum = 0.0;
+            double count = 0.0;
+
+            for (int k = 0; k < rows.length; k++) {
+                double x = columns[j][rows[k]];
+                if (Double.isNaN(x)) continue;
+                sum += w[k] * x;
+                count += w[k];
             }
+
+            means[j] = sum / count;
         }
 
-        class RestOfThemTask extends RecursiveTask<Boolean> {
+        this.variables = Collections.unmodifiableList(dataSet.getVariables());
+        this.sampleSize = sampleSize;
+        this.matrix = new TetradMatrix(numVars, numVars);
 
+        class WeightedTask extends RecursiveTask<Boolean> {
             private int chunk;
             private int from;
             private int to;
 
-            public RestOfThemTask(int chunk, int from, int to) {
+            public WeightedTask(int chunk, int from, int to) {
                 this.chunk = chunk;
                 this.from = from;
                 this.to = to;
@@ -219,29 +219,22 @@ public class CovarianceMatrix implements ICovarianceMatrix {
             protected Boolean compute() {
                 if (to - from <= chunk) {
                     for (int i = from; i < to; i++) {
-                        for (int j = 0; j < i; j++) {
-
-                            double d = 0.0D;
-
-                            double[] v1 = vectors[i];
-                            double[] v2 = vectors[j];
-                            int count = 0;
-
-                            for (int k = 0; k < sampleSize; k++) {
-                                if (Double.isNaN(v1[k])) {
-                                    continue;
-                                }
-                                if (Double.isNaN(v2[k])) {
-                                    continue;
-                                }
-
-                                d += v1[k] * v2[k];
-                                count++;
+                        double[] v1 = columns[i];
+
+                        for (int j = 0; j <= i; j++) {
+                            double[] v2 = columns[j];
+                            double d = 0.0;
+                            double count = 0.0;
+
+                            for (int k = 0; k < rows.length; k++) {
+                                double x1 = v1[rows[k]];
+                                double x2 = v2[rows[k]];
+                                if (Double.isNaN(x1) || Double.isNaN(x2)) continue;
+                                d += w[k] * (x1 - means[i]) * (x2 - means[j]);
+                                count += w[k];
                             }
 
-                            double v = d;
-                            v /= (count - 1);
-
+                            double v = d / (count - 1);
                             matrix.set(i, j, v);
                             matrix.set(j, i, v);
                         }
@@ -251,8 +244,8 @@ public class CovarianceMatrix implements ICovarianceMatrix {
                 } else {
                     int mid = (to + from) / 2;
 
-                    RestOfThemTask left = new RestOfThemTask(chunk, from, mid);
-                    RestOfThemTask right = new RestOfThemTask(chunk, mid, to);
+                    WeightedTask left = new WeightedTask(chunk, from, mid);
+                    WeightedTask right = new WeightedTask(chunk, mid, to);
 
                     left.fork();
                     right.compute();
@@ -263,16 +256,8 @@ public class CovarianceMatrix implements ICovarianceMatrix {
             }
         }
 
-        VarianceTask task = new VarianceTask(chunk, 0, variables.size());
-        ForkJoinPoolInstance.getInstance().getPool().invoke(task);
-
-        RestOfThemTask task2 = new RestOfThemTask(chunk, 0, variables.size());
-        ForkJoinPoolInstance.getInstance().getPool().invoke(task2);
-
-        DataUtils.demean(vectors, means);
-
-        this.variables = Collections.unmodifiableList(dataSet.getVariables());
-        this.sampleSize = dataSet.getNumRows();
+        int chunk = Math.max(1, numVars / (Runtime.getRuntime().availableProcessors() * 4));
+        ForkJoinPoolInstance.getInstance().getPool().invoke(new WeightedTask(chunk, 0, numVars));
     }
 
     /**
@@ -634,6 +619,145 @@ public class CovarianceMatrix implements ICovarianceMatrix {
         clearSelection();
     }
 
+    // Computes the covariances of data in the given box in two passes over blocks of rows--one
+    // for the means, one for the cross products--so that only a block of rows is on the heap at
+    // a time. Missing values are handled pairwise, as in CovarianceMatrix(dataSet). Each thread
+    // takes a range of rows and keeps its own sums, which are added together at the end.
+    private void setByRowBlocks(final DataBox box) {
+        final int p = variables.size();
+        final int n = box.numRows();
+        final int blockSize = Math.max(1, Math.min(4096, (1 << 20) / Math.max(p, 1)));
+        int numTasks = Math.max(1, Math.min(ForkJoinPoolInstance.getInstance().getPool().getParallelism(),
+                n / blockSize));
+
+        List<Callable<double[]>> meanTasks = new ArrayList<>();
+
+        for (int t = 0; t < numTasks; t++) {
+            final int from = (int) ((long) n * t / numTasks);
+            final int to = (int) ((long) n * (t + 1) / numTasks);
+
+            meanTasks.add(new Callable<double[]>() {
+                public double[] call() {
+                    double[] sums = new double[2 * p];
+
+                    for (int i = from; i < to; i++) {
+                        for (int j = 0; j < p; j++) {
+                            double value = box.getDouble(i, j);
+                            if (Double.isNaN(value)) continue;
+                            sums[j] += value;
+                            sums[p + j]++;
+                        }
+                    }
+
+                    return sums;
+                }
+            });
+        }
+
+        final double[] means = new double[p];
+        double[] counts = new double[p];
+
+        for (double[] sums : invokeAll(meanTasks)) {
+            for (int j = 0; j < p; j++) {
+                means[j] += sums[j];
+                counts[j] += sums[p + j];
+            }
+        }
+
+        for (int j = 0; j < p; j++) {
+            means[j] /= counts[j];
+        }
+
+        List<Callable<double[]>> productTasks = new ArrayList<>();
+
+        for (int t = 0; t < numTasks; t++) {
+            final int from = (int) ((long) n * t / numTasks);
+            final int to = (int) ((long) n * (t + 1) / numTasks);
+
+            productTasks.add(new Callable<double[]>() {
+                public double[] call() {
+
+                    // Lower triangle, row by row: products, then counts.
+                    int size = p * (p + 1) / 2;
+                    double[] sums = new double[2 * size];
+                    double[][] block = new double[p][blockSize];
+
+                    for (int start = from; start < to; start += blockSize) {
+                        int rows = Math.min(blockSize, to - start);
+
+                        for (int k = 0; k < rows; k++) {
+                            for (int j = 0; j < p; j++) {
+                                block[j][k] = box.getDouble(start + k, j) - means[j];
+                            }
+                        }
+
+                        int index = 0;
+
+                        for (int i = 0; i < p; i++) {
+                            double[] v1 = block[i];
+
+                            for (int j = 0; j <= i; j++) {
+                                double[] v2 = block[j];
+                                double d = 0.0;
+                                int count = 0;
+
+                                for (int k = 0; k < rows; k++) {
+                                    double product = v1[k] * v2[k];
+                                    if (Double.isNaN(product)) continue;
+                                    d += product;
+                                    count++;
+                                }
+
+                                sums[index] += d;
+                                sums[size + index] += count;
+                                index++;
+                            }
+                        }
+                    }
+
+                    return sums;
+                }
+            });
+        }
+
+        int size = p * (p + 1) / 2;
+        double[] products = new double[2 * size];
+
+        for (double[] sums : invokeAll(productTasks)) {
+            for (int k = 0; k < products.length; k++) {
+                products[k] += sums[k];
+            }
+        }
+
+        int index = 0;
+
+        for (int i = 0; i < p; i++) {
+            for (int j = 0; j <= i; j++) {
+                double v = products[index] / (products[size + index] - 1);
+                matrix.set(i, j, v);
+                matrix.set(j, i, v);
+                index++;
+            }
+        }
+    }
+
+    private static List<double[]> invokeAll(List<Callable<double[]>> tasks) {
+        List<double[]> results = new ArrayList<>();
+
+        try {
+            for (Future<double[]> future : ForkJoinPoolInstance.getInstance().getPool().invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+
+        return results;
+    }
+
     private Set<Node> getSelectedVariables() {
         return selectedVariables;
     }
@@ -24,6 +24,7 @@ package edu.cmu.tetrad.data;
 import EDU.oswego.cs.dl.util.concurrent.SyncMap;
 import cern.colt.matrix.DoubleMatrix2D;
 import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.stat.correlation.BlockedCovariance;
 import edu.cmu.tetrad.util.*;
 import org.apache.commons.math3.linear.RealMatrix;
 
@@ -31,7 +32,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.text.NumberFormat;
 import java.util.*;
-import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Stores a covariance matrix together with variable names and sample size,
@@ -101,6 +102,20 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
 
     private double[] variances;
 
+    /**
+     * True for columns with missing values. Covariances between columns without missing values
+     * are calculated without per-element NaN checks.
+     */
+    private boolean[] hasMissing;
+
+    /**
+     * Cache of calculated off-diagonal entries; null unless turned on with setCacheSize.
+     */
+    private transient PairCache cache = null;
+
+    // Rows per block for the dot product kernel.
+    private static final int BLOCK = 512;
+
 
     //=============================CONSTRUCTORS=========================//
 
@@ -171,6 +186,20 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
                     System.out.println("Calculating means");
                 }
 
+                TetradVector means = DataUtils.means(vectors);
+                DataUtils.demean(vectors, means);
+            } else if (box instanceof BufferDataBox) {
+                if (verbose) {
+                    System.out.println("Copying vectors from BufferDataBox");
+                }
+
+                // One heap copy of each column, read in bulk, rather than a matrix and its copy.
+                vectors = new double[variables.size()][];
+
+                for (int j = 0; j < variables.size(); j++) {
+                    vectors[j] = ((BufferDataBox) box).getDoubleColumn(j);
+                }
+
                 TetradVector means = DataUtils.means(vectors);
                 DataUtils.demean(vectors, means);
             }
@@ -214,77 +243,16 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
             System.out.println("Calculating variances");
         }
 
-        this.variances = new double[variables.size()];
-
-        class VarianceTask extends RecursiveTask<Boolean> {
-            private int chunk;
-            private int from;
-            private int to;
-
-            public VarianceTask(int chunk, int from, int to) {
-                this.chunk = chunk;
-                this.from = from;
-                this.to = to;
-            }
-
-            @Override
-            protected Boolean compute() {
-                if (to - from <= chunk) {
-                    for (int i = from; i < to; i++) {
-                        double d = 0.0D;
-
-                        int count = 0;
+        // The vectors are centered already.
+        this.variances = BlockedCovariance.variances(vectors, null, true);
+        this.hasMissing = BlockedCovariance.hasMissing(vectors);
 
-                        double[] v1 = vectors[i];
-
-                        for (int k = 0; k < sampleSize; ++k) {
-                            if (Double.isNaN(v1[k])) {
-                                continue;
-                            }
-
-                            d += v1[k] * v1[k];
-                            count++;
-                        }
-
-                        double v = d;
-//                        v /= (sampleSize - 1);
-                        v /= (count - 1);
-
-                        variances[i] = v;
-
-                        if (v == 0) {
-                            System.out.println("Zero variance! " + variables.get(i));
-                        }
-                    }
-
-                    return true;
-                } else {
-                    final int numIntervals = 4;
-
-                    int step = (to - from) / numIntervals + 1;
-
-                    List<VarianceTask> tasks = new ArrayList<>();
-
-                    for (int i = 0; i < numIntervals; i++) {
-                        VarianceTask task = new VarianceTask(chunk, from + i * step, Math.min(from + (i + 1) * step, to));
-                        tasks.add(task);
-                    }
-
-                    invokeAll(tasks);
-
-                    return true;
-                }
+        for (int i = 0; i < variables.size(); i++) {
+            if (variances[i] == 0) {
+                System.out.println("Zero variance! " + variables.get(i));
             }
         }
 
-        int NTHREADS = Runtime.getRuntime().availableProcessors() * 10;
-        int _chunk = variables.size() / NTHREADS + 1;
-        int minChunk = 100;
-        final int chunk = _chunk < minChunk ? minChunk : _chunk;
-
-        VarianceTask task = new VarianceTask(chunk, 0, variables.size());
-        ForkJoinPoolInstance.getInstance().getPool().invoke(task);
-
         if (verbose) {
             System.out.println("Done with variances.");
         }
@@ -397,16 +365,7 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
             submatrixVars.add(variables.get(indice));
         }
 
-        TetradMatrix cov = new TetradMatrix(indices.length, indices.length);
-
-        for (int i = 0; i < indices.length; i++) {
-            for (int j = i; j < indices.length; j++) {
-                double d = getValue(indices[i], indices[j]);
-                cov.set(i, j, d);
-                cov.set(j, i, d);
-            }
-        }
-
+        TetradMatrix cov = getSelection(indices, indices);
         return new CovarianceMatrix(submatrixVars, cov, getSampleSize());
     }
 
@@ -450,23 +409,15 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
             return variances[i];
         }
 
-        double d = 0.0D;
-
-        double[] v1 = vectors[i];
-        double[] v2 = vectors[j];
-        int count = 0;
-
-        for (int k = 0; k < sampleSize; k++) {
-            if (Double.isNaN(v1[k])) continue;
-            if (Double.isNaN(v2[k])) continue;
+        PairCache cache = this.cache;
 
-            d += v1[k] * v2[k];
-            count++;
+        if (cache != null) {
+            double v = cache.get(i, j);
+            if (!Double.isNaN(v)) return v;
         }
 
-        double v = d;
-//        v /= (sampleSize - 1);
-        v /= (count - 1);
+        double v = calculateValue(i, j);
+        if (cache != null) cache.put(i, j, v);
         return v;
     }
 
@@ -646,25 +597,23 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
         this.verbose = verbose;
     }
 
-    private class IntPair {
-        private final int x;
-        private final int y;
-
-        public IntPair(int x, int y) {
-            this.x = x;
-            this.y = y;
-        }
-
-        public int hashCode() {
-            return x + y;
-        }
+    /**
+     * Turns on caching of calculated covariances, keeping at most about the given number of
+     * entries (roughly 100 bytes each) and evicting the least recently used ones beyond that.
+     * Worthwhile when the same covariances are asked for over and over, as in PC-style searches
+     * on data with many rows. 0 turns caching off.
+     */
+    public void setCacheSize(int maxEntries) {
+        if (maxEntries < 0) throw new IllegalArgumentException("Cache size must be >= 0: " + maxEntries);
+        this.cache = maxEntries == 0 ? null : new PairCache(maxEntries);
+    }
 
-        public boolean equals(Object o) {
-            if (o == null) return false;
-//            if (!(o instanceof IntPair)) return false;
-            IntPair pair = (IntPair) o;
-            return pair == this || (this.x == pair.x && this.y == pair.y);
-        }
+    /**
+     * @return the number of cached covariances.
+     */
+    public int getCacheSize() {
+        PairCache cache = this.cache;
+        return cache == null ? 0 : cache.size();
     }
 
     @Override
@@ -672,11 +621,41 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
         TetradMatrix m = new TetradMatrix(rows.length, cols.length);
 
         if (Arrays.equals(rows, cols)) {
-            for (int i = 0; i < rows.length; i++) {
-                for (int j = i; j < cols.length; j++) {
-                    double value = getValue(rows[i], cols[j]);
+            int k = rows.length;
+            PairCache cache = this.cache;
+
+            // Entries not in the cache that can be calculated together by the kernel.
+            int[] pairs = new int[k * (k - 1)];
+            int numPairs = 0;
+
+            for (int i = 0; i < k; i++) {
+                m.set(i, i, variances[rows[i]]);
+
+                for (int j = i + 1; j < k; j++) {
+                    double value = cache == null ? Double.NaN : cache.get(rows[i], rows[j]);
+
+                    if (Double.isNaN(value) && rows[i] != rows[j] && !hasMissing[rows[i]] && !hasMissing[rows[j]]) {
+                        pairs[numPairs++] = i;
+                        pairs[numPairs++] = j;
+                        continue;
+                    }
+
+                    if (Double.isNaN(value)) value = getValue(rows[i], rows[j]);
+                    m.set(i, j, value);
+                    m.set(j, i, value);
+                }
+            }
+
+            if (numPairs > 0) {
+                double[] sums = dots(rows, pairs, numPairs);
+
+                for (int p = 0; p < numPairs; p += 2) {
+                    int i = pairs[p];
+                    int j = pairs[p + 1];
+                    double value = sums[p / 2] / (sampleSize - 1);
                     m.set(i, j, value);
                     m.set(j, i, value);
+                    if (cache != null) cache.put(rows[i], rows[j], value);
                 }
             }
         } else {
@@ -714,8 +693,6 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
         return m;
     }
 
-    //========================PRIVATE METHODS============================//
-
     public Node getVariable(String name) {
         for (int i = 0; i < getVariables().size(); i++) {
             Node variable = getVariables().get(i);
@@ -751,10 +728,159 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
         clearSelection();
     }
 
+    //========================PRIVATE METHODS============================//
+
     private Set<Node> getSelectedVariables() {
         return selectedVariables;
     }
 
+    private double calculateValue(int i, int j) {
+        double[] v1 = vectors[i];
+        double[] v2 = vectors[j];
+
+        if (!hasMissing[i] && !hasMissing[j]) {
+            double d = 0.0;
+
+            for (int from = 0; from < sampleSize; from += BLOCK) {
+                d += dot(v1, v2, from, Math.min(from + BLOCK, sampleSize));
+            }
+
+            return d / (sampleSize - 1);
+        }
+
+        double d = 0.0D;
+        int count = 0;
+
+        for (int k = 0; k < sampleSize; k++) {
+            if (Double.isNaN(v1[k])) continue;
+            if (Double.isNaN(v2[k])) continue;
+
+            d += v1[k] * v2[k];
+            count++;
+        }
+
+        double v = d;
+//        v /= (sampleSize - 1);
+        v /= (count - 1);
+        return v;
+    }
+
+    /**
+     * The blocked kernel. Calculates the dot products of the given pairs of columns (positions in
+     * <code>indices</code>, two per pair) in one pass over the rows, a block of rows at a time, so
+     * that each block of the columns is read from memory once for all of the pairs. Sums are taken
+     * block by block in the same order as calculateValue, so the results are the same either way.
+     */
+    private double[] dots(int[] indices, int[] pairs, int numPairs) {
+        double[] sums = new double[numPairs / 2];
+
+        for (int from = 0; from < sampleSize; from += BLOCK) {
+            int to = Math.min(from + BLOCK, sampleSize);
+
+            for (int p = 0; p < numPairs; p += 2) {
+                sums[p / 2] += dot(vectors[indices[pairs[p]]], vectors[indices[pairs[p + 1]]], from, to);
+            }
+        }
+
+        return sums;
+    }
+
+    // Four independent accumulators, so the loop pipelines and can be vectorized.
+    private static double dot(double[] v1, double[] v2, int from, int to) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int k = from;
+
+        for (; k + 3 < to; k += 4) {
+            s0 += v1[k] * v2[k];
+            s1 += v1[k + 1] * v2[k + 1];
+            s2 += v1[k + 2] * v2[k + 2];
+            s3 += v1[k + 3] * v2[k + 3];
+        }
+
+        for (; k < to; k++) {
+            s0 += v1[k] * v2[k];
+        }
+
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * A bounded cache of off-diagonal covariances keyed by the packed pair (min(i, j), max(i, j)).
+     * Lock-striped, with least recently used eviction in each stripe.
+     */
+    private static class PairCache {
+        private static final int NUM_STRIPES = 16;
+
+        private final ReentrantLock[] locks = new ReentrantLock[NUM_STRIPES];
+        private final List<LinkedHashMap<Long, Double>> maps = new ArrayList<>();
+
+        PairCache(int maxEntries) {
+            final int maxPerStripe = Math.max(1, maxEntries / NUM_STRIPES);
+
+            for (int s = 0; s < NUM_STRIPES; s++) {
+                locks[s] = new ReentrantLock();
+                maps.add(new LinkedHashMap<Long, Double>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Long, Double> eldest) {
+                        return size() > maxPerStripe;
+                    }
+                });
+            }
+        }
+
+        // Returns NaN if the pair is not cached.
+        double get(int i, int j) {
+            long key = key(i, j);
+            int s = stripe(key);
+            locks[s].lock();
+
+            try {
+                Double v = maps.get(s).get(key);
+                return v == null ? Double.NaN : v;
+            } finally {
+                locks[s].unlock();
+            }
+        }
+
+        void put(int i, int j, double v) {
+            if (Double.isNaN(v)) return;
+            long key = key(i, j);
+            int s = stripe(key);
+            locks[s].lock();
+
+            try {
+                maps.get(s).put(key, v);
+            } finally {
+                locks[s].unlock();
+            }
+        }
+
+        int size() {
+            int size = 0;
+
+            for (int s = 0; s < NUM_STRIPES; s++) {
+                locks[s].lock();
+
+                try {
+                    size += maps.get(s).size();
+                } finally {
+                    locks[s].unlock();
+                }
+            }
+
+            return size;
+        }
+
+        private static long key(int i, int j) {
+            return i < j ? ((long) i << 32) | j : ((long) j << 32) | i;
+        }
+
+        private static int stripe(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 60);
+        }
+    }
+
     /**
      * Checks the sample size, variable, and matrix information.
      */
@@ -819,6 +945,11 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
         if (selectedVariables == null) {
             selectedVariables = new HashSet<>();
         }
+
+        if (variances != null && hasMissing == null) {
+            hasMissing = new boolean[variances.length];
+            Arrays.fill(hasMissing, true);
+        }
     }
 }
 
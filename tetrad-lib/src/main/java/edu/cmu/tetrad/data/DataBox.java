@@ -58,6 +58,24 @@ public interface DataBox extends TetradSerializable {
      */
     Number get(int row, int col);
 
+    /**
+     * @return the value at the given row and column as a double, without
+     * boxing it, or Double.NaN if the value is missing.
+     */
+    double getDouble(int row, int col);
+
+    /**
+     * @return the value at the given row and column as an int, without boxing
+     * it, or DiscreteVariable.MISSING_VALUE if the value is missing.
+     */
+    int getInt(int row, int col);
+
+    /**
+     * Sets the value at the given row and column to the given double, without
+     * boxing it. Double.NaN is interpreted as a missing value.
+     */
+    void setDouble(int row, int col, double value);
+
     /**
      * @return a copy of this data box.
      */
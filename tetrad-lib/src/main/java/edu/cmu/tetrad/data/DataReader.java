@@ -113,6 +113,12 @@ public final class DataReader implements IDataReader {
      */
     private boolean readVariablesLowercase = false;
 
+    /**
+     * True if plain tabular files should be read in one parallel pass by
+     * ChunkedTabularReader.
+     */
+    private boolean chunkedParsing = false;
+
     /**
      * Constructs a new data parser.
      */
@@ -227,6 +233,11 @@ public final class DataReader implements IDataReader {
      */
     @Override
     public DataSet parseTabular(File file) throws IOException {
+        if (chunkedParsing && !idsSupplied && ChunkedTabularReader.isSupported(delimiterType)) {
+            DataSet dataSet = parseChunked(file);
+            if (dataSet != null) return dataSet;
+        }
+
         FileReader reader = null, reader2 = null;
 
         try {
@@ -422,7 +433,7 @@ public final class DataReader implements IDataReader {
                             + ": Expected variable name, got empty token: " + line);
                 }
 
-                if (varNames.contains(name)) {
+                if (varNames.contains(readVariablesLowercase ? name.toLowerCase() : name)) {
                     throw new IllegalArgumentException("Line " + lineizer.getLineNumber()
                             + ": Duplicate variable name (" + name + ").");
                 }
@@ -1013,6 +1024,28 @@ public final class DataReader implements IDataReader {
         this.readVariablesLowercase = readVariablesUppercase;
     }
 
+    /**
+     * If true, parseTabular(File) reads files without sections or case IDs
+     * in a single parallel pass, with ChunkedTabularReader, straight into
+     * primitive columns. Other files are read as before. False by default.
+     */
+    public void setChunkedParsing(boolean chunkedParsing) {
+        this.chunkedParsing = chunkedParsing;
+    }
+
+    private DataSet parseChunked(File file) throws IOException {
+        ChunkedTabularReader reader = new ChunkedTabularReader();
+        reader.setDelimiter(delimiterType);
+        reader.setVariablesSupplied(varNamesSupplied);
+        reader.setCommentMarker(commentMarker);
+        reader.setQuoteChar(quoteChar);
+        reader.setMissingValueMarker(missingValueMarker);
+        reader.setMaxIntegralDiscrete(maxIntegralDiscrete);
+        reader.setKnownVariables(knownVariables);
+        reader.setReadVariablesLowercase(readVariablesLowercase);
+        return reader.read(file);
+    }
+
     private static class DataSetDescription {
 
         private final List<Node> variables;
@@ -124,6 +124,21 @@ public interface DataSet extends KnowledgeTransferable, DataModel, TetradSeriali
      */
     int getInt(int row, int column);
 
+    /**
+     * @return the values in the given column as doubles, with Double.NaN for
+     * missing values. This may be the data set's own storage for the column
+     * rather than a copy, so it must not be modified.
+     */
+    double[] getDoubleColumn(int column);
+
+    /**
+     * @return the values in the given column as ints, with
+     * DiscreteVariable.MISSING_VALUE for missing values. This may be the data
+     * set's own storage for the column rather than a copy, so it must not be
+     * modified.
+     */
+    int[] getIntColumn(int column);
+
     /**
      * @return the name of the data set.
      */
@@ -1410,6 +1410,45 @@ public final class DataUtils {
         return ColtDataSet.makeData(data.getVariables(), data.getDoubleData().getSelection(rows, cols));
     }
 
+    /**
+     * @return a sample with replacement with the given sample size from the
+     * given dataset, as a view of the rows of the data rather than a copy, if
+     * the data set is a BoxDataSet. Setting a value in the view sets it in the
+     * data. Draws the same rows as getBootstrapSample(data, sampleSize).
+     */
+    public static DataSet getBootstrapView(DataSet data, int sampleSize) {
+        if (!(data instanceof BoxDataSet)) {
+            return getBootstrapSample(data, sampleSize);
+        }
+
+        int actualSampleSize = data.getNumRows();
+
+        int[] rows = new int[sampleSize];
+
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = RandomUtil.getInstance().nextInt(actualSampleSize);
+        }
+
+        DataBox box = new RowIndexedDataBox(((BoxDataSet) data).getDataBox(), rows);
+        return new BoxDataSet(box, data.getVariables());
+    }
+
+    /**
+     * @return for each of numRows rows, the number of times it is drawn in a
+     * sample with replacement of the given sample size. These weights can be
+     * given to CovarianceMatrix in place of a copy of the sample. Draws the
+     * same rows as getBootstrapSample(data, sampleSize).
+     */
+    public static int[] getBootstrapWeights(int numRows, int sampleSize) {
+        int[] weights = new int[numRows];
+
+        for (int i = 0; i < sampleSize; i++) {
+            weights[RandomUtil.getInstance().nextInt(numRows)]++;
+        }
+
+        return weights;
+    }
+
     /**
      * @return a sample without replacement with the given sample size from the
      * given dataset. May return a sample of less than the given size; makes
@@ -0,0 +1,396 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Node;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Counts discrete data for scores and tests, cross-classifying the rows by a set of "row" variables (the parents,
+ * or the conditioning set) and a set of "column" variables (the child, or the pair being tested). Only attested
+ * configurations of the row variables get a row in the result, so the size of the table is bounded by the sample
+ * size rather than by the product of the row variables' numbers of categories, which grows exponentially with the
+ * number of row variables. Each data row is encoded as a single long; if there are few enough configurations the
+ * codes are counted directly into a dense array, and otherwise they are sorted and run-length counted. Either way the
+ * rows of the result come in lexicographic order of the row variables' values, the same order CombinationIterator
+ * would visit them in.
+ * <p>
+ * Rows with a missing value (DiscreteVariable.MISSING_VALUE) in any of the variables counted are skipped.
+ * <p>
+ * The data are not copied. Tables and scratch space are kept per thread, so several threads may count at once.
+ *
+ * @author Joseph Ramsey
+ */
+public final class DiscreteCounts {
+
+    // Below this many cells (or twice the sample size, if that's larger), codes are counted into a dense array.
+    private static final int DENSE_CELLS = 1 << 12;
+
+    // The data, column by column.
+    private final int[][] data;
+
+    // The number of categories of each variable.
+    private final int[] dims;
+
+    // The number of rows in the data.
+    private final int sampleSize;
+
+    // The calling thread's table.
+    private final ThreadLocal<Table> tables = new ThreadLocal<>();
+
+    /**
+     * Counts the given data set, which must be discrete. If it is a BoxDataSet over a VerticalIntDataBox, its columns
+     * are used directly.
+     */
+    public DiscreteCounts(DataSet dataSet) {
+        if (dataSet == null) throw new NullPointerException("Data was not provided.");
+
+        List<Node> variables = dataSet.getVariables();
+        this.dims = new int[variables.size()];
+
+        for (int j = 0; j < variables.size(); j++) {
+            if (!(variables.get(j) instanceof DiscreteVariable)) {
+                throw new IllegalArgumentException("Not a discrete variable: " + variables.get(j));
+            }
+
+            this.dims[j] = ((DiscreteVariable) variables.get(j)).getNumCategories();
+        }
+
+        if (dataSet instanceof BoxDataSet && ((BoxDataSet) dataSet).getDataBox() instanceof VerticalIntDataBox) {
+            this.data = ((VerticalIntDataBox) ((BoxDataSet) dataSet).getDataBox()).getVariableVectors();
+        } else {
+            this.data = new int[dataSet.getNumColumns()][dataSet.getNumRows()];
+
+            for (int j = 0; j < dataSet.getNumColumns(); j++) {
+                for (int i = 0; i < dataSet.getNumRows(); i++) {
+                    this.data[j][i] = dataSet.getInt(i, j);
+                }
+            }
+        }
+
+        this.sampleSize = dataSet.getNumRows();
+    }
+
+    /**
+     * @param data The data, column by column; each column must have the same length.
+     * @param dims The number of categories of each column.
+     */
+    public DiscreteCounts(int[][] data, int[] dims) {
+        if (data.length != dims.length) {
+            throw new IllegalArgumentException("Expecting one number of categories per column.");
+        }
+
+        this.data = data;
+        this.dims = dims;
+        this.sampleSize = data.length == 0 ? 0 : data[0].length;
+    }
+
+    /**
+     * @return the number of rows in the data.
+     */
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * @return the number of categories of variable j.
+     */
+    public int getNumCategories(int j) {
+        return dims[j];
+    }
+
+    /**
+     * Counts the data by the given row variables and a single column variable.
+     *
+     * @see #count(int[], int[])
+     */
+    public Table count(int[] rowVars, int colVar) {
+        Table table = table();
+        table.colVars1[0] = colVar;
+        return count(rowVars, table.colVars1, table);
+    }
+
+    /**
+     * Counts the data by the given row variables and column variables. The columns of the table are the
+     * configurations of the column variables, in lexicographic order; for column variables (x, y), the count for
+     * x = i and y = j is in column i * (number of categories of y) + j.
+     *
+     * @return The table of counts. It belongs to the calling thread and is overwritten by that thread's next call to
+     * count() on this DiscreteCounts.
+     */
+    public Table count(int[] rowVars, int[] colVars) {
+        return count(rowVars, colVars, table());
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    private Table count(int[] rowVars, int[] colVars, Table table) {
+        int n = sampleSize;
+
+        long numCols = 1;
+
+        for (int v : colVars) {
+            numCols *= dims[v];
+
+            if (numCols > Integer.MAX_VALUE / 2) {
+                throw new IllegalArgumentException("Too many column configurations.");
+            }
+        }
+
+        long[] codes = table.codes(n);
+        Arrays.fill(codes, 0, n, 0L);
+
+        // Encode the row variables, column by column. If the number of configurations gets too large for a long,
+        // replace the codes so far by their ranks, which keeps their order.
+        long radix = 1;
+        long limit = Long.MAX_VALUE / numCols;
+
+        for (int v : rowVars) {
+            int d = dims[v];
+
+            if (radix > limit / d) {
+                radix = table.rank(n);
+            }
+
+            encode(codes, n, data[v], d);
+            radix *= d;
+        }
+
+        for (int v : colVars) {
+            encode(codes, n, data[v], dims[v]);
+        }
+
+        int _numCols = (int) numCols;
+
+        if (radix * numCols <= Math.max(DENSE_CELLS, 2L * n)) {
+            table.countDense(n, (int) radix, _numCols);
+        } else {
+            table.countSorted(n, _numCols);
+        }
+
+        return table;
+    }
+
+    // Appends the values in column to the codes, marking missing values with -1.
+    private static void encode(long[] codes, int n, int[] column, int d) {
+        for (int i = 0; i < n; i++) {
+            long code = codes[i];
+            if (code < 0) continue;
+            int value = column[i];
+            codes[i] = value == DiscreteVariable.MISSING_VALUE ? -1 : code * d + value;
+        }
+    }
+
+    private Table table() {
+        Table table = tables.get();
+
+        if (table == null) {
+            table = new Table();
+            tables.set(table);
+        }
+
+        return table;
+    }
+
+    //==============================CLASSES===============================//
+
+    /**
+     * The counts for the attested configurations of the row variables.
+     */
+    public static final class Table {
+        private int numRows = 0;
+        private int numCols = 0;
+        private int total = 0;
+        private int numMissing = 0;
+
+        // rowCounts[j] is the number of rows in configuration j; cellCounts[j * numCols + k] the number of those in
+        // column k.
+        private int[] rowCounts = new int[16];
+        private int[] cellCounts = new int[64];
+
+        // Scratch.
+        private long[] codes = new long[0];
+        private long[] sorted = new long[0];
+        private int[] dense = new int[0];
+        private final int[] colVars1 = new int[1];
+
+        private Table() {
+        }
+
+        /**
+         * @return the number of attested configurations of the row variables.
+         */
+        public int getNumRows() {
+            return numRows;
+        }
+
+        /**
+         * @return the number of configurations of the column variables.
+         */
+        public int getNumCols() {
+            return numCols;
+        }
+
+        /**
+         * @return the number of data rows in configuration j of the row variables.
+         */
+        public int getRowCount(int j) {
+            return rowCounts[j];
+        }
+
+        /**
+         * @return the number of data rows in configuration j of the row variables and configuration k of the column
+         * variables.
+         */
+        public int getCount(int j, int k) {
+            return cellCounts[j * numCols + k];
+        }
+
+        /**
+         * @return the number of data rows counted.
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * @return the number of data rows skipped for missing values.
+         */
+        public int getNumMissing() {
+            return numMissing;
+        }
+
+        private long[] codes(int n) {
+            if (codes.length < n) codes = new long[n];
+            return codes;
+        }
+
+        // Replaces each code by its rank among the distinct codes; returns the number of distinct codes.
+        private int rank(int n) {
+            if (sorted.length < n) sorted = new long[n];
+            int m = 0;
+
+            for (int i = 0; i < n; i++) {
+                if (codes[i] >= 0) sorted[m++] = codes[i];
+            }
+
+            Arrays.sort(sorted, 0, m);
+            int u = 0;
+
+            for (int i = 0; i < m; i++) {
+                if (u == 0 || sorted[i] != sorted[u - 1]) sorted[u++] = sorted[i];
+            }
+
+            for (int i = 0; i < n; i++) {
+                if (codes[i] >= 0) codes[i] = Arrays.binarySearch(sorted, 0, u, codes[i]);
+            }
+
+            return u;
+        }
+
+        private void countDense(int n, int numRowConfigs, int numCols) {
+            int numCells = numRowConfigs * numCols;
+            if (dense.length < numCells) dense = new int[numCells];
+            Arrays.fill(dense, 0, numCells, 0);
+
+            int m = 0;
+
+            for (int i = 0; i < n; i++) {
+                long code = codes[i];
+                if (code < 0) continue;
+                dense[(int) code]++;
+                m++;
+            }
+
+            reset(numCols, m, n - m);
+
+            for (int r = 0; r < numRowConfigs; r++) {
+                int offset = r * numCols;
+                int rowCount = 0;
+
+                for (int k = 0; k < numCols; k++) {
+                    rowCount += dense[offset + k];
+                }
+
+                if (rowCount == 0) continue;
+
+                int j = addRow();
+                rowCounts[j] = rowCount;
+                System.arraycopy(dense, offset, cellCounts, j * numCols, numCols);
+            }
+        }
+
+        private void countSorted(int n, int numCols) {
+            if (sorted.length < n) sorted = new long[n];
+            int m = 0;
+
+            for (int i = 0; i < n; i++) {
+                if (codes[i] >= 0) sorted[m++] = codes[i];
+            }
+
+            Arrays.sort(sorted, 0, m);
+            reset(numCols, m, n - m);
+
+            long lastRow = -1;
+            int j = -1;
+
+            for (int i = 0; i < m; i++) {
+                long row = sorted[i] / numCols;
+
+                if (row != lastRow) {
+                    j = addRow();
+                    lastRow = row;
+                }
+
+                rowCounts[j]++;
+                cellCounts[j * numCols + (int) (sorted[i] % numCols)]++;
+            }
+        }
+
+        private void reset(int numCols, int total, int numMissing) {
+            this.numRows = 0;
+            this.numCols = numCols;
+            this.total = total;
+            this.numMissing = numMissing;
+        }
+
+        // Adds a row of zero counts.
+        private int addRow() {
+            int j = numRows++;
+
+            if (rowCounts.length < numRows) {
+                rowCounts = Arrays.copyOf(rowCounts, 2 * numRows);
+            }
+
+            if (cellCounts.length < numRows * numCols) {
+                cellCounts = Arrays.copyOf(cellCounts, 2 * numRows * numCols);
+            }
+
+            rowCounts[j] = 0;
+            Arrays.fill(cellCounts, j * numCols, numRows * numCols, 0);
+            return j;
+        }
+    }
+}
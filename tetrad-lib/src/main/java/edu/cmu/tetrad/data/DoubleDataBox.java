@@ -113,6 +113,21 @@ public class DoubleDataBox implements DataBox {
         }
     }
 
+    public double getDouble(int row, int col) {
+        return data[row][col];
+    }
+
+    public int getInt(int row, int col) {
+        double datum = data[row][col];
+        return Double.isNaN(datum) ? -99 : (int) datum;
+    }
+
+    public void setDouble(int row, int col, double value) {
+        synchronized (data) {
+            data[row][col] = value;
+        }
+    }
+
     /**
      * @return a copy of this data box.
      */
@@ -121,7 +136,7 @@ public class DoubleDataBox implements DataBox {
 
         for (int i = 0; i < numRows(); i++) {
             for (int j = 0; j < numCols(); j++) {
-                box.set(i, j, get(i, j));
+                box.setDouble(i, j, getDouble(i, j));
             }
         }
 
@@ -147,7 +162,7 @@ public class DoubleDataBox implements DataBox {
 
         for (int i = 0; i < rows.length; i++) {
             for (int j = 0; j < cols.length; j++) {
-                _dataBox.set(i, j, get(rows[i], cols[j]));
+                _dataBox.setDouble(i, j, getDouble(rows[i], cols[j]));
             }
         }
 
@@ -112,6 +112,21 @@ public class LongDataBox implements DataBox {
         }
     }
 
+    public double getDouble(int row, int col) {
+        long datum = data[row][col];
+        return datum == -99 ? Double.NaN : datum;
+    }
+
+    public int getInt(int row, int col) {
+        return (int) data[row][col];
+    }
+
+    public void setDouble(int row, int col, double value) {
+        synchronized (data) {
+            data[row][col] = Double.isNaN(value) ? -99L : (long) value;
+        }
+    }
+
     /**
      * @return a copy of this data box.
      */
@@ -176,7 +176,7 @@ public class MixedDataBox implements DataBox {
     public Number get(int row, int col) {
         if (continuousData[col] != null) {
             double v = continuousData[col][row];
-            return v == Double.NaN ? null : v;
+            return Double.isNaN(v) ? null : v;
         } else if (discreteData[col] != null) {
             double v = discreteData[col][row];
             return v == -99 ? null : v;
@@ -185,21 +185,59 @@ public class MixedDataBox implements DataBox {
         throw new IllegalArgumentException("Indices out of range.");
     }
 
+    @Override
+    public double getDouble(int row, int col) {
+        if (continuousData[col] != null) {
+            return continuousData[col][row];
+        } else if (discreteData[col] != null) {
+            int v = discreteData[col][row];
+            return v == -99 ? Double.NaN : v;
+        }
+
+        throw new IllegalArgumentException("Indices out of range.");
+    }
+
+    @Override
+    public int getInt(int row, int col) {
+        if (discreteData[col] != null) {
+            return discreteData[col][row];
+        } else if (continuousData[col] != null) {
+            double v = continuousData[col][row];
+            return Double.isNaN(v) ? -99 : (int) v;
+        }
+
+        throw new IllegalArgumentException("Indices out of range.");
+    }
+
+    @Override
+    public void setDouble(int row, int col, double value) {
+        if (continuousData[col] != null) {
+            continuousData[col][row] = value;
+        } else if (discreteData[col] != null) {
+            discreteData[col][row] = Double.isNaN(value) ? -99 : (int) value;
+        } else {
+            throw new IllegalArgumentException("Indices out of bounds.");
+        }
+    }
+
     /**
      *
      * @return a copy of this continuousData box.
      */
     @Override
     public DataBox copy() {
-        MixedDataBox box = new MixedDataBox(variables, numRows());
+        double[][] continuous = new double[numCols()][];
+        int[][] discrete = new int[numCols()][];
 
-        for (int i = 0; i < numRows(); i++) {
-            for (int j = 0; j < numCols(); j++) {
-                box.set(i, j, get(i, j));
+        for (int j = 0; j < numCols(); j++) {
+            if (continuousData[j] != null) {
+                continuous[j] = Arrays.copyOf(continuousData[j], numRows);
+            } else if (discreteData[j] != null) {
+                discrete[j] = Arrays.copyOf(discreteData[j], numRows);
             }
         }
 
-        return box;
+        return new MixedDataBox(variables, numRows, continuous, discrete);
     }
 
     /**
@@ -221,6 +259,22 @@ public class MixedDataBox implements DataBox {
         return viewSelection(rows, cols);
     }
 
+    /**
+     * @return the continuous columns, indexed by column, null for discrete
+     * columns. Not a copy.
+     */
+    public double[][] getContinuousData() {
+        return continuousData;
+    }
+
+    /**
+     * @return the discrete columns, indexed by column, null for continuous
+     * columns. Not a copy.
+     */
+    public int[][] getDiscreteData() {
+        return discreteData;
+    }
+
     public void addVariable(Node variable) {
         variables.add(variable);
 
@@ -244,14 +298,23 @@ public class MixedDataBox implements DataBox {
             newVars.add(variables.get(c));
         }
 
-        DataBox _dataBox = new MixedDataBox(newVars, numRows);
-
-        for (int i = 0; i < rows.length; i++) {
-            for (int j = 0; j < cols.length; j++) {
-                _dataBox.set(i, j, get(rows[i], cols[j]));
+        double[][] continuous = new double[cols.length][];
+        int[][] discrete = new int[cols.length][];
+
+        for (int j = 0; j < cols.length; j++) {
+            if (continuousData[cols[j]] != null) {
+                double[] from = continuousData[cols[j]];
+                double[] to = continuous[j] = new double[rows.length];
+                for (int i = 0; i < rows.length; i++) to[i] = from[rows[i]];
+            } else if (discreteData[cols[j]] != null) {
+                int[] from = discreteData[cols[j]];
+                int[] to = discrete[j] = new int[rows.length];
+                for (int i = 0; i < rows.length; i++) to[i] = from[rows[i]];
             }
         }
 
+        DataBox _dataBox = new MixedDataBox(newVars, rows.length, continuous, discrete);
+
         return _dataBox;
     }
 
@@ -935,6 +935,32 @@ public final class NumberObjectDataSet
         }
     }
 
+    /**
+     * @return a copy of the values in the given column as doubles.
+     */
+    public final double[] getDoubleColumn(int column) {
+        double[] col = new double[getNumRows()];
+
+        for (int i = 0; i < col.length; i++) {
+            col[i] = getDouble(i, column);
+        }
+
+        return col;
+    }
+
+    /**
+     * @return a copy of the values in the given column as ints.
+     */
+    public final int[] getIntColumn(int column) {
+        int[] col = new int[getNumRows()];
+
+        for (int i = 0; i < col.length; i++) {
+            col[i] = getInt(i, column);
+        }
+
+        return col;
+    }
+
 //    /**
 //     * Sets the case multiplier for the given case to the given number (must be
 //     * >= 1).
@@ -0,0 +1,146 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+
+package edu.cmu.tetrad.data;
+
+/**
+ * A view of the rows of another data box, by index; rows may repeat, as in a bootstrap sample. Only the row
+ * indices are stored, so a view of an N x p box costs N ints rather than N x p values. Values set in the view are
+ * set in the underlying box. Copies (including selections other than of whole rows) are ordinary boxes of the
+ * underlying type.
+ *
+ * @author Joseph Ramsey
+ */
+public class RowIndexedDataBox implements DataBox {
+    static final long serialVersionUID = 23L;
+
+    /**
+     * The box viewed.
+     */
+    private final DataBox box;
+
+    /**
+     * For each row of the view, the row of the underlying box.
+     */
+    private final int[] rows;
+
+    /**
+     * @param box  The box to view.
+     * @param rows For each row of the view, the row of box it shows.
+     */
+    public RowIndexedDataBox(DataBox box, int[] rows) {
+        if (box == null) throw new NullPointerException("Box not provided.");
+
+        for (int row : rows) {
+            if (row < 0 || row >= box.numRows()) {
+                throw new IllegalArgumentException("Row out of range: " + row);
+            }
+        }
+
+        this.box = box;
+        this.rows = rows;
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     */
+    public static RowIndexedDataBox serializableInstance() {
+        return new RowIndexedDataBox(new DoubleDataBox(4, 4), new int[]{0, 1, 1, 3});
+    }
+
+    public int numRows() {
+        return rows.length;
+    }
+
+    public int numCols() {
+        return box.numCols();
+    }
+
+    /**
+     * Sets the value in the underlying box, so that it changes in every row of the view showing that row.
+     */
+    public void set(int row, int col, Number value) {
+        box.set(rows[row], col, value);
+    }
+
+    public Number get(int row, int col) {
+        return box.get(rows[row], col);
+    }
+
+    public double getDouble(int row, int col) {
+        return box.getDouble(rows[row], col);
+    }
+
+    public int getInt(int row, int col) {
+        return box.getInt(rows[row], col);
+    }
+
+    public void setDouble(int row, int col, double value) {
+        box.setDouble(rows[row], col, value);
+    }
+
+    /**
+     * @return a copy of the rows viewed, as a box of the underlying type.
+     */
+    public DataBox copy() {
+        int[] cols = new int[numCols()];
+        for (int j = 0; j < cols.length; j++) cols[j] = j;
+        return box.viewSelection(rows, cols);
+    }
+
+    /**
+     * @return a view of the given rows of this view, if all of the columns are selected in order; otherwise a copy.
+     */
+    public DataBox viewSelection(int[] rows, int[] cols) {
+        int[] _rows = new int[rows.length];
+
+        for (int i = 0; i < rows.length; i++) {
+            _rows[i] = this.rows[rows[i]];
+        }
+
+        boolean allCols = cols.length == numCols();
+
+        for (int j = 0; j < cols.length && allCols; j++) {
+            if (cols[j] != j) allCols = false;
+        }
+
+        return allCols ? new RowIndexedDataBox(box, _rows) : box.viewSelection(_rows, cols);
+    }
+
+    public DataBox like() {
+        return copy();
+    }
+
+    /**
+     * @return the box viewed.
+     */
+    public DataBox getDataBox() {
+        return box;
+    }
+
+    /**
+     * @return for each row of the view, the row of the underlying box. Not a copy.
+     */
+    public int[] getRows() {
+        return rows;
+    }
+}
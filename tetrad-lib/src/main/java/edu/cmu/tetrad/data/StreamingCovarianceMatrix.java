@@ -0,0 +1,631 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.NumberFormatUtil;
+import edu.cmu.tetrad.util.TetradMatrix;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.text.NumberFormat;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * A covariance matrix that is kept up to date as rows are added and removed, for data that
+ * arrive in batches. It keeps the count, means and co-moments (sums of products of deviations
+ * from the means) of the rows it has seen; a batch of m rows is summarized in O(m p^2) and
+ * folded in with the pairwise update of Chan, Golub and LeVeque in O(p^2), so there's no need
+ * to go back over earlier rows. Removing a batch reverses the update. Accumulators over
+ * different shards of the data may be computed separately, in parallel, and merged.
+ * <p>
+ * Rows with missing values are skipped (and counted; see getNumSkipped()). Updates may be made
+ * while other threads read; a reader always sees the matrix as of some whole update, never a
+ * partial one. The matrix can't be set directly.
+ *
+ * @author Joseph Ramsey
+ */
+public class StreamingCovarianceMatrix implements ICovarianceMatrix {
+    static final long serialVersionUID = 23L;
+
+    /**
+     * @serial May be null.
+     */
+    private String name;
+
+    /**
+     * @serial Cannot be null.
+     */
+    private List<Node> variables;
+
+    /**
+     * @serial Cannot be null.
+     */
+    private Set<Node> selectedVariables = new HashSet<>();
+
+    /**
+     * @serial Cannot be null.
+     */
+    private IKnowledge knowledge = new Knowledge2();
+
+    // The current summary; replaced, never modified, by updates.
+    private transient volatile Moments moments;
+
+    //=============================CONSTRUCTORS=========================//
+
+    /**
+     * Constructs an empty accumulator over the given variables.
+     */
+    public StreamingCovarianceMatrix(List<Node> variables) {
+        if (variables == null) throw new NullPointerException("Variables cannot be null.");
+        this.variables = Collections.unmodifiableList(new ArrayList<>(variables));
+        this.moments = new Moments(variables.size());
+    }
+
+    /**
+     * Constructs an accumulator over the variables of the given data set, with its rows added.
+     */
+    public StreamingCovarianceMatrix(DataSet dataSet) {
+        this(dataSet.getVariables());
+        addRows(dataSet);
+    }
+
+    /**
+     * Copy constructor. The copy is updated independently of the original.
+     */
+    public StreamingCovarianceMatrix(StreamingCovarianceMatrix covMatrix) {
+        this.variables = covMatrix.variables;
+        this.name = covMatrix.name;
+        this.knowledge = covMatrix.knowledge.copy();
+        this.moments = covMatrix.moments;
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     */
+    public static StreamingCovarianceMatrix serializableInstance() {
+        List<Node> variables = new ArrayList<>();
+        variables.add(new ContinuousVariable("X"));
+        return new StreamingCovarianceMatrix(variables);
+    }
+
+    //============================PUBLIC METHODS=========================//
+
+    /**
+     * Adds the rows of the given data set, whose columns are matched to the variables of this
+     * matrix by name.
+     *
+     * @throws IllegalArgumentException if some variable isn't in the data set, or isn't
+     *                                  continuous there.
+     */
+    public void addRows(DataSet dataSet) {
+        Moments batch = summarize(dataSet);
+
+        synchronized (this) {
+            moments = combine(moments, batch);
+        }
+    }
+
+    /**
+     * Removes the rows of the given data set, which must have been added before (in any batch).
+     * The covariances are then those of the remaining rows, up to rounding; a long series of
+     * removals can lose precision, which adding the rows of a fresh accumulator avoids.
+     *
+     * @throws IllegalArgumentException if more rows would be removed than have been added.
+     */
+    public void removeRows(DataSet dataSet) {
+        Moments batch = summarize(dataSet);
+
+        synchronized (this) {
+            moments = subtract(moments, batch);
+        }
+    }
+
+    /**
+     * Adds the rows summarized by the given accumulator, which must be over variables of the
+     * same names, in the same order--a shard of the same data, for instance.
+     */
+    public void merge(StreamingCovarianceMatrix other) {
+        if (!getVariableNames().equals(other.getVariableNames())) {
+            throw new IllegalArgumentException("Can only merge accumulators over the same variables.");
+        }
+
+        Moments batch = other.moments;
+
+        synchronized (this) {
+            moments = combine(moments, batch);
+        }
+    }
+
+    /**
+     * @return the number of rows added and not removed.
+     */
+    public long getNumRows() {
+        return moments.n;
+    }
+
+    /**
+     * @return the number of rows added that were skipped for missing values, less those removed.
+     */
+    public long getNumSkipped() {
+        return moments.skipped;
+    }
+
+    /**
+     * @return the means of the variables over the rows added.
+     */
+    public double[] getMeans() {
+        return moments.means.clone();
+    }
+
+    /**
+     * @return the value of element (i,j) in the matrix.
+     */
+    public final double getValue(int i, int j) {
+        Moments moments = this.moments;
+        return moments.comoments[i * moments.p + j] / (moments.n - 1);
+    }
+
+    public final TetradMatrix getMatrix() {
+        Moments moments = this.moments;
+        int p = moments.p;
+        TetradMatrix matrix = new TetradMatrix(p, p);
+
+        for (int i = 0; i < p; i++) {
+            for (int j = 0; j < p; j++) {
+                matrix.set(i, j, moments.comoments[i * p + j] / (moments.n - 1));
+            }
+        }
+
+        return matrix;
+    }
+
+    public TetradMatrix getSelection(int[] rows, int[] cols) {
+        Moments moments = this.moments;
+        int p = moments.p;
+        TetradMatrix matrix = new TetradMatrix(rows.length, cols.length);
+
+        for (int i = 0; i < rows.length; i++) {
+            for (int j = 0; j < cols.length; j++) {
+                matrix.set(i, j, moments.comoments[rows[i] * p + cols[j]] / (moments.n - 1));
+            }
+        }
+
+        return matrix;
+    }
+
+    /**
+     * @return the number of rows added, as an int.
+     */
+    public final int getSampleSize() {
+        return (int) Math.min(Integer.MAX_VALUE, moments.n);
+    }
+
+    public final List<Node> getVariables() {
+        return this.variables;
+    }
+
+    public final List<String> getVariableNames() {
+        List<String> names = new ArrayList<>();
+
+        for (Node variable : variables) {
+            names.add(variable.getName());
+        }
+
+        return names;
+    }
+
+    public final String getVariableName(int index) {
+        if (index >= variables.size()) {
+            throw new IllegalArgumentException("Index out of range: " + index);
+        }
+
+        return variables.get(index).getName();
+    }
+
+    public final int getDimension() {
+        return variables.size();
+    }
+
+    public final int getSize() {
+        return variables.size();
+    }
+
+    public final String getName() {
+        return this.name;
+    }
+
+    public final void setName(String name) {
+        this.name = name;
+    }
+
+    public final IKnowledge getKnowledge() {
+        return this.knowledge.copy();
+    }
+
+    public final void setKnowledge(IKnowledge knowledge) {
+        if (knowledge == null) {
+            throw new NullPointerException();
+        }
+
+        this.knowledge = knowledge.copy();
+    }
+
+    /**
+     * @return a fixed CovarianceMatrix over the given variables, as of now.
+     */
+    public final ICovarianceMatrix getSubmatrix(int[] indices) {
+        List<Node> submatrixVars = new ArrayList<>();
+
+        for (int index : indices) {
+            submatrixVars.add(variables.get(index));
+        }
+
+        return new CovarianceMatrix(submatrixVars, getSelection(indices, indices), getSampleSize());
+    }
+
+    public final ICovarianceMatrix getSubmatrix(List<String> submatrixVarNames) {
+        return getSubmatrix(submatrixVarNames.toArray(new String[submatrixVarNames.size()]));
+    }
+
+    public final ICovarianceMatrix getSubmatrix(String[] submatrixVarNames) {
+        List<String> names = getVariableNames();
+        int[] indices = new int[submatrixVarNames.length];
+
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = names.indexOf(submatrixVarNames[i]);
+
+            if (indices[i] == -1) {
+                throw new IllegalArgumentException("Variable " + submatrixVarNames[i] + " is not in this matrix.");
+            }
+        }
+
+        return getSubmatrix(indices);
+    }
+
+    public final void setMatrix(TetradMatrix matrix) {
+        throw new UnsupportedOperationException("A streaming covariance matrix is computed from its rows.");
+    }
+
+    public final void setSampleSize(int sampleSize) {
+        throw new UnsupportedOperationException("A streaming covariance matrix is computed from its rows.");
+    }
+
+    public final void setValue(int i, int j, double v) {
+        throw new UnsupportedOperationException("A streaming covariance matrix is computed from its rows.");
+    }
+
+    public final void removeVariables(List<String> remaining) {
+        throw new UnsupportedOperationException("A streaming covariance matrix is computed from its rows.");
+    }
+
+    public void setVariables(List<Node> variables) {
+        if (variables.size() != this.variables.size()) throw new IllegalArgumentException("Wrong # of variables.");
+        this.variables = Collections.unmodifiableList(new ArrayList<>(variables));
+    }
+
+    public final void select(Node variable) {
+        if (variables.contains(variable)) {
+            selectedVariables.add(variable);
+        }
+    }
+
+    public final void clearSelection() {
+        selectedVariables.clear();
+    }
+
+    public final boolean isSelected(Node variable) {
+        if (variable == null) {
+            throw new NullPointerException("Null variable. Try again.");
+        }
+
+        return selectedVariables.contains(variable);
+    }
+
+    public final List<String> getSelectedVariableNames() {
+        List<String> selectedVariableNames = new LinkedList<>();
+
+        for (Node variable : selectedVariables) {
+            selectedVariableNames.add(variable.getName());
+        }
+
+        return selectedVariableNames;
+    }
+
+    public Node getVariable(String name) {
+        for (Node variable : variables) {
+            if (name.equals(variable.getName())) {
+                return variable;
+            }
+        }
+
+        return null;
+    }
+
+    public DataModel copy() {
+        return new StreamingCovarianceMatrix(this);
+    }
+
+    public boolean isContinuous() {
+        return true;
+    }
+
+    public boolean isDiscrete() {
+        return false;
+    }
+
+    public boolean isMixed() {
+        return false;
+    }
+
+    /**
+     * Prints out the matrix
+     */
+    public final String toString() {
+        NumberFormat nf = NumberFormatUtil.getInstance().getNumberFormat();
+        TetradMatrix matrix = getMatrix();
+        StringBuilder buf = new StringBuilder();
+
+        buf.append(getSampleSize()).append("\n");
+
+        for (String name : getVariableNames()) {
+            buf.append(name).append("\t");
+        }
+
+        buf.append("\n");
+
+        for (int j = 0; j < matrix.rows(); j++) {
+            for (int i = 0; i <= j; i++) {
+                buf.append(nf.format(matrix.get(i, j))).append("\t");
+            }
+            buf.append("\n");
+        }
+
+        return buf.toString();
+    }
+
+    //========================PRIVATE METHODS============================//
+
+    // The count, means and co-moments of the complete rows of the given data set, the
+    // co-moments computed in parallel from centered columns.
+    private Moments summarize(DataSet dataSet) {
+        final int p = variables.size();
+        final double[][] columns = new double[p][];
+
+        for (int j = 0; j < p; j++) {
+            Node variable = dataSet.getVariable(variables.get(j).getName());
+
+            if (!(variable instanceof ContinuousVariable)) {
+                throw new IllegalArgumentException("Expecting a continuous variable " + variables.get(j)
+                        + " in the data.");
+            }
+
+            columns[j] = dataSet.getDoubleColumn(dataSet.getColumn(variable));
+        }
+
+        int numRows = dataSet.getNumRows();
+        boolean[] complete = new boolean[numRows];
+        int m = 0;
+
+        ROWS:
+        for (int k = 0; k < numRows; k++) {
+            for (int j = 0; j < p; j++) {
+                if (Double.isNaN(columns[j][k])) continue ROWS;
+            }
+
+            complete[k] = true;
+            m++;
+        }
+
+        final Moments batch = new Moments(p);
+        batch.n = m;
+        batch.skipped = numRows - m;
+
+        if (m == 0) return batch;
+
+        final double[][] centered = new double[p][m];
+
+        for (int j = 0; j < p; j++) {
+            double sum = 0.0;
+
+            for (int k = 0; k < numRows; k++) {
+                if (complete[k]) sum += columns[j][k];
+            }
+
+            double mean = sum / m;
+            batch.means[j] = mean;
+
+            for (int k = 0, r = 0; k < numRows; k++) {
+                if (complete[k]) centered[j][r++] = columns[j][k] - mean;
+            }
+        }
+
+        final int numTasks = Math.max(1, Math.min(p, ForkJoinPoolInstance.getInstance().getPool().getParallelism()));
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+
+        for (int t = 0; t < numTasks; t++) {
+            final int task = t;
+
+            tasks.add(new Callable<Boolean>() {
+                public Boolean call() {
+
+                    // Rows of the triangle are dealt out in turn so the tasks do equal work.
+                    for (int i = task; i < p; i += numTasks) {
+                        double[] v1 = centered[i];
+
+                        for (int j = 0; j <= i; j++) {
+                            double[] v2 = centered[j];
+                            double d = 0.0;
+
+                            for (int k = 0; k < v1.length; k++) {
+                                d += v1[k] * v2[k];
+                            }
+
+                            batch.comoments[i * p + j] = d;
+                            batch.comoments[j * p + i] = d;
+                        }
+                    }
+
+                    return true;
+                }
+            });
+        }
+
+        try {
+            for (Future<Boolean> future : ForkJoinPoolInstance.getInstance().getPool().invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+
+        return batch;
+    }
+
+    // Chan et al.: the moments of the union of two disjoint sets of rows.
+    private static Moments combine(Moments a, Moments b) {
+        if (b.n == 0) return a.plusSkipped(b.skipped);
+        if (a.n == 0) return b.plusSkipped(a.skipped);
+
+        int p = a.p;
+        long n = a.n + b.n;
+        double[] delta = new double[p];
+        Moments ab = new Moments(p);
+        ab.n = n;
+        ab.skipped = a.skipped + b.skipped;
+
+        for (int j = 0; j < p; j++) {
+            delta[j] = b.means[j] - a.means[j];
+            ab.means[j] = a.means[j] + delta[j] * b.n / n;
+        }
+
+        double f = (double) a.n * b.n / n;
+
+        for (int i = 0; i < p; i++) {
+            for (int j = 0; j < p; j++) {
+                ab.comoments[i * p + j] = a.comoments[i * p + j] + b.comoments[i * p + j] + delta[i] * delta[j] * f;
+            }
+        }
+
+        return ab;
+    }
+
+    // The inverse of combine: the moments of the rows of ab that aren't in b.
+    private static Moments subtract(Moments ab, Moments b) {
+        if (b.n > ab.n || b.skipped > ab.skipped) {
+            throw new IllegalArgumentException("Can't remove more rows than have been added.");
+        }
+
+        int p = ab.p;
+        Moments a = new Moments(p);
+        a.n = ab.n - b.n;
+        a.skipped = ab.skipped - b.skipped;
+
+        if (a.n == 0 || b.n == 0) {
+            return b.n == 0 ? ab.plusSkipped(-b.skipped) : a;
+        }
+
+        double[] delta = new double[p];
+
+        for (int j = 0; j < p; j++) {
+            a.means[j] = (ab.n * ab.means[j] - b.n * b.means[j]) / a.n;
+            delta[j] = b.means[j] - a.means[j];
+        }
+
+        double f = (double) a.n * b.n / ab.n;
+
+        for (int i = 0; i < p; i++) {
+            for (int j = 0; j < p; j++) {
+                a.comoments[i * p + j] = ab.comoments[i * p + j] - b.comoments[i * p + j] - delta[i] * delta[j] * f;
+            }
+        }
+
+        return a;
+    }
+
+    private void writeObject(ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+        Moments moments = this.moments;
+        s.writeLong(moments.n);
+        s.writeLong(moments.skipped);
+        s.writeObject(moments.means);
+        s.writeObject(moments.comoments);
+    }
+
+    private void readObject(ObjectInputStream s) throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+
+        if (variables == null || knowledge == null) {
+            throw new NullPointerException();
+        }
+
+        Moments moments = new Moments(variables.size());
+        moments.n = s.readLong();
+        moments.skipped = s.readLong();
+        moments.means = (double[]) s.readObject();
+        moments.comoments = (double[]) s.readObject();
+        this.moments = moments;
+
+        if (selectedVariables == null) {
+            selectedVariables = new HashSet<>();
+        }
+    }
+
+    /**
+     * The count, means and co-moments (row major, p x p) of a set of rows. Not modified once
+     * published.
+     */
+    private static final class Moments {
+        private final int p;
+        private long n = 0;
+        private long skipped = 0;
+        private double[] means;
+        private double[] comoments;
+
+        private Moments(int p) {
+            this.p = p;
+            this.means = new double[p];
+            this.comoments = new double[p * p];
+        }
+
+        private Moments plusSkipped(long skipped) {
+            if (skipped == 0) return this;
+
+            Moments moments = new Moments(p);
+            moments.n = n;
+            moments.skipped = this.skipped + skipped;
+            moments.means = means;
+            moments.comoments = comoments;
+            return moments;
+        }
+    }
+}
+
+
@@ -71,7 +71,7 @@ public class VerticalDoubleDataBox implements DataBox {
 
         for (int i = 0; i < dataBox.numRows(); i++) {
             for (int j = 0; j < dataBox.numCols(); j++) {
-                data[j][i] = dataBox.get(i, j).doubleValue();
+                data[j][i] = dataBox.getDouble(i, j);
             }
         }
     }
@@ -121,6 +121,21 @@ public class VerticalDoubleDataBox implements DataBox {
         return data[col][row];
     }
 
+    public double getDouble(int row, int col) {
+        return data[col][row];
+    }
+
+    public int getInt(int row, int col) {
+        double datum = data[col][row];
+        return Double.isNaN(datum) ? -99 : (int) datum;
+    }
+
+    public void setDouble(int row, int col, double value) {
+        synchronized (data[col]) {
+            data[col][row] = value;
+        }
+    }
+
     public double[][] getVariableVectors() {
         return data;
     }
@@ -135,7 +150,7 @@ public class VerticalDoubleDataBox implements DataBox {
             System.arraycopy(data[i], 0, copy[i], 0, data[0].length);
         }
 
-        return new VerticalDoubleDataBox(data);
+        return new VerticalDoubleDataBox(copy);
     }
 
     /**
@@ -157,7 +172,7 @@ public class VerticalDoubleDataBox implements DataBox {
 
         for (int i = 0; i < rows.length; i++) {
             for (int j = 0; j < cols.length; j++) {
-                _dataBox.set(i, j, get(rows[i], cols[j]));
+                _dataBox.setDouble(i, j, getDouble(rows[i], cols[j]));
             }
         }
 
@@ -67,7 +67,7 @@ public class VerticalIntDataBox implements DataBox {
 
         for (int i = 0; i < dataBox.numRows(); i++) {
             for (int j = 0; j < dataBox.numCols(); j++) {
-                data[j][i] = dataBox.get(i, j).intValue();
+                data[j][i] = dataBox.getInt(i, j);
             }
         }
     }
@@ -125,6 +125,21 @@ public class VerticalIntDataBox implements DataBox {
         }
     }
 
+    public double getDouble(int row, int col) {
+        int datum = data[col][row];
+        return datum == -99 ? Double.NaN : datum;
+    }
+
+    public int getInt(int row, int col) {
+        return data[col][row];
+    }
+
+    public void setDouble(int row, int col, double value) {
+        synchronized (data[col]) {
+            data[col][row] = Double.isNaN(value) ? -99 : (int) value;
+        }
+    }
+
     public int[][] getVariableVectors() {
         return data;
     }
@@ -133,15 +148,13 @@ public class VerticalIntDataBox implements DataBox {
      * @return a copy of this data box.
      */
     public DataBox copy() {
-        double[][] copy = new double[numCols()][numRows()];
+        int[][] copy = new int[numCols()][];
 
-        for (int i = 0; i < numRows(); i++) {
-            for (int j = 0; j < numCols(); j++) {
-                copy[j][i] = data[j][i];
-            }
+        for (int j = 0; j < numCols(); j++) {
+            copy[j] = data[j].clone();
         }
 
-        return new VerticalDoubleDataBox(copy);
+        return new VerticalIntDataBox(copy);
     }
 
     /**
@@ -163,7 +176,7 @@ public class VerticalIntDataBox implements DataBox {
 
         for (int i = 0; i < rows.length; i++) {
             for (int j = 0; j < cols.length; j++) {
-                _dataBox.set(i, j, get(rows[i], cols[j]));
+                _dataBox.setDouble(i, j, getDouble(rows[i], cols[j]));
             }
         }
 
@@ -0,0 +1,311 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.graph;
+
+import edu.cmu.tetrad.graph.EdgeTypeProbability.EdgeType;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts, over a stream of graphs over the same variables, how often each pair of variables is
+ * connected by each type of edge. Graphs are added one at a time from any number of threads and
+ * may be discarded once added, so an ensemble over many bootstrap replicates never has to hold
+ * the replicate graphs themselves. Nodes are matched by name.
+ * <p>
+ * Edge types are as in EdgeTypeProbability, oriented from the earlier to the later variable in
+ * the list given to the constructor; edges of other types (e.g. o--) are counted as no edge.
+ *
+ * @author Joseph Ramsey
+ */
+public final class EdgeFrequencies {
+
+    /**
+     * How a single graph is chosen from the frequencies. With Highest, each pair gets its most
+     * frequent edge type, counting no edge; with Majority, only if that type is seen in more than
+     * half of the graphs; with Preserved, the most frequent edge type other than no edge whenever
+     * the pair is adjacent in any graph.
+     */
+    public enum Ensemble {Preserved, Highest, Majority}
+
+    private static final EdgeType[] TYPES = EdgeType.values();
+
+    // The variables, in order.
+    private final List<Node> variables;
+
+    // Node names to indices in variables.
+    private final Map<String, Integer> indices = new HashMap<>();
+
+    // Counts by edge type ordinal, keyed by the packed pair of indices, lower index first.
+    private final ConcurrentHashMap<Long, AtomicLongArray> counts = new ConcurrentHashMap<>();
+
+    // The number of graphs added.
+    private final LongAdder numGraphs = new LongAdder();
+
+    public EdgeFrequencies(List<Node> variables) {
+        if (variables == null) throw new NullPointerException();
+        this.variables = new ArrayList<>(variables);
+
+        for (int i = 0; i < variables.size(); i++) {
+            indices.put(variables.get(i).getName(), i);
+        }
+    }
+
+    /**
+     * Counts the edges of the given graph. Safe to call from several threads at once.
+     *
+     * @throws IllegalArgumentException if the graph contains a node not among the variables.
+     */
+    public void add(Graph graph) {
+        for (Edge edge : graph.getEdges()) {
+            int i = indexOf(edge.getNode1());
+            int j = indexOf(edge.getNode2());
+            if (i == j) continue;
+
+            EdgeType type = i < j ? edgeType(edge.getEndpoint1(), edge.getEndpoint2())
+                    : edgeType(edge.getEndpoint2(), edge.getEndpoint1());
+            if (type == EdgeType.nil) continue;
+
+            long key = key(Math.min(i, j), Math.max(i, j));
+            AtomicLongArray c = counts.get(key);
+
+            if (c == null) {
+                AtomicLongArray newCounts = new AtomicLongArray(TYPES.length);
+                c = counts.putIfAbsent(key, newCounts);
+                if (c == null) c = newCounts;
+            }
+
+            c.incrementAndGet(type.ordinal());
+        }
+
+        numGraphs.increment();
+    }
+
+    /**
+     * @return the number of graphs added.
+     */
+    public long getNumGraphs() {
+        return numGraphs.sum();
+    }
+
+    public List<Node> getVariables() {
+        return new ArrayList<>(variables);
+    }
+
+    /**
+     * @return the fraction of graphs in which x and y are connected by an edge of the given type,
+     * oriented from x to y. For EdgeType.nil, the fraction in which they are not adjacent.
+     */
+    public double getProbability(Node x, Node y, EdgeType type) {
+        long n = getNumGraphs();
+        if (n == 0) return Double.NaN;
+
+        int i = indexOf(x);
+        int j = indexOf(y);
+
+        if (i > j) {
+            type = reverse(type);
+        }
+
+        AtomicLongArray c = counts.get(key(Math.min(i, j), Math.max(i, j)));
+
+        if (type == EdgeType.nil) {
+            return (n - (c == null ? 0 : sum(c))) / (double) n;
+        }
+
+        return c == null ? 0.0 : c.get(type.ordinal()) / (double) n;
+    }
+
+    /**
+     * @return a copy of the current counts, for comparison with a later one using maxChange().
+     * The last entry of each array is the number of graphs.
+     */
+    public Map<Long, long[]> snapshot() {
+        long n = getNumGraphs();
+        Map<Long, long[]> snapshot = new HashMap<>();
+
+        for (Map.Entry<Long, AtomicLongArray> entry : counts.entrySet()) {
+            AtomicLongArray c = entry.getValue();
+            long[] s = new long[TYPES.length];
+            for (int t = 0; t < TYPES.length; t++) s[t] = c.get(t);
+            snapshot.put(entry.getKey(), s);
+        }
+
+        snapshot.put(-1L, new long[]{n});
+        return snapshot;
+    }
+
+    /**
+     * @return the largest change in the probability of any edge type for any pair between the
+     * given snapshots, as taken by snapshot().
+     */
+    public static double maxChange(Map<Long, long[]> before, Map<Long, long[]> after) {
+        long n0 = before.get(-1L)[0];
+        long n1 = after.get(-1L)[0];
+        if (n0 == 0 || n1 == 0) return Double.POSITIVE_INFINITY;
+
+        Set<Long> keys = new HashSet<>(before.keySet());
+        keys.addAll(after.keySet());
+        keys.remove(-1L);
+
+        long[] zero = new long[TYPES.length];
+        double max = 0.0;
+
+        for (Long key : keys) {
+            long[] c0 = before.containsKey(key) ? before.get(key) : zero;
+            long[] c1 = after.containsKey(key) ? after.get(key) : zero;
+            long sum0 = 0, sum1 = 0;
+
+            for (int t = 0; t < TYPES.length; t++) {
+                sum0 += c0[t];
+                sum1 += c1[t];
+                max = Math.max(max, Math.abs(c1[t] / (double) n1 - c0[t] / (double) n0));
+            }
+
+            // No edge.
+            max = Math.max(max, Math.abs((n1 - sum1) / (double) n1 - (n0 - sum0) / (double) n0));
+        }
+
+        return max;
+    }
+
+    /**
+     * @return a graph over the variables with an edge for each pair chosen as the given ensemble
+     * says, each edge carrying the probabilities of all edge types for its pair.
+     */
+    public Graph getGraph(Ensemble ensemble) {
+        Graph graph = new EdgeListGraph(variables);
+        long n = getNumGraphs();
+        if (n == 0) return graph;
+
+        List<Long> keys = new ArrayList<>(counts.keySet());
+        Collections.sort(keys);
+
+        for (long key : keys) {
+            AtomicLongArray c = counts.get(key);
+            long[] _c = new long[TYPES.length];
+            long sum = 0;
+
+            for (int t = 0; t < TYPES.length; t++) {
+                _c[t] = c.get(t);
+                sum += _c[t];
+            }
+
+            _c[EdgeType.nil.ordinal()] = n - sum;
+
+            int best = -1;
+
+            for (int t = 0; t < TYPES.length; t++) {
+                if (TYPES[t] == EdgeType.nil && ensemble == Ensemble.Preserved) continue;
+                if (best == -1 || _c[t] > _c[best]) best = t;
+            }
+
+            if (TYPES[best] == EdgeType.nil || _c[best] == 0) continue;
+            if (ensemble == Ensemble.Majority && 2 * _c[best] <= n) continue;
+
+            Node x = variables.get((int) (key >>> 32));
+            Node y = variables.get((int) key);
+            Edge edge = edge(x, y, TYPES[best]);
+
+            for (int t = 0; t < TYPES.length; t++) {
+                edge.addEdgeTypeProbability(new EdgeTypeProbability(TYPES[t], _c[t] / (double) n));
+            }
+
+            graph.addEdge(edge);
+        }
+
+        return graph;
+    }
+
+    public String toString() {
+        return "Edge frequencies over " + getNumGraphs() + " graphs, " + counts.size() + " adjacent pairs";
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    private int indexOf(Node node) {
+        Integer index = indices.get(node.getName());
+        if (index == null) throw new IllegalArgumentException("Not a variable: " + node);
+        return index;
+    }
+
+    private static long key(int i, int j) {
+        return ((long) i << 32) | (j & 0xffffffffL);
+    }
+
+    private static long sum(AtomicLongArray c) {
+        long sum = 0;
+        for (int t = 0; t < c.length(); t++) sum += c.get(t);
+        return sum;
+    }
+
+    private static EdgeType edgeType(Endpoint e1, Endpoint e2) {
+        if (e1 == Endpoint.TAIL && e2 == Endpoint.ARROW) return EdgeType.ta;
+        if (e1 == Endpoint.ARROW && e2 == Endpoint.TAIL) return EdgeType.at;
+        if (e1 == Endpoint.CIRCLE && e2 == Endpoint.ARROW) return EdgeType.ca;
+        if (e1 == Endpoint.ARROW && e2 == Endpoint.CIRCLE) return EdgeType.ac;
+        if (e1 == Endpoint.CIRCLE && e2 == Endpoint.CIRCLE) return EdgeType.cc;
+        if (e1 == Endpoint.ARROW && e2 == Endpoint.ARROW) return EdgeType.aa;
+        if (e1 == Endpoint.TAIL && e2 == Endpoint.TAIL) return EdgeType.tt;
+        return EdgeType.nil;
+    }
+
+    private static EdgeType reverse(EdgeType type) {
+        switch (type) {
+            case ta:
+                return EdgeType.at;
+            case at:
+                return EdgeType.ta;
+            case ca:
+                return EdgeType.ac;
+            case ac:
+                return EdgeType.ca;
+            default:
+                return type;
+        }
+    }
+
+    private static Edge edge(Node x, Node y, EdgeType type) {
+        switch (type) {
+            case ta:
+                return Edges.directedEdge(x, y);
+            case at:
+                return Edges.directedEdge(y, x);
+            case ca:
+                return Edges.partiallyOrientedEdge(x, y);
+            case ac:
+                return Edges.partiallyOrientedEdge(y, x);
+            case cc:
+                return Edges.nondirectedEdge(x, y);
+            case aa:
+                return Edges.bidirectedEdge(x, y);
+            case tt:
+                return Edges.undirectedEdge(x, y);
+            default:
+                throw new IllegalArgumentException("No edge for " + type);
+        }
+    }
+}
+
+
@@ -0,0 +1,448 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.graph;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An EdgeListGraphSingleConnections that also keeps, for each node, bitsets over node indices of its adjacencies
+ * and of the nodes whose edges have an arrow, tail or circle at its end, so that adjacency, parenthood, collider,
+ * ancestor and d-connection queries are answered with bit tests rather than by walking edge lists and building
+ * sets. Ancestor sets are cached as bitsets and dropped whenever an edge changes. Queries that return lists of
+ * nodes are inherited unchanged, so they come back in the same order as from EdgeListGraphSingleConnections.
+ * <p>
+ * The bitsets are built on first use and kept up to date as edges are added and removed; adding or removing
+ * nodes causes them to be rebuilt on the next query. As with the other graphs, queries may be made from several
+ * threads at once, provided the graph isn't being modified at the time.
+ *
+ * @author Joseph Ramsey
+ */
+public class EdgeListGraphIndexed extends EdgeListGraphSingleConnections {
+    static final long serialVersionUID = 23L;
+
+    /**
+     * The bitsets; null until first needed, or after the nodes have changed.
+     */
+    private transient volatile Index index;
+
+    //==============================CONSTUCTORS===========================//
+
+    public EdgeListGraphIndexed() {
+        super();
+    }
+
+    public EdgeListGraphIndexed(Graph graph) {
+        super(graph);
+    }
+
+    public EdgeListGraphIndexed(List<Node> nodes) {
+        super(nodes);
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     */
+    public static EdgeListGraphIndexed serializableInstance() {
+        return new EdgeListGraphIndexed();
+    }
+
+    //===============================PUBLIC METHODS========================//
+
+    @Override
+    public boolean isAdjacentTo(Node node1, Node node2) {
+        Index index = index();
+        Integer i = index.indices.get(node1);
+        Integer j = index.indices.get(node2);
+        return i != null && j != null && get(index.adj[i], j);
+    }
+
+    @Override
+    public boolean isParentOf(Node node1, Node node2) {
+        Index index = index();
+        Integer i = index.indices.get(node1);
+        Integer j = index.indices.get(node2);
+        return i != null && j != null && index.isParent(i, j);
+    }
+
+    @Override
+    public boolean isChildOf(Node node1, Node node2) {
+        return isParentOf(node2, node1);
+    }
+
+    @Override
+    public boolean isDirectedFromTo(Node node1, Node node2) {
+        Index index = index();
+        Integer i = index.indices.get(node1);
+        Integer j = index.indices.get(node2);
+        return i != null && j != null && get(index.arrowAt[j], i)
+                && (get(index.tailAt[i], j) || get(index.circleAt[i], j));
+    }
+
+    @Override
+    public boolean isDefCollider(Node node1, Node node2, Node node3) {
+        Index index = index();
+        Integer i = index.indices.get(node1);
+        Integer j = index.indices.get(node2);
+        Integer k = index.indices.get(node3);
+        return i != null && j != null && k != null && get(index.arrowAt[j], i) && get(index.arrowAt[j], k);
+    }
+
+    /**
+     * Determines whether one node is an ancestor of another, from the cached ancestor set of node2.
+     */
+    @Override
+    public boolean isAncestorOf(Node node1, Node node2) {
+        Index index = index();
+        Integer i = index.indices.get(node1);
+        Integer j = index.indices.get(node2);
+        if (i == null || j == null) return super.isAncestorOf(node1, node2);
+        return get(index.ancestors(j), i);
+    }
+
+    @Override
+    public boolean isDescendentOf(Node node1, Node node2) {
+        return isAncestorOf(node2, node1);
+    }
+
+    /**
+     * Same as GraphUtils.isDConnectedTo, but searches over node indices and bitsets.
+     */
+    @Override
+    public boolean isDConnectedTo(Node x, Node y, List<Node> z) {
+        if (x == y) return true;
+
+        Index index = index();
+        Integer _x = index.indices.get(x);
+        Integer _y = index.indices.get(y);
+
+        // Underline triples change which triples are colliders; leave those to the general method.
+        if (_x == null || _y == null || !underLineTriples.isEmpty()) {
+            return GraphUtils.isDConnectedTo1(x, y, z, this);
+        }
+
+        int ix = _x;
+        int iy = _y;
+        long[] zBits = new long[index.words];
+        long[] zAncestors = new long[index.words];
+
+        for (Node node : z) {
+            Integer k = index.indices.get(node);
+            if (k == null) return GraphUtils.isDConnectedTo1(x, y, z, this);
+            set(zBits, k);
+            long[] ancestors = index.ancestors(k);
+            for (int w = 0; w < index.words; w++) zAncestors[w] |= ancestors[w];
+        }
+
+        // visited[b] holds the a for which a *-* b has been traversed toward b.
+        long[][] visited = new long[index.n][];
+        int[] queue = new int[16];
+        int head = 0;
+        int tail = 0;
+
+        long[] adjx = index.adj[ix];
+
+        for (int b = next(adjx, 0); b >= 0; b = next(adjx, b + 1)) {
+            if (b == iy) return true;
+            visit(visited, index.words, ix, b);
+            if (tail + 2 > queue.length) queue = grow(queue, head, tail);
+            queue[tail++] = ix;
+            queue[tail++] = b;
+        }
+
+        while (head < tail) {
+            int a = queue[head++];
+            int b = queue[head++];
+            long[] adjb = index.adj[b];
+            long[] arrowsAtB = index.arrowAt[b];
+            boolean arrowFromA = get(arrowsAtB, a);
+
+            for (int c = next(adjb, 0); c >= 0; c = next(adjb, c + 1)) {
+                if (c == a) continue;
+
+                boolean collider = arrowFromA && get(arrowsAtB, c);
+                boolean reachable = collider ? get(zAncestors, b) : !get(zBits, b);
+                if (!reachable) continue;
+
+                if (c == iy) return true;
+
+                if (visit(visited, index.words, b, c)) {
+                    if (tail + 2 > queue.length) {
+                        queue = grow(queue, head, tail);
+                        tail -= head;
+                        head = 0;
+                    }
+
+                    queue[tail++] = b;
+                    queue[tail++] = c;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean isDSeparatedFrom(Node node1, Node node2, List<Node> z) {
+        return !isDConnectedTo(node1, node2, z);
+    }
+
+    @Override
+    public synchronized boolean addEdge(Edge edge) {
+        boolean added = super.addEdge(edge);
+        if (added) edgeChanged(edge);
+        return added;
+    }
+
+    @Override
+    public synchronized boolean removeEdge(Edge edge) {
+        boolean removed = super.removeEdge(edge);
+        if (removed) edgeChanged(edge);
+        return removed;
+    }
+
+    @Override
+    public boolean addNode(Node node) {
+        boolean added = super.addNode(node);
+        index = null;
+        return added;
+    }
+
+    @Override
+    public boolean removeNode(Node node) {
+        boolean removed = super.removeNode(node);
+        index = null;
+        return removed;
+    }
+
+    @Override
+    public void setNodes(List<Node> nodes) {
+        super.setNodes(nodes);
+        index = null;
+    }
+
+    @Override
+    public void fullyConnect(Endpoint endpoint) {
+        index = null;
+        super.fullyConnect(endpoint);
+        index = null;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        index = null;
+    }
+
+    //===============================PRIVATE METHODS========================//
+
+    private Index index() {
+        Index index = this.index;
+
+        if (index == null) {
+            synchronized (this) {
+                index = this.index;
+
+                if (index == null) {
+                    index = new Index(nodes, edgeLists);
+                    this.index = index;
+                }
+            }
+        }
+
+        return index;
+    }
+
+    private void edgeChanged(Edge edge) {
+        Index index = this.index;
+        if (index == null) return;
+
+        Integer i = index.indices.get(edge.getNode1());
+        Integer j = index.indices.get(edge.getNode2());
+
+        if (i == null || j == null) {
+            this.index = null;
+        } else {
+            index.update(i, j, getEdge(edge.getNode1(), edge.getNode2()));
+        }
+    }
+
+    private static boolean get(long[] bits, int i) {
+        return (bits[i >> 6] & (1L << i)) != 0;
+    }
+
+    private static void set(long[] bits, int i) {
+        bits[i >> 6] |= 1L << i;
+    }
+
+    private static void clear(long[] bits, int i) {
+        bits[i >> 6] &= ~(1L << i);
+    }
+
+    // The index of the next set bit at or after from, or -1.
+    private static int next(long[] bits, int from) {
+        int w = from >> 6;
+        if (w >= bits.length) return -1;
+        long word = bits[w] & (-1L << from);
+
+        while (true) {
+            if (word != 0) return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == bits.length) return -1;
+            word = bits[w];
+        }
+    }
+
+    // Marks a *-* b as traversed toward b; false if it already was.
+    private static boolean visit(long[][] visited, int words, int a, int b) {
+        if (visited[b] == null) visited[b] = new long[words];
+        if (get(visited[b], a)) return false;
+        set(visited[b], a);
+        return true;
+    }
+
+    private static int[] grow(int[] queue, int head, int tail) {
+        int[] newQueue = new int[Math.max(16, 2 * (tail - head) + 2)];
+        System.arraycopy(queue, head, newQueue, 0, tail - head);
+        return newQueue;
+    }
+
+    /**
+     * Bitsets over node indices, one per node.
+     */
+    private static class Index {
+        final Map<Node, Integer> indices = new HashMap<>();
+        final int n;
+        final int words;
+
+        // adj[i] has j iff i and j are adjacent; arrowAt[i] has j iff the edge i *-* j has an arrow at i, and so on.
+        final long[][] adj;
+        final long[][] arrowAt;
+        final long[][] tailAt;
+        final long[][] circleAt;
+
+        // Cached ancestor sets, valid while their version is the current one.
+        final Ancestors[] ancestors;
+        volatile int version = 0;
+
+        Index(List<Node> nodes, Map<Node, List<Edge>> edgeLists) {
+            n = nodes.size();
+            words = (n + 63) >> 6;
+            adj = new long[n][words];
+            arrowAt = new long[n][words];
+            tailAt = new long[n][words];
+            circleAt = new long[n][words];
+            ancestors = new Ancestors[n];
+
+            for (int i = 0; i < n; i++) {
+                indices.put(nodes.get(i), i);
+            }
+
+            for (int i = 0; i < n; i++) {
+                Node node = nodes.get(i);
+                List<Edge> edges = edgeLists.get(node);
+                if (edges == null) continue;
+
+                for (Edge edge : edges) {
+                    Integer j = indices.get(edge.getDistalNode(node));
+                    if (j == null) continue;
+                    set(adj[i], j);
+                    setEndpoint(i, j, edge.getProximalEndpoint(node));
+                }
+            }
+        }
+
+        // Sets the bits for i and j from the edge between them, or clears them if there is none.
+        void update(int i, int j, Edge edge) {
+            clearPair(i, j);
+            clearPair(j, i);
+
+            if (edge != null) {
+                Node node1 = edge.getNode1();
+                int _i = indices.get(node1);
+                int _j = _i == i ? j : i;
+
+                set(adj[_i], _j);
+                set(adj[_j], _i);
+                setEndpoint(_i, _j, edge.getEndpoint1());
+                setEndpoint(_j, _i, edge.getEndpoint2());
+            }
+
+            version++;
+        }
+
+        boolean isParent(int i, int j) {
+            return get(arrowAt[j], i) && get(tailAt[i], j);
+        }
+
+        long[] ancestors(int j) {
+            int version = this.version;
+            Ancestors cached = ancestors[j];
+            if (cached != null && cached.version == version) return cached.bits;
+
+            long[] bits = new long[words];
+            int[] stack = new int[n];
+            int size = 0;
+
+            set(bits, j);
+            stack[size++] = j;
+
+            while (size > 0) {
+                int t = stack[--size];
+                long[] into = arrowAt[t];
+
+                for (int p = next(into, 0); p >= 0; p = next(into, p + 1)) {
+                    if (!get(bits, p) && get(tailAt[p], t)) {
+                        set(bits, p);
+                        stack[size++] = p;
+                    }
+                }
+            }
+
+            ancestors[j] = new Ancestors(version, bits);
+            return bits;
+        }
+
+        private void setEndpoint(int i, int j, Endpoint endpoint) {
+            if (endpoint == Endpoint.ARROW) set(arrowAt[i], j);
+            else if (endpoint == Endpoint.TAIL) set(tailAt[i], j);
+            else if (endpoint == Endpoint.CIRCLE) set(circleAt[i], j);
+        }
+
+        private void clearPair(int i, int j) {
+            clear(adj[i], j);
+            clear(arrowAt[i], j);
+            clear(tailAt[i], j);
+            clear(circleAt[i], j);
+        }
+    }
+
+    private static class Ancestors {
+        final int version;
+        final long[] bits;
+
+        Ancestors(int version, long[] bits) {
+            this.version = version;
+            this.bits = bits;
+        }
+    }
+}
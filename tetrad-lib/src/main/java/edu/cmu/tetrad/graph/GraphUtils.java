@@ -4242,6 +4242,10 @@ public final class GraphUtils {
     }
 
     public static boolean isDConnectedTo(Node x, Node y, List<Node> z, Graph graph) {
+        if (graph instanceof EdgeListGraphIndexed) {
+            return graph.isDConnectedTo(x, y, z);
+        }
+
         return isDConnectedTo1(x, y, z, graph);
 //        return isDConnectedTo2(x, y, z, graph);
 //        return isDConnectedTo3(x, y, z, graph);
@@ -4249,7 +4253,7 @@ public final class GraphUtils {
     }
 
     // Breadth first.
-    private static boolean isDConnectedTo1(Node x, Node y, List<Node> z, Graph graph) {
+    static boolean isDConnectedTo1(Node x, Node y, List<Node> z, Graph graph) {
         class EdgeNode {
 
             private Edge edge;
@@ -44,10 +44,16 @@ public class RegressionDataset implements Regression {
 //    private NumberFormat nf = NumberFormatUtil.getInstance().getNumberFormat();
 
     /**
-     * The data set.
+     * The data set, if given as a matrix.
      */
     private TetradMatrix data;
 
+    /**
+     * The columns of the data set, if given as a DataSet. These are views
+     * where the data set allows it, so they must not be modified.
+     */
+    private double[][] columns;
+
     /**
      * The variables.
      */
@@ -76,7 +82,12 @@ public class RegressionDataset implements Regression {
      *             are continuous.
      */
     public RegressionDataset(DataSet data) {
-        this.data = data.getDoubleData();
+        this.columns = new double[data.getNumColumns()][];
+
+        for (int j = 0; j < columns.length; j++) {
+            this.columns[j] = data.getDoubleColumn(j);
+        }
+
         this.variables = data.getVariables();
         setRows(new int[data.getNumRows()]);
         for (int i = 0; i < getRows().length; i++) getRows()[i] = i;
@@ -134,30 +145,19 @@ public class RegressionDataset implements Regression {
             System.out.println();
         }
 
-        TetradMatrix y = data.getSelection(getRows(), new int[]{_target}).copy();
-        TetradMatrix xSub = data.getSelection(getRows(), _regressors);
-
-        TetradMatrix x;
+        int[] rows = getRows();
+        TetradMatrix y = new TetradMatrix(n, 1);
+        TetradMatrix x = new TetradMatrix(n, regressors.size() > 0 ? regressors.size() + 1 : 0);
 
-        if (regressors.size() > 0) {
-            x = new TetradMatrix(xSub.rows(), xSub.columns() + 1);
+        for (int i = 0; i < n; i++) {
+            y.set(i, 0, value(rows[i], _target));
 
-            for (int i = 0; i < x.rows(); i++) {
-                for (int j = 0; j < x.columns(); j++) {
-                    if (j == 0) {
-                        x.set(i, j, 1);
-                    } else {
-                        x.set(i, j, xSub.get(i, j - 1));
-                    }
-                }
+            if (x.columns() > 0) {
+                x.set(i, 0, 1);
             }
-        } else {
-            x = new TetradMatrix(xSub.rows(), xSub.columns());
 
-            for (int i = 0; i < x.rows(); i++) {
-                for (int j = 0; j < x.columns(); j++) {
-                    x.set(i, j, xSub.get(i, j));
-                }
+            for (int j = 0; j < _regressors.length; j++) {
+                x.set(i, j + 1, value(rows[i], _regressors[j]));
             }
         }
 
@@ -290,6 +290,10 @@ public class RegressionDataset implements Regression {
 
     //=======================PRIVATE METHODS================================//
 
+    private double value(int row, int col) {
+        return columns != null ? columns[col][row] : data.get(row, col);
+    }
+
     private Graph createOutputGraph(String target, TetradMatrix x,
                                     List<Node> regressors, TetradVector p) {
         // Create output graph.
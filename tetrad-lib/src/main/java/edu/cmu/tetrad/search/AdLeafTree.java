@@ -3,10 +3,11 @@ package edu.cmu.tetrad.search;
 import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.data.DiscreteVariable;
 import edu.cmu.tetrad.graph.Node;
-import org.apache.commons.collections4.iterators.CollatingIterator;
-import org.apache.commons.collections4.map.HashedMap;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Constructs and AD leaf tree on the fly. Probably doesn't speed up the first
@@ -14,28 +15,39 @@ import java.util.*;
  * on the same data.
  * </p>
  * Continuous variables in the data set are ignored.
+ * </p>
+ * Subtrees are built as they are first asked for; several threads may ask for
+ * cells at once and will share whatever has been built. The tree keeps no
+ * reference to the data set, so it can be cached against it weakly.
  *
  * @author Joseph Ramsey
  */
 public class AdLeafTree {
 
-    // The data set the tree is for.
-    private DataSet dataSet;
+    // Rough sizes, in bytes, for memory accounting: a boxed row index in a list, and a subtree with its maps.
+    private static final int BYTES_PER_ROW = 20;
+    private static final int BYTES_PER_VARY = 128;
+
+    // The number of rows in the data.
+    private final int numRows;
 
     // Contains the root of the tree.
-    private List<Vary> baseCase;
+    private final List<Vary> baseCase;
 
     // Indices of variables.
-    private Map<Node, Integer> nodesHash;
+    private final Map<Node, Integer> nodesHash;
 
     // Discrete data only.
-    private int[][] discreteData;
+    private final int[][] discreteData;
 
     // Dimensions of the discrete variables (otherwise 0).
-    private int[] dims;
+    private final int[] dims;
+
+    // Approximate size of the tree in bytes, grown as subtrees are built.
+    private final AtomicLong bytes = new AtomicLong();
 
     public AdLeafTree(DataSet dataSet) {
-        this.dataSet = dataSet;
+        this.numRows = dataSet.getNumRows();
 
         discreteData = new int[dataSet.getNumColumns()][];
         dims = new int[dataSet.getNumColumns()];
@@ -44,14 +56,9 @@ public class AdLeafTree {
             Node v = dataSet.getVariable(j);
 
             if (v instanceof DiscreteVariable) {
-                int[] col = new int[dataSet.getNumRows()];
-
-                for (int i = 0; i < dataSet.getNumRows(); i++) {
-                    col[i] = dataSet.getInt(i, j);
-                }
-
-                discreteData[j] = col;
+                discreteData[j] = dataSet.getIntColumn(j);
                 dims[j] = ((DiscreteVariable) v).getNumCategories();
+                bytes.addAndGet(4L * numRows);
             }
         }
 
@@ -62,6 +69,7 @@ public class AdLeafTree {
             nodesHash.put(v, j);
         }
 
+        baseCase = Collections.singletonList(new Vary());
     }
 
     /**
@@ -81,12 +89,6 @@ public class AdLeafTree {
             }
         });
 
-        if (baseCase == null) {
-            Vary vary = new Vary();
-            this.baseCase = new ArrayList<>();
-            baseCase.add(vary);
-        }
-
         List<Vary> varies = baseCase;
 
         for (DiscreteVariable v : A) {
@@ -119,12 +121,6 @@ public class AdLeafTree {
             }
         });
 
-        if (baseCase == null) {
-            Vary vary = new Vary();
-            this.baseCase = new ArrayList<>();
-            baseCase.add(vary);
-        }
-
         List<Vary> varies = baseCase;
 
         for (DiscreteVariable v : A) {
@@ -143,8 +139,18 @@ public class AdLeafTree {
         return rows;
     }
 
+    /**
+     * Replaces the data for the given variable. Subtrees already built on the old data are not rebuilt.
+     */
     public void setColumn(DiscreteVariable var, int[] col) {
-        discreteData[dataSet.getColumn(var)] = col;
+        discreteData[nodesHash.get(var)] = col;
+    }
+
+    /**
+     * @return the approximate size of the tree built so far, in bytes.
+     */
+    public long getEstimatedBytes() {
+        return bytes.get();
     }
 
     private List<Vary> getVaries(List<Vary> varies, int v) {
@@ -160,27 +166,24 @@ public class AdLeafTree {
     }
 
     private class Vary {
-        int col;
-        int numCategories;
-        List<List<Integer>> rows = new ArrayList<>();
-        List<Map<Integer, Vary>> subVaries = new ArrayList<>();
+        final int numCategories;
+        final List<List<Integer>> rows = new ArrayList<>();
+        final List<ConcurrentMap<Integer, Vary>> subVaries = new ArrayList<>();
 
         // Base case.
         public Vary() {
             List<Integer> _rows = new ArrayList<>();
-            for (int i = 0; i < dataSet.getNumRows(); i++) {
+            for (int i = 0; i < numRows; i++) {
                 _rows.add(i);
             }
 
-            subVaries.add(new HashMap<Integer, Vary>());
             numCategories = 1;
             rows.add(_rows);
-            subVaries = new ArrayList<>();
-            subVaries.add(new HashMap<Integer, Vary>());
+            subVaries.add(new ConcurrentHashMap<Integer, Vary>());
+            bytes.addAndGet(BYTES_PER_VARY + (long) BYTES_PER_ROW * numRows);
         }
 
         public Vary(int col, int numCategories, List<Integer> supRows, int[][] discreteData) {
-            this.col = col;
             this.numCategories = numCategories;
 
             for (int i = 0; i < numCategories; i++) {
@@ -188,27 +191,39 @@ public class AdLeafTree {
             }
 
             for (int i = 0; i < numCategories; i++) {
-                subVaries.add(new HashedMap<Integer, Vary>());
+                subVaries.add(new ConcurrentHashMap<Integer, Vary>());
             }
 
+            int numAdded = 0;
+
             for (int i : supRows) {
                 int index = discreteData[col][i];
                 if (index != -99) {
                     rows.get(index).add(i);
+                    numAdded++;
                 }
             }
+
+            bytes.addAndGet(BYTES_PER_VARY + (long) BYTES_PER_ROW * numAdded);
         }
 
         public List<List<Integer>> getRows() {
             return rows;
         }
 
-        public Vary getSubvary(int w, int cat) {
-            Vary vary = subVaries.get(cat).get(w);
+        // Builds the subtree the first time it's asked for; other threads asking at the same time wait for it.
+        public Vary getSubvary(final int w, final int cat) {
+            ConcurrentMap<Integer, Vary> map = subVaries.get(cat);
+            Vary vary = map.get(w);
+            if (vary != null) return vary;
 
-            if (vary == null) {
-                vary = new Vary(w, dims[w], rows.get(cat), discreteData);
-                subVaries.get(cat).put(w, vary);
+            synchronized (map) {
+                vary = map.get(w);
+
+                if (vary == null) {
+                    vary = new Vary(w, dims[w], rows.get(cat), discreteData);
+                    map.put(w, vary);
+                }
             }
 
             return vary;
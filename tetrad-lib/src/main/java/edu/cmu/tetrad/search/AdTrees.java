@@ -2,24 +2,217 @@ package edu.cmu.tetrad.search;
 
 import edu.cmu.tetrad.data.DataSet;
 
-import java.util.HashMap;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * Stores AD trees for data sets for reuse.
+ * </p>
+ * Data sets are held weakly and compared by identity, so a tree goes away once
+ * nothing else refers to its data set, and two equal copies of a data set (say,
+ * two bootstrap samples that happen to agree) don't share a tree. Trees are also
+ * kept within a byte budget, least recently used first out; since trees grow as
+ * they're used, the budget is checked on each lookup. Safe to use from several
+ * threads at once.
+ *
  * @author jdramsey
  */
 public class AdTrees {
-    private static Map<DataSet, AdLeafTree> adTrees = new HashMap<>();
 
+    /**
+     * The default byte budget.
+     */
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final AdTrees DEFAULT = new AdTrees(DEFAULT_MAX_BYTES);
+
+    // The trees, least recently used first.
+    private final Map<Key, AdLeafTree> adTrees = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Keys whose data sets have been collected.
+    private final ReferenceQueue<DataSet> queue = new ReferenceQueue<>();
+
+    private long maxBytes;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param maxBytes The approximate number of bytes the cached trees may take up.
+     */
+    public AdTrees(long maxBytes) {
+        setMaxBytes(maxBytes);
+    }
+
+    /**
+     * @return the tree for the given data set from the shared cache, building it if necessary.
+     */
     public static AdLeafTree getAdLeafTree(DataSet dataSet) {
-        AdLeafTree tree = adTrees.get(dataSet);
+        return DEFAULT.get(dataSet);
+    }
+
+    /**
+     * @return the shared cache used by getAdLeafTree(dataSet).
+     */
+    public static AdTrees getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return the tree for the given data set, building it if necessary.
+     */
+    public AdLeafTree get(DataSet dataSet) {
+        if (dataSet == null) throw new NullPointerException();
+        Key key = new Key(dataSet, null);
+
+        synchronized (this) {
+            expunge();
+            AdLeafTree tree = adTrees.get(key);
+
+            if (tree != null) {
+                hits++;
+                evict(tree);
+                return tree;
+            }
+
+            misses++;
+        }
+
+        // Build outside the lock; if another thread got there first, use its tree.
+        AdLeafTree tree = new AdLeafTree(dataSet);
+
+        synchronized (this) {
+            AdLeafTree existing = adTrees.get(key);
+
+            if (existing != null) {
+                tree = existing;
+            } else {
+                adTrees.put(new Key(dataSet, queue), tree);
+            }
+
+            evict(tree);
+            return tree;
+        }
+    }
+
+    /**
+     * Removes all trees from the cache and resets the counters.
+     */
+    public synchronized void clear() {
+        adTrees.clear();
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+        expunge();
+    }
+
+    /**
+     * Sets the approximate number of bytes the cached trees may take up, evicting trees if necessary.
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("Max bytes must be >= 0: " + maxBytes);
+        this.maxBytes = maxBytes;
+        evict(null);
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the approximate number of bytes taken up by the cached trees.
+     */
+    public synchronized long getBytes() {
+        long bytes = 0;
 
-        if (tree == null) {
-            tree = new AdLeafTree(dataSet);
-            adTrees.put(dataSet, tree);
+        for (AdLeafTree tree : adTrees.values()) {
+            bytes += tree.getEstimatedBytes();
         }
 
-        return tree;
+        return bytes;
+    }
+
+    /**
+     * @return the number of cached trees.
+     */
+    public synchronized int size() {
+        expunge();
+        return adTrees.size();
+    }
+
+    /**
+     * @return the number of lookups that found a tree.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that had to build a tree.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of trees dropped to stay within budget.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized String toString() {
+        return "AD trees: size = " + adTrees.size() + " bytes = " + getBytes() + " hits = " + hits
+                + " misses = " + misses + " evictions = " + evictions;
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    // Drops least recently used trees, other than the given one, until the rest fit the budget.
+    private void evict(AdLeafTree keep) {
+        long bytes = getBytes();
+        Iterator<Map.Entry<Key, AdLeafTree>> i = adTrees.entrySet().iterator();
+
+        while (bytes > maxBytes && i.hasNext()) {
+            AdLeafTree tree = i.next().getValue();
+            if (tree == keep) continue;
+            bytes -= tree.getEstimatedBytes();
+            i.remove();
+            evictions++;
+        }
+    }
+
+    // Removes entries whose data sets have been collected.
+    private void expunge() {
+        Reference<? extends DataSet> ref;
+
+        while ((ref = queue.poll()) != null) {
+            adTrees.remove(ref);
+        }
+    }
+
+    // A weak reference to a data set, equal to another only if they refer to the same live data set.
+    private static final class Key extends WeakReference<DataSet> {
+        private final int hash;
+
+        Key(DataSet dataSet, ReferenceQueue<DataSet> queue) {
+            super(dataSet, queue);
+            this.hash = System.identityHashCode(dataSet);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if (!(o instanceof Key)) return false;
+            DataSet dataSet = get();
+            return dataSet != null && dataSet == ((Key) o).get();
+        }
     }
 }
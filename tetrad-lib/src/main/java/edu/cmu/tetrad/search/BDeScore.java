@@ -22,9 +22,10 @@
 package edu.cmu.tetrad.search;
 
 import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DiscreteCounts;
 import edu.cmu.tetrad.data.DiscreteVariable;
 import edu.cmu.tetrad.graph.Node;
-import edu.cmu.tetrad.util.ProbUtils;
+import edu.cmu.tetrad.util.LogGammaCache;
 
 import java.util.List;
 
@@ -34,6 +35,12 @@ import java.util.List;
 public class BDeScore implements LocalDiscreteScore {
     private DataSet dataSet;
 
+    // Counts the data for each local score.
+    private DiscreteCounts counts;
+
+    // logGamma(prior + count), cached.
+    private LogGammaCache logGamma;
+
     public BDeScore(DataSet dataSet) {
         if (dataSet == null) {
             throw new NullPointerException();
@@ -44,6 +51,8 @@ public class BDeScore implements LocalDiscreteScore {
         }
 
         this.dataSet = dataSet;
+        this.counts = new DiscreteCounts(dataSet);
+        this.logGamma = new LogGammaCache(dataSet.getNumRows());
     }
 
     public double localScore(int i, int parents[]) {
@@ -51,73 +60,35 @@ public class BDeScore implements LocalDiscreteScore {
         // Number of categories for i.
         int r = numCategories(i);
 
-        // Numbers of categories of parents.
-        int dims[] = new int[parents.length];
-
-        for (int p = 0; p < parents.length; p++) {
-            dims[p] = numCategories(parents[p]);
-        }
-
         // Number of parent states.
-        int q = 1;
-        for (int p = 0; p < parents.length; p++) {
-            q *= dims[p];
+        double q = 1;
+        for (int parent : parents) {
+            q *= numCategories(parent);
         }
 
-        // Conditional cell coefs of data for i given parents(i).
-        int n_ijk[][] = new int[q][r];
-        int n_ij[] = new int[q];
-
-        int values[] = new int[parents.length];
-
-        for (int n = 0; n < sampleSize(); n++) {
-            for (int p = 0; p < parents.length; p++) {
-                int parentValue = dataSet().getInt(n, parents[p]);
-
-                if (parentValue == -99) {
-                    throw new IllegalStateException("Please remove or impute " +
-                            "missing values.");
-                }
-
-                values[p] = parentValue;
-            }
-
-            int childValue = dataSet().getInt(n, i);
-
-            if (childValue == -99) {
-                throw new IllegalStateException("Please remove or impute missing " +
-                        "values (record " + n + " column " + i + ")");
-
-            }
+        // Conditional cell coefs of data for i given parents(i), for the parent states that occur.
+        DiscreteCounts.Table n_ijk = counts.count(parents, i);
 
-            int rowIndex = getRowIndex(dims, values);
-
-//            for (int m = 0; m < dataSet().getMultiplier(n); m++) {
-            n_ijk[rowIndex][childValue]++;
-//            }
+        if (n_ijk.getNumMissing() > 0) {
+            throw new IllegalStateException("Please remove or impute missing values.");
         }
 
-        // Row sums.
-        for (int j = 0; j < q; j++) {
-            for (int k = 0; k < r; k++) {
-                n_ij[j] += n_ijk[j][k];
-            }
-        }
-
-        //Finally, compute the score
+        //Finally, compute the score. The terms for empty rows and cells are zero.
         double score = 0;
 
-        for (int j = 0; j < q; j++) {
+        double nPrimeijk = 1. / (r * q);
+        double nPrimeij = 1. / q;
+
+        for (int j = 0; j < n_ijk.getNumRows(); j++) {
             for (int k = 0; k < r; k++) {
-                double nPrimeijk = 1. / (r * q);
-                score += ProbUtils.lngamma(n_ijk[j][k] + nPrimeijk);
-                score -= ProbUtils.lngamma(nPrimeijk);
-            }
+                int count = n_ijk.getCount(j, k);
 
-            double nPrimeij = 1. / q;
+                if (count > 0) {
+                    score += logGamma.logGammaRatio(nPrimeijk, count);
+                }
+            }
 
-            score += ProbUtils.lngamma(nPrimeij);
-            score -= ProbUtils.lngamma(n_ij[j] + nPrimeij);
+            score -= logGamma.logGammaRatio(nPrimeij, n_ijk.getRowCount(j));
         }
 
         return score;
@@ -154,19 +125,6 @@ public class BDeScore implements LocalDiscreteScore {
         return dataSet;
     }
 
-    private int getRowIndex(int[] dim, int[] values) {
-        int rowIndex = 0;
-        for (int i = 0; i < dim.length; i++) {
-            rowIndex *= dim[i];
-            rowIndex += values[i];
-        }
-        return rowIndex;
-    }
-
-    private int sampleSize() {
-        return dataSet().getNumRows();
-    }
-
     private int numCategories(int i) {
         return ((DiscreteVariable) dataSet().getVariable(i)).getNumCategories();
     }
@@ -23,7 +23,7 @@ package edu.cmu.tetrad.search;
 
 import edu.cmu.tetrad.data.*;
 import edu.cmu.tetrad.graph.Node;
-import org.apache.commons.math3.special.Gamma;
+import edu.cmu.tetrad.util.LogGammaCache;
 
 import java.util.List;
 
@@ -40,6 +40,12 @@ public class BDeuScore implements LocalDiscreteScore, IBDeuScore, Score {
 
     private int[] numCategories;
 
+    // Counts the data for each local score.
+    private DiscreteCounts counts;
+
+    // logGamma(prior + count), cached.
+    private LogGammaCache logGamma;
+
     public BDeuScore(DataSet dataSet) {
         if (dataSet == null) {
             throw new NullPointerException("Data was not provided.");
@@ -78,6 +84,9 @@ public class BDeuScore implements LocalDiscreteScore, IBDeuScore, Score {
         for (int i = 0; i < variables.size(); i++) {
             numCategories[i] = (getVariable(i)).getNumCategories();
         }
+
+        this.counts = new DiscreteCounts(data, numCategories);
+        this.logGamma = new LogGammaCache(sampleSize);
     }
 
     private DiscreteVariable getVariable(int i) {
@@ -90,54 +99,15 @@ public class BDeuScore implements LocalDiscreteScore, IBDeuScore, Score {
         // Number of categories for node.
         int c = numCategories[node];
 
-        // Numbers of categories of parents.
-        int[] dims = new int[parents.length];
-
-        for (int p = 0; p < parents.length; p++) {
-            dims[p] = numCategories[parents[p]];
-        }
-
         // Number of parent states.
-        int r = 1;
+        double r = 1;
 
-        for (int p = 0; p < parents.length; p++) {
-            r *= dims[p];
+        for (int parent : parents) {
+            r *= numCategories[parent];
         }
 
-        // Conditional cell coefs of data for node given parents(node).
-        int n_jk[][] = new int[r][c];
-        int n_j[] = new int[r];
-
-        int[] parentValues = new int[parents.length];
-
-        int[][] myParents = new int[parents.length][];
-        for (int i = 0; i < parents.length; i++) {
-            myParents[i] = data[parents[i]];
-        }
-
-        int[] myChild = data[node];
-
-
-        ROW:
-        for (int i = 0; i < sampleSize; i++) {
-            for (int p = 0; p < parents.length; p++) {
-                if (myParents[p][i] == -99) continue ROW;
-                parentValues[p] = myParents[p][i];
-            }
-
-            int childValue = myChild[i];
-
-            if (childValue == -99) {
-                continue ROW;
-//                throw new IllegalStateException("Please remove or impute missing " +
-//                        "values (record " + i + " column " + i + ")");
-            }
-
-            int rowIndex = getRowIndex(dims, parentValues);
-
-            n_jk[rowIndex][childValue]++;
-            n_j[rowIndex]++;
-        }
+        // Conditional cell coefs of data for node given parents(node), for the parent states that occur.
+        DiscreteCounts.Table n_jk = counts.count(parents, node);
 
         //Finally, compute the score
         double score = 0.0;
@@ -147,17 +117,19 @@ public class BDeuScore implements LocalDiscreteScore, IBDeuScore, Score {
         final double cellPrior = getSamplePrior() / (c * r);
         final double rowPrior = getSamplePrior() / r;
 
-        for (int j = 0; j < r; j++) {
-            score -= Gamma.logGamma(rowPrior + n_j[j]);
+        // The terms for empty rows and cells cancel, so only those that occur are summed.
+        for (int j = 0; j < n_jk.getNumRows(); j++) {
+            score -= logGamma.logGammaRatio(rowPrior, n_jk.getRowCount(j));
 
             for (int k = 0; k < c; k++) {
-                score += Gamma.logGamma(cellPrior + n_jk[j][k]);
+                int count = n_jk.getCount(j, k);
+
+                if (count > 0) {
+                    score += logGamma.logGammaRatio(cellPrior, count);
+                }
             }
         }
 
-        score += r * Gamma.logGamma(rowPrior);
-        score -= c * r * Gamma.logGamma(cellPrior);
-
         return score;
     }
 
@@ -215,15 +187,6 @@ public class BDeuScore implements LocalDiscreteScore, IBDeuScore, Score {
         throw new UnsupportedOperationException();
     }
 
-    private static int getRowIndex(int[] dim, int[] values) {
-        int rowIndex = 0;
-        for (int i = 0; i < dim.length; i++) {
-            rowIndex *= dim[i];
-            rowIndex += values[i];
-        }
-        return rowIndex;
-    }
-
     @Override
     public double getStructurePrior() {
         return structurePrior;
@@ -31,7 +31,7 @@ import static edu.cmu.tetrad.search.XdslXmlConstants.ROW;
 /**
  * Calculates the discrete BIC score.
  */
-public class BicScore implements LocalDiscreteScore, IBDeuScore {
+public class BicScore implements LocalDiscreteScore, IBDeuScore, PenalizedScore {
     private List<Node> variables;
     private int[][] data;
     private int sampleSize;
@@ -94,6 +94,14 @@ public class BicScore implements LocalDiscreteScore, IBDeuScore {
 
     @Override
     public double localScore(int node, int parents[]) {
+        return localFit(node, parents) - penaltyDiscount * numParams(node, parents) * Math.log(getSampleSize());
+    }
+
+    /**
+     * @return twice the log likelihood of node given its parents.
+     */
+    @Override
+    public double localFit(int node, int[] parents) {
 
         if (!(variables.get(node) instanceof  DiscreteVariable)) {
             throw new IllegalArgumentException("Not discrete: " + variables.get(node));
@@ -169,10 +177,36 @@ public class BicScore implements LocalDiscreteScore, IBDeuScore {
             }
         }
 
-        int params = r * (c - 1);
-        int n = getSampleSize();
+        return 2 * lik;
+    }
+
+    /**
+     * @return the number of free parameters of node given its parents times log(n).
+     */
+    @Override
+    public double localPenalty(int node, int[] parents) {
+        return numParams(node, parents) * Math.log(getSampleSize());
+    }
+
+    @Override
+    public double localFitDiff(int x, int y, int[] z) {
+        return localFit(y, append(z, x)) - localFit(y, z);
+    }
+
+    @Override
+    public double localPenaltyDiff(int x, int y, int[] z) {
+        return localPenalty(y, append(z, x)) - localPenalty(y, z);
+    }
+
+    // The number of free parameters of the conditional distribution of node given its parents.
+    private int numParams(int node, int[] parents) {
+        int r = 1;
+
+        for (int parent : parents) {
+            r *= numCategories[parent];
+        }
 
-        return 2 * lik - penaltyDiscount * params * Math.log(n);
+        return r * (numCategories[node] - 1);
     }
 
     private double getPriorForStructure(int numParents) {
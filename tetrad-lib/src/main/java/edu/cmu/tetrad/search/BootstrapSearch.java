@@ -0,0 +1,305 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DataUtils;
+import edu.cmu.tetrad.graph.EdgeFrequencies;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.TetradLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Runs a search on bootstrap samples of a data set and summarizes the results as edge type
+ * frequencies. Replicates run as tasks in the common ForkJoinPoolInstance, so they share threads
+ * with the searches they run rather than competing with them from a separate pool. Each sample
+ * is a row view of the data (see DataUtils.getBootstrapView), and each replicate graph is counted
+ * into an EdgeFrequencies as soon as it is found and then dropped. Replicates run in waves of at
+ * most getMaxInFlight(), so that their estimated memory stays under a budget; each wave is
+ * joined through the pool, so search() may itself be called from a pool task without blocking a
+ * worker.
+ * <p>
+ * If an epsilon is set, the frequencies are compared every checkInterval replicates, once all
+ * of those replicates have finished, and no more replicates are started once no edge type
+ * probability has moved by more than epsilon.
+ * <p>
+ * Samples are drawn in the calling thread from RandomUtil, in order, and the stopping point
+ * depends only on the counts at those fixed checks, so results are repeatable for a given seed
+ * if the search itself is.
+ *
+ * @author Joseph Ramsey
+ */
+public class BootstrapSearch implements GraphSearch {
+
+    /**
+     * The search run on each bootstrap sample. Will be called from several threads at once.
+     */
+    public interface ReplicateSearch {
+        Graph search(DataSet sample);
+    }
+
+    // The data being resampled.
+    private final DataSet data;
+
+    // The search run on each sample.
+    private final ReplicateSearch search;
+
+    // The most replicates to run.
+    private int numReplicates = 100;
+
+    // The number of rows in each sample.
+    private int sampleSize;
+
+    // The budget in bytes for the replicates in flight.
+    private long maxBytes = Runtime.getRuntime().maxMemory() / 4;
+
+    // The estimated bytes used by one replicate, or -1 to estimate it from the data.
+    private long bytesPerReplicate = -1;
+
+    // Stop when no probability moves by more than this between checks; 0 to never stop early.
+    private double epsilon = 0.0;
+
+    // The number of replicates between convergence checks.
+    private int checkInterval = 10;
+
+    // How the output graph is chosen from the frequencies.
+    private EdgeFrequencies.Ensemble ensemble = EdgeFrequencies.Ensemble.Highest;
+
+    private boolean verbose = false;
+
+    // Results of the last search.
+    private EdgeFrequencies frequencies;
+    private long elapsedTime;
+
+    public BootstrapSearch(DataSet data, ReplicateSearch search) {
+        if (data == null) throw new NullPointerException("Data not provided.");
+        if (search == null) throw new NullPointerException("Search not provided.");
+        this.data = data;
+        this.search = search;
+        this.sampleSize = data.getNumRows();
+    }
+
+    /**
+     * Runs the replicates and returns the ensemble graph, each edge carrying its edge type
+     * probabilities.
+     */
+    public Graph search() {
+        long start = System.currentTimeMillis();
+
+        final EdgeFrequencies frequencies = new EdgeFrequencies(data.getVariables());
+        this.frequencies = frequencies;
+
+        ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+        final int permits = getMaxInFlight();
+
+        Map<Long, long[]> last = frequencies.snapshot();
+        int r = 0;
+
+        while (r < numReplicates) {
+            int end = epsilon > 0 ? Math.min(numReplicates, r + checkInterval) : numReplicates;
+
+            while (r < end) {
+                int n = Math.min(permits, end - r);
+                final List<ForkJoinTask<?>> wave = new ArrayList<>();
+
+                for (int i = 0; i < n; i++) {
+                    final DataSet sample = DataUtils.getBootstrapView(data, sampleSize);
+
+                    wave.add(ForkJoinTask.adapt(new Runnable() {
+                        public void run() {
+                            frequencies.add(search.search(sample));
+                        }
+                    }));
+                }
+
+                pool.invoke(ForkJoinTask.adapt(new Runnable() {
+                    public void run() {
+                        ForkJoinTask.invokeAll(wave);
+                    }
+                }));
+
+                r += n;
+            }
+
+            if (epsilon > 0 && r < numReplicates) {
+                Map<Long, long[]> next = frequencies.snapshot();
+                double change = EdgeFrequencies.maxChange(last, next);
+
+                if (verbose) {
+                    TetradLogger.getInstance().forceLogMessage("Bootstrap: " + r
+                            + " replicates, max change in edge probabilities = " + change);
+                }
+
+                if (change <= epsilon) {
+                    break;
+                }
+
+                last = next;
+            }
+        }
+
+        Graph graph = frequencies.getGraph(ensemble);
+        this.elapsedTime = System.currentTimeMillis() - start;
+
+        if (verbose) {
+            TetradLogger.getInstance().forceLogMessage("Bootstrap: " + frequencies.getNumGraphs()
+                    + " replicates in " + elapsedTime + " ms, at most " + permits + " at once");
+        }
+
+        return graph;
+    }
+
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /**
+     * @return the edge frequencies from the last search, or null if none has been run.
+     */
+    public EdgeFrequencies getFrequencies() {
+        return frequencies;
+    }
+
+    /**
+     * @return the number of replicates run in the last search, which may be less than
+     * numReplicates if the frequencies converged.
+     */
+    public int getNumReplicatesRun() {
+        return frequencies == null ? 0 : (int) frequencies.getNumGraphs();
+    }
+
+    /**
+     * @return the number of replicates that will be run at once: as many as fit in the byte
+     * budget, at least one, and no more than the parallelism of the pool.
+     */
+    public int getMaxInFlight() {
+        int parallelism = ForkJoinPoolInstance.getInstance().getPool().getParallelism();
+        long fit = maxBytes / Math.max(1, getBytesPerReplicate());
+        return (int) Math.max(1, Math.min(parallelism, fit));
+    }
+
+    public int getNumReplicates() {
+        return numReplicates;
+    }
+
+    public void setNumReplicates(int numReplicates) {
+        if (numReplicates < 1) throw new IllegalArgumentException("Need at least one replicate: " + numReplicates);
+        this.numReplicates = numReplicates;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * @param sampleSize The number of rows drawn for each replicate; by default the number of rows
+     *                   in the data.
+     */
+    public void setSampleSize(int sampleSize) {
+        if (sampleSize < 1) throw new IllegalArgumentException("Sample size must be positive: " + sampleSize);
+        this.sampleSize = sampleSize;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @param maxBytes The approximate memory budget for the replicates in flight at once; by
+     *                 default a quarter of the maximum heap.
+     */
+    public void setMaxBytes(long maxBytes) {
+        if (maxBytes < 1) throw new IllegalArgumentException("Byte budget must be positive: " + maxBytes);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the estimated memory used by one replicate--by default the sample (row indices for a
+     * view, the values for a copy) plus a few variables x variables matrices for the search.
+     */
+    public long getBytesPerReplicate() {
+        if (bytesPerReplicate > 0) return bytesPerReplicate;
+
+        long numVars = data.getNumColumns();
+        long sampleBytes = data instanceof BoxDataSet ? 4L * sampleSize : 8L * sampleSize * numVars;
+        return sampleBytes + 4 * 8 * numVars * numVars;
+    }
+
+    /**
+     * @param bytesPerReplicate The memory used by one replicate, if known better than the default
+     *                          estimate; -1 to go back to the estimate.
+     */
+    public void setBytesPerReplicate(long bytesPerReplicate) {
+        this.bytesPerReplicate = bytesPerReplicate;
+    }
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    /**
+     * @param epsilon Stop starting replicates once no edge type probability has changed by more
+     *                than this over the last checkInterval replicates; 0 (the default) to always
+     *                run numReplicates.
+     */
+    public void setEpsilon(double epsilon) {
+        if (epsilon < 0) throw new IllegalArgumentException("Epsilon must be >= 0: " + epsilon);
+        this.epsilon = epsilon;
+    }
+
+    public int getCheckInterval() {
+        return checkInterval;
+    }
+
+    public void setCheckInterval(int checkInterval) {
+        if (checkInterval < 1) throw new IllegalArgumentException("Check interval must be positive: " + checkInterval);
+        this.checkInterval = checkInterval;
+    }
+
+    public EdgeFrequencies.Ensemble getEnsemble() {
+        return ensemble;
+    }
+
+    public void setEnsemble(EdgeFrequencies.Ensemble ensemble) {
+        if (ensemble == null) throw new NullPointerException();
+        this.ensemble = ensemble;
+    }
+
+    public boolean isVerbose() {
+        return verbose;
+    }
+
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+}
+
+
+
@@ -0,0 +1,205 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.graph.Node;
+
+import java.util.List;
+
+/**
+ * Wraps a score and caches its local scores and local score differences, so that FGES and its
+ * relatives don't recompute the score of the same (node, parents) over and over across the
+ * forward, backward and re-evaluation passes. The cache is safe to use from the ForkJoin
+ * tasks in Fges. Scores are cached as computed by the wrapped score, so if anything that
+ * affects the score changes (penalty discount, sample prior, etc.), call <code>clear()</code>.
+ *
+ * @author Joseph Ramsey
+ */
+public class CachingScore implements Score {
+
+    // The wrapped score.
+    private final Score score;
+
+    // Cache for localScore(node, parents).
+    private final LocalScoreCache scores;
+
+    // Cache for localScoreDiff(x, y, z) and localScoreDiff(x, y).
+    private final LocalScoreCache diffs;
+
+    private static final int[] EMPTY = new int[0];
+
+    public CachingScore(Score score) {
+        this(score, LocalScoreCache.DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param score    The score to wrap.
+     * @param maxBytes The approximate byte budget for the cache, split evenly between local scores
+     *                 and local score differences.
+     */
+    public CachingScore(Score score, long maxBytes) {
+        if (score == null) throw new NullPointerException();
+        this.score = score;
+        this.scores = new LocalScoreCache(Math.max(1, maxBytes / 2));
+        this.diffs = new LocalScoreCache(Math.max(1, maxBytes / 2));
+    }
+
+    @Override
+    public double localScore(int node, int... parents) {
+        Double cached = scores.lookup(node, -1, parents);
+        if (cached != null) return cached;
+        double s = score.localScore(node, parents);
+        scores.add(node, -1, parents, s);
+        return s;
+    }
+
+    @Override
+    public double localScore(int node, int parent) {
+        int[] parents = {parent};
+        Double cached = scores.lookup(node, -1, parents);
+        if (cached != null) return cached;
+        double s = score.localScore(node, parent);
+        scores.add(node, -1, parents, s);
+        return s;
+    }
+
+    @Override
+    public double localScore(int node) {
+        Double cached = scores.lookup(node, -1, EMPTY);
+        if (cached != null) return cached;
+        double s = score.localScore(node);
+        scores.add(node, -1, EMPTY, s);
+        return s;
+    }
+
+    @Override
+    public double localScoreDiff(int x, int y, int[] z) {
+        Double cached = diffs.lookup(y, x, z);
+        if (cached != null) return cached;
+        double s = score.localScoreDiff(x, y, z);
+        diffs.add(y, x, z, s);
+        return s;
+    }
+
+    /**
+     * Some scores calculate this differently from localScoreDiff(x, y, new int[0]), so it's
+     * kept under its own key, with x encoded as -2 - x.
+     */
+    @Override
+    public double localScoreDiff(int x, int y) {
+        Double cached = diffs.lookup(y, -2 - x, EMPTY);
+        if (cached != null) return cached;
+        double s = score.localScoreDiff(x, y);
+        diffs.add(y, -2 - x, EMPTY, s);
+        return s;
+    }
+
+    @Override
+    public List<Node> getVariables() {
+        return score.getVariables();
+    }
+
+    @Override
+    public boolean isEffectEdge(double bump) {
+        return score.isEffectEdge(bump);
+    }
+
+    @Override
+    public int getSampleSize() {
+        return score.getSampleSize();
+    }
+
+    @Override
+    public Node getVariable(String targetName) {
+        return score.getVariable(targetName);
+    }
+
+    @Override
+    public int getMaxDegree() {
+        return score.getMaxDegree();
+    }
+
+    @Override
+    public boolean determines(List<Node> z, Node y) {
+        return score.determines(z, y);
+    }
+
+    /**
+     * @return the wrapped score.
+     */
+    public Score getScore() {
+        return score;
+    }
+
+    /**
+     * Empties the cache and resets the counters.
+     */
+    public void clear() {
+        scores.clear();
+        diffs.clear();
+    }
+
+    /**
+     * @return the number of calls answered from the cache.
+     */
+    public long getHits() {
+        return scores.getHits() + diffs.getHits();
+    }
+
+    /**
+     * @return the number of calls passed through to the wrapped score.
+     */
+    public long getMisses() {
+        return scores.getMisses() + diffs.getMisses();
+    }
+
+    /**
+     * @return the number of entries evicted to stay within budget.
+     */
+    public long getEvictions() {
+        return scores.getEvictions() + diffs.getEvictions();
+    }
+
+    /**
+     * @return the fraction of calls answered from the cache.
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0.0 : hits / (double) total;
+    }
+
+    /**
+     * @return the number of cached entries.
+     */
+    public int size() {
+        return scores.size() + diffs.size();
+    }
+
+    public String toString() {
+        return "Caching " + score + ": hits = " + getHits() + " misses = " + getMisses()
+                + " evictions = " + getEvictions() + " size = " + size();
+    }
+}
+
+
+
@@ -80,6 +80,11 @@ public final class Cfci implements GraphSearch {
      */
     private boolean possibleDsepSearchDone = true;
 
+    /**
+     * True iff the possible dsep search tests all edges in parallel. See PossibleDsepConcurrent.
+     */
+    private boolean possibleDsepConcurrent = false;
+
     /**
      * The maximum length for any discriminating path. -1 if unlimited; otherwise, a positive integer.
      */
@@ -197,6 +202,7 @@ public final class Cfci implements GraphSearch {
             possibleDSep.setDepth(getDepth());
             possibleDSep.setKnowledge(getKnowledge());
             possibleDSep.setMaxPathLength(getMaxReachablePathLength());
+            possibleDSep.setConcurrent(possibleDsepConcurrent);
 
             // We use these sepsets though.
             sepsets.addAll(possibleDSep.search());
@@ -499,6 +505,21 @@ public final class Cfci implements GraphSearch {
         this.possibleDsepSearchDone = possibleDsepSearchDone;
     }
 
+    public boolean isPossibleDsepConcurrent() {
+        return possibleDsepConcurrent;
+    }
+
+    /**
+     * @param possibleDsepConcurrent True if the possible dsep search should test all edges in
+     *                               parallel, against the graph as it was when the search began,
+     *                               so that the result does not depend on the order of the edges.
+     *                               See PossibleDsepConcurrent. The independence test must then be
+     *                               thread safe.
+     */
+    public void setPossibleDsepConcurrent(boolean possibleDsepConcurrent) {
+        this.possibleDsepConcurrent = possibleDsepConcurrent;
+    }
+
     public int getMaxReachablePathLength() {
         return maxReachablePathLength;
     }
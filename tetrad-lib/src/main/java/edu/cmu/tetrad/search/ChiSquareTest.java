@@ -21,15 +21,12 @@
 
 package edu.cmu.tetrad.search;
 
-import edu.cmu.tetrad.data.CellTable;
 import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DiscreteCounts;
 import edu.cmu.tetrad.data.DiscreteVariable;
-import edu.cmu.tetrad.util.CombinationIterator;
 import edu.cmu.tetrad.util.ProbUtils;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 /**
  * Calculates marginal chi square test results for a discrete dataset.
@@ -50,9 +47,9 @@ public class ChiSquareTest {
     private int[] dims;
 
     /**
-     * Stores the data in the form of a cell table.
+     * Counts the data for each test.
      */
-    private CellTable cellTable;
+    private DiscreteCounts counts;
 
     /**
      * The significance level of the test.
@@ -83,8 +80,7 @@ public class ChiSquareTest {
 
         this.dataSet = dataSet;
         this.alpha = alpha;
-        this.cellTable = new CellTable(null);
-        this.getCellTable().setMissingValue(DiscreteVariable.MISSING_VALUE);
+        this.counts = new DiscreteCounts(dataSet);
     }
 
     /**
@@ -92,114 +88,10 @@ public class ChiSquareTest {
      * by summing up chi square and degrees of freedom for each conditional table in turn, where rows or columns that
      * consist entirely of zeros have been removed.
      */
-    public synchronized ChiSquareTest.Result calcChiSquare(int[] testIndices) {
-
-        // Reset the cell table for the columns referred to in
-        // 'testIndices.' Do cell coefs for those columns.
-        this.getCellTable().addToTable(getDataSet(), testIndices);
-
-        // Indicator arrays to tell the cell table which margins
-        // to calculate. For x _||_ y | z1, z2, ..., we want to
-        // calculate the margin for x, the margin for y, and the
-        // margin for x and y. (These will be used later.)
-        int[] firstVar = new int[]{0};
-        int[] secondVar = new int[]{1};
-        int[] bothVars = new int[]{0, 1};
-
-        double xSquare = 0.0;
-        int df = 0;
-
-        int[] condDims = new int[testIndices.length - 2];
-        System.arraycopy(selectFromArray(getDims(), testIndices), 2, condDims, 0,
-                condDims.length);
-
-        int[] coords = new int[testIndices.length];
-        int numRows = this.getCellTable().getNumValues(0);
-        int numCols = this.getCellTable().getNumValues(1);
-
-        boolean[] attestedRows = new boolean[numRows];
-        boolean[] attestedCols = new boolean[numCols];
-
-        CombinationIterator combinationIterator =
-                new CombinationIterator(condDims);
-
-        while (combinationIterator.hasNext()) {
-            int[] combination = (int[]) combinationIterator.next();
-
-            System.arraycopy(combination, 0, coords, 2, combination.length);
-            Arrays.fill(attestedRows, true);
-            Arrays.fill(attestedCols, true);
-
-            long total = 0;// this.getCellTable().calcMargin(coords, bothVars);
-
-            double _xSquare = 0.0;
-
-            List<Double> e = new ArrayList<>();
-            List<Long> o = new ArrayList<>();
-
-            for (int i = 0; i < numRows; i++) {
-                for (int j = 0; j < numCols; j++) {
-                    coords[0] = i;
-                    coords[1] = j;
-
-                    long sumRow = this.getCellTable().calcMargin(coords, secondVar);
-                    long sumCol = this.getCellTable().calcMargin(coords, firstVar);
-                    long observed = (int) this.getCellTable().getValue(coords);
-
-                    boolean skip = false;
-
-                    if (sumRow == 0) {
-                        attestedRows[i] = false;
-                        skip = true;
-                    }
-
-                    if (sumCol == 0) {
-                        attestedCols[j] = false;
-                        skip = true;
-                    }
-
-                    if (skip) {
-                        continue;
-                    }
-
-                    total += observed;
-
-                    e.add((double) sumCol * sumRow);
-                    o.add(observed);
-                }
-            }
-
-            for (int i = 0; i < o.size(); i++) {
-                double expected = e.get(i) / (double) total;
-                _xSquare += Math.pow(o.get(i) - expected, 2.0) / expected;
-            }
-
-            if (total == 0) {
-                continue;
-            }
-
-            int numAttestedRows = 0;
-            int numAttestedCols = 0;
-
-            for (boolean attestedRow : attestedRows) {
-                if (attestedRow) {
-                    numAttestedRows++;
-                }
-            }
-
-            for (boolean attestedCol : attestedCols) {
-                if (attestedCol) {
-                    numAttestedCols++;
-                }
-            }
-
-            int _df = (numAttestedRows - 1) * (numAttestedCols - 1);
-
-            if (_df > 0) {
-                xSquare += _xSquare;
-                df += _df;
-            }
-        }
+    public ChiSquareTest.Result calcChiSquare(int[] testIndices) {
+        double[] sums = sumOverStrata(testIndices);
+        double xSquare = sums[0];
+        int df = (int) sums[1];
 
         // If df == 0, return indep.
         // Actually if you don't know one way or the other, you should return dependent. jdramsey 12/22/2015
@@ -220,43 +112,18 @@ public class ChiSquareTest {
      * @return True if the variable at index 0 is determined by the variables at the other indices.
      */
     public boolean isDetermined(int[] testIndices, double p) {
+        int[] condIndices = new int[testIndices.length - 1];
+        System.arraycopy(testIndices, 1, condIndices, 0, condIndices.length);
 
-        // Reset the cell table for the columns referred to in
-        // 'testIndices.' Do cell coefs for those columns.
-        this.getCellTable().addToTable(getDataSet(), testIndices);
-
-        // Indicator arrays to tell the cell table which margins
-        // to calculate. For x _||_ y | z1, z2, ..., we want to
-        // calculate the margin for x, the margin for y, and the
-        // margin for x and y. (These will be used later.)
-        int[] firstVar = new int[]{0};
-
-        int[] condDims = new int[testIndices.length - 1];
-        System.arraycopy(selectFromArray(getDims(), testIndices), 1, condDims, 0,
-                condDims.length);
-
-        int[] coords = new int[testIndices.length];
-        int numValues = this.getCellTable().getNumValues(0);
-
-        CombinationIterator combinationIterator =
-                new CombinationIterator(condDims);
-
-        while (combinationIterator.hasNext()) {
-            int[] combination = (int[]) combinationIterator.next();
-            System.arraycopy(combination, 0, coords, 1, combination.length);
-
-            long total = this.getCellTable().calcMargin(coords, firstVar);
-
-            if (total == 0) {
-                continue;
-            }
+        // One row per attested combination of values of the conditioning variables.
+        DiscreteCounts.Table table = getCounts().count(condIndices, testIndices[0]);
 
+        for (int s = 0; s < table.getNumRows(); s++) {
+            long total = table.getRowCount(s);
             boolean dominates = false;
 
-            for (int i = 0; i < numValues; i++) {
-                coords[0] = i;
-
-                long numi = this.getCellTable().getValue(coords);
+            for (int i = 0; i < table.getNumCols(); i++) {
+                long numi = table.getCount(s, i);
 
                 if ((double) numi / total >= p) {
                     dominates = true;
@@ -371,6 +238,83 @@ public class ChiSquareTest {
 
     //================================PRIVATE==============================//
 
+    /**
+     * Sums the chi square statistic and degrees of freedom over the conditional tables of 0 and 1 for each attested
+     * combination of values of the conditioning variables 2, 3, ..., max, leaving out rows and columns of a table
+     * that are entirely zero, and tables with no degrees of freedom.
+     *
+     * @return {chi square, degrees of freedom}.
+     */
+    final double[] sumOverStrata(int[] testIndices) {
+        int[] condIndices = new int[testIndices.length - 2];
+        System.arraycopy(testIndices, 2, condIndices, 0, condIndices.length);
+
+        // One row per attested combination of values of the conditioning variables; the columns are the cells of
+        // the table for 0 and 1.
+        DiscreteCounts.Table table = getCounts().count(condIndices, new int[]{testIndices[0], testIndices[1]});
+
+        int numRows = getDims()[testIndices[0]];
+        int numCols = getDims()[testIndices[1]];
+
+        long[] sumRows = new long[numRows];
+        long[] sumCols = new long[numCols];
+
+        double xSquare = 0.0;
+        int df = 0;
+
+        for (int s = 0; s < table.getNumRows(); s++) {
+            Arrays.fill(sumRows, 0);
+            Arrays.fill(sumCols, 0);
+
+            for (int i = 0; i < numRows; i++) {
+                for (int j = 0; j < numCols; j++) {
+                    long observed = table.getCount(s, i * numCols + j);
+                    sumRows[i] += observed;
+                    sumCols[j] += observed;
+                }
+            }
+
+            long total = table.getRowCount(s);
+            double _xSquare = 0.0;
+
+            for (int i = 0; i < numRows; i++) {
+                if (sumRows[i] == 0) continue;
+
+                for (int j = 0; j < numCols; j++) {
+                    if (sumCols[j] == 0) continue;
+
+                    long observed = table.getCount(s, i * numCols + j);
+                    double expected = ((double) sumCols[j] * sumRows[i]) / (double) total;
+                    _xSquare += Math.pow(observed - expected, 2.0) / expected;
+                }
+            }
+
+            int numAttestedRows = 0;
+            int numAttestedCols = 0;
+
+            for (long sumRow : sumRows) {
+                if (sumRow != 0) {
+                    numAttestedRows++;
+                }
+            }
+
+            for (long sumCol : sumCols) {
+                if (sumCol != 0) {
+                    numAttestedCols++;
+                }
+            }
+
+            int _df = (numAttestedRows - 1) * (numAttestedCols - 1);
+
+            if (_df > 0) {
+                xSquare += _xSquare;
+                df += _df;
+            }
+        }
+
+        return new double[]{xSquare, df};
+    }
+
     public int[] selectFromArray(int[] arr, int[] indices) {
         int[] retArr = new int[indices.length];
 
@@ -389,8 +333,12 @@ public class ChiSquareTest {
         return dims;
     }
 
-    public CellTable getCellTable() {
-        return cellTable;
+    /**
+     * @return the counts the tests are calculated from. The data are counted as they were when this test was
+     * constructed.
+     */
+    public DiscreteCounts getCounts() {
+        return counts;
     }
 
     //===============================CLASSES==============================//
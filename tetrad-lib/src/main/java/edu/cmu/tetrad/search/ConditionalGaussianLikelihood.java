@@ -118,13 +118,7 @@ public class ConditionalGaussianLikelihood {
             Node v = dataSet.getVariable(j);
 
             if (v instanceof ContinuousVariable) {
-                double[] col = new double[dataSet.getNumRows()];
-
-                for (int i = 0; i < dataSet.getNumRows(); i++) {
-                    col[i] = dataSet.getDouble(i, j);
-                }
-
-                continuousData[j] = col;
+                continuousData[j] = dataSet.getDoubleColumn(j);
             }
         }
 
@@ -155,13 +149,11 @@ public class ConditionalGaussianLikelihood {
             }
         }
 
-        DataSet replaced = new BoxDataSet(new VerticalIntDataBox(mixedDataSet.getNumRows(), mixedDataSet.getNumColumns()), nodes);
+        int[][] columns = new int[mixedVariables.size()][];
 
         for (int j = 0; j < mixedVariables.size(); j++) {
             if (mixedVariables.get(j) instanceof DiscreteVariable) {
-                for (int i = 0; i < mixedDataSet.getNumRows(); i++) {
-                    replaced.setInt(i, j, mixedDataSet.getInt(i, j));
-                }
+                columns[j] = mixedDataSet.getIntColumn(j);
             } else {
                 double[] column = continuousData[j];
 
@@ -174,14 +166,11 @@ public class ConditionalGaussianLikelihood {
                 }
 
                 Discretization d = discretize(column, breakpoints, mixedVariables.get(j).getName(), categoryNames);
-
-                for (int i = 0; i < mixedDataSet.getNumRows(); i++) {
-                    replaced.setInt(i, j, d.getData()[i]);
-                }
+                columns[j] = d.getData();
             }
         }
 
-        return replaced;
+        return new BoxDataSet(new VerticalIntDataBox(columns), nodes);
     }
 
     /**
@@ -41,6 +41,9 @@ public class DirichletScore implements LocalDiscreteScore, Score {
 
     private double lastBumpThreshold = 0.0;
 
+    // Counts the data for each local score.
+    private DiscreteCounts counts;
+
     public DirichletScore(DataSet dataSet) {
         if (dataSet == null) {
             throw new NullPointerException();
@@ -79,6 +82,8 @@ public class DirichletScore implements LocalDiscreteScore, Score {
         for (int i = 0; i < variables.size(); i++) {
             numCategories[i] = (getVariable(i)).getNumCategories();
         }
+
+        this.counts = new DiscreteCounts(data, numCategories);
     }
 
     private DiscreteVariable getVariable(int i) {
@@ -91,49 +96,18 @@ public class DirichletScore implements LocalDiscreteScore, Score {
         // Number of categories for node.
         int r = numCategories[node];
 
-        // Numbers of categories of parents.
-        int[] dims = new int[parents.length];
-
-        for (int p = 0; p < parents.length; p++) {
-            dims[p] = numCategories[parents[p]];
-        }
-
         // Number of parent states.
-        int q = 1;
+        double q = 1;
 
-        for (int p = 0; p < parents.length; p++) {
-            q *= dims[p];
+        for (int parent : parents) {
+            q *= numCategories[parent];
         }
 
-        // Conditional cell coefs of data for node given parents(node).
-        int n_jk[][] = new int[q][r];
-        int n_j[] = new int[q];
-
-        int[] parentValues = new int[parents.length];
-
-        int[][] myParents = new int[parents.length][];
-        for (int i = 0; i < parents.length; i++) {
-            myParents[i] = data[parents[i]];
-        }
-
-        int[] myChild = data[node];
-
-        for (int i = 0; i < sampleSize; i++) {
-            for (int p = 0; p < parents.length; p++) {
-                parentValues[p] = myParents[p][i];
-            }
-
-            int childValue = myChild[i];
-
-            if (childValue == -99) {
-                throw new IllegalStateException("Please remove or impute missing " +
-                        "values (record " + i + " column " + i + ")");
-            }
-
-            int rowIndex = getRowIndex(dims, parentValues);
+        // Conditional cell coefs of data for node given parents(node), for the parent states that occur.
+        DiscreteCounts.Table counts = this.counts.count(parents, node);
 
-            n_jk[rowIndex][childValue]++;
-            n_j[rowIndex]++;
+        if (counts.getNumMissing() > 0) {
+            throw new IllegalStateException("Please remove or impute missing values.");
         }
 
         //Finally, compute the score
@@ -142,13 +116,13 @@ public class DirichletScore implements LocalDiscreteScore, Score {
         final double cellPrior = getSamplePrior();
         final double rowPrior = r * getSamplePrior();
 
-        for (int j = 0; j < q; j++) {
-            double rowSum = rowPrior + n_j[j];
+        for (int j = 0; j < counts.getNumRows(); j++) {
+            double rowSum = rowPrior + counts.getRowCount(j);
             int cellCount = 0;
             double rowScore = 0;
 
             for (int k = 0; k < r; k++) {
-                double alpha = cellPrior + n_jk[j][k];
+                double alpha = cellPrior + counts.getCount(j, k);
                 double pk = (alpha) / rowSum;
                 if (Double.isInfinite(pk)) continue;
                 double _score = (alpha - 1) * Math.log(pk);
@@ -164,10 +138,21 @@ public class DirichletScore implements LocalDiscreteScore, Score {
 //            score -= .5 * cellCount * Math.log(sampleSize);
         }
 
+        // Every parent state that doesn't occur contributes the same amount, which is zero unless the sample prior
+        // is other than 1.
+        double emptyRows = q - counts.getNumRows();
 
-//        double h = Math.log(1.0 / r) * sampleSize;
+        if (emptyRows > 0) {
+            double pk = cellPrior / rowPrior;
 
-//        System.out.println("(1/r)^N = " + h + " score = " + score);
+            if (!Double.isInfinite(pk)) {
+                double rowScore = r * ((cellPrior - 1) * Math.log(pk));
+
+                if (rowScore != 0) {
+                    score += emptyRows * (rowScore - 2 * r);
+                }
+            }
+        }
 
         lastBumpThreshold = 0.01;//((r - 1) * q * FastMath.log(getStructurePrior()));
 
@@ -305,15 +290,6 @@ public class DirichletScore implements LocalDiscreteScore, Score {
         throw new UnsupportedOperationException();
     }
 
-    private static int getRowIndex(int[] dim, int[] values) {
-        int rowIndex = 0;
-        for (int i = 0; i < dim.length; i++) {
-            rowIndex *= dim[i];
-            rowIndex += values[i];
-        }
-        return rowIndex;
-    }
-
     public double getStructurePrior() {
         return structurePrior;
     }
@@ -24,7 +24,7 @@ package edu.cmu.tetrad.search;
 import edu.cmu.tetrad.data.IKnowledge;
 import edu.cmu.tetrad.data.Knowledge2;
 import edu.cmu.tetrad.graph.*;
-import edu.cmu.tetrad.util.ChoiceGenerator;
+import edu.cmu.tetrad.util.BitChoiceGenerator;
 import edu.cmu.tetrad.util.TetradLogger;
 
 import java.io.PrintStream;
@@ -119,6 +119,9 @@ public class FasStable implements IFas {
 
     private PrintStream out = System.out;
 
+    // Bounds the search, if set.
+    private SearchContext context = null;
+
     //==========================CONSTRUCTORS=============================//
 
     /**
@@ -147,6 +150,12 @@ public class FasStable implements IFas {
      */
     public Graph search() {
         this.logger.log("info", "Starting Fast Adjacency Search.");
+        IndependenceTest test = this.test;
+
+        if (context != null) {
+            context.start();
+            test = context.instrument(test);
+        }
 
         if (graph == null) graph = new EdgeListGraphSingleConnections(test.getVariables());
         graph.removeEdges(graph.getEdges());
@@ -168,6 +177,8 @@ public class FasStable implements IFas {
         }
 
         for (int d = 0; d <= _depth; d++) {
+            if (stopped()) break;
+
             boolean more;
 
             if (d == 0) {
@@ -201,6 +212,12 @@ public class FasStable implements IFas {
 
     public Map<Node, Set<Node>> searchMapOnly() {
         this.logger.log("info", "Starting Fast Adjacency Search.");
+        IndependenceTest test = this.test;
+
+        if (context != null) {
+            context.start();
+            test = context.instrument(test);
+        }
         graph.removeEdges(graph.getEdges());
 
         sepset = new SepsetMap();
@@ -220,6 +237,8 @@ public class FasStable implements IFas {
         }
 
         for (int d = 0; d <= _depth; d++) {
+            if (stopped()) break;
+
             boolean more;
 
             if (d == 0) {
@@ -265,6 +284,8 @@ public class FasStable implements IFas {
     private boolean searchAtDepth0(List<Node> nodes, IndependenceTest test, Map<Node, Set<Node>> adjacencies) {
         List<Node> empty = Collections.emptyList();
         for (int i = 0; i < nodes.size(); i++) {
+            if (stopped()) break;
+
             if (verbose) {
                 if ((i + 1) % 100 == 0) out.println("Node # " + (i + 1));
             }
@@ -350,6 +371,10 @@ public class FasStable implements IFas {
         return max;
     }
 
+    private boolean stopped() {
+        return context != null && context.shouldStop();
+    }
+
     private boolean forbiddenEdge(Node x, Node y) {
         String name1 = x.getName();
         String name2 = y.getName();
@@ -365,7 +390,22 @@ public class FasStable implements IFas {
         return false;
     }
 
+    private static Map<Node, Integer> indexMap(List<Node> variables) {
+        Map<Node, Integer> indexMap = new HashMap<>();
+        for (int i = 0; i < variables.size(); i++) indexMap.put(variables.get(i), i);
+        return indexMap;
+    }
+
+    private static int[] indices(List<Node> nodes, Map<Node, Integer> indexMap) {
+        int[] indices = new int[nodes.size()];
+        int i = 0;
+        for (Node node : nodes) indices[i++] = indexMap.get(node);
+        return indices;
+    }
+
     private boolean searchAtDepth(List<Node> nodes, final IndependenceTest test, Map<Node, Set<Node>> adjacencies, int depth) {
+        // Conditioning sets are enumerated as indices into the test's variables.
+        final Map<Node, Integer> indexMap = indexMap(test.getVariables());
         int count = 0;
 
         final Map<Node, Set<Node>> adjacenciesCopy = new HashMap<>();
@@ -375,6 +415,8 @@ public class FasStable implements IFas {
         }
 
         for (Node x : nodes) {
+            if (stopped()) break;
+
             if (verbose) {
                 if (++count % 100 == 0) out.println("count " + count + " of " + nodes.size());
             }
@@ -388,17 +430,19 @@ public class FasStable implements IFas {
                 List<Node> ppx = possibleParents(x, _adjx, knowledge);
 
                 if (ppx.size() >= depth) {
-                    ChoiceGenerator cg = new ChoiceGenerator(ppx.size(), depth);
-                    int[] choice;
+                    BitChoiceGenerator cg = new BitChoiceGenerator(ppx.size(), depth);
+                    int[] ppxIndices = indices(ppx, indexMap);
+                    int xIndex = indexMap.get(x);
+                    int yIndex = indexMap.get(y);
 
-                    while ((choice = cg.next()) != null) {
-                        List<Node> condSet = GraphUtils.asList(choice, ppx);
+                    while (cg.next()) {
+                        int[] condSet = cg.select(ppxIndices);
 
                         boolean independent;
 
                         try {
                             numIndependenceTests++;
-                            independent = test.isIndependent(x, y, condSet);
+                            independent = test.isIndependent(xIndex, yIndex, condSet);
                         } catch (Exception e) {
                             independent = false;
                         }
@@ -416,12 +460,14 @@ public class FasStable implements IFas {
                             adjacencies.get(x).remove(y);
                             adjacencies.get(y).remove(x);
 
-                            getSepsets().set(x, y, condSet);
+                            List<Node> sepset = GraphUtils.asList(cg.choice(), ppx);
+
+                            getSepsets().set(x, y, sepset);
 
                             if (verbose) {
-                                TetradLogger.getInstance().forceLogMessage(SearchLogUtils.independenceFact(x, y, condSet) + " p = " +
+                                TetradLogger.getInstance().forceLogMessage(SearchLogUtils.independenceFact(x, y, sepset) + " p = " +
                                         nf.format(test.getPValue()));
-                                out.println(SearchLogUtils.independenceFactMsg(x, y, condSet, test.getPValue()));
+                                out.println(SearchLogUtils.independenceFactMsg(x, y, sepset, test.getPValue()));
                             }
 
                             continue EDGE;
@@ -529,5 +575,20 @@ public class FasStable implements IFas {
     public void setOut(PrintStream out) {
         this.out = out;
     }
+
+    /**
+     * Bounds the search by the given context, or removes the bounds if null. A search that is
+     * stopped early returns the adjacencies it had reached, which may include edges that a
+     * finished search would have removed.
+     */
+    @Override
+    public void setContext(SearchContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public SearchContext getContext() {
+        return context;
+    }
 }
 
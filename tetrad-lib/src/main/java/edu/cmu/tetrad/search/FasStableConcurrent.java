@@ -30,9 +30,11 @@ import java.io.PrintStream;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Implements the "fast adjacency search" used in several causal algorithm in this package. In the fast adjacency
@@ -69,7 +71,7 @@ public class FasStableConcurrent implements IFas {
     /**
      * The number of independence tests.
      */
-    private int numIndependenceTests;
+    private final AtomicInteger numIndependenceTests = new AtomicInteger();
 
 
     private TetradLogger logger = TetradLogger.getInstance();
@@ -104,6 +106,12 @@ public class FasStableConcurrent implements IFas {
 
     private boolean recordSepsets = true;
 
+    // Where phases and independence tests are reported, if anywhere.
+    private SearchMetrics metrics = null;
+
+    // Bounds the search, if set.
+    private SearchContext context = null;
+
     //==========================CONSTRUCTORS=============================//
 
     /**
@@ -134,6 +142,27 @@ public class FasStableConcurrent implements IFas {
      * @return a SepSet, which indicates which variables are independent conditional on which other variables
      */
     public Graph search() {
+        IndependenceTest test = this.test;
+
+        if (context != null) {
+            context.start();
+            test = context.instrument(test);
+        }
+
+        if (metrics == null) {
+            return doSearch(test);
+        }
+
+        metrics.startPhase("FasStableConcurrent");
+
+        try {
+            return doSearch(metrics.instrument(test));
+        } finally {
+            metrics.endPhase("FasStableConcurrent");
+        }
+    }
+
+    private Graph doSearch(IndependenceTest test) {
         this.logger.log("info", "Starting Fast Adjacency Search.");
 
         // The search graph. It is assumed going in that all of the true adjacencies of x are in this graph for every node
@@ -156,19 +185,25 @@ public class FasStableConcurrent implements IFas {
         List<Node> nodes = graph.getNodes();
 
         for (Node node : nodes) {
-            adjacencies.put(node, new HashSet<Node>());
+            adjacencies.put(node, Collections.newSetFromMap(new ConcurrentHashMap<Node, Boolean>()));
         }
 
 
         for (int d = 0; d <= _depth; d++) {
+            if (stopped()) break;
+
             boolean more;
 
+            if (metrics != null) metrics.startPhase("depth " + d);
+
             if (d == 0) {
                 more = searchAtDepth0(nodes, test, adjacencies);
             } else {
                 more = searchAtDepth(nodes, test, adjacencies, d);
             }
 
+            if (metrics != null) metrics.endPhase("depth " + d);
+
             if (!more) {
                 break;
             }
@@ -274,6 +309,8 @@ public class FasStableConcurrent implements IFas {
             protected Boolean compute() {
                 if (to - from <= chunk) {
                     for (int i = from; i < to; i++) {
+                        if (stopped()) break;
+
                         if (verbose) {
                             if ((i + 1) % 1000 == 0) System.out.println("i = " + (i + 1));
                         }
@@ -292,16 +329,17 @@ public class FasStableConcurrent implements IFas {
                                 }
                             }
 
-                            boolean independent;
+                            IndependenceResult result;
 
                             try {
-                                independent = test.isIndependent(x, y, empty);
+                                result = test.checkIndependence(x, y, empty);
                             } catch (Exception e) {
                                 e.printStackTrace();
-                                independent = true;
+                                result = new IndependenceResult(true, Double.NaN, Double.NaN, Double.NaN);
                             }
 
-                            numIndependenceTests++;
+                            boolean independent = result.isIndependent();
+                            numIndependenceTests.incrementAndGet();
 
                             boolean noEdgeRequired =
                                     knowledge.noEdgeRequired(x.getName(), y.getName());
@@ -313,9 +351,9 @@ public class FasStableConcurrent implements IFas {
 
                                 if (verbose) {
                                     TetradLogger.getInstance().forceLogMessage(SearchLogUtils.independenceFact(x, y, empty) + " p = " +
-                                            nf.format(test.getPValue()));
+                                            nf.format(result.getPValue()));
                                     out.println(SearchLogUtils.independenceFact(x, y, empty) + " p = " +
-                                            nf.format(test.getPValue()));
+                                            nf.format(result.getPValue()));
                                 }
                             } else if (!forbiddenEdge(x, y)) {
                                 adjacencies.get(x).add(y);
@@ -323,7 +361,7 @@ public class FasStableConcurrent implements IFas {
 
 //                                if (verbose) {
 //                                    TetradLogger.getInstance().log("dependencies", SearchLogUtils.independenceFact(x, y, empty) + " p = " +
-//                                            nf.format(test.getPValue()));
+//                                            nf.format(result.getPValue()));
 //                                }
                             }
                         }
@@ -398,8 +436,23 @@ public class FasStableConcurrent implements IFas {
 //        return false;
 //    }
 
+    private static Map<Node, Integer> indexMap(List<Node> variables) {
+        Map<Node, Integer> indexMap = new HashMap<>();
+        for (int i = 0; i < variables.size(); i++) indexMap.put(variables.get(i), i);
+        return indexMap;
+    }
+
+    private static int[] indices(List<Node> nodes, Map<Node, Integer> indexMap) {
+        int[] indices = new int[nodes.size()];
+        int i = 0;
+        for (Node node : nodes) indices[i++] = indexMap.get(node);
+        return indices;
+    }
+
     private boolean searchAtDepth(final List<Node> nodes, final IndependenceTest test, final Map<Node, Set<Node>> adjacencies,
                                   final int depth) {
+        // Conditioning sets are enumerated as indices into the test's variables.
+        final Map<Node, Integer> indexMap = indexMap(test.getVariables());
 
         if (verbose) {
             out.println("Searching at depth " + depth);
@@ -427,6 +480,8 @@ public class FasStableConcurrent implements IFas {
             protected Boolean compute() {
                 if (to - from <= chunk) {
                     for (int i = from; i < to; i++) {
+                        if (stopped()) break;
+
                         if (verbose) {
                             if ((i + 1) % 1000 == 0) System.out.println("i = " + (i + 1));
                         }
@@ -443,22 +498,25 @@ public class FasStableConcurrent implements IFas {
                             List<Node> ppx = possibleParents(x, _adjx, knowledge);
 
                             if (ppx.size() >= depth) {
-                                ChoiceGenerator cg = new ChoiceGenerator(ppx.size(), depth);
-                                int[] choice;
+                                BitChoiceGenerator cg = new BitChoiceGenerator(ppx.size(), depth);
+                                int[] ppxIndices = indices(ppx, indexMap);
+                                int xIndex = indexMap.get(x);
+                                int yIndex = indexMap.get(y);
 
-                                COND:
-                                while ((choice = cg.next()) != null) {
-                                    List<Node> condSet = GraphUtils.asList(choice, ppx);
+                                while (cg.next()) {
+                                    int[] condSet = cg.select(ppxIndices);
 
-                                    boolean independent;
+                                    IndependenceResult result;
 
                                     try {
-                                        numIndependenceTests++;
-                                        independent = test.isIndependent(x, y, condSet);
+                                        numIndependenceTests.incrementAndGet();
+                                        result = test.checkIndependence(xIndex, yIndex, condSet);
                                     } catch (Exception e) {
-                                        independent = false;
+                                        result = new IndependenceResult(false, Double.NaN, Double.NaN, Double.NaN);
                                     }
 
+                                    boolean independent = result.isIndependent();
+
                                     boolean noEdgeRequired =
                                             knowledge.noEdgeRequired(x.getName(), y.getName());
 
@@ -466,17 +524,19 @@ public class FasStableConcurrent implements IFas {
                                         adjacencies.get(x).remove(y);
                                         adjacencies.get(y).remove(x);
 
+                                        List<Node> sepset = GraphUtils.asList(cg.choice(), ppx);
+
                                         if (recordSepsets) {
-                                            getSepsets().set(x, y, condSet);
+                                            getSepsets().set(x, y, sepset);
                                         }
 
 
                                         if (verbose) {
                                             TetradLogger.getInstance().forceLogMessage(
-                                                    SearchLogUtils.independenceFact(x, y, condSet) + " p = " +
-                                                    nf.format(test.getPValue()));
-                                            out.println(SearchLogUtils.independenceFact(x, y, condSet) + " p = " +
-                                                    nf.format(test.getPValue()));
+                                                    SearchLogUtils.independenceFact(x, y, sepset) + " p = " +
+                                                    nf.format(result.getPValue()));
+                                            out.println(SearchLogUtils.independenceFact(x, y, sepset) + " p = " +
+                                                    nf.format(result.getPValue()));
                                         }
 
                                         continue EDGE;
@@ -532,7 +592,7 @@ public class FasStableConcurrent implements IFas {
     }
 
     public int getNumIndependenceTests() {
-        return numIndependenceTests;
+        return numIndependenceTests.get();
     }
 
     @Override
@@ -577,6 +637,39 @@ public class FasStableConcurrent implements IFas {
         this.verbose = verbose;
     }
 
+    /**
+     * Reports a phase for each depth, and the independence tests done, to the given metrics, or to
+     * none if null.
+     */
+    @Override
+    public void setMetrics(SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public SearchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Bounds the search by the given context, or removes the bounds if null. A search that is
+     * stopped early returns the adjacencies it had reached, which may include edges that a
+     * finished search would have removed.
+     */
+    @Override
+    public void setContext(SearchContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public SearchContext getContext() {
+        return context;
+    }
+
+    private boolean stopped() {
+        return context != null && context.shouldStop();
+    }
+
     @Override
     public int getNumFalseDependenceJudgments() {
         return 0;
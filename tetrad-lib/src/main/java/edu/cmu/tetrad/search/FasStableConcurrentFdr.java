@@ -33,9 +33,11 @@ import java.io.PrintStream;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Implements the "fast adjacency search" used in several causal algorithm in this package. In the fast adjacency
@@ -72,7 +74,7 @@ public class FasStableConcurrentFdr implements IFas {
     /**
      * The number of independence tests.
      */
-    private int numIndependenceTests;
+    private final AtomicInteger numIndependenceTests = new AtomicInteger();
 
 
     private TetradLogger logger = TetradLogger.getInstance();
@@ -159,7 +161,7 @@ public class FasStableConcurrentFdr implements IFas {
         List<Node> nodes = graph.getNodes();
 
         for (Node node : nodes) {
-            adjacencies.put(node, new HashSet<Node>());
+            adjacencies.put(node, Collections.newSetFromMap(new ConcurrentHashMap<Node, Boolean>()));
         }
 
 
@@ -263,7 +265,7 @@ public class FasStableConcurrentFdr implements IFas {
         final List<Node> empty = Collections.emptyList();
         final Map<Double, Edge> scoredEdges = new ConcurrentSkipListMap<>();
 
-        final List<Double> sorted = new ArrayList<>();
+        final List<Double> sorted = Collections.synchronizedList(new ArrayList<Double>());
 
         class Depth0Task extends RecursiveTask<Boolean> {
             private int chunk;
@@ -298,15 +300,15 @@ public class FasStableConcurrentFdr implements IFas {
                                 }
                             }
 
+                            double pValue = Double.NaN;
+
                             try {
-                                test.isIndependent(x, y, empty);
+                                pValue = test.checkIndependence(x, y, empty).getPValue();
                             } catch (Exception e) {
                                 e.printStackTrace();
                             }
 
-                            numIndependenceTests++;
-
-                            final double pValue = test.getPValue();
+                            numIndependenceTests.incrementAndGet();
 
                             sorted.add(pValue);
                         }
@@ -365,18 +367,20 @@ public class FasStableConcurrentFdr implements IFas {
                                 }
                             }
 
+                            double pValue = Double.NaN;
+
                             try {
-                                test.isIndependent(x, y, empty);
+                                pValue = test.checkIndependence(x, y, empty).getPValue();
                             } catch (Exception e) {
                                 e.printStackTrace();
                             }
 
-                            numIndependenceTests++;
+                            numIndependenceTests.incrementAndGet();
 
                             boolean noEdgeRequired =
                                     knowledge.noEdgeRequired(x.getName(), y.getName());
 
-                            if (test.getPValue() > cutoff && noEdgeRequired) {
+                            if (pValue > cutoff && noEdgeRequired) {
                                 if (recordSepsets && !sepsets.isReturnEmptyIfNotSet()) {
                                     getSepsets().set(x, y, empty);
                                 }
@@ -386,7 +390,7 @@ public class FasStableConcurrentFdr implements IFas {
 
                                 if (verbose) {
                                     TetradLogger.getInstance().log("dependencies", SearchLogUtils.independenceFact(x, y, empty) + " p = " +
-                                            nf.format(test.getPValue()));
+                                            nf.format(pValue));
                                 }
                             }
                         }
@@ -476,7 +480,7 @@ public class FasStableConcurrentFdr implements IFas {
             adjacenciesCopy.put(node, new HashSet<>(adjacencies.get(node)));
         }
 
-        final List<Double> sorted = new ArrayList<>();
+        final List<Double> sorted = Collections.synchronizedList(new ArrayList<Double>());
 
         class DepthTask extends RecursiveTask<Boolean> {
             private int chunk;
@@ -518,20 +522,20 @@ public class FasStableConcurrentFdr implements IFas {
                                 while ((choice = cg.next()) != null) {
                                     List<Node> condSet = GraphUtils.asList(choice, ppx);
 
-                                    boolean independent;
+                                    IndependenceResult result;
 
                                     try {
-                                        numIndependenceTests++;
-                                        independent = test.isIndependent(x, y, condSet);
+                                        numIndependenceTests.incrementAndGet();
+                                        result = test.checkIndependence(x, y, condSet);
                                     } catch (Exception e) {
-                                        independent = false;
+                                        result = new IndependenceResult(false, Double.NaN, Double.NaN, Double.NaN);
                                     }
 
                                     boolean noEdgeRequired =
                                             knowledge.noEdgeRequired(x.getName(), y.getName());
 
-                                    if (independent && noEdgeRequired) {
-                                        sorted.add(test.getPValue());
+                                    if (result.isIndependent() && noEdgeRequired) {
+                                        sorted.add(result.getPValue());
                                         continue EDGE;
                                     }
                                 }
@@ -599,10 +603,10 @@ public class FasStableConcurrentFdr implements IFas {
                                     List<Node> condSet = GraphUtils.asList(choice, ppx);
 
                                     try {
-                                        numIndependenceTests++;
-                                        test.isIndependent(x, y, condSet);
+                                        numIndependenceTests.incrementAndGet();
+                                        double pValue = test.checkIndependence(x, y, condSet).getPValue();
 
-                                        if (test.getPValue() > cutoff) {
+                                        if (pValue > cutoff) {
                                             adjacencies.get(x).remove(y);
                                             adjacencies.get(y).remove(x);
 
@@ -666,7 +670,7 @@ public class FasStableConcurrentFdr implements IFas {
     }
 
     public int getNumIndependenceTests() {
-        return numIndependenceTests;
+        return numIndependenceTests.get();
     }
 
     @Override
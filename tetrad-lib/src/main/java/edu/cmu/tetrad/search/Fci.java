@@ -84,6 +84,12 @@ public final class Fci implements GraphSearch {
      */
     private boolean possibleDsepSearchDone = true;
 
+    /**
+     * True iff the possible dsep search tests all edges in parallel against the graph as it was
+     * when the search began.
+     */
+    private boolean possibleDsepConcurrent = false;
+
     /**
      * The maximum length for any discriminating path. -1 if unlimited; otherwise, a positive integer.
      */
@@ -108,6 +114,16 @@ public final class Fci implements GraphSearch {
      * True iff verbose output should be printed.
      */
     private boolean verbose = false;
+
+    /**
+     * Where phases and independence tests are reported, if anywhere.
+     */
+    private SearchMetrics metrics = null;
+
+    /**
+     * Bounds the search, if set.
+     */
+    private SearchContext context = null;
     private Graph truePag;
     private ConcurrentMap<Node, Integer> hashIndices;
     private ICovarianceMatrix covarianceMatrix;
@@ -179,7 +195,10 @@ public final class Fci implements GraphSearch {
     }
 
     public Graph search() {
-        return search(new Fas(initialGraph, getIndependenceTest()));
+        IndependenceTest test = getIndependenceTest();
+        if (context != null) test = context.instrument(test);
+        if (metrics != null) test = metrics.instrument(test);
+        return search(new Fas(initialGraph, test));
     }
 
     public void setInitialGraph(Graph initialGraph) {
@@ -187,38 +206,81 @@ public final class Fci implements GraphSearch {
     }
 
     public Graph search(IFas fas) {
+        IndependenceTest test = independenceTest;
+
+        if (context != null) {
+            context.start();
+            fas.setContext(context);
+            test = context.instrument(test);
+        }
+
+        if (metrics == null) {
+            return search(fas, test);
+        }
+
+        metrics.startPhase("Fci");
+
+        try {
+            fas.setMetrics(metrics);
+            return search(fas, metrics.instrument(test));
+        } finally {
+            metrics.endPhase("Fci");
+        }
+    }
+
+    private Graph search(IFas fas, IndependenceTest independenceTest) {
         logger.log("info", "Starting FCI algorithm.");
         logger.log("info", "Independence test = " + getIndependenceTest() + ".");
 
         fas.setKnowledge(getKnowledge());
         fas.setDepth(depth);
         fas.setVerbose(verbose);
+        startPhase("adjacencies");
         this.graph = fas.search();
+        endPhase("adjacencies");
         this.sepsets = fas.getSepsets();
 
         graph.reorientAllWith(Endpoint.CIRCLE);
 
+        if (stopped()) {
+            graph.setPag(true);
+            return graph;
+        }
+
         SepsetProducer sp = new SepsetsPossibleDsep(graph, independenceTest, knowledge, depth, maxPathLength);
         sp.setVerbose(verbose);
 
         // The original FCI, with or without JiJi Zhang's orientation rules
         //        // Optional step: Possible Dsep. (Needed for correctness but very time consuming.)
         if (isPossibleDsepSearchDone()) {
+            startPhase("possible dsep");
 //            long time1 = System.currentTimeMillis();
             new FciOrient(new SepsetsSet(this.sepsets, independenceTest)).ruleR0(graph);
 
-            for (Edge edge : new ArrayList<>(graph.getEdges())) {
-                Node x = edge.getNode1();
-                Node y = edge.getNode2();
-
-                List<Node> sepset = sp.getSepset(x, y);
-
-                if (sepset != null) {
-                    graph.removeEdge(x, y);
-                    sepsets.set(x, y, sepset);
-
-                    if (verbose) {
-                        System.out.println("Possible DSEP Removed " + x + "--- " + y + " sepset = " + sepset);
+            if (possibleDsepConcurrent) {
+                PossibleDsepConcurrent possibleDsep = new PossibleDsepConcurrent(graph, independenceTest);
+                possibleDsep.setKnowledge(knowledge);
+                possibleDsep.setDepth(depth);
+                possibleDsep.setMaxPathLength(maxPathLength);
+                possibleDsep.setVerbose(verbose);
+                possibleDsep.setContext(context);
+                sepsets.addAll(possibleDsep.search());
+            } else {
+                for (Edge edge : new ArrayList<>(graph.getEdges())) {
+                    if (stopped()) break;
+
+                    Node x = edge.getNode1();
+                    Node y = edge.getNode2();
+
+                    List<Node> sepset = sp.getSepset(x, y);
+
+                    if (sepset != null) {
+                        graph.removeEdge(x, y);
+                        sepsets.set(x, y, sepset);
+
+                        if (verbose) {
+                            System.out.println("Possible DSEP Removed " + x + "--- " + y + " sepset = " + sepset);
+                        }
                     }
                 }
             }
@@ -242,6 +304,12 @@ public final class Fci implements GraphSearch {
 
             // Reorient all edges as o-o.
             graph.reorientAllWith(Endpoint.CIRCLE);
+            endPhase("possible dsep");
+
+            if (stopped()) {
+                graph.setPag(true);
+                return graph;
+            }
         }
 
         // Step CI C (Zhang's step F3.)
@@ -253,6 +321,7 @@ public final class Fci implements GraphSearch {
         long time6 = System.currentTimeMillis();
         logger.log("info", "Step CI C: " + (time6 - time5) / 1000. + "s");
 
+        startPhase("orientation");
         final FciOrient fciOrient = new FciOrient(new SepsetsSet(this.sepsets, independenceTest));
 
         fciOrient.setCompleteRuleSetUsed(completeRuleSetUsed);
@@ -260,6 +329,7 @@ public final class Fci implements GraphSearch {
         fciOrient.setKnowledge(knowledge);
         fciOrient.ruleR0(graph);
         fciOrient.doFinalOrientation(graph);
+        endPhase("orientation");
         graph.setPag(true);
         return graph;
     }
@@ -304,6 +374,21 @@ public final class Fci implements GraphSearch {
         this.possibleDsepSearchDone = possibleDsepSearchDone;
     }
 
+    public boolean isPossibleDsepConcurrent() {
+        return possibleDsepConcurrent;
+    }
+
+    /**
+     * @param possibleDsepConcurrent True if the possible dsep search should test all edges in
+     *                               parallel, against the graph as it was when the search began,
+     *                               so that the result does not depend on the order of the edges.
+     *                               See PossibleDsepConcurrent. The independence test must then be
+     *                               thread safe.
+     */
+    public void setPossibleDsepConcurrent(boolean possibleDsepConcurrent) {
+        this.possibleDsepConcurrent = possibleDsepConcurrent;
+    }
+
     /**
      * @return the maximum length of any discriminating path, or -1 of unlimited.
      */
@@ -333,6 +418,35 @@ public final class Fci implements GraphSearch {
         this.verbose = verbose;
     }
 
+    /**
+     * Reports phases (adjacencies, possible dsep, orientation) and independence tests to the given
+     * metrics, or to none if null. The metrics are passed on to the adjacency search.
+     */
+    @Override
+    public void setMetrics(SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public SearchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Bounds the search by the given context, or removes the bounds if null. The context is passed
+     * on to the adjacency search. A search that is stopped early skips the remaining steps and
+     * returns the adjacencies it had reached with circle endpoints.
+     */
+    @Override
+    public void setContext(SearchContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public SearchContext getContext() {
+        return context;
+    }
+
     /**
      * The independence test.
      */
@@ -421,6 +535,18 @@ public final class Fci implements GraphSearch {
     public void setPossibleDsepDepth(int possibleDsepDepth) {
         this.possibleDsepDepth = possibleDsepDepth;
     }
+
+    private void startPhase(String phase) {
+        if (metrics != null) metrics.startPhase(phase);
+    }
+
+    private void endPhase(String phase) {
+        if (metrics != null) metrics.endPhase(phase);
+    }
+
+    private boolean stopped() {
+        return context != null && context.shouldStop();
+    }
 }
 
 
@@ -93,6 +93,12 @@ public final class FciOrient {
     private Graph dag;
     private boolean skipDiscriminatingPathRule;
 
+    /**
+     * The changes made since incremental orientation started, or null if every rule is to look at
+     * the whole graph.
+     */
+    private Changes changes = null;
+
     //============================CONSTRUCTORS============================//
     /**
      * Constructs a new FCI search for the given independence test and
@@ -217,8 +223,8 @@ public final class FciOrient {
                         continue;
                     }
 
-                    graph.setEndpoint(a, b, Endpoint.ARROW);
-                    graph.setEndpoint(c, b, Endpoint.ARROW);
+                    setEndpoint(a, b, Endpoint.ARROW, graph);
+                    setEndpoint(c, b, Endpoint.ARROW, graph);
                     if (verbose) {
                         logger.log("colliderOrientations", SearchLogUtils.colliderOrientedMsg(a, b, c));
                         out.println(SearchLogUtils.colliderOrientedMsg(a, b, c));
@@ -243,13 +249,37 @@ public final class FciOrient {
      * Zhang's step F4, rules R1-R10.
      */
     public void doFinalOrientation(Graph graph) {
-        if (completeRuleSetUsed) {
-            zhangFinalOrientation(graph);
-        } else {
-            spirtesFinalOrientation(graph);
+        startIncremental(graph);
+
+        try {
+            if (completeRuleSetUsed) {
+                zhangFinalOrientation(graph);
+            } else {
+                spirtesFinalOrientation(graph);
+            }
+        } finally {
+            stopIncremental();
         }
     }
 
+    /**
+     * Starts orienting the given graph incrementally. Until stopIncremental() is called, R1-R3 and
+     * R6-R7 visit only nodes near an edge changed since they last visited them, and R4 only
+     * repeats discriminating path searches that could now come out differently. The orientation
+     * is the same as with full sweeps; the graph must not be changed other than by this class in
+     * the meantime.
+     */
+    void startIncremental(Graph graph) {
+        changes = new Changes(graph.getNodes());
+    }
+
+    /**
+     * Goes back to applying every rule to the whole graph.
+     */
+    void stopIncremental() {
+        changes = null;
+    }
+
     private void spirtesFinalOrientation(Graph graph) {
         changeFlag = true;
         boolean firstTime = true;
@@ -322,6 +352,10 @@ public final class FciOrient {
         List<Node> nodes = graph.getNodes();
 
         for (Node B : nodes) {
+            if (changes != null && !changes.r1r2.remove(B)) {
+                continue;
+            }
+
             List<Node> adj = graph.getAdjacentNodes(B);
 
             if (adj.size() < 2) {
@@ -356,8 +390,8 @@ public final class FciOrient {
                 return;
             }
 
-            graph.setEndpoint(c, b, Endpoint.TAIL);
-            graph.setEndpoint(b, c, Endpoint.ARROW);
+            setEndpoint(c, b, Endpoint.TAIL, graph);
+            setEndpoint(b, c, Endpoint.ARROW, graph);
             changeFlag = true;
 
             if (verbose) {
@@ -385,7 +419,7 @@ public final class FciOrient {
                     return;
                 }
 
-                graph.setEndpoint(a, c, Endpoint.ARROW);
+                setEndpoint(a, c, Endpoint.ARROW, graph);
 
                 if (verbose) {
                     logger.log("impliedOrientations", SearchLogUtils.edgeOrientedMsg("Away from ancestor", graph.getEdge(a, c)));
@@ -442,6 +476,9 @@ public final class FciOrient {
         List<Node> nodes = graph.getNodes();
 
         for (Node B : nodes) {
+            if (changes != null && !changes.r3.remove(B)) {
+                continue;
+            }
 
             List<Node> intoBArrows = graph.getNodesInTo(B, Endpoint.ARROW);
             List<Node> intoBCircles = graph.getNodesInTo(B, Endpoint.CIRCLE);
@@ -483,7 +520,7 @@ public final class FciOrient {
                         continue;
                     }
 
-                    graph.setEndpoint(D, B, Endpoint.ARROW);
+                    setEndpoint(D, B, Endpoint.ARROW, graph);
 
                     if (verbose) {
                         logger.log("impliedOrientations", SearchLogUtils.edgeOrientedMsg("Double triangle", graph.getEdge(D, B)));
@@ -638,7 +675,7 @@ public final class FciOrient {
         }
 
         if (sepset.contains(b)) {
-            graph.setEndpoint(c, b, Endpoint.TAIL);
+            setEndpoint(c, b, Endpoint.TAIL, graph);
 
             if (verbose) {
                 logger.log("impliedOrientations", SearchLogUtils.edgeOrientedMsg("Definite discriminating path d = " + d, graph.getEdge(b, c)));
@@ -655,8 +692,8 @@ public final class FciOrient {
                 return;
             }
 
-            graph.setEndpoint(a, b, Endpoint.ARROW);
-            graph.setEndpoint(c, b, Endpoint.ARROW);
+            setEndpoint(a, b, Endpoint.ARROW, graph);
+            setEndpoint(c, b, Endpoint.ARROW, graph);
             logger.log("colliderOrientations", SearchLogUtils.colliderOrientedMsg("Definite discriminating path.. d = " + d, a, b, c));
             changeFlag = true;
         }
@@ -700,7 +737,27 @@ public final class FciOrient {
                         continue;
                     }
 
-                    ddpOrient(a, b, c, graph);
+                    if (changes == null) {
+                        ddpOrient(a, b, c, graph);
+                        continue;
+                    }
+
+                    // A search that oriented nothing will orient nothing again unless an edge
+                    // touching one of the nodes it visited has changed since.
+                    List<Node> triple = Arrays.asList(a, b, c);
+                    DdpSearch last = changes.ddpSearches.get(triple);
+
+                    if (last != null && !changes.changedSince(last.visited, last.numChanges)) {
+                        continue;
+                    }
+
+                    long numChanges = changes.numChanges;
+                    Set<Node> visited = new HashSet<>();
+
+                    if (!ddpOrient(a, b, c, graph, visited)) {
+                        visited.add(c);
+                        changes.ddpSearches.put(triple, new DdpSearch(visited, numChanges));
+                    }
                 }
             }
         }
@@ -713,8 +770,12 @@ public final class FciOrient {
      * The body of a DDP consists of colliders that are parents of c.
      */
     public void ddpOrient(Node a, Node b, Node c, Graph graph) {
+        ddpOrient(a, b, c, graph, new HashSet<Node>());
+    }
+
+    // Does the search, adding the nodes visited to V, and returns true if it oriented anything.
+    private boolean ddpOrient(Node a, Node b, Node c, Graph graph, Set<Node> V) {
         Queue<Node> Q = new ArrayDeque<Node>();
-        Set<Node> V = new HashSet<Node>();
 
         Node e = null;
         int distance = 0;
@@ -735,7 +796,7 @@ public final class FciOrient {
                 e = t;
                 distance++;
                 if (distance > 0 && distance > (maxPathLength == -1 ? 1000 : maxPathLength)) {
-                    return;
+                    return false;
                 }
             }
 
@@ -757,7 +818,7 @@ public final class FciOrient {
 
                 if (!graph.isAdjacentTo(d, c)) {
                     if (doDdpOrientation(d, a, b, c, previous, graph)) {
-                        return;
+                        return true;
                     }
                 }
 
@@ -767,6 +828,8 @@ public final class FciOrient {
                 }
             }
         }
+
+        return false;
     }
 
     /**
@@ -776,7 +839,7 @@ public final class FciOrient {
     private boolean doDdpOrientation(Node d, Node a, Node b, Node c, Map<Node, Node> previous, Graph graph) {
         if (dag != null) {
             if (dag.isAncestorOf(b, c)) {
-                graph.setEndpoint(c, b, Endpoint.TAIL);
+                setEndpoint(c, b, Endpoint.TAIL, graph);
                 changeFlag = true;
             } else {
                 if (!isArrowpointAllowed(a, b, graph)) {
@@ -787,8 +850,8 @@ public final class FciOrient {
                     return false;
                 }
 
-                graph.setEndpoint(a, b, Endpoint.ARROW);
-                graph.setEndpoint(c, b, Endpoint.ARROW);
+                setEndpoint(a, b, Endpoint.ARROW, graph);
+                setEndpoint(c, b, Endpoint.ARROW, graph);
                 changeFlag = true;
             }
 
@@ -829,7 +892,7 @@ public final class FciOrient {
 //        printDdp(d, path, a, b, c, graph);
         if (ind) {
 //            if (sepset.contains(b)) {
-            graph.setEndpoint(c, b, Endpoint.TAIL);
+            setEndpoint(c, b, Endpoint.TAIL, graph);
 
             if (verbose) {
                 logger.log("impliedOrientations", SearchLogUtils.edgeOrientedMsg("Definite discriminating path d = " + d, graph.getEdge(b, c)));
@@ -847,8 +910,8 @@ public final class FciOrient {
                 return false;
             }
 
-            graph.setEndpoint(a, b, Endpoint.ARROW);
-            graph.setEndpoint(c, b, Endpoint.ARROW);
+            setEndpoint(a, b, Endpoint.ARROW, graph);
+            setEndpoint(c, b, Endpoint.ARROW, graph);
 
             if (verbose) {
                 logger.log("impliedOrientations", SearchLogUtils.colliderOrientedMsg("Definite discriminating path.. d = " + d, a, b, c));
@@ -927,8 +990,8 @@ public final class FciOrient {
 
                     logger.log("colliderOrientations", SearchLogUtils.edgeOrientedMsg("Orient circle path", graph.getEdge(a, b)));
 
-                    graph.setEndpoint(a, b, Endpoint.TAIL);
-                    graph.setEndpoint(b, a, Endpoint.TAIL);
+                    setEndpoint(a, b, Endpoint.TAIL, graph);
+                    setEndpoint(b, a, Endpoint.TAIL, graph);
                     orientTailPath(u, graph);
                     changeFlag = true;
                 }
@@ -945,6 +1008,10 @@ public final class FciOrient {
         List<Node> nodes = graph.getNodes();
 
         for (Node b : nodes) {
+            if (changes != null && !changes.r6r7.remove(b)) {
+                continue;
+            }
+
             List<Node> adjacents = graph.getAdjacentNodes(b);
 
             if (adjacents.size() < 2) {
@@ -972,7 +1039,7 @@ public final class FciOrient {
                 if (graph.getEndpoint(a, b) == Endpoint.TAIL) {
 
                     // We know A---Bo-*C: R6 applies!
-                    graph.setEndpoint(c, b, Endpoint.TAIL);
+                    setEndpoint(c, b, Endpoint.TAIL, graph);
 
                     logger.log("impliedOrientations", SearchLogUtils.edgeOrientedMsg("Single tails (tail)", graph.getEdge(c, b)));
 
@@ -985,7 +1052,7 @@ public final class FciOrient {
                     logger.log("impliedOrientations", SearchLogUtils.edgeOrientedMsg("Single tails (tail)", graph.getEdge(c, b)));
 
                     // We know A--oBo-*C and A,C nonadjacent: R7 applies!
-                    graph.setEndpoint(c, b, Endpoint.TAIL);
+                    setEndpoint(c, b, Endpoint.TAIL, graph);
                     changeFlag = true;
                 }
 
@@ -1036,8 +1103,8 @@ public final class FciOrient {
             Node n1 = path.get(i);
             Node n2 = path.get(i + 1);
 
-            graph.setEndpoint(n1, n2, Endpoint.TAIL);
-            graph.setEndpoint(n2, n1, Endpoint.TAIL);
+            setEndpoint(n1, n2, Endpoint.TAIL, graph);
+            setEndpoint(n2, n1, Endpoint.TAIL, graph);
             changeFlag = true;
 
             logger.log("impliedOrientations", SearchLogUtils.edgeOrientedMsg("Orient circle undirectedPaths", graph.getEdge(n1, n2)));
@@ -1194,7 +1261,7 @@ public final class FciOrient {
 
             logger.log("impliedOrientations", SearchLogUtils.edgeOrientedMsg("R8", graph.getEdge(c, a)));
 
-            graph.setEndpoint(c, a, Endpoint.TAIL);
+            setEndpoint(c, a, Endpoint.TAIL, graph);
             changeFlag = true;
             return true;
         }
@@ -1230,7 +1297,7 @@ public final class FciOrient {
 
             logger.log("impliedOrientations", SearchLogUtils.edgeOrientedMsg("R9", graph.getEdge(c, a)));
 
-            graph.setEndpoint(c, a, Endpoint.TAIL);
+            setEndpoint(c, a, Endpoint.TAIL, graph);
             changeFlag = true;
             return true;
         }
@@ -1292,7 +1359,7 @@ public final class FciOrient {
 
                         logger.log("impliedOrientations", SearchLogUtils.edgeOrientedMsg("R10", graph.getEdge(c, a)));
 
-                        graph.setEndpoint(c, a, Endpoint.TAIL);
+                        setEndpoint(c, a, Endpoint.TAIL, graph);
                         changeFlag = true;
                         return true;
                     }
@@ -1326,8 +1393,8 @@ public final class FciOrient {
             }
 
             // Orient to*->from
-            graph.setEndpoint(to, from, Endpoint.ARROW);
-            graph.setEndpoint(from, to, Endpoint.CIRCLE);
+            setEndpoint(to, from, Endpoint.ARROW, graph);
+            setEndpoint(from, to, Endpoint.CIRCLE, graph);
             changeFlag = true;
             logger.log("knowledgeOrientation", SearchLogUtils.edgeOrientedMsg("Knowledge", graph.getEdge(from, to)));
         }
@@ -1348,8 +1415,8 @@ public final class FciOrient {
                 continue;
             }
 
-            graph.setEndpoint(to, from, Endpoint.TAIL);
-            graph.setEndpoint(from, to, Endpoint.ARROW);
+            setEndpoint(to, from, Endpoint.TAIL, graph);
+            setEndpoint(from, to, Endpoint.ARROW, graph);
             changeFlag = true;
             logger.log("knowledgeOrientation", SearchLogUtils.edgeOrientedMsg("Knowledge", graph.getEdge(from, to)));
         }
@@ -1357,6 +1424,83 @@ public final class FciOrient {
         logger.log("info", "Finishing BK Orientation.");
     }
 
+    /**
+     * Sets the endpoint of x--y at y, noting the change if orienting incrementally.
+     */
+    private void setEndpoint(Node x, Node y, Endpoint endpoint, Graph graph) {
+        if (changes != null && graph.getEndpoint(x, y) != endpoint) {
+            changes.changed(x, y, graph);
+        }
+
+        graph.setEndpoint(x, y, endpoint);
+    }
+
+    /**
+     * The changes made to a graph while orienting it incrementally.
+     */
+    private static class Changes {
+
+        // The nodes R1-R2, R3 and R6-R7 have yet to visit since the edges among them and their
+        // neighbors last changed.
+        private final Set<Node> r1r2;
+        private final Set<Node> r3;
+        private final Set<Node> r6r7;
+
+        // The number of changes made, and for each node the number made as of the last change to
+        // an edge touching it.
+        private long numChanges = 0;
+        private final Map<Node, Long> lastChanged = new HashMap<>();
+
+        // Discriminating path searches, by <a, b, c>, that oriented nothing.
+        private final Map<List<Node>, DdpSearch> ddpSearches = new HashMap<>();
+
+        private Changes(List<Node> nodes) {
+            r1r2 = new HashSet<>(nodes);
+            r3 = new HashSet<>(nodes);
+            r6r7 = new HashSet<>(nodes);
+        }
+
+        // The rules centered on x, on y, or on a node adjacent to both may now apply.
+        private void changed(Node x, Node y, Graph graph) {
+            numChanges++;
+            lastChanged.put(x, numChanges);
+            lastChanged.put(y, numChanges);
+
+            List<Node> around = new ArrayList<>(graph.getAdjacentNodes(x));
+            around.retainAll(graph.getAdjacentNodes(y));
+            around.add(x);
+            around.add(y);
+
+            r1r2.addAll(around);
+            r3.addAll(around);
+            r6r7.addAll(around);
+        }
+
+        // True if an edge touching one of the nodes has changed since the given number of changes.
+        private boolean changedSince(Set<Node> nodes, long numChanges) {
+            for (Node node : nodes) {
+                Long last = lastChanged.get(node);
+                if (last != null && last > numChanges) return true;
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * A discriminating path search that oriented nothing, with the nodes it visited and the
+     * number of changes made when it was done.
+     */
+    private static class DdpSearch {
+        private final Set<Node> visited;
+        private final long numChanges;
+
+        private DdpSearch(Set<Node> visited, long numChanges) {
+            this.visited = visited;
+            this.numChanges = numChanges;
+        }
+    }
+
     /**
      * Helper method. Appears to check if an arrowpoint is permitted by
      * background knowledge.
@@ -33,6 +33,7 @@ import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.LongSupplier;
 
 
 /**
@@ -122,6 +123,12 @@ public final class Fges implements GraphSearch, GraphScorer {
      */
     private boolean verbose = false;
 
+    // Where phases, score evaluations and queue sizes are reported, if anywhere.
+    private SearchMetrics metrics = null;
+
+    // Bounds on the search, if any.
+    private SearchContext context = null;
+
     // Potential arrows sorted by bump high to low. The first one is a candidate for adding to the graph.
     private SortedSet<Arrow> sortedArrows = null;
 
@@ -190,7 +197,7 @@ public final class Fges implements GraphSearch, GraphScorer {
     public Fges(Score score) {
         if (score == null) throw new NullPointerException();
         setScore(score);
-        this.graph = new EdgeListGraphSingleConnections(getVariables());
+        this.graph = new EdgeListGraphIndexed(getVariables());
     }
 
     //==========================PUBLIC METHODS==========================//
@@ -216,11 +223,98 @@ public final class Fges implements GraphSearch, GraphScorer {
      * @return the resulting Pattern.
      */
     public Graph search() {
+        if (metrics == null && context == null) {
+            return doSearch();
+        }
+
+        // The score is swapped for a counting one for the duration of the search.
+        Score score = this.score;
+
+        if (context != null) {
+            context.start();
+            this.score = context.instrument(this.score);
+        }
+
+        if (metrics != null) {
+            this.score = metrics.instrument(this.score);
+
+            metrics.setGauge("sortedArrows", new LongSupplier() {
+                public long getAsLong() {
+                    SortedSet<Arrow> arrows = sortedArrows;
+                    return arrows == null ? 0 : arrows.size();
+                }
+            });
+
+            metrics.startPhase("Fges");
+        }
+
+        try {
+            return doSearch();
+        } finally {
+            if (metrics != null) {
+                metrics.endPhase("Fges");
+                metrics.removeGauge("sortedArrows");
+            }
+
+            this.score = score;
+        }
+    }
+
+    /**
+     * Searches once for each of the given penalty discounts and returns the patterns found, in the same
+     * order. The score must be a PenalizedScore (e.g. SemBicScore or BicScore). It is wrapped in a
+     * PenaltyPathScore for the duration, so that the fit of each (node, parents) is computed once and
+     * shared by all of the searches, and each search starts from the pattern found for the next larger
+     * penalty discount, so that it mostly adds edges to it. Tuning over a grid of penalty discounts then
+     * costs not much more than the search for the smallest. Since the searches are warm started, a
+     * pattern may differ slightly from the one search() would find for the same penalty discount.
+     * <p>
+     * If a context is set and stops the search, the patterns not reached are null.
+     */
+    public List<Graph> searchPath(double[] penaltyDiscounts) {
+        if (!(score instanceof PenalizedScore)) {
+            throw new IllegalArgumentException("A penalty path needs a PenalizedScore: " + score);
+        }
+
+        // From largest to smallest penalty discount, i.e. from sparsest to densest pattern.
+        Integer[] order = new Integer[penaltyDiscounts.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer i, Integer j) {
+                return Double.compare(penaltyDiscounts[j], penaltyDiscounts[i]);
+            }
+        });
+
+        List<Graph> patterns = new ArrayList<>(Collections.<Graph>nCopies(penaltyDiscounts.length, null));
+        PenaltyPathScore pathScore = new PenaltyPathScore((PenalizedScore) score);
+
+        Score score = this.score;
+        Graph initialGraph = this.initialGraph;
+        this.score = pathScore;
+
+        try {
+            for (int i : order) {
+                pathScore.setPenaltyDiscount(penaltyDiscounts[i]);
+                Graph pattern = search();
+                patterns.set(i, pattern);
+                if (stopped()) break;
+                this.initialGraph = pattern;
+            }
+        } finally {
+            this.score = score;
+            this.initialGraph = initialGraph;
+        }
+
+        return patterns;
+    }
+
+    private Graph doSearch() {
         topGraphs.clear();
 
         lookupArrows = new ConcurrentHashMap<>();
         final List<Node> nodes = new ArrayList<>(variables);
-        graph = new EdgeListGraphSingleConnections(nodes);
+        graph = new EdgeListGraphIndexed(nodes);
 
         if (adjacencies != null) {
             adjacencies = GraphUtils.replaceNodes(adjacencies, nodes);
@@ -234,29 +328,41 @@ public final class Fges implements GraphSearch, GraphScorer {
         addRequiredEdges(graph);
 
         if (faithfulnessAssumed) {
+            startPhase("initialize");
             initializeForwardEdgesFromEmptyGraph(getVariables());
+            endPhase("initialize");
 
             // Do forward search.
             this.mode = Mode.heuristicSpeedup;
             fes();
             bes();
 
-            this.mode = Mode.coverNoncolliders;
-            initializeTwoStepEdges(getVariables());
-            fes();
-            bes();
+            if (!stopped()) {
+                this.mode = Mode.coverNoncolliders;
+                startPhase("initialize");
+                initializeTwoStepEdges(getVariables());
+                endPhase("initialize");
+                fes();
+                bes();
+            }
         } else {
+            startPhase("initialize");
             initializeForwardEdgesFromEmptyGraph(getVariables());
+            endPhase("initialize");
 
             // Do forward search.
             this.mode = Mode.heuristicSpeedup;
             fes();
             bes();
 
-            this.mode = Mode.allowUnfaithfulness;
-            initializeForwardEdgesFromExistingGraph(getVariables());
-            fes();
-            bes();
+            if (!stopped()) {
+                this.mode = Mode.allowUnfaithfulness;
+                startPhase("initialize");
+                initializeForwardEdgesFromExistingGraph(getVariables());
+                endPhase("initialize");
+                fes();
+                bes();
+            }
         }
 
         long start = System.currentTimeMillis();
@@ -269,6 +375,11 @@ public final class Fges implements GraphSearch, GraphScorer {
             this.logger.log("graph", "\nReturning this graph: " + graph);
 
             this.logger.log("info", "Elapsed time = " + (elapsedTime) / 1000. + " s");
+
+            if (score instanceof CachingScore) {
+                this.logger.log("info", score.toString());
+            }
+
             this.logger.flush();
         }
 
@@ -373,6 +484,34 @@ public final class Fges implements GraphSearch, GraphScorer {
         this.verbose = verbose;
     }
 
+    /**
+     * Reports phases (initialize, fes, bes), score evaluations and the size of the arrow queue to
+     * the given metrics, or to none if null.
+     */
+    @Override
+    public void setMetrics(SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public SearchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Bounds the search by the given context, or removes the bounds if null. A search that is
+     * stopped early returns the pattern it had reached, which is partial.
+     */
+    @Override
+    public void setContext(SearchContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public SearchContext getContext() {
+        return context;
+    }
+
     /**
      * Sets the output stream that output (except for log output) should be sent to.
      * By detault System.out.
@@ -547,6 +686,8 @@ public final class Fges implements GraphSearch, GraphScorer {
         @Override
         protected Boolean compute() {
             for (int i = from; i < to; i++) {
+                if (stopped()) return false;
+
                 if ((i + 1) % 1000 == 0) {
                     count[0] += 1000;
                     out.println("Initializing effect edges: " + (count[0]));
@@ -697,7 +838,7 @@ public final class Fges implements GraphSearch, GraphScorer {
 
             @Override
             protected Boolean compute() {
-                if (TaskManager.getInstance().isCanceled()) return false;
+                if (TaskManager.getInstance().isCanceled() || stopped()) return false;
 
                 if (to - from <= chunk) {
                     for (int i = from; i < to; i++) {
@@ -808,7 +949,7 @@ public final class Fges implements GraphSearch, GraphScorer {
 
             @Override
             protected Boolean compute() {
-                if (TaskManager.getInstance().isCanceled()) return false;
+                if (TaskManager.getInstance().isCanceled() || stopped()) return false;
 
                 if (to - from <= chunk) {
                     for (int i = from; i < to; i++) {
@@ -869,9 +1010,13 @@ public final class Fges implements GraphSearch, GraphScorer {
             TetradLogger.getInstance().log("info", "** FORWARD EQUIVALENCE SEARCH");
         }
 
+        startPhase("fes");
+
         int maxDegree = this.maxDegree == -1 ? 1000 : this.maxDegree;
 
         while (!sortedArrows.isEmpty()) {
+            if (stopped()) break;
+
             Arrow arrow = sortedArrows.first();
             sortedArrows.remove(arrow);
 
@@ -923,6 +1068,8 @@ public final class Fges implements GraphSearch, GraphScorer {
             storeGraph();
             reevaluateForward(toProcess, arrow);
         }
+
+        endPhase("fes");
     }
 
     private void bes() {
@@ -930,6 +1077,8 @@ public final class Fges implements GraphSearch, GraphScorer {
             TetradLogger.getInstance().log("info", "** BACKWARD EQUIVALENCE SEARCH");
         }
 
+        startPhase("bes");
+
         sortedArrows = new ConcurrentSkipListSet<>();
         lookupArrows = new ConcurrentHashMap<>();
         neighbors = new ConcurrentHashMap<>();
@@ -937,6 +1086,8 @@ public final class Fges implements GraphSearch, GraphScorer {
         initializeArrowsBackward();
 
         while (!sortedArrows.isEmpty()) {
+            if (stopped()) break;
+
             Arrow arrow = sortedArrows.first();
             sortedArrows.remove(arrow);
 
@@ -994,9 +1145,23 @@ public final class Fges implements GraphSearch, GraphScorer {
             reevaluateBackward(toProcess);
         }
 
+        endPhase("bes");
+
 //        meekOrientRestricted(getVariables(), getKnowledge());
     }
 
+    private void startPhase(String phase) {
+        if (metrics != null) metrics.startPhase(phase);
+    }
+
+    private void endPhase(String phase) {
+        if (metrics != null) metrics.endPhase(phase);
+    }
+
+    private boolean stopped() {
+        return context != null && context.shouldStop();
+    }
+
     private Set<Node> getCommonAdjacents(Node x, Node y) {
         Set<Node> commonChildren = new HashSet<>(graph.getAdjacentNodes(x));
         commonChildren.retainAll(graph.getAdjacentNodes(y));
@@ -1024,6 +1189,8 @@ public final class Fges implements GraphSearch, GraphScorer {
     // Initiaizes the sorted arrows lists for the backward search.
     private void initializeArrowsBackward() {
         for (Edge edge : graph.getEdges()) {
+            if (stopped()) return;
+
             Node x = edge.getNode1();
             Node y = edge.getNode2();
 
@@ -1067,6 +1234,8 @@ public final class Fges implements GraphSearch, GraphScorer {
 
             @Override
             protected Boolean compute() {
+                if (stopped()) return false;
+
                 if (to - from <= chunk) {
                     for (int _w = from; _w < to; _w++) {
                         Node x = nodes.get(_w);
@@ -1231,6 +1400,8 @@ public final class Fges implements GraphSearch, GraphScorer {
 
             @Override
             protected Boolean compute() {
+                if (stopped()) return false;
+
                 if (to - from <= chunk) {
                     for (int _w = from; _w < to; _w++) {
                         final Node w = adj.get(_w);
@@ -132,6 +132,9 @@ public final class FgesMb {
      */
     private boolean verbose = false;
 
+    // Bounds the search, if set.
+    private SearchContext context = null;
+
     // Potential arrows sorted by bump high to low. The first one is a candidate for adding to the graph.
     private SortedSet<Arrow> sortedArrows = null;
 
@@ -284,6 +287,24 @@ public final class FgesMb {
     }
 
     public Graph search(List<Node> targets) {
+        if (context == null) {
+            return doSearch(targets);
+        }
+
+        context.start();
+
+        // The score is swapped for a counting one for the duration of the search.
+        Score score = this.fgesScore;
+        this.fgesScore = context.instrument(score);
+
+        try {
+            return doSearch(targets);
+        } finally {
+            this.fgesScore = score;
+        }
+    }
+
+    private Graph doSearch(List<Node> targets) {
 
         // Assumes one-edge faithfulness.
         long start = System.currentTimeMillis();
@@ -318,10 +339,12 @@ public final class FgesMb {
         fes();
         bes();
 
-        this.mode = Mode.coverNoncolliders;
-        initializeTwoStepEdges(getVariables());
-        fes();
-        bes();
+        if (!stopped()) {
+            this.mode = Mode.coverNoncolliders;
+            initializeTwoStepEdges(getVariables());
+            fes();
+            bes();
+        }
 
         long endTime = System.currentTimeMillis();
         this.elapsedTime = endTime - start;
@@ -364,6 +387,8 @@ public final class FgesMb {
 
         for (final Node target : targets) {
             for (final Node x : fgesScore.getVariables()) {
+                if (stopped()) return;
+
                 if (targets.contains(x)) {
                     continue;
                 }
@@ -389,6 +414,7 @@ public final class FgesMb {
                             Queue<NodeTaskEmptyGraph> tasks = new ArrayDeque<>();
 
                             for (final Node y : fgesScore.getVariables()) {
+                                if (stopped()) break;
                                 if (x == y) continue;
 
                                 MbTask mbTask = new MbTask(x, y, target);
@@ -581,6 +607,18 @@ public final class FgesMb {
         this.verbose = verbose;
     }
 
+    /**
+     * Bounds the search by the given context, or removes the bounds if null. A search that is
+     * stopped early returns the Markov blanket of the graph it had reached, which is partial.
+     */
+    public void setContext(SearchContext context) {
+        this.context = context;
+    }
+
+    public SearchContext getContext() {
+        return context;
+    }
+
     /**
      * Sets the output stream that output (except for log output) should be sent to.
      * By detault System.out.
@@ -744,6 +782,8 @@ public final class FgesMb {
         @Override
         protected Boolean compute() {
             for (int i = from; i < to; i++) {
+                if (stopped()) return false;
+
                 if ((i + 1) % 1000 == 0) {
                     count[0] += 1000;
                     out.println("Initializing effect edges: " + (count[0]));
@@ -889,7 +929,7 @@ public final class FgesMb {
 
             @Override
             protected Boolean compute() {
-                if (TaskManager.getInstance().isCanceled()) return false;
+                if (TaskManager.getInstance().isCanceled() || stopped()) return false;
 
                 if (to - from <= chunk) {
                     for (int i = from; i < to; i++) {
@@ -996,7 +1036,7 @@ public final class FgesMb {
 
             @Override
             protected Boolean compute() {
-                if (TaskManager.getInstance().isCanceled()) return false;
+                if (TaskManager.getInstance().isCanceled() || stopped()) return false;
 
                 if (to - from <= chunk) {
                     for (int i = from; i < to; i++) {
@@ -1054,6 +1094,8 @@ public final class FgesMb {
         TetradLogger.getInstance().log("info", "** FORWARD EQUIVALENCE SEARCH");
 
         while (!sortedArrows.isEmpty()) {
+            if (stopped()) break;
+
             Arrow arrow = sortedArrows.first();
             sortedArrows.remove(arrow);
 
@@ -1114,6 +1156,8 @@ public final class FgesMb {
         initializeArrowsBackward();
 
         while (!sortedArrows.isEmpty()) {
+            if (stopped()) break;
+
             Arrow arrow = sortedArrows.first();
             sortedArrows.remove(arrow);
 
@@ -1168,6 +1212,10 @@ public final class FgesMb {
         meekOrientRestricted(getVariables(), getKnowledge());
     }
 
+    private boolean stopped() {
+        return context != null && context.shouldStop();
+    }
+
     private Set<Node> getCommonAdjacents(Node x, Node y) {
         Set<Node> commonChildren = new HashSet<>(graph.getAdjacentNodes(x));
         commonChildren.retainAll(graph.getAdjacentNodes(y));
@@ -1195,6 +1243,8 @@ public final class FgesMb {
     // Initiaizes the sorted arrows lists for the backward search.
     private void initializeArrowsBackward() {
         for (Edge edge : graph.getEdges()) {
+            if (stopped()) return;
+
             Node x = edge.getNode1();
             Node y = edge.getNode2();
 
@@ -1238,6 +1288,8 @@ public final class FgesMb {
 
             @Override
             protected Boolean compute() {
+                if (stopped()) return false;
+
                 if (to - from <= chunk) {
                     for (int _w = from; _w < to; _w++) {
                         Node x = nodes.get(_w);
@@ -1403,6 +1455,8 @@ public final class FgesMb {
 
             @Override
             protected Boolean compute() {
+                if (stopped()) return false;
+
                 if (to - from <= chunk) {
                     for (int _w = from; _w < to; _w++) {
                         final Node w = adj.get(_w);
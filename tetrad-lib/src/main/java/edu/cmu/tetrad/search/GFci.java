@@ -80,6 +80,12 @@ public final class GFci implements GraphSearch {
     private SepsetProducer sepsets;
     private long elapsedTime;
 
+    // Where phases, independence tests and score evaluations are reported, if anywhere.
+    private SearchMetrics metrics = null;
+
+    // Bounds the search, if set.
+    private SearchContext context = null;
+
     //============================CONSTRUCTORS============================//
     public GFci(IndependenceTest test, Score score) {
         if (score == null) {
@@ -92,6 +98,27 @@ public final class GFci implements GraphSearch {
 
     //========================PUBLIC METHODS==========================//
     public Graph search() {
+        IndependenceTest test = independenceTest;
+
+        if (context != null) {
+            context.start();
+            test = context.instrument(test);
+        }
+
+        if (metrics == null) {
+            return search(test);
+        }
+
+        metrics.startPhase("GFci");
+
+        try {
+            return search(metrics.instrument(test));
+        } finally {
+            metrics.endPhase("GFci");
+        }
+    }
+
+    private Graph search(IndependenceTest independenceTest) {
         long time1 = System.currentTimeMillis();
 
         List<Node> nodes = getIndependenceTest().getVariables();
@@ -108,12 +135,17 @@ public final class GFci implements GraphSearch {
         fges.setFaithfulnessAssumed(faithfulnessAssumed);
         fges.setMaxDegree(maxDegree);
         fges.setOut(out);
+        fges.setMetrics(metrics);
+        fges.setContext(context);
         graph = fges.search();
-        Graph fgesGraph = new EdgeListGraphSingleConnections(graph);
+        Graph fgesGraph = new EdgeListGraphIndexed(graph);
 
+        startPhase("sepsets");
         sepsets = new SepsetsGreedy(fgesGraph, independenceTest, null, maxDegree);
 
         for (Node b : nodes) {
+            if (stopped()) break;
+
             List<Node> adjacentNodes = fgesGraph.getAdjacentNodes(b);
 
             if (adjacentNodes.size() < 2) {
@@ -135,15 +167,24 @@ public final class GFci implements GraphSearch {
             }
         }
 
-        modifiedR0(fgesGraph);
-
-        FciOrient fciOrient = new FciOrient(sepsets);
-        fciOrient.setVerbose(verbose);
-        fciOrient.setOut(out);
-        fciOrient.setKnowledge(getKnowledge());
-        fciOrient.setCompleteRuleSetUsed(completeRuleSetUsed);
-        fciOrient.setMaxPathLength(maxPathLength);
-        fciOrient.doFinalOrientation(graph);
+        endPhase("sepsets");
+
+        if (stopped()) {
+            // Partial; the adjacencies so far, unoriented.
+            graph.reorientAllWith(Endpoint.CIRCLE);
+        } else {
+            startPhase("orientation");
+            modifiedR0(fgesGraph);
+
+            FciOrient fciOrient = new FciOrient(sepsets);
+            fciOrient.setVerbose(verbose);
+            fciOrient.setOut(out);
+            fciOrient.setKnowledge(getKnowledge());
+            fciOrient.setCompleteRuleSetUsed(completeRuleSetUsed);
+            fciOrient.setMaxPathLength(maxPathLength);
+            fciOrient.doFinalOrientation(graph);
+            endPhase("orientation");
+        }
 
         GraphUtils.replaceNodes(graph, independenceTest.getVariables());
 
@@ -277,6 +318,35 @@ public final class GFci implements GraphSearch {
         this.verbose = verbose;
     }
 
+    /**
+     * Reports phases (Fges, sepsets, orientation), independence tests and score evaluations to the
+     * given metrics, or to none if null.
+     */
+    @Override
+    public void setMetrics(SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public SearchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Bounds the search by the given context, or removes the bounds if null. The context is passed
+     * on to Fges. A search that is stopped early returns the adjacencies it had reached with circle
+     * endpoints.
+     */
+    @Override
+    public void setContext(SearchContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public SearchContext getContext() {
+        return context;
+    }
+
     /**
      * The independence test.
      */
@@ -363,4 +433,15 @@ public final class GFci implements GraphSearch {
         logger.log("info", "Finishing BK Orientation.");
     }
 
+    private void startPhase(String phase) {
+        if (metrics != null) metrics.startPhase(phase);
+    }
+
+    private void endPhase(String phase) {
+        if (metrics != null) metrics.endPhase(phase);
+    }
+
+    private boolean stopped() {
+        return context != null && context.shouldStop();
+    }
 }
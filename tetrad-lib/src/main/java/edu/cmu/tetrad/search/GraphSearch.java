@@ -30,6 +30,37 @@ public interface GraphSearch {
     Graph search();
 
     long getElapsedTime();
+
+    /**
+     * Attaches metrics to which the search reports its phases, independence tests, score
+     * evaluations and queue sizes, or detaches them if null. Searches that don't report metrics
+     * ignore this.
+     */
+    default void setMetrics(SearchMetrics metrics) {
+    }
+
+    /**
+     * @return the attached metrics, or null if there are none or the search doesn't report any.
+     */
+    default SearchMetrics getMetrics() {
+        return null;
+    }
+
+    /**
+     * Bounds the search by the given context's time limit and budgets and lets it be cancelled, or
+     * removes any bounds if null. When the context stops the search, search() returns the best graph
+     * found so far and context.isStopped() is true. Searches that don't support this ignore it.
+     */
+    default void setContext(SearchContext context) {
+    }
+
+    /**
+     * @return the context bounding the search, or null if there is none or the search doesn't
+     * support one.
+     */
+    default SearchContext getContext() {
+        return null;
+    }
 }
 
 
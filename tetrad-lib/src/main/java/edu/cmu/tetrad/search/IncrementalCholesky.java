@@ -0,0 +1,265 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+
+import java.util.Arrays;
+
+/**
+ * Maintains the lower triangular Cholesky factor L of the covariance submatrix over an ordered
+ * set of variables S, so that residual variances and partial correlations given S can be had
+ * by a single forward substitution. S is moved from one set to another by appending variables
+ * (one new row of L, O(p^2)) and removing them (a rank-one update of the trailing block, also
+ * O(p^2)), so scoring a set that differs by one variable from the last one scored never
+ * requires a full O(p^3) factorization. All storage is reused; nothing is allocated per call
+ * once the capacity is reached.
+ * <p>
+ * Not thread safe; keep one per thread.
+ *
+ * @author Joseph Ramsey
+ */
+public final class IncrementalCholesky {
+
+    // Pivots smaller than this fraction of the variable's variance count as linear dependence.
+    private static final double TOLERANCE = 1e-10;
+
+    // The covariance matrix the factor is taken of.
+    private final ICovarianceMatrix cov;
+
+    // The variables in the factor, in order.
+    private int[] indices = new int[8];
+
+    // The number of variables in the factor.
+    private int size = 0;
+
+    // L, row major, capacity x capacity.
+    private double[] l = new double[8 * 8];
+
+    // Row stride of l.
+    private int capacity = 8;
+
+    // Scratch vectors for forward substitution.
+    private double[] wx = new double[8];
+    private double[] wy = new double[8];
+
+    public IncrementalCholesky(ICovarianceMatrix cov) {
+        if (cov == null) throw new NullPointerException();
+        this.cov = cov;
+    }
+
+    /**
+     * @return the number of variables currently in the factor.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all variables from the factor.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Moves the factor to the given set of variables, in any order, removing variables not in the
+     * set and appending those missing from it.
+     *
+     * @return true if the factor now spans exactly the given set, false if some variable could not
+     * be appended because it is linearly dependent on the others.
+     */
+    public boolean setTo(int[] target) {
+        int numToRemove = 0;
+
+        for (int k = 0; k < size; k++) {
+            if (!contains(target, target.length, indices[k])) numToRemove++;
+        }
+
+        if (numToRemove > size / 2) {
+            size = 0;
+        } else if (numToRemove > 0) {
+            for (int k = size - 1; k >= 0; k--) {
+                if (!contains(target, target.length, indices[k])) remove(k);
+            }
+        }
+
+        boolean complete = true;
+
+        for (int v : target) {
+            if (!contains(indices, size, v)) {
+                if (!append(v)) complete = false;
+            }
+        }
+
+        return complete && size == target.length;
+    }
+
+    /**
+     * Appends variable v to the factor.
+     *
+     * @return false (leaving the factor unchanged) if v is linearly dependent on the variables
+     * already in the factor.
+     */
+    public boolean append(int v) {
+        ensureCapacity(size + 1);
+        double[] w = solve(v, wx);
+        double d = cov.getValue(v, v) - dot(w, w, size);
+
+        if (!(d > TOLERANCE * cov.getValue(v, v))) {
+            return false;
+        }
+
+        int row = size * capacity;
+        System.arraycopy(w, 0, l, row, size);
+        l[row + size] = Math.sqrt(d);
+        indices[size] = v;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the variable at position k of the factor. The rows below k are shifted up and the
+     * trailing block is repaired with a rank-one update by the removed column.
+     */
+    public void remove(int k) {
+        if (k < 0 || k >= size) throw new IllegalArgumentException("No position " + k);
+
+        int m = size - k - 1;
+        double[] x = wx;
+
+        // Save the removed column below the diagonal.
+        for (int i = 0; i < m; i++) {
+            x[i] = l[(k + 1 + i) * capacity + k];
+        }
+
+        // Shift rows up and columns left.
+        for (int i = k; i < size - 1; i++) {
+            int to = i * capacity;
+            int from = (i + 1) * capacity;
+            System.arraycopy(l, from, l, to, k);
+            System.arraycopy(l, from + k + 1, l, to + k, i - k + 1);
+            indices[i] = indices[i + 1];
+        }
+
+        size--;
+
+        // Rank-one update of the trailing m x m block: L33' L33'^T = L33 L33^T + x x^T.
+        for (int j = 0; j < m; j++) {
+            int jj = (k + j) * capacity + (k + j);
+            double ljj = l[jj];
+            double r = Math.hypot(ljj, x[j]);
+            double c = r / ljj;
+            double s = x[j] / ljj;
+            l[jj] = r;
+
+            for (int i = j + 1; i < m; i++) {
+                int ij = (k + i) * capacity + (k + j);
+                l[ij] = (l[ij] + s * x[i]) / c;
+                x[i] = c * x[i] - s * l[ij];
+            }
+        }
+    }
+
+    /**
+     * @return the residual variance of y regressed on the variables in the factor, or NaN if it
+     * is not positive.
+     */
+    public double residualVariance(int y) {
+        double[] w = solve(y, wy);
+        double s2 = cov.getValue(y, y) - dot(w, w, size);
+        return s2 > 0 ? s2 : Double.NaN;
+    }
+
+    /**
+     * @return the partial correlation of x and y given the variables in the factor, or NaN if
+     * either residual variance is not positive.
+     */
+    public double partialCorrelation(int x, int y) {
+        double[] _wx = solve(x, wx);
+        double[] _wy = solve(y, wy);
+
+        double vx = cov.getValue(x, x) - dot(_wx, _wx, size);
+        double vy = cov.getValue(y, y) - dot(_wy, _wy, size);
+        double cxy = cov.getValue(x, y) - dot(_wx, _wy, size);
+
+        if (!(vx > 0) || !(vy > 0)) return Double.NaN;
+
+        return cxy / Math.sqrt(vx * vy);
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    // Solves L w = cov(S, v) by forward substitution into w.
+    private double[] solve(int v, double[] w) {
+        for (int i = 0; i < size; i++) {
+            int row = i * capacity;
+            double sum = cov.getValue(indices[i], v);
+
+            for (int j = 0; j < i; j++) {
+                sum -= l[row + j] * w[j];
+            }
+
+            w[i] = sum / l[row + i];
+        }
+
+        return w;
+    }
+
+    private static double dot(double[] a, double[] b, int n) {
+        double sum = 0.0;
+
+        for (int i = 0; i < n; i++) {
+            sum += a[i] * b[i];
+        }
+
+        return sum;
+    }
+
+    private static boolean contains(int[] array, int n, int v) {
+        for (int i = 0; i < n; i++) {
+            if (array[i] == v) return true;
+        }
+
+        return false;
+    }
+
+    private void ensureCapacity(int n) {
+        if (n <= capacity) return;
+
+        int newCapacity = Math.max(n, 2 * capacity);
+        double[] newL = new double[newCapacity * newCapacity];
+
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(l, i * capacity, newL, i * newCapacity, i + 1);
+        }
+
+        l = newL;
+        capacity = newCapacity;
+        indices = Arrays.copyOf(indices, newCapacity);
+        wx = new double[newCapacity];
+        wy = new double[newCapacity];
+    }
+}
+
+
+
@@ -178,6 +178,26 @@ public final class IndTestChiSquare implements IndependenceTest {
      * @return true iff x _||_ y | z.
      */
     public boolean isIndependent(Node x, Node y, List<Node> z) {
+        ChiSquareTest.Result result = test(x, y, z);
+        this.xSquare = result.getXSquare();
+        this.df = result.getDf();
+        this.pValue = result.getPValue();
+        return result.isIndep();
+    }
+
+    /**
+     * Same judgment as isIndependent(x, y, z), but keeps nothing in the test, so it may be called from
+     * several threads at once. This relies on ChiSquareTest counting each call into a table of its own
+     * thread rather than into a shared cell table. The statistic is X^2.
+     */
+    @Override
+    public IndependenceResult checkIndependence(Node x, Node y, List<Node> z) {
+        ChiSquareTest.Result result = test(x, y, z);
+        return new IndependenceResult(result.isIndep(), result.getPValue(), result.getXSquare(),
+                -(result.getPValue() - getAlpha()));
+    }
+
+    private ChiSquareTest.Result test(Node x, Node y, List<Node> z) {
         NumberFormat nf = NumberFormatUtil.getInstance().getNumberFormat();
 
         if (z == null) {
@@ -210,17 +230,18 @@ public final class IndTestChiSquare implements IndependenceTest {
         }
 
         ChiSquareTest.Result result = chiSquareTest.calcChiSquare(testIndices);
-        this.xSquare = result.getXSquare();
-        this.df = result.getDf();
-        this.pValue = result.getPValue();
 
         if (result.isIndep()) {
             StringBuilder sb = new StringBuilder();
             sb.append("INDEPENDENCE ACCEPTED: ");
             sb.append(SearchLogUtils.independenceFact(x, y, z));
-            sb.append("\tp = ").append(nf.format(result.getPValue())).append(
-                    "\tx^2 = ").append(nf.format(result.getXSquare())).append(
-                    "\tdf = ").append(result.getDf());
+
+            // The number format is shared, and formats aren't thread safe.
+            synchronized (nf) {
+                sb.append("\tp = ").append(nf.format(result.getPValue())).append(
+                        "\tx^2 = ").append(nf.format(result.getXSquare())).append(
+                        "\tdf = ").append(result.getDf());
+            }
 
             TetradLogger.getInstance().log("independencies", sb.toString());
         }
@@ -235,10 +256,12 @@ public final class IndTestChiSquare implements IndependenceTest {
 //        }
 
         if (facts != null) {
-            this.facts.add(new IndependenceFact(x, y, z));
+            synchronized (facts) {
+                this.facts.add(new IndependenceFact(x, y, z));
+            }
         }
 
-        return result.isIndep();
+        return result;
     }
 
     public boolean isIndependent(Node x, Node y, Node... z) {
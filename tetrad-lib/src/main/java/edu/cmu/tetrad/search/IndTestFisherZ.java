@@ -184,7 +184,14 @@ public final class IndTestFisherZ implements IndependenceTest {
      * @throws RuntimeException if a matrix singularity is encountered.
      */
     public boolean isIndependent(Node x, Node y, List<Node> z) {
-        int n = sampleSize();
+        return isIndependent(indexMap.get(x), indexMap.get(y), indices(z));
+    }
+
+    /**
+     * Same as isIndependent(x, y, z), for the variables at the given indices.
+     */
+    @Override
+    public boolean isIndependent(int x, int y, int[] z) {
         double r;
 
         try {
@@ -195,32 +202,69 @@ public final class IndTestFisherZ implements IndependenceTest {
             return false;
         }
 
-        double fisherZ = Math.sqrt(n - 3 - z.size()) * 0.5 * (Math.log(1.0 + r) - Math.log(1.0 - r));
+        double fisherZ = fisherZ(r, z.length);
         this.fisherZ = fisherZ;
         this.rho = r;
 
         return Math.abs(fisherZ) < cutoff;
     }
 
-    private double partialCorrelation(Node x, Node y, List<Node> z) throws SingularMatrixException {
-        if (z.isEmpty()) {
-            double a = covMatrix.getValue(indexMap.get(x), indexMap.get(y));
-            double b = covMatrix.getValue(indexMap.get(x), indexMap.get(x));
-            double c = covMatrix.getValue(indexMap.get(y), indexMap.get(y));
+    /**
+     * Same judgment as isIndependent(x, y, z), but keeps nothing in the test, so it may be called from
+     * several threads at once. The statistic is Fisher's Z.
+     */
+    @Override
+    public IndependenceResult checkIndependence(Node x, Node y, List<Node> z) {
+        return checkIndependence(indexMap.get(x), indexMap.get(y), indices(z));
+    }
+
+    /**
+     * Same as checkIndependence(x, y, z), for the variables at the given indices.
+     */
+    @Override
+    public IndependenceResult checkIndependence(int x, int y, int[] z) {
+        double fisherZ;
+
+        try {
+            fisherZ = fisherZ(partialCorrelation(x, y, z), z.length);
+        } catch (SingularMatrixException e) {
+            fisherZ = Double.POSITIVE_INFINITY;
+        }
+
+        double pValue = 2.0 * (1.0 - normal.cumulativeProbability(abs(fisherZ)));
+        return new IndependenceResult(Math.abs(fisherZ) < cutoff, pValue, fisherZ, Math.abs(fisherZ) - cutoff);
+    }
+
+    private double fisherZ(double r, int numConditioning) {
+        int n = sampleSize();
+        return Math.sqrt(n - 3 - numConditioning) * 0.5 * (Math.log(1.0 + r) - Math.log(1.0 - r));
+    }
+
+    private double partialCorrelation(int x, int y, int[] z) throws SingularMatrixException {
+        if (z.length == 0) {
+            double a = covMatrix.getValue(x, y);
+            double b = covMatrix.getValue(x, x);
+            double c = covMatrix.getValue(y, y);
 
             if (b * c == 0) throw new SingularMatrixException();
 
             return -a / Math.sqrt(b * c);
         } else {
-            int[] indices = new int[z.size() + 2];
-            indices[0] = indexMap.get(x);
-            indices[1] = indexMap.get(y);
-            for (int i = 0; i < z.size(); i++) indices[i + 2] = indexMap.get(z.get(i));
-            TetradMatrix submatrix = covMatrix.getSubmatrix(indices).getMatrix();
+            int[] indices = new int[z.length + 2];
+            indices[0] = x;
+            indices[1] = y;
+            System.arraycopy(z, 0, indices, 2, z.length);
+            TetradMatrix submatrix = covMatrix.getSelection(indices, indices);
             return StatUtils.partialCorrelation(submatrix);
         }
     }
 
+    private int[] indices(List<Node> z) {
+        int[] indices = new int[z.size()];
+        for (int i = 0; i < z.size(); i++) indices[i] = indexMap.get(z.get(i));
+        return indices;
+    }
+
     public boolean isIndependent(Node x, Node y, Node... z) {
         return isIndependent(x, y, Arrays.asList(z));
     }
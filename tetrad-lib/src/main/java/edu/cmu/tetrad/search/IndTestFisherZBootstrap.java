@@ -70,14 +70,12 @@ public class IndTestFisherZBootstrap implements IndependenceTest {
         setAlpha(alpha);
 
         this.numBootstrapSamples = numBootstrapSamples;
-        TetradMatrix[] bootstrapSamples = new TetradMatrix[numBootstrapSamples];
         this.tests = new IndependenceTest[numBootstrapSamples];
 
+        // Each sample is kept as its covariance matrix, calculated from row weights rather than a copy of the rows.
         for (int i = 0; i < numBootstrapSamples; i++) {
-            TetradMatrix fullData = dataSet.getDoubleData();
-            bootstrapSamples[i] = DataUtils.getBootstrapSample(fullData, bootstrapSampleSize);
-            tests[i] = new IndTestFisherZ(bootstrapSamples[i], dataSet.getVariables(), alpha);
-
+            int[] weights = DataUtils.getBootstrapWeights(dataSet.getNumRows(), bootstrapSampleSize);
+            tests[i] = new IndTestFisherZ(new CovarianceMatrix(dataSet, weights), alpha);
         }
 
     }
@@ -169,6 +169,24 @@ public final class IndTestGSquare implements IndependenceTest {
      * @return true iff x _||_ y | z.
      */
     public boolean isIndependent(Node x, Node y, List<Node> z) {
+        GSquareTest.Result result = test(x, y, z);
+        this.gSquare = result.getGSquare();
+        this.pValue = result.getPValue();
+        return result.isIndep();
+    }
+
+    /**
+     * Same judgment as isIndependent(x, y, z), but keeps nothing in the test, so it may be called from
+     * several threads at once. This relies on GSquareTest counting each call into a table of its own
+     * thread rather than into a shared cell table. The statistic is G^2.
+     */
+    @Override
+    public IndependenceResult checkIndependence(Node x, Node y, List<Node> z) {
+        GSquareTest.Result result = test(x, y, z);
+        return new IndependenceResult(result.isIndep(), result.getPValue(), result.getGSquare(), result.getPValue());
+    }
+
+    private GSquareTest.Result test(Node x, Node y, List<Node> z) {
         if (x == null) {
             throw new NullPointerException();
         }
@@ -209,28 +227,21 @@ public final class IndTestGSquare implements IndependenceTest {
         //        System.out.println("Testing " + x + " _||_ " + y + " | " + z);
 
         GSquareTest.Result result = gSquareTest.calcGSquare(testIndices);
-        this.gSquare = result.getGSquare();
-        this.pValue = result.getPValue();
 
-        if (result.isIndep()) {
-            StringBuilder sb = new StringBuilder();
-            sb.append("INDEPENDENCE ACCEPTED: ");
-            sb.append(SearchLogUtils.independenceFact(x, y, z));
-            sb.append("\tp = ").append(nf.format(result.getPValue())).append(
-                    "\tg^2 = ").append(nf.format(result.getGSquare())).append(
-                    "\tdf = ").append(result.getDf());
-            TetradLogger.getInstance().log("independencies", sb.toString());
-        } else {
-            StringBuilder sb = new StringBuilder();
-            sb.append("Not independent: ");
-            sb.append(SearchLogUtils.independenceFact(x, y, z));
+        StringBuilder sb = new StringBuilder();
+        sb.append(result.isIndep() ? "INDEPENDENCE ACCEPTED: " : "Not independent: ");
+        sb.append(SearchLogUtils.independenceFact(x, y, z));
+
+        // The number format is shared, and formats aren't thread safe.
+        synchronized (nf) {
             sb.append("\tp = ").append(nf.format(result.getPValue())).append(
                     "\tg^2 = ").append(nf.format(result.getGSquare())).append(
                     "\tdf = ").append(result.getDf());
-            TetradLogger.getInstance().log("independencies", sb.toString());
         }
 
-        return result.isIndep();
+        TetradLogger.getInstance().log("independencies", sb.toString());
+
+        return result;
     }
 
     public boolean isIndependent(Node x, Node y, Node... z) {
@@ -0,0 +1,76 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+/**
+ * The result of a single conditional independence test--the judgment, the p value, the test
+ * statistic and the score (as in <code>IndependenceTest.getScore()</code>). Immutable, so it can
+ * be handed between threads, unlike the "most recent test" getters on IndependenceTest.
+ *
+ * @author Joseph Ramsey
+ */
+public final class IndependenceResult {
+    private final boolean independent;
+    private final double pValue;
+    private final double statistic;
+    private final double score;
+
+    /**
+     * @param independent True if the test judged independence.
+     * @param pValue      The p value of the test, or NaN if there isn't one.
+     * @param statistic   The test statistic, or NaN if there isn't one.
+     * @param score       A score that is higher for more likely models; see IndependenceTest.getScore().
+     */
+    public IndependenceResult(boolean independent, double pValue, double statistic, double score) {
+        this.independent = independent;
+        this.pValue = pValue;
+        this.statistic = statistic;
+        this.score = score;
+    }
+
+    public boolean isIndependent() {
+        return independent;
+    }
+
+    public boolean isDependent() {
+        return !independent;
+    }
+
+    public double getPValue() {
+        return pValue;
+    }
+
+    public double getStatistic() {
+        return statistic;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public String toString() {
+        return (independent ? "Independent" : "Dependent") + ": p = " + pValue + " statistic = " + statistic;
+    }
+}
+
+
+
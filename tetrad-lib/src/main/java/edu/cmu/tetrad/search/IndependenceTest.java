@@ -27,6 +27,7 @@ import edu.cmu.tetrad.data.ICovarianceMatrix;
 import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.util.TetradMatrix;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -57,6 +58,57 @@ public interface IndependenceTest {
      */
     boolean isIndependent(Node x, Node y, Node... z);
 
+    /**
+     * Same as isIndependent(x, y, z) for the variables at the given indices in getVariables(), for callers
+     * that enumerate conditioning sets as index arrays (see BitChoiceGenerator). Tests that work on indices
+     * override this so that nothing is allocated per call; this default looks the variables up.
+     */
+    default boolean isIndependent(int x, int y, int[] z) {
+        List<Node> variables = getVariables();
+        List<Node> _z = new ArrayList<>(z.length);
+        for (int i : z) _z.add(variables.get(i));
+        return isIndependent(variables.get(x), variables.get(y), _z);
+    }
+
+    /**
+     * Tests x _||_ y | z and returns the judgment together with its p value, statistic and score, so that
+     * nothing has to be read back from the test afterward. Tests that override this keep no per-call state
+     * and may be called from several threads at once; this default locks the test for the call and reads
+     * the p value and score back, so it is safe but serial.
+     */
+    default IndependenceResult checkIndependence(Node x, Node y, List<Node> z) {
+        synchronized (this) {
+            boolean independent = isIndependent(x, y, z);
+            double pValue;
+            double score;
+
+            // Some tests have no p value or no score.
+            try {
+                pValue = getPValue();
+            } catch (UnsupportedOperationException e) {
+                pValue = Double.NaN;
+            }
+
+            try {
+                score = getScore();
+            } catch (UnsupportedOperationException e) {
+                score = Double.NaN;
+            }
+
+            return new IndependenceResult(independent, pValue, Double.NaN, score);
+        }
+    }
+
+    /**
+     * Same as checkIndependence(x, y, z) for the variables at the given indices in getVariables().
+     */
+    default IndependenceResult checkIndependence(int x, int y, int[] z) {
+        List<Node> variables = getVariables();
+        List<Node> _z = new ArrayList<>(z.length);
+        for (int i : z) _z.add(variables.get(i));
+        return checkIndependence(variables.get(x), variables.get(y), _z);
+    }
+
     /**
      * @return true if the given independence question is judged false, true if not. The independence question is of the
      * form x _||_ y | z, z = <z1,...,zn>, where x, y, z1,...,zn are variables in the list returned by
@@ -0,0 +1,180 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.data.DataModel;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.TetradMatrix;
+
+import java.util.List;
+
+/**
+ * Counts calls to an independence test in a SearchMetrics or SearchContext, by conditioning set
+ * size. See SearchMetrics.instrument() and SearchContext.instrument().
+ *
+ * @author Joseph Ramsey
+ */
+final class InstrumentedIndependenceTest implements IndependenceTest {
+    private final IndependenceTest test;
+    private final SearchCounter counter;
+
+    InstrumentedIndependenceTest(IndependenceTest test, SearchCounter counter) {
+        this.test = test;
+        this.counter = counter;
+    }
+
+    @Override
+    public IndependenceTest indTestSubset(List<Node> vars) {
+        return new InstrumentedIndependenceTest(test.indTestSubset(vars), counter);
+    }
+
+    @Override
+    public boolean isIndependent(Node x, Node y, List<Node> z) {
+        counter.countTest(z.size());
+        return test.isIndependent(x, y, z);
+    }
+
+    @Override
+    public boolean isIndependent(Node x, Node y, Node... z) {
+        counter.countTest(z.length);
+        return test.isIndependent(x, y, z);
+    }
+
+    @Override
+    public boolean isIndependent(int x, int y, int[] z) {
+        counter.countTest(z.length);
+        return test.isIndependent(x, y, z);
+    }
+
+    @Override
+    public IndependenceResult checkIndependence(Node x, Node y, List<Node> z) {
+        counter.countTest(z.size());
+        return test.checkIndependence(x, y, z);
+    }
+
+    @Override
+    public IndependenceResult checkIndependence(int x, int y, int[] z) {
+        counter.countTest(z.length);
+        return test.checkIndependence(x, y, z);
+    }
+
+    @Override
+    public boolean isDependent(Node x, Node y, List<Node> z) {
+        counter.countTest(z.size());
+        return test.isDependent(x, y, z);
+    }
+
+    @Override
+    public boolean isDependent(Node x, Node y, Node... z) {
+        counter.countTest(z.length);
+        return test.isDependent(x, y, z);
+    }
+
+    @Override
+    public double getPValue() {
+        return test.getPValue();
+    }
+
+    @Override
+    public List<Node> getVariables() {
+        return test.getVariables();
+    }
+
+    @Override
+    public Node getVariable(String name) {
+        return test.getVariable(name);
+    }
+
+    @Override
+    public List<String> getVariableNames() {
+        return test.getVariableNames();
+    }
+
+    @Override
+    public boolean determines(List<Node> z, Node y) {
+        return test.determines(z, y);
+    }
+
+    @Override
+    public double getAlpha() {
+        return test.getAlpha();
+    }
+
+    @Override
+    public void setAlpha(double alpha) {
+        test.setAlpha(alpha);
+    }
+
+    @Override
+    public DataModel getData() {
+        return test.getData();
+    }
+
+    @Override
+    public ICovarianceMatrix getCov() {
+        return test.getCov();
+    }
+
+    @Override
+    public List<DataSet> getDataSets() {
+        return test.getDataSets();
+    }
+
+    @Override
+    public int getSampleSize() {
+        return test.getSampleSize();
+    }
+
+    @Override
+    public List<TetradMatrix> getCovMatrices() {
+        return test.getCovMatrices();
+    }
+
+    @Override
+    public double getScore() {
+        return test.getScore();
+    }
+
+    IndependenceTest getTest() {
+        return test;
+    }
+
+    // True if calls to the given test are already counted by the given counter, at any depth of wrapping.
+    static boolean isCounted(IndependenceTest test, SearchCounter counter) {
+        while (test instanceof InstrumentedIndependenceTest) {
+            InstrumentedIndependenceTest instrumented = (InstrumentedIndependenceTest) test;
+            if (instrumented.counter == counter) return true;
+            test = instrumented.test;
+        }
+
+        return false;
+    }
+
+    public String toString() {
+        return test.toString();
+    }
+}
+
+
+
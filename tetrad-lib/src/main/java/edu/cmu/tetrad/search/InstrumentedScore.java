@@ -0,0 +1,124 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.graph.Node;
+
+import java.util.List;
+
+/**
+ * Counts calls to a score in a SearchMetrics or SearchContext, by number of parents. See
+ * SearchMetrics.instrument() and SearchContext.instrument().
+ *
+ * @author Joseph Ramsey
+ */
+final class InstrumentedScore implements Score {
+    private final Score score;
+    private final SearchCounter counter;
+
+    InstrumentedScore(Score score, SearchCounter counter) {
+        this.score = score;
+        this.counter = counter;
+    }
+
+    @Override
+    public double localScore(int node, int... parents) {
+        counter.countScore(parents.length);
+        return score.localScore(node, parents);
+    }
+
+    @Override
+    public double localScoreDiff(int x, int y, int[] z) {
+        counter.countScore(z.length);
+        return score.localScoreDiff(x, y, z);
+    }
+
+    @Override
+    public double localScoreDiff(int x, int y) {
+        counter.countScore(0);
+        return score.localScoreDiff(x, y);
+    }
+
+    @Override
+    public double localScore(int node, int parent) {
+        counter.countScore(1);
+        return score.localScore(node, parent);
+    }
+
+    @Override
+    public double localScore(int node) {
+        counter.countScore(0);
+        return score.localScore(node);
+    }
+
+    @Override
+    public List<Node> getVariables() {
+        return score.getVariables();
+    }
+
+    @Override
+    public boolean isEffectEdge(double bump) {
+        return score.isEffectEdge(bump);
+    }
+
+    @Override
+    public int getSampleSize() {
+        return score.getSampleSize();
+    }
+
+    @Override
+    public Node getVariable(String targetName) {
+        return score.getVariable(targetName);
+    }
+
+    @Override
+    public int getMaxDegree() {
+        return score.getMaxDegree();
+    }
+
+    @Override
+    public boolean determines(List<Node> z, Node y) {
+        return score.determines(z, y);
+    }
+
+    Score getScore() {
+        return score;
+    }
+
+    // True if calls to the given score are already counted by the given counter, at any depth of wrapping.
+    static boolean isCounted(Score score, SearchCounter counter) {
+        while (score instanceof InstrumentedScore) {
+            InstrumentedScore instrumented = (InstrumentedScore) score;
+            if (instrumented.counter == counter) return true;
+            score = instrumented.score;
+        }
+
+        return false;
+    }
+
+    public String toString() {
+        return score.toString();
+    }
+}
+
+
+
@@ -21,46 +21,273 @@
 
 package edu.cmu.tetrad.search;
 
-import org.apache.commons.collections4.map.MultiKeyMap;
-
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Stores a map from (variable, parents) to score.
+ * Stores a map from (variable, parents) to score. Parents are kept as sorted int arrays, so the
+ * order in which they are given doesn't matter. The map is split into lock-striped segments, each
+ * of which is an LRU map with its own share of the byte budget, so that it can be used from the
+ * ForkJoin tasks in Fges without a global lock. Entries are evicted least recently used first
+ * when a segment goes over budget.
  *
  * @author Joseph Ramsey
  */
 public class LocalScoreCache {
-    private MultiKeyMap map;
+
+    // The default byte budget, 64 MB.
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    // Rough overhead in bytes of one entry--key, parent array header, boxed score and map node.
+    private static final int ENTRY_OVERHEAD = 112;
+
+    // Number of segments; must be a power of 2.
+    private static final int NUM_SEGMENTS = 64;
+
+    private final Segment[] segments;
+    private final long maxBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
 
     public LocalScoreCache() {
-        map = new MultiKeyMap();
+        this(DEFAULT_MAX_BYTES);
     }
 
-    public void add(int variable, int[] parents, double score) {
-        Set<Integer> _parents = new HashSet<>(parents.length);
+    /**
+     * @param maxBytes The approximate number of bytes the cache may hold before it starts evicting.
+     */
+    public LocalScoreCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Max bytes must be positive: " + maxBytes);
+        }
 
-        for (int parent : parents) {
-            _parents.add(parent);
+        this.maxBytes = maxBytes;
+        this.segments = new Segment[NUM_SEGMENTS];
+
+        for (int i = 0; i < NUM_SEGMENTS; i++) {
+            segments[i] = new Segment(Math.max(1, maxBytes / NUM_SEGMENTS));
         }
+    }
 
-        map.put(variable, _parents, score);
+    public void add(int variable, int[] parents, double score) {
+        add(variable, -1, parents, score);
+    }
+
+    /**
+     * Stores the score for (variable, extra, parents). The extra index distinguishes, e.g., a
+     * score difference for adding extra to parents from the score of parents itself; -1 means none.
+     */
+    public void add(int variable, int extra, int[] parents, double score) {
+        Key key = new Key(variable, extra, parents);
+        segmentFor(key).put(key, score);
     }
 
+    /**
+     * @return the score for (variable, parents), or NaN if it hasn't been cached. Use
+     * <code>lookup</code> if NaN is a legitimate score.
+     */
     public double get(int variable, int[] parents) {
-        Set<Integer> _parents = new HashSet<>(parents.length);
+        Double score = lookup(variable, -1, parents);
+        return score == null ? Double.NaN : score;
+    }
+
+    /**
+     * @return the score for (variable, extra, parents), or null if it hasn't been cached.
+     */
+    public Double lookup(int variable, int extra, int[] parents) {
+        Key key = new Key(variable, extra, parents);
+        Double score = segmentFor(key).get(key);
 
-        for (int parent : parents) {
-            _parents.add(parent);
+        if (score == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
         }
 
-        Double _score = (Double) map.get(variable, _parents);
-        return _score == null ? Double.NaN : (_score);
+        return score;
     }
 
     public void clear() {
-        map.clear();
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    /**
+     * @return the number of lookups that found a cached score.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups that did not find a cached score.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of entries evicted to stay within budget.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the fraction of lookups that were hits, or 0 if there have been no lookups.
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0.0 : hits / (double) total;
+    }
+
+    /**
+     * @return the number of cached entries.
+     */
+    public int size() {
+        int size = 0;
+
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+
+        return size;
+    }
+
+    /**
+     * @return the approximate number of bytes held by the cache.
+     */
+    public long getBytes() {
+        long bytes = 0;
+
+        for (Segment segment : segments) {
+            bytes += segment.getBytes();
+        }
+
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public String toString() {
+        return "Score cache: hits = " + getHits() + " misses = " + getMisses()
+                + " evictions = " + getEvictions() + " size = " + size()
+                + " bytes = " + getBytes();
+    }
+
+    //===========================PRIVATE METHODS===========================//
+
+    private Segment segmentFor(Key key) {
+        // Use the high bits, so that the segment's own hash table sees well spread low bits.
+        return segments[(int) (key.hash >>> 58) & (NUM_SEGMENTS - 1)];
+    }
+
+    private static int bytes(Key key) {
+        return ENTRY_OVERHEAD + 4 * key.parents.length;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * A key over a sorted copy of the parents, with a 64 bit hash computed once.
+     */
+    private static final class Key {
+        private final int variable;
+        private final int extra;
+        private final int[] parents;
+        private final long hash;
+
+        Key(int variable, int extra, int[] parents) {
+            this.variable = variable;
+            this.extra = extra;
+            this.parents = Arrays.copyOf(parents, parents.length);
+            Arrays.sort(this.parents);
+
+            long h = mix(((long) variable << 32) ^ (extra & 0xffffffffL));
+
+            for (int parent : this.parents) {
+                h = mix(h * 31 + parent);
+            }
+
+            this.hash = h;
+        }
+
+        public int hashCode() {
+            return (int) (hash ^ (hash >>> 32));
+        }
+
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return hash == key.hash && variable == key.variable && extra == key.extra
+                    && Arrays.equals(parents, key.parents);
+        }
+    }
+
+    /**
+     * One lock stripe--an access-ordered map with a byte budget.
+     */
+    private final class Segment {
+        private final LinkedHashMap<Key, Double> map = new LinkedHashMap<>(16, 0.75f, true);
+        private final long maxBytes;
+        private long bytes = 0;
+
+        Segment(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized Double get(Key key) {
+            return map.get(key);
+        }
+
+        synchronized void put(Key key, double score) {
+            Double old = map.put(key, score);
+            if (old == null) bytes += bytes(key);
+
+            Iterator<Map.Entry<Key, Double>> it = map.entrySet().iterator();
+
+            while (bytes > maxBytes && it.hasNext()) {
+                Key eldest = it.next().getKey();
+                if (eldest.equals(key)) continue;
+                it.remove();
+                bytes -= bytes(eldest);
+                evictions.incrementAndGet();
+            }
+        }
+
+        synchronized void clear() {
+            map.clear();
+            bytes = 0;
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+
+        synchronized long getBytes() {
+            return bytes;
+        }
     }
 }
 
@@ -23,7 +23,6 @@ package edu.cmu.tetrad.search;
 
 import edu.cmu.tetrad.data.IKnowledge;
 import edu.cmu.tetrad.graph.*;
-import edu.cmu.tetrad.util.ChoiceGenerator;
 import edu.cmu.tetrad.util.TetradLogger;
 
 import java.io.PrintStream;
@@ -34,12 +33,29 @@ import java.util.*;
  * with background knowledge"), modified for Conservative PC to check noncolliders against recorded noncolliders before
  * orienting.
  * <p>
+ * The rules run over an integer index of the graph rather than over Node and Edge objects. Each node the rules reach is
+ * given an index, and its edges are read from the graph once per call into an array of adjacent indices and an array of
+ * edge marks as seen from the node, so that checking an adjacency or an orientation is a scan of a small int array, and
+ * the triples a rule applies to are enumerated directly from the marks (parents against undirected neighbors, say)
+ * rather than over all pairs of adjacents. Orientations are made on the marks, and each edge whose marks end up changed
+ * is replaced in the graph once, at the end, however many times it was flipped. Propagation starts from the given nodes
+ * and thereafter visits only the heads of newly oriented edges (and, when undirecting unforced edges, the neighborhoods
+ * of nodes whose parents were undirected), so orienting after a single insert or delete reads only the part of the
+ * graph the change can reach.
+ * <p>
  * For now, the fourth rule is always performed.
  *
  * @author Joseph Ramsey
  */
 public class MeekRules implements ImpliedOrientation {
 
+    // Edge marks, as seen from the node whose row they are in.
+    private static final byte NOT_ADJACENT = 0;
+    private static final byte UNDIRECTED = 1;   // x---y
+    private static final byte OUT = 2;          // x-->y
+    private static final byte IN = 3;           // x<--y
+    private static final byte OTHER = 4;        // Any other kind of edge.
+
     private IKnowledge knowledge;
 
     //True if cycles are to be aggressively prevented. May be expensive for large graphs (but also useful for large
@@ -52,9 +68,6 @@ public class MeekRules implements ImpliedOrientation {
     //The logger to use.
     private Map<Edge, Edge> changedEdges = new HashMap<>();
 
-    // The stack of nodes to be visited.
-    private LinkedList<Node> directStack = new LinkedList<>();
-
     // Whether verbose output should be generated.
 
     private boolean verbose = false;
@@ -69,12 +82,47 @@ public class MeekRules implements ImpliedOrientation {
     // The lsit of nodes actually visited.
     private Set<Node> visited = new HashSet<>();
 
-    // Edges already oriented by the algorithm to avoid repeats and prevent cycles.
-    private HashSet<Edge> oriented;
-
     // True if unforced parents should be undirected before orienting.
     private boolean undirectUnforcedEdges = false;
 
+    // The graph being oriented, for the duration of a call to orientImplied.
+    private Graph graph;
+
+    // The index of each node reached so far in the current call.
+    private final Map<Node, Integer> indices = new HashMap<>();
+
+    // The node at each index.
+    private Node[] indexed = new Node[16];
+
+    // The number of nodes indexed.
+    private int numIndexed = 0;
+
+    // For each indexed node, the number of its adjacents, or -1 if its edges haven't been read yet.
+    private int[] degree = new int[16];
+
+    // For each indexed node, the indices of its adjacents, in the first degree places. The rows below are kept from
+    // one call to the next and reused by whichever node takes their index, when they are long enough.
+    private int[][] adjacents = new int[16][];
+
+    // For each indexed node, the marks of its edges, parallel to adjacents.
+    private byte[][] marks = new byte[16][];
+
+    // For each indexed node, the marks of its edges as they are in the graph.
+    private byte[][] originalMarks = new byte[16][];
+
+    // For each indexed node x and adjacent y, true if x-->y has been oriented by the algorithm, to avoid repeats
+    // and prevent cycles.
+    private boolean[][] oriented = new boolean[16][];
+
+    // The stack of node indices to be visited.
+    private int[] stack = new int[16];
+    private int stackSize = 0;
+
+    // Scratch space for the directed path search.
+    private int[] queue = new int[16];
+    private int[] seen = new int[16];
+    private int stamp = 0;
+
     /**
      * Constructs the <code>MeekRules</code> with no logging.
      */
@@ -93,7 +141,7 @@ public class MeekRules implements ImpliedOrientation {
         this.visited.addAll(nodes);
 
         TetradLogger.getInstance().log("impliedOrientations", "Starting Orientation Step D.");
-        orientUsingMeekRulesLocally(knowledge, graph);
+        orientUsingMeekRulesLocally(graph);
         TetradLogger.getInstance().log("impliedOrientations", "Finishing Orientation Step D.");
 
     }
@@ -137,215 +185,180 @@ public class MeekRules implements ImpliedOrientation {
 
     //============================== Private Methods ===================================//
 
-    private void orientUsingMeekRulesLocally(IKnowledge knowledge, Graph graph) {
+    private void orientUsingMeekRulesLocally(Graph graph) {
+        this.graph = graph;
 
-        oriented = new HashSet<>();
+        try {
+            if (undirectUnforcedEdges) {
+                for (Node node : nodes) {
+                    int y = index(node);
+                    undirectUnforcedEdges(y);
 
-        if (undirectUnforcedEdges) {
-            for (Node node : nodes) {
-                undirectUnforcedEdges(node, graph);
-                directStack.addAll(graph.getAdjacentNodes(node));
+                    for (int z : adjacents(y)) {
+                        push(z);
+                    }
+                }
             }
-        }
 
-        for (Node node : this.nodes) {
-            runMeekRules(node, graph, knowledge);
-        }
+            for (Node node : this.nodes) {
+                runMeekRules(index(node));
+            }
 
-        while (!directStack.isEmpty()) {
-            Node node = directStack.removeLast();
+            while (stackSize > 0) {
+                int node = stack[--stackSize];
 
-            if (undirectUnforcedEdges) {
-                undirectUnforcedEdges(node, graph);
-            }
+                if (undirectUnforcedEdges) {
+                    undirectUnforcedEdges(node);
+                }
 
-            runMeekRules(node, graph, knowledge);
+                runMeekRules(node);
+            }
+        } finally {
+            applyChanges();
+            clearIndex();
         }
     }
 
-    private void runMeekRules(Node node, Graph graph, IKnowledge knowledge) {
-        meekR1(node, graph, knowledge);
-        meekR2(node, graph, knowledge);
-        meekR3(node, graph, knowledge);
-        meekR4(node, graph, knowledge);
+    private void runMeekRules(int node) {
+        meekR1(node);
+        meekR2(node);
+        meekR3(node);
+        meekR4(node);
     }
 
     /**
-     * Meek's rule R1: if a-->b, b---c, and a not adj to c, then a-->c
+     * Meek's rule R1: if a-->b, b---c, and a not adj to c, then b-->c
      */
-    private void meekR1(Node b, Graph graph, IKnowledge knowledge) {
-        List<Node> adjacentNodes = graph.getAdjacentNodes(b);
+    private void meekR1(int b) {
+        int[] adj = adjacents(b);
+        int size = degree[b];
+        byte[] mb = marks[b];
 
-        if (adjacentNodes.size() < 2) {
-            return;
-        }
+        for (int i = 0; i < size; i++) {
+            if (mb[i] != IN) continue;
+            int a = adj[i];
 
-        ChoiceGenerator cg = new ChoiceGenerator(adjacentNodes.size(), 2);
-        int[] choice;
+            for (int j = 0; j < size; j++) {
+                if (mb[j] != UNDIRECTED) continue;
+                int c = adj[j];
 
-        while ((choice = cg.next()) != null) {
-            List<Node> nodes = GraphUtils.asList(choice, adjacentNodes);
-            Node a = nodes.get(0);
-            Node c = nodes.get(1);
-
-            r1Helper(a, b, c, graph, knowledge);
-            r1Helper(c, b, a, graph, knowledge);
-        }
-    }
-
-    private void r1Helper(Node a, Node b, Node c, Graph graph, IKnowledge knowledge) {
-        if (!graph.isAdjacentTo(a, c) && graph.isDirectedFromTo(a, b) && graph.isUndirectedFromTo(b, c)) {
-            if (!isUnshieldedNoncollider(a, b, c, graph)) {
-                return;
-            }
+                if (isAdjacent(a, c) || !isUnshieldedNoncollider(a, b, c)) {
+                    continue;
+                }
 
-            if (isArrowpointAllowed(b, c, knowledge)) {
-                direct(b, c, graph);
-                String message = SearchLogUtils.edgeOrientedMsg(
-                        "Meek R1 triangle (" + b + "-->" + a + "---" + c + ")", graph.getEdge(a, c));
-                log(message);
+                if (isArrowpointAllowed(b, c)) {
+                    direct(b, c);
+                    logOriented("Meek R1 triangle (" + indexed[a] + "-->" + indexed[b] + "---" + indexed[c] + ")",
+                            b, c);
+                }
             }
         }
     }
 
     /**
-     * If a-->b-->c, a--c, then b-->c.
+     * If a-->b-->c, a--c, then a-->c. Every such triple with c in any of the three positions is checked.
      */
-    private void meekR2(Node c, Graph graph, IKnowledge knowledge) {
-        List<Node> adjacentNodes = graph.getAdjacentNodes(c);
-
-        if (adjacentNodes.size() < 2) {
-            return;
-        }
-
-        ChoiceGenerator cg = new ChoiceGenerator(adjacentNodes.size(), 2);
-        int[] choice;
-
-        while ((choice = cg.next()) != null) {
-            List<Node> nodes = GraphUtils.asList(choice, adjacentNodes);
-            Node a = nodes.get(0);
-            Node b = nodes.get(1);
-
-            r2Helper(a, b, c, graph, knowledge);
-            r2Helper(b, a, c, graph, knowledge);
-            r2Helper(a, c, b, graph, knowledge);
-            r2Helper(c, a, b, graph, knowledge);
+    private void meekR2(int c) {
+        int[] adj = adjacents(c);
+        int size = degree[c];
+        byte[] mc = marks[c];
+
+        for (int i = 0; i < size; i++) {
+            int a = adj[i];
+
+            for (int j = 0; j < size; j++) {
+                if (i == j) continue;
+                int b = adj[j];
+
+                if (mc[i] == IN && mc[j] == OUT) {
+                    r2Helper(a, c, b);
+                } else if (mc[i] == UNDIRECTED && mc[j] == IN) {
+                    r2Helper(a, b, c);
+                } else if (mc[i] == OUT && mc[j] == UNDIRECTED) {
+                    r2Helper(c, a, b);
+                }
+            }
         }
     }
 
-    private void r2Helper(Node a, Node b, Node c, Graph graph, IKnowledge knowledge) {
-        if (graph.isDirectedFromTo(a, b) &&
-                graph.isDirectedFromTo(b, c) &&
-                graph.isUndirectedFromTo(a, c)) {
-            if (isArrowpointAllowed(a, c, knowledge)) {
-                direct(a, c, graph);
-                log(SearchLogUtils.edgeOrientedMsg("Meek R2", graph.getEdge(b, c)));
+    private void r2Helper(int a, int b, int c) {
+        if (mark(a, b) == OUT && mark(b, c) == OUT && mark(a, c) == UNDIRECTED) {
+            if (isArrowpointAllowed(a, c)) {
+                direct(a, c);
+                logOriented("Meek R2", a, c);
             }
         }
     }
 
     /**
-     * Meek's rule R3. If a--b, a--c, a--d, c-->b, d-->b, then orient a-->b.
+     * Meek's rule R3. If a--b, a--c, a--d, c-->b, d-->b, then orient a-->b. Here the kite's sink is a and its
+     * undirected apex d, with b-->a and c-->a.
      */
-    private void meekR3(Node a, Graph graph, IKnowledge knowledge) {
-        List<Node> adjacentNodes = graph.getAdjacentNodes(a);
+    private void meekR3(int a) {
+        int[] adj = adjacents(a);
+        int size = degree[a];
+        byte[] ma = marks[a];
 
-        if (adjacentNodes.size() < 3) {
+        if (size < 3) {
             return;
         }
 
-        for (Node d : adjacentNodes) {
-            if (Edges.isUndirectedEdge(graph.getEdge(a, d))) {
-                List<Node> otherAdjacents = new ArrayList<>(adjacentNodes);
-                otherAdjacents.remove(d);
+        for (int i = 0; i < size; i++) {
+            int d = adj[i];
 
-                ChoiceGenerator cg = new ChoiceGenerator(otherAdjacents.size(), 2);
-                int[] choice;
+            for (int j = 0; j < size && ma[i] == UNDIRECTED; j++) {
+                if (ma[j] != IN) continue;
+                int b = adj[j];
 
-                while ((choice = cg.next()) != null) {
-                    List<Node> nodes = GraphUtils.asList(choice, otherAdjacents);
-                    Node b = nodes.get(0);
-                    Node c = nodes.get(1);
+                if (mark(d, b) != UNDIRECTED) continue;
 
-                    boolean isKite = isKite(a, d, b, c, graph);
+                for (int k = j + 1; k < size && ma[i] == UNDIRECTED; k++) {
+                    if (ma[k] != IN) continue;
+                    int c = adj[k];
 
-                    if (isKite) {
-                        if (isArrowpointAllowed(d, a, knowledge)) {
-                            if (!isUnshieldedNoncollider(c, d, b, graph)) {
-                                continue;
-                            }
+                    if (mark(d, c) != UNDIRECTED) continue;
 
-                            direct(d, a, graph);
-                            log(SearchLogUtils.edgeOrientedMsg("Meek R3", graph.getEdge(d, a)));
+                    if (isArrowpointAllowed(d, a)) {
+                        if (!isUnshieldedNoncollider(c, d, b)) {
+                            continue;
                         }
+
+                        direct(d, a);
+                        logOriented("Meek R3", d, a);
                     }
                 }
             }
         }
     }
 
-    private boolean isKite(Node a, Node d, Node b, Node c, Graph graph) {
-        boolean b4 = graph.isUndirectedFromTo(d, c);
-        boolean b5 = graph.isUndirectedFromTo(d, b);
-        boolean b6 = graph.isDirectedFromTo(b, a);
-        boolean b7 = graph.isDirectedFromTo(c, a);
-        boolean b8 = graph.isUndirectedFromTo(d, a);
-
-        return b4 && b5 && b6 && b7 && b8;
-    }
-
-    private void meekR4(Node a, Graph graph, IKnowledge knowledge) {
+    private void meekR4(int a) {
         if (!useRule4) {
             return;
         }
 
-        List<Node> adjacentNodes = graph.getAdjacentNodes(a);
+        int[] adj = adjacents(a);
+        int size = degree[a];
 
-        if (adjacentNodes.size() < 3) {
+        if (size < 3) {
             return;
         }
 
-        for (Node c : adjacentNodes) {
-            List<Node> otherAdjacents = new LinkedList<>(adjacentNodes);
-            otherAdjacents.remove(c);
-
-            ChoiceGenerator cg = new ChoiceGenerator(otherAdjacents.size(), 2);
-            int[] combination;
-
-            while ((combination = cg.next()) != null) {
-                Node b = otherAdjacents.get(combination[0]);
-                Node d = otherAdjacents.get(combination[1]);
-
-                if (!(graph.isAdjacentTo(a, b) && graph.isAdjacentTo(a, d) && graph.isAdjacentTo(b, c) && graph.isAdjacentTo(d, c) && graph.isAdjacentTo(a, c))) {
-                    if (graph.isDirectedFromTo(b, c) && graph.isDirectedFromTo(c, d) && graph.isUndirectedFromTo(a, d)) {
-                        if (isArrowpointAllowed(a, c, knowledge)) {
-                            if (!isUnshieldedNoncollider(b, a, d, graph)) {
-                                continue;
-                            }
-//
-                            if (isArrowpointAllowed(c, d, knowledge)) {
-                                direct(c, d, graph);
-                                log(SearchLogUtils.edgeOrientedMsg("Meek R4", graph.getEdge(c, d)));
-                                continue;
-                            }
-                        }
-                    }
+        for (int i = 0; i < size; i++) {
+            int c = adj[i];
 
-                    Node e = d;
-                    d = b;
-                    b = e;
-
-                    if (graph.isDirectedFromTo(b, c) && graph.isDirectedFromTo(c, d) && graph.isUndirectedFromTo(a, d)) {
-                        if (isArrowpointAllowed(a, c, knowledge)) {
-                            if (!isUnshieldedNoncollider(b, a, d, graph)) {
-                                continue;
-                            }
-
-                            if (isArrowpointAllowed(c, d, knowledge)) {
-                                direct(c, d, graph);
-                                log(SearchLogUtils.edgeOrientedMsg("Meek R4", graph.getEdge(c, d)));
-                                continue;
-                            }
+            for (int j = 0; j < size; j++) {
+                if (j == i) continue;
+
+                for (int k = j + 1; k < size; k++) {
+                    if (k == i) continue;
+
+                    int b = adj[j];
+                    int d = adj[k];
+
+                    // a is adjacent to each of b, c and d already.
+                    if (!(isAdjacent(b, c) && isAdjacent(d, c))) {
+                        if (!r4Helper(a, b, c, d)) {
+                            r4Helper(a, d, c, b);
                         }
                     }
                 }
@@ -353,97 +366,345 @@ public class MeekRules implements ImpliedOrientation {
         }
     }
 
-    private void direct(Node a, Node c, Graph graph) {
-        Edge before = graph.getEdge(a, c);
+    // Returns true if the b, d order settled the triple, so the reverse order needn't be tried.
+    private boolean r4Helper(int a, int b, int c, int d) {
+        if (mark(b, c) == OUT && mark(c, d) == OUT && mark(a, d) == UNDIRECTED) {
+            if (isArrowpointAllowed(a, c)) {
+                if (!isUnshieldedNoncollider(b, a, d)) {
+                    return true;
+                }
 
-        if (knowledge != null && knowledge.isForbidden(a.getName(), c.getName())) {
-            return;
+                if (isArrowpointAllowed(c, d)) {
+                    direct(c, d);
+                    logOriented("Meek R4", c, d);
+                    return true;
+                }
+            }
         }
 
-        Edge after = Edges.directedEdge(a, c);
+        return false;
+    }
 
-        visited.add(a);
-        visited.add(c);
+    private void direct(int a, int c) {
+        Node x = indexed[a];
+        Node y = indexed[c];
 
-        graph.removeEdge(before);
-        graph.addEdge(after);
+        if (knowledge != null && knowledge.isForbidden(x.getName(), y.getName())) {
+            return;
+        }
+
+        if (aggressivelyPreventCycles && existsDirectedPath(c, a)) {
+            return;
+        }
+
+        visited.add(x);
+        visited.add(y);
 
-        oriented.add(after);
+        setMark(a, c, OUT);
+        int k = position(a, c);
+        oriented[a][k] = true;
 
         // Adding last works, checking for c or not. Adding first works, but when it is
-        // checked whether directStack already contains it it seems to produce one in
+        // checked whether the stack already contains it it seems to produce one in
         // 3000 trial error for FGES. Do not understand this yet.
-        directStack.addLast(c);
+        push(c);
     }
 
-    private static boolean isUnshieldedNoncollider(Node a, Node b, Node c,
-                                                   Graph graph) {
-        if (!graph.isAdjacentTo(a, b)) {
+    private boolean isUnshieldedNoncollider(int a, int b, int c) {
+        if (!isAdjacent(a, b)) {
             return false;
         }
 
-        if (!graph.isAdjacentTo(c, b)) {
+        if (!isAdjacent(c, b)) {
             return false;
         }
 
-        if (graph.isAdjacentTo(a, c)) {
+        if (isAdjacent(a, c)) {
             return false;
         }
 
-        if (graph.isAmbiguousTriple(a, b, c)) {
+        if (graph.isAmbiguousTriple(indexed[a], indexed[b], indexed[c])) {
             return false;
         }
 
-        return !(graph.getEndpoint(a, b) == Endpoint.ARROW &&
-                graph.getEndpoint(c, b) == Endpoint.ARROW);
-
+        return !(isArrowInto(b, a) && isArrowInto(b, c));
     }
 
-
-    private static boolean isArrowpointAllowed(Node from, Node to, IKnowledge knowledge) {
+    private boolean isArrowpointAllowed(int from, int to) {
         if (knowledge == null) return true;
-        return !knowledge.isRequired(to.toString(), from.toString()) &&
-                !knowledge.isForbidden(from.toString(), to.toString());
+        return !knowledge.isRequired(indexed[to].toString(), indexed[from].toString()) &&
+                !knowledge.isForbidden(indexed[from].toString(), indexed[to].toString());
     }
 
-    private void undirectUnforcedEdges(Node y, Graph graph) {
-        Set<Node> parentsToUndirect = new HashSet<>();
-        List<Node> parents = graph.getParents(y);
-
-        NEXT_EDGE:
-        for (Node x : parents) {
-            for (Node parent : parents) {
-                if (parent != x) {
-                    if (!graph.isAdjacentTo(parent, x)) {
-                        oriented.add(graph.getEdge(x, y));
-                        continue NEXT_EDGE;
-                    }
+    private void undirectUnforcedEdges(int y) {
+        int[] adj = adjacents(y);
+        int size = degree[y];
+        byte[] my = marks[y];
+
+        // A parent x of y is forced if some other parent of y is not adjacent to x. Forcing is decided for all
+        // parents before any of them is undirected.
+        for (int i = 0; i < size; i++) {
+            if (my[i] != IN) continue;
+            int x = adj[i];
+
+            for (int j = 0; j < size; j++) {
+                if (j != i && my[j] == IN && !isAdjacent(adj[j], x)) {
+                    int k = position(x, y);
+                    oriented[x][k] = true;
+                    break;
                 }
             }
-
-            parentsToUndirect.add(x);
         }
 
         boolean didit = false;
 
-        for (Node x : parentsToUndirect) {
-            boolean mustOrient = knowledge.isRequired(x.getName(), y.getName()) ||
-                    knowledge.isForbidden(y.getName(), x.getName());
-            if (!oriented.contains(graph.getEdge(x, y)) && !mustOrient) {
-                graph.removeEdge(x, y);
-                graph.addUndirectedEdge(x, y);
-                visited.add(x);
-                visited.add(y);
+        for (int i = 0; i < size; i++) {
+            if (my[i] != IN) continue;
+            int x = adj[i];
+
+            Node _x = indexed[x];
+            Node _y = indexed[y];
+
+            boolean mustOrient = knowledge != null && (knowledge.isRequired(_x.getName(), _y.getName()) ||
+                    knowledge.isForbidden(_y.getName(), _x.getName()));
+
+            int k = position(x, y);
+
+            if (!oriented[x][k] && !mustOrient) {
+                setMark(x, y, UNDIRECTED);
+                visited.add(_x);
+                visited.add(_y);
                 didit = true;
             }
         }
 
         if (didit) {
-            for (Node z : graph.getAdjacentNodes(y)) {
-                directStack.addLast(z);
+            for (int i = 0; i < size; i++) {
+                push(adj[i]);
+            }
+
+            push(y);
+        }
+    }
+
+    // True if there is a directed path from one node to another, following the marks.
+    private boolean existsDirectedPath(int from, int to) {
+        int current = ++stamp;
+        int head = 0;
+        int tail = 0;
+
+        queue[tail++] = from;
+        seen[from] = current;
+
+        while (head < tail) {
+            int node = queue[head++];
+            int[] adj = adjacents(node);
+            byte[] m = marks[node];
+
+            for (int k = 0; k < degree[node]; k++) {
+                if (m[k] != OUT) continue;
+                int next = adj[k];
+
+                if (next == to) return true;
+
+                if (seen[next] != current) {
+                    seen[next] = current;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    //============================== The index ===================================//
+
+    private int index(Node node) {
+        Integer i = indices.get(node);
+
+        if (i != null) {
+            return i;
+        }
+
+        if (numIndexed == indexed.length) {
+            int capacity = 2 * indexed.length;
+            indexed = Arrays.copyOf(indexed, capacity);
+            degree = Arrays.copyOf(degree, capacity);
+            adjacents = Arrays.copyOf(adjacents, capacity);
+            marks = Arrays.copyOf(marks, capacity);
+            originalMarks = Arrays.copyOf(originalMarks, capacity);
+            oriented = Arrays.copyOf(oriented, capacity);
+            queue = Arrays.copyOf(queue, capacity);
+            seen = Arrays.copyOf(seen, capacity);
+        }
+
+        indexed[numIndexed] = node;
+        degree[numIndexed] = -1;
+        indices.put(node, numIndexed);
+        return numIndexed++;
+    }
+
+    // The indices of the adjacents of node i, reading them from the graph the first time they are needed. Edges
+    // to nodes already read take their marks from those nodes, since the graph doesn't have the changes yet.
+    private int[] adjacents(int i) {
+        if (degree[i] != -1) {
+            return adjacents[i];
+        }
+
+        Node node = indexed[i];
+        List<Edge> edges = graph.getEdges(node);
+
+        if (adjacents[i] == null || adjacents[i].length < edges.size()) {
+            int capacity = Math.max(edges.size(), 4);
+            adjacents[i] = new int[capacity];
+            marks[i] = new byte[capacity];
+            originalMarks[i] = new byte[capacity];
+            oriented[i] = new boolean[capacity];
+        }
+
+        int[] adj = adjacents[i];
+        byte[] m = marks[i];
+        byte[] o = originalMarks[i];
+        int n = 0;
+
+        EDGES:
+        for (Edge edge : edges) {
+            int j = index(edge.getDistalNode(node));
+
+            if (j == i) continue;
+
+            for (int k = 0; k < n; k++) {
+                if (adj[k] == j) continue EDGES;
             }
 
-            directStack.addLast(y);
+            adj[n] = j;
+
+            if (degree[j] != -1) {
+                int k = position(j, i);
+                m[n] = reverse(marks[j][k]);
+                o[n] = reverse(originalMarks[j][k]);
+            } else {
+                m[n] = mark(edge, node);
+                o[n] = m[n];
+            }
+
+            n++;
+        }
+
+        Arrays.fill(oriented[i], 0, n, false);
+        degree[i] = n;
+        return adj;
+    }
+
+    private static byte mark(Edge edge, Node node) {
+        if (Edges.isUndirectedEdge(edge)) {
+            return UNDIRECTED;
+        } else if (Edges.isDirectedEdge(edge)) {
+            return edge.pointsTowards(node) ? IN : OUT;
+        } else {
+            return OTHER;
+        }
+    }
+
+    // The position of j among the adjacents of i, or -1 if they are not adjacent.
+    private int position(int i, int j) {
+        int[] adj = adjacents(i);
+
+        for (int k = 0; k < degree[i]; k++) {
+            if (adj[k] == j) return k;
+        }
+
+        return -1;
+    }
+
+    private byte mark(int i, int j) {
+        int k = position(i, j);
+        return k == -1 ? NOT_ADJACENT : marks[i][k];
+    }
+
+    // Scans whichever of the two rows is shorter, if both have been read.
+    private boolean isAdjacent(int i, int j) {
+        if (degree[i] == -1 || (degree[j] != -1 && degree[j] < degree[i])) {
+            return position(j, i) != -1;
+        }
+
+        return position(i, j) != -1;
+    }
+
+    // True if the edge between a and b has an arrowhead at b.
+    private boolean isArrowInto(int b, int a) {
+        byte m = mark(b, a);
+        return m == IN || (m == OTHER && graph.getEndpoint(indexed[a], indexed[b]) == Endpoint.ARROW);
+    }
+
+    // Sets the mark of i---j as seen from i, and the reverse mark as seen from j if j's row has been read.
+    private void setMark(int i, int j, byte m) {
+        int k = position(i, j);
+        marks[i][k] = m;
+
+        if (degree[j] != -1) {
+            k = position(j, i);
+            marks[j][k] = reverse(m);
+        }
+    }
+
+    private static byte reverse(byte m) {
+        return m == OUT ? IN : m == IN ? OUT : m;
+    }
+
+    // Replaces in the graph each edge whose marks have changed. Only undirected and directed edges are ever changed;
+    // an undirected edge that was directed is added parent first, as it always has been.
+    private void applyChanges() {
+        for (int i = 0; i < numIndexed; i++) {
+            if (degree[i] == -1) continue;
+
+            int[] adj = adjacents[i];
+
+            for (int k = 0; k < degree[i]; k++) {
+                int j = adj[k];
+                byte m = marks[i][k];
+
+                // Each edge is done from the lower index, unless the other end hasn't been read.
+                if (m == originalMarks[i][k] || (j < i && degree[j] != -1)) continue;
+
+                Node x = indexed[i];
+                Node y = indexed[j];
+
+                graph.removeEdge(graph.getEdge(x, y));
+
+                if (m == UNDIRECTED && originalMarks[i][k] == IN) {
+                    graph.addUndirectedEdge(y, x);
+                } else if (m == UNDIRECTED) {
+                    graph.addUndirectedEdge(x, y);
+                } else if (m == OUT) {
+                    graph.addDirectedEdge(x, y);
+                } else {
+                    graph.addDirectedEdge(y, x);
+                }
+            }
+        }
+    }
+
+    private void push(int node) {
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, 2 * stack.length);
+        }
+
+        stack[stackSize++] = node;
+    }
+
+    private void clearIndex() {
+        // The rows are kept for the next call.
+        Arrays.fill(indexed, 0, numIndexed, null);
+        indices.clear();
+        numIndexed = 0;
+        stackSize = 0;
+        graph = null;
+    }
+
+    private void logOriented(String rule, int x, int y) {
+        if (verbose) {
+            log(SearchLogUtils.edgeOrientedMsg(rule, Edges.directedEdge(indexed[x], indexed[y])));
         }
     }
 
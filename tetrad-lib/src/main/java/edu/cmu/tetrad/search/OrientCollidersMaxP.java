@@ -200,8 +200,7 @@ public final class OrientCollidersMaxP {
 
         while ((comb2 = cg1.next()) != null) {
             List<Node> s = GraphUtils.asList(comb2, adja);
-            independenceTest.isIndependent(a, c, s);
-            double _score = independenceTest.getScore();
+            double _score = independenceTest.checkIndependence(a, c, s).getScore();
 
             if (_score < score) {
                 score = _score;
@@ -214,8 +213,7 @@ public final class OrientCollidersMaxP {
 
         while ((comb3 = cg2.next()) != null) {
             List<Node> s = GraphUtils.asList(comb3, adjc);
-            independenceTest.isIndependent(c, a, s);
-            double _score = independenceTest.getScore();
+            double _score = independenceTest.checkIndependence(c, a, s).getScore();
 
             if (_score < score) {
                 score = _score;
@@ -238,10 +236,8 @@ public final class OrientCollidersMaxP {
             return;
         }
 
-        independenceTest.isIndependent(a, c);
-        double s1 = independenceTest.getScore();
-        independenceTest.isIndependent(a, c, b);
-        double s2 = independenceTest.getScore();
+        double s1 = independenceTest.checkIndependence(a, c, Collections.<Node>emptyList()).getScore();
+        double s2 = independenceTest.checkIndependence(a, c, Collections.singletonList(b)).getScore();
 
         boolean mycollider2 = s2 > s1;
 
@@ -333,8 +329,7 @@ public final class OrientCollidersMaxP {
 
 //                    if (isForbidden(a, c, new ArrayList<>(v2)))
 
-                    getIndependenceTest().isIndependent(a, c, new ArrayList<>(v2));
-                    double p2 = getIndependenceTest().getScore();
+                    double p2 = getIndependenceTest().checkIndependence(a, c, new ArrayList<>(v2)).getScore();
 
                     if (p2 < 0) {
                         return new ArrayList<>(v2);
@@ -136,6 +136,9 @@ public final class PcAll implements GraphSearch {
     private ColliderDiscovery colliderDiscovery = ColliderDiscovery.FAS_SEPSETS;
     private ConflictRule conflictRule = ConflictRule.OVERWRITE;
 
+    // Bounds the search, if set.
+    private SearchContext context = null;
+
     //=============================CONSTRUCTORS==========================//
 
     /**
@@ -333,11 +336,24 @@ public final class PcAll implements GraphSearch {
         fas.setDepth(getDepth());
         fas.setVerbose(verbose);
 
+        if (context != null) {
+            context.start();
+            fas.setContext(context);
+        }
+
         // Note that we are ignoring the sepset map returned by this method
         // on purpose; it is not used in this search.
         graph = fas.search();
         sepsets = fas.getSepsets();
 
+        if (context != null && context.shouldStop()) {
+            // Partial; the adjacencies so far, unoriented.
+            graph = GraphUtils.replaceNodes(graph, nodes);
+            this.elapsedTime = System.currentTimeMillis() - startTime;
+            TetradLogger.getInstance().log("info", "Stopped early: " + context.getStopReason());
+            return graph;
+        }
+
         SearchGraphUtils.pcOrientbk(knowledge, graph, nodes);
 
         if (colliderDiscovery == ColliderDiscovery.FAS_SEPSETS) {
@@ -662,6 +678,21 @@ public final class PcAll implements GraphSearch {
         this.verbose = verbose;
     }
 
+    /**
+     * Bounds the adjacency search by the given context, or removes the bounds if null. If it is
+     * stopped early, the orientation steps are skipped and the adjacencies reached are returned
+     * unoriented.
+     */
+    @Override
+    public void setContext(SearchContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public SearchContext getContext() {
+        return context;
+    }
+
     public Graph getInitialGraph() {
         return initialGraph;
     }
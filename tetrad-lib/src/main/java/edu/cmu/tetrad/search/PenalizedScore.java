@@ -0,0 +1,68 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+/**
+ * A score whose local scores are a fit term, which doesn't depend on the penalty discount, less the
+ * penalty discount times a penalty term, which doesn't depend on the data beyond its size and
+ * shape. That is, for the current penalty discount c,
+ * <pre>
+ * localScore(node, parents) = localFit(node, parents) - c * localPenalty(node, parents)
+ * localScoreDiff(x, y, z) = localFitDiff(x, y, z) - c * localPenaltyDiff(x, y, z)
+ * </pre>
+ * up to rounding, and localScoreDiff(x, y) = localScore(y, x) - localScore(y). The fit terms can
+ * then be computed once and the score had for any penalty discount; see PenaltyPathScore.
+ *
+ * @author Joseph Ramsey
+ */
+public interface PenalizedScore extends Score {
+
+    double getPenaltyDiscount();
+
+    void setPenaltyDiscount(double penaltyDiscount);
+
+    /**
+     * @return the part of localScore(node, parents) that doesn't depend on the penalty discount, or
+     * NaN if the local score would be NaN.
+     */
+    double localFit(int node, int[] parents);
+
+    /**
+     * @return the amount by which localScore(node, parents) goes down for each unit of penalty
+     * discount.
+     */
+    double localPenalty(int node, int[] parents);
+
+    /**
+     * @return the part of localScoreDiff(x, y, z) that doesn't depend on the penalty discount, or NaN
+     * if the difference would be NaN.
+     */
+    double localFitDiff(int x, int y, int[] z);
+
+    /**
+     * @return the amount by which localScoreDiff(x, y, z) goes down for each unit of penalty discount.
+     */
+    double localPenaltyDiff(int x, int y, int[] z);
+}
+
+
+
@@ -0,0 +1,199 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.graph.Node;
+
+import java.util.List;
+
+/**
+ * Wraps a PenalizedScore, caching its fit terms, which don't depend on the penalty discount, and
+ * scoring with a penalty discount of its own. Changing the penalty discount here leaves the cache
+ * valid, so a search can be rerun for a series of penalty discounts paying for the fit of each
+ * (node, parents) only once; see Fges.searchPath(). The penalty discount of the wrapped score is
+ * not used.
+ *
+ * @author Joseph Ramsey
+ */
+public class PenaltyPathScore implements PenalizedScore {
+
+    // The wrapped score.
+    private final PenalizedScore score;
+
+    // Cache for localFit(node, parents).
+    private final LocalScoreCache fits;
+
+    // Cache for localFitDiff(x, y, z).
+    private final LocalScoreCache fitDiffs;
+
+    private volatile double penaltyDiscount;
+
+    public PenaltyPathScore(PenalizedScore score) {
+        this(score, LocalScoreCache.DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param score    The score to wrap. The penalty discount starts out as its penalty discount.
+     * @param maxBytes The approximate byte budget for the cache, split evenly between local fits
+     *                 and local fit differences.
+     */
+    public PenaltyPathScore(PenalizedScore score, long maxBytes) {
+        if (score == null) throw new NullPointerException();
+        this.score = score;
+        this.fits = new LocalScoreCache(Math.max(1, maxBytes / 2));
+        this.fitDiffs = new LocalScoreCache(Math.max(1, maxBytes / 2));
+        this.penaltyDiscount = score.getPenaltyDiscount();
+    }
+
+    @Override
+    public double localScore(int node, int... parents) {
+        return localFit(node, parents) - penaltyDiscount * score.localPenalty(node, parents);
+    }
+
+    @Override
+    public double localScore(int node, int parent) {
+        return localScore(node, new int[]{parent});
+    }
+
+    @Override
+    public double localScore(int node) {
+        return localScore(node, new int[0]);
+    }
+
+    @Override
+    public double localScoreDiff(int x, int y, int[] z) {
+        return localFitDiff(x, y, z) - penaltyDiscount * score.localPenaltyDiff(x, y, z);
+    }
+
+    @Override
+    public double localScoreDiff(int x, int y) {
+        return localScore(y, x) - localScore(y);
+    }
+
+    @Override
+    public double localFit(int node, int[] parents) {
+        Double cached = fits.lookup(node, -1, parents);
+        if (cached != null) return cached;
+        double fit = score.localFit(node, parents);
+        fits.add(node, -1, parents, fit);
+        return fit;
+    }
+
+    @Override
+    public double localPenalty(int node, int[] parents) {
+        return score.localPenalty(node, parents);
+    }
+
+    @Override
+    public double localFitDiff(int x, int y, int[] z) {
+        Double cached = fitDiffs.lookup(y, x, z);
+        if (cached != null) return cached;
+        double fit = score.localFitDiff(x, y, z);
+        fitDiffs.add(y, x, z, fit);
+        return fit;
+    }
+
+    @Override
+    public double localPenaltyDiff(int x, int y, int[] z) {
+        return score.localPenaltyDiff(x, y, z);
+    }
+
+    @Override
+    public double getPenaltyDiscount() {
+        return penaltyDiscount;
+    }
+
+    /**
+     * Sets the penalty discount to score with. The cached fits stay valid.
+     */
+    @Override
+    public void setPenaltyDiscount(double penaltyDiscount) {
+        this.penaltyDiscount = penaltyDiscount;
+    }
+
+    @Override
+    public List<Node> getVariables() {
+        return score.getVariables();
+    }
+
+    @Override
+    public boolean isEffectEdge(double bump) {
+        return score.isEffectEdge(bump);
+    }
+
+    @Override
+    public int getSampleSize() {
+        return score.getSampleSize();
+    }
+
+    @Override
+    public Node getVariable(String targetName) {
+        return score.getVariable(targetName);
+    }
+
+    @Override
+    public int getMaxDegree() {
+        return score.getMaxDegree();
+    }
+
+    @Override
+    public boolean determines(List<Node> z, Node y) {
+        return score.determines(z, y);
+    }
+
+    /**
+     * @return the wrapped score.
+     */
+    public PenalizedScore getScore() {
+        return score;
+    }
+
+    /**
+     * @return the number of fits answered from the cache.
+     */
+    public long getHits() {
+        return fits.getHits() + fitDiffs.getHits();
+    }
+
+    /**
+     * @return the number of fits passed through to the wrapped score.
+     */
+    public long getMisses() {
+        return fits.getMisses() + fitDiffs.getMisses();
+    }
+
+    /**
+     * Empties the cache and resets the counters.
+     */
+    public void clear() {
+        fits.clear();
+        fitDiffs.clear();
+    }
+
+    public String toString() {
+        return "Penalty path " + score + ": penalty discount = " + penaltyDiscount
+                + " hits = " + getHits() + " misses = " + getMisses();
+    }
+}
+
+
+
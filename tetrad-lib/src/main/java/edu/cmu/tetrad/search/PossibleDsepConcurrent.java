@@ -0,0 +1,221 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.data.IKnowledge;
+import edu.cmu.tetrad.data.Knowledge2;
+import edu.cmu.tetrad.graph.Edge;
+import edu.cmu.tetrad.graph.EdgeListGraph;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The possible-D-sep step of FCI (Spirtes et al., 1993, step D), done in parallel. Every edge is
+ * tested against a snapshot of the graph as it stood when the step began, as PC-Stable does for
+ * adjacencies, so the edges can be tested at once and the result does not depend on the order
+ * in which they are visited. The Possible-D-Sep sets of each edge and the conditioning sets
+ * drawn from them are computed by concurrent tasks; the edges found to be removable are then
+ * removed, and their sepsets recorded, in one pass afterward.
+ * <p>
+ * The independence test is called from several threads at once, so it must be thread safe.
+ *
+ * @author Joseph Ramsey
+ */
+public class PossibleDsepConcurrent {
+
+    private Graph graph;
+    private IndependenceTest test;
+    private IKnowledge knowledge = new Knowledge2();
+    private int depth = -1;
+    private int maxPathLength = -1;
+    private boolean verbose = false;
+    private SearchContext context = null;
+
+    private ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+
+    /**
+     * The number of edges a single task tests without splitting further.
+     */
+    private int chunk = 4;
+
+    /**
+     * @param graph The graph to remove edges from, with colliders oriented as by rule R0.
+     * @param test  The independence test, which must be thread safe.
+     */
+    public PossibleDsepConcurrent(Graph graph, IndependenceTest test) {
+        if (graph == null) throw new NullPointerException("Graph not specified.");
+        if (test == null) throw new NullPointerException("Independence test not specified.");
+
+        this.graph = graph;
+        this.test = test;
+    }
+
+    //============================== Public Methods =========================//
+
+    /**
+     * Removes from the graph each edge x--y for which x and y are independent conditional on some
+     * subset of Possible-D-Sep(x, y) or of Possible-D-Sep(y, x), as of the graph given in the
+     * constructor.
+     *
+     * @return the sepsets of the edges removed.
+     */
+    public SepsetMap search() {
+        final List<Edge> edges = new ArrayList<>(graph.getEdges());
+        final Graph snapshot = new EdgeListGraph(graph);
+
+        // Each task sets only the entries of its own edges.
+        final List<List<Node>> sepsets = new ArrayList<>(Collections.<List<Node>>nCopies(edges.size(), null));
+
+        final SepsetsPossibleDsep producer = new SepsetsPossibleDsep(snapshot, test, knowledge, depth, maxPathLength);
+
+        class EdgeTask extends RecursiveTask<Boolean> {
+            private static final long serialVersionUID = 23L;
+
+            private int from;
+            private int to;
+
+            public EdgeTask(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected Boolean compute() {
+                if (to - from <= chunk) {
+                    for (int i = from; i < to; i++) {
+                        if (stopped()) break;
+
+                        Edge edge = edges.get(i);
+                        sepsets.set(i, producer.getSepset(edge.getNode1(), edge.getNode2()));
+                    }
+
+                    return true;
+                } else {
+                    int mid = (to + from) / 2;
+
+                    EdgeTask left = new EdgeTask(from, mid);
+                    EdgeTask right = new EdgeTask(mid, to);
+
+                    left.fork();
+                    right.compute();
+                    left.join();
+
+                    return true;
+                }
+            }
+        }
+
+        pool.invoke(new EdgeTask(0, edges.size()));
+
+        SepsetMap sepsetMap = new SepsetMap();
+
+        for (int i = 0; i < edges.size(); i++) {
+            List<Node> sepset = sepsets.get(i);
+            if (sepset == null) continue;
+
+            Node x = edges.get(i).getNode1();
+            Node y = edges.get(i).getNode2();
+
+            graph.removeEdge(x, y);
+            sepsetMap.set(x, y, sepset);
+
+            if (verbose) {
+                System.out.println("Possible DSEP Removed " + x + "--- " + y + " sepset = " + sepset);
+            }
+        }
+
+        return sepsetMap;
+    }
+
+    public IKnowledge getKnowledge() {
+        return knowledge;
+    }
+
+    public void setKnowledge(IKnowledge knowledge) {
+        if (knowledge == null) throw new NullPointerException("Cannot set knowledge to null");
+        this.knowledge = knowledge;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @param depth The largest conditioning set to try, or -1 for no limit.
+     */
+    public void setDepth(int depth) {
+        if (depth < -1) {
+            throw new IllegalArgumentException("Depth must be -1 (unlimited) or >= 0: " + depth);
+        }
+
+        this.depth = depth;
+    }
+
+    public int getMaxPathLength() {
+        return maxPathLength;
+    }
+
+    /**
+     * @param maxPathLength The longest path to follow in finding Possible-D-Sep sets, or -1 for no
+     *                      limit.
+     */
+    public void setMaxPathLength(int maxPathLength) {
+        if (maxPathLength < -1) {
+            throw new IllegalArgumentException("Max path length must be -1 (unlimited) or >= 0: " + maxPathLength);
+        }
+
+        this.maxPathLength = maxPathLength;
+    }
+
+    public boolean isVerbose() {
+        return verbose;
+    }
+
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    /**
+     * Bounds the search by the given context, or removes the bounds if null. Edges not yet tested
+     * when the context stops the search are kept.
+     */
+    public void setContext(SearchContext context) {
+        this.context = context;
+    }
+
+    public SearchContext getContext() {
+        return context;
+    }
+
+    //============================== Private Methods =========================//
+
+    private boolean stopped() {
+        return context != null && context.shouldStop();
+    }
+}
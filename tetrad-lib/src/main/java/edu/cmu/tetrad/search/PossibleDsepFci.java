@@ -59,6 +59,11 @@ public class PossibleDsepFci {
     private IKnowledge knowledge = new Knowledge2();
     private int maxReachablePathLength = -1;
 
+    /**
+     * True if the edges should be tested in parallel by PossibleDsepConcurrent.
+     */
+    private boolean concurrent = false;
+
     /**
      * Creates a new SepSet and assumes that none of the variables have yet been checked.
      *
@@ -93,6 +98,14 @@ public class PossibleDsepFci {
      * constructor is directly changed.
      */
     public SepsetMap search() {
+        if (concurrent) {
+            PossibleDsepConcurrent possibleDsep = new PossibleDsepConcurrent(graph, test);
+            possibleDsep.setKnowledge(getKnowledge());
+            possibleDsep.setDepth(getDepth());
+            possibleDsep.setMaxPathLength(getMaxReachablePathLength());
+            sepset.addAll(possibleDsep.search());
+            return sepset;
+        }
 
         for (Edge edge : new ArrayList<>(graph.getEdges())) {
             Node x = edge.getNode1();
@@ -229,6 +242,20 @@ public class PossibleDsepFci {
 
         this.maxReachablePathLength = maxReachablePathLength == -1 ? Integer.MAX_VALUE : maxReachablePathLength;
     }
+
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    /**
+     * @param concurrent True if search() should hand the edges to PossibleDsepConcurrent, which tests
+     *                   them in parallel against the graph as it was when the search began, trying
+     *                   Possible-D-Sep sets from both ends of each edge. The independence test must
+     *                   then be thread safe. False, the default, keeps the sequential search here.
+     */
+    public void setConcurrent(boolean concurrent) {
+        this.concurrent = concurrent;
+    }
 }
 
 
@@ -87,6 +87,11 @@ public final class ProbFci implements GraphSearch {
      */
     private boolean possibleDsepSearchDone = true;
 
+    /**
+     * True iff the possible dsep search tests all edges in parallel. See PossibleDsepConcurrent.
+     */
+    private boolean possibleDsepConcurrent = false;
+
     /**
      * The maximum length for any discriminating path. -1 if unlimited; otherwise, a positive integer.
      */
@@ -240,6 +245,7 @@ public final class ProbFci implements GraphSearch {
                 possibleDSep.setDepth(getDepth());
                 possibleDSep.setKnowledge(getKnowledge());
                 possibleDSep.setMaxPathLength(getMaxReachablePathLength());
+                possibleDSep.setConcurrent(possibleDsepConcurrent);
                 this.sepsets.addAll(possibleDSep.search());
                 long time4 = System.currentTimeMillis();
                 logger.log("info", "Step D: " + (time4 - time3) / 1000. + "s");
@@ -1586,6 +1592,21 @@ public final class ProbFci implements GraphSearch {
         this.possibleDsepSearchDone = possibleDsepSearchDone;
     }
 
+    public boolean isPossibleDsepConcurrent() {
+        return possibleDsepConcurrent;
+    }
+
+    /**
+     * @param possibleDsepConcurrent True if the possible dsep search should test all edges in
+     *                               parallel, against the graph as it was when the search began,
+     *                               so that the result does not depend on the order of the edges.
+     *                               See PossibleDsepConcurrent. The independence test must then be
+     *                               thread safe.
+     */
+    public void setPossibleDsepConcurrent(boolean possibleDsepConcurrent) {
+        this.possibleDsepConcurrent = possibleDsepConcurrent;
+    }
+
     /**
      * @return the maximum length of any discriminating path, or -1 of unlimited.
      */
@@ -510,7 +510,16 @@ public final class Rfci implements GraphSearch {
 
 
         FciOrient orient = new FciOrient(new SepsetsSet(sepsets, independenceTest));
+        orient.startIncremental(graph);
 
+        try {
+            doFinalOrientation(orient);
+        } finally {
+            orient.stopIncremental();
+        }
+    }
+
+    private void doFinalOrientation(FciOrient orient) {
         // This loop handles Zhang's rules R1-R3 (same as in the original FCI)
         changeFlag = true;
 
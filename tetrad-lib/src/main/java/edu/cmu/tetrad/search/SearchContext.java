@@ -0,0 +1,232 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds a search (see GraphSearch.setContext) by a time limit, a budget of independence tests and
+ * score evaluations, and a heap budget, and lets another thread cancel it. Searches check
+ * shouldStop() between steps and in their parallel tasks, and when it says to stop they return
+ * the best graph they have so far; isStopped() then says that graph is partial, and
+ * getStopReason() why.
+ * <p>
+ * A context is for one run of a search, shared with any searches nested in it (e.g. the Fges
+ * inside GFci); the time limit counts from the first of them to start. Once stopped, it stays
+ * stopped. All methods may be called from any thread.
+ *
+ * @author Joseph Ramsey
+ */
+public final class SearchContext implements SearchCounter {
+
+    /**
+     * Why a search was stopped.
+     */
+    public enum StopReason {CANCELLED, TIME_LIMIT, OPERATION_LIMIT, MEMORY_LIMIT}
+
+    // The limits; -1 means none.
+    private volatile long timeLimit = -1;
+    private volatile long maxOperations = -1;
+    private volatile long maxMemory = -1;
+
+    // The deadline in System.nanoTime() terms, once started, if there is a time limit.
+    private volatile long deadline = 0;
+    private volatile boolean started = false;
+
+    private final LongAdder operations = new LongAdder();
+
+    private volatile boolean cancelled = false;
+    private volatile StopReason stopReason = null;
+
+    //==============================PUBLIC METHODS========================//
+
+    /**
+     * @param timeLimit The number of milliseconds the search may run, counted from start(), or -1
+     *                  for no limit.
+     */
+    public void setTimeLimit(long timeLimit) {
+        if (timeLimit < -1) throw new IllegalArgumentException("Time limit must be -1 or >= 0: " + timeLimit);
+        this.timeLimit = timeLimit;
+        if (started) deadline = deadline(System.nanoTime());
+    }
+
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    /**
+     * @param maxOperations The number of independence tests plus score evaluations the search may do,
+     *                      or -1 for no limit.
+     */
+    public void setMaxOperations(long maxOperations) {
+        if (maxOperations < -1) throw new IllegalArgumentException("Budget must be -1 or >= 0: " + maxOperations);
+        this.maxOperations = maxOperations;
+    }
+
+    public long getMaxOperations() {
+        return maxOperations;
+    }
+
+    /**
+     * @param maxMemory The number of bytes of heap in use past which the search should stop, or -1
+     *                  for no limit. Heap in use includes garbage not yet collected, so this is a
+     *                  rough bound.
+     */
+    public void setMaxMemory(long maxMemory) {
+        if (maxMemory < -1) throw new IllegalArgumentException("Budget must be -1 or >= 0: " + maxMemory);
+        this.maxMemory = maxMemory;
+    }
+
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * Asks the search to stop at its next check. May be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Starts the clock for the time limit, if it hasn't been started. Searches call this when they
+     * start.
+     */
+    public synchronized void start() {
+        if (started) return;
+        deadline = deadline(System.nanoTime());
+        started = true;
+    }
+
+    /**
+     * @return true if the search should stop because it has been cancelled or has run out of time,
+     * operations or memory. Once this has returned true, it always does.
+     */
+    public boolean shouldStop() {
+        if (stopReason != null) return true;
+
+        if (cancelled) {
+            return stop(StopReason.CANCELLED);
+        }
+
+        if (started && timeLimit != -1 && System.nanoTime() - deadline > 0) {
+            return stop(StopReason.TIME_LIMIT);
+        }
+
+        long maxOperations = this.maxOperations;
+
+        if (maxOperations != -1 && operations.sum() >= maxOperations) {
+            return stop(StopReason.OPERATION_LIMIT);
+        }
+
+        long maxMemory = this.maxMemory;
+
+        if (maxMemory != -1) {
+            Runtime runtime = Runtime.getRuntime();
+
+            if (runtime.totalMemory() - runtime.freeMemory() > maxMemory) {
+                return stop(StopReason.MEMORY_LIMIT);
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return true if a search using this context was stopped before finishing, so that the graph
+     * it returned is partial.
+     */
+    public boolean isStopped() {
+        return stopReason != null;
+    }
+
+    /**
+     * @return why the search was stopped, or null if it wasn't.
+     */
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+
+    /**
+     * @return the number of independence tests and score evaluations counted so far.
+     */
+    public long getNumOperations() {
+        return operations.sum();
+    }
+
+    /**
+     * @return the given test wrapped so that calls to it count toward the operation budget, or the
+     * test itself if it is already counted here.
+     */
+    public IndependenceTest instrument(IndependenceTest test) {
+        if (test == null) throw new NullPointerException();
+
+        if (InstrumentedIndependenceTest.isCounted(test, this)) {
+            return test;
+        }
+
+        return new InstrumentedIndependenceTest(test, this);
+    }
+
+    /**
+     * @return the given score wrapped so that calls to it count toward the operation budget, or the
+     * score itself if it is already counted here.
+     */
+    public Score instrument(Score score) {
+        if (score == null) throw new NullPointerException();
+
+        if (InstrumentedScore.isCounted(score, this)) {
+            return score;
+        }
+
+        return new InstrumentedScore(score, this);
+    }
+
+    @Override
+    public void countTest(int conditioningSetSize) {
+        operations.increment();
+    }
+
+    @Override
+    public void countScore(int numParents) {
+        operations.increment();
+    }
+
+    public String toString() {
+        return "SearchContext: " + (isStopped() ? "stopped, " + stopReason : "running")
+                + ", operations = " + getNumOperations();
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    private long deadline(long now) {
+        return now + Math.max(timeLimit, 0) * 1000000L;
+    }
+
+    private synchronized boolean stop(StopReason reason) {
+        if (stopReason == null) stopReason = reason;
+        return true;
+    }
+}
+
+
+
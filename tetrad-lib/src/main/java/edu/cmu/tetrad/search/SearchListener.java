@@ -0,0 +1,55 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+/**
+ * Receives structured progress from a search through the SearchMetrics attached to it. Phases are
+ * reported as paths, outermost first, e.g. "GFci/Fges/fes". phaseStarted and phaseFinished are
+ * called on the search's own thread; progress is called periodically on a timer thread while a
+ * search is running, so it is called even while a single test or score is taking a long time.
+ * Implementations should return quickly.
+ *
+ * @author Joseph Ramsey
+ */
+public interface SearchListener {
+
+    /**
+     * Called when the given phase is entered.
+     */
+    default void phaseStarted(SearchMetrics metrics, String phase) {
+    }
+
+    /**
+     * Called when the given phase is left, with the time spent in it.
+     */
+    default void phaseFinished(SearchMetrics metrics, String phase, long elapsedMillis) {
+    }
+
+    /**
+     * Called every SearchMetrics.getProgressInterval() milliseconds while a search is running.
+     */
+    default void progress(SearchMetrics metrics) {
+    }
+}
+
+
+
@@ -0,0 +1,517 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Collects metrics from a search it is attached to (see GraphSearch.setMetrics)--time spent in
+ * each phase, the number of independence tests and score evaluations by conditioning set size,
+ * cache hit rates, and the sizes of whatever queues the search exposes--and passes progress on to
+ * SearchListeners. May be read from any thread while the search runs.
+ * <p>
+ * Searches only touch their metrics if one has been attached, so there is no cost otherwise.
+ * Tests and scores are counted by wrapping them (see instrument()) for the duration of the search.
+ * A single SearchMetrics may be shared by nested searches (e.g. the Fges inside GFci), whose
+ * phases then nest as well.
+ *
+ * @author Joseph Ramsey
+ */
+public final class SearchMetrics implements SearchCounter {
+
+    /**
+     * Counts for conditioning sets (or parent sets) of this size or larger share the last bucket.
+     */
+    public static final int MAX_SIZE = 32;
+
+    // Independence tests and score evaluations, by size.
+    private final LongAdder[] tests = adders(MAX_SIZE + 1);
+    private final LongAdder[] scores = adders(MAX_SIZE + 1);
+
+    // Caches seen by instrument(), with their hits and misses at the time.
+    private final List<CacheBaseline> caches = new CopyOnWriteArrayList<>();
+
+    // Queue sizes and the like, polled when asked for.
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    private final List<SearchListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Guards the phase stack, the phase times and the timer.
+    private final Object lock = new Object();
+
+    // Open phases, outermost first, with their start times in nanoseconds.
+    private final List<String> phases = new ArrayList<>();
+    private final List<Long> phaseStarts = new ArrayList<>();
+
+    // Total nanoseconds spent in each phase path, in order of first entry.
+    private final Map<String, Long> phaseTimes = new LinkedHashMap<>();
+
+    private long startTime = -1;
+    private long endTime = -1;
+    private long progressInterval = 1000;
+    private Timer timer = null;
+
+    //==============================PUBLIC METHODS========================//
+
+    /**
+     * Adds a listener to be told of phase changes and periodic progress.
+     */
+    public void addListener(SearchListener listener) {
+        if (listener == null) throw new NullPointerException();
+        listeners.add(listener);
+    }
+
+    public void removeListener(SearchListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return the number of milliseconds between progress callbacks.
+     */
+    public long getProgressInterval() {
+        return progressInterval;
+    }
+
+    /**
+     * @param progressInterval The number of milliseconds between progress callbacks, or 0 for none.
+     *                         Takes effect from the next search.
+     */
+    public void setProgressInterval(long progressInterval) {
+        if (progressInterval < 0) throw new IllegalArgumentException("Interval must be >= 0: " + progressInterval);
+        this.progressInterval = progressInterval;
+    }
+
+    /**
+     * @return the given test wrapped so that calls to it are counted here, or the test itself if it
+     * is already counted here.
+     */
+    public IndependenceTest instrument(IndependenceTest test) {
+        if (test == null) throw new NullPointerException();
+
+        if (InstrumentedIndependenceTest.isCounted(test, this)) {
+            return test;
+        }
+
+        return new InstrumentedIndependenceTest(test, this);
+    }
+
+    /**
+     * @return the given score wrapped so that calls to it are counted here, or the score itself if
+     * it is already counted here. If the score is a CachingScore, its hits and misses from the first
+     * time it is instrumented are counted as well.
+     */
+    public Score instrument(Score score) {
+        if (score == null) throw new NullPointerException();
+
+        if (InstrumentedScore.isCounted(score, this)) {
+            return score;
+        }
+
+        if (score instanceof CachingScore) {
+            CachingScore cachingScore = (CachingScore) score;
+
+            synchronized (lock) {
+                if (!hasBaseline(cachingScore)) {
+                    caches.add(new CacheBaseline(cachingScore, cachingScore.getHits(), cachingScore.getMisses()));
+                }
+            }
+        }
+
+        return new InstrumentedScore(score, this);
+    }
+
+    /**
+     * Enters a phase, nested in whatever phase is current. The first phase entered starts the
+     * clock and the progress timer.
+     */
+    public void startPhase(String phase) {
+        if (phase == null) throw new NullPointerException();
+        String path;
+
+        synchronized (lock) {
+            long now = System.nanoTime();
+
+            if (phases.isEmpty()) {
+                if (startTime == -1) startTime = now;
+                endTime = -1;
+                startTimer();
+            }
+
+            phases.add(phase);
+            phaseStarts.add(now);
+            path = path(phases.size());
+        }
+
+        for (SearchListener listener : listeners) {
+            listener.phaseStarted(this, path);
+        }
+    }
+
+    /**
+     * Leaves the innermost open phase with the given name, along with any phases nested in it that
+     * were left open (say, by an exception). Does nothing if no such phase is open.
+     */
+    public void endPhase(String phase) {
+        List<String> ended = new ArrayList<>();
+        List<Long> elapsed = new ArrayList<>();
+
+        synchronized (lock) {
+            int index = phases.lastIndexOf(phase);
+            if (index == -1) return;
+
+            long now = System.nanoTime();
+
+            for (int i = phases.size() - 1; i >= index; i--) {
+                String path = path(i + 1);
+                long time = now - phaseStarts.get(i);
+                Long total = phaseTimes.get(path);
+                phaseTimes.put(path, total == null ? time : total + time);
+
+                ended.add(path);
+                elapsed.add(time);
+
+                phases.remove(i);
+                phaseStarts.remove(i);
+            }
+
+            if (phases.isEmpty()) {
+                endTime = now;
+                stopTimer();
+            }
+        }
+
+        for (int i = 0; i < ended.size(); i++) {
+            for (SearchListener listener : listeners) {
+                listener.phaseFinished(this, ended.get(i), elapsed.get(i) / 1000000);
+            }
+        }
+    }
+
+    /**
+     * @return the current phase as a path, e.g. "GFci/Fges/fes", or null if no search is running.
+     */
+    public String getCurrentPhase() {
+        synchronized (lock) {
+            return phases.isEmpty() ? null : path(phases.size());
+        }
+    }
+
+    /**
+     * @return the milliseconds spent in each phase path so far, in the order they were first
+     * entered. Time in a nested phase counts toward its enclosing phases too; time in a phase that
+     * is entered more than once is summed.
+     */
+    public Map<String, Long> getPhaseTimes() {
+        Map<String, Long> times = new LinkedHashMap<>();
+
+        synchronized (lock) {
+            for (Map.Entry<String, Long> entry : phaseTimes.entrySet()) {
+                times.put(entry.getKey(), entry.getValue() / 1000000);
+            }
+        }
+
+        return times;
+    }
+
+    /**
+     * @return the milliseconds since the first phase was started, up to the time the last one ended
+     * if no search is running, or 0 if nothing has been started.
+     */
+    public long getElapsedTime() {
+        synchronized (lock) {
+            if (startTime == -1) return 0;
+            long end = endTime == -1 ? System.nanoTime() : endTime;
+            return (end - startTime) / 1000000;
+        }
+    }
+
+    /**
+     * Records an independence test conditioning on the given number of variables.
+     */
+    @Override
+    public void countTest(int conditioningSetSize) {
+        tests[Math.min(conditioningSetSize, MAX_SIZE)].increment();
+    }
+
+    /**
+     * Records a score evaluation for a node with the given number of parents. Score differences
+     * are counted by the size of the set conditioned on, not counting the variable being added.
+     */
+    @Override
+    public void countScore(int numParents) {
+        scores[Math.min(numParents, MAX_SIZE)].increment();
+    }
+
+    public long getNumTests() {
+        return sum(tests);
+    }
+
+    /**
+     * @return the number of tests by conditioning set size, up to the largest size seen; the entry
+     * at MAX_SIZE counts that size or larger.
+     */
+    public long[] getTestCounts() {
+        return counts(tests);
+    }
+
+    public long getNumScores() {
+        return sum(scores);
+    }
+
+    /**
+     * @return the number of score evaluations by parent (or conditioning) set size, up to the
+     * largest size seen; the entry at MAX_SIZE counts that size or larger.
+     */
+    public long[] getScoreCounts() {
+        return counts(scores);
+    }
+
+    /**
+     * @return the number of independence tests per second over the elapsed time.
+     */
+    public double getTestsPerSecond() {
+        long elapsed = getElapsedTime();
+        return elapsed == 0 ? 0 : 1000.0 * getNumTests() / elapsed;
+    }
+
+    /**
+     * @return the number of score evaluations per second over the elapsed time.
+     */
+    public double getScoresPerSecond() {
+        long elapsed = getElapsedTime();
+        return elapsed == 0 ? 0 : 1000.0 * getNumScores() / elapsed;
+    }
+
+    /**
+     * @return the number of cache hits in the caching scores counted here, since they were
+     * instrumented.
+     */
+    public long getCacheHits() {
+        long hits = 0;
+
+        for (CacheBaseline cache : caches) {
+            hits += Math.max(0, cache.score.getHits() - cache.hits);
+        }
+
+        return hits;
+    }
+
+    /**
+     * @return the number of cache misses in the caching scores counted here, since they were
+     * instrumented.
+     */
+    public long getCacheMisses() {
+        long misses = 0;
+
+        for (CacheBaseline cache : caches) {
+            misses += Math.max(0, cache.score.getMisses() - cache.misses);
+        }
+
+        return misses;
+    }
+
+    /**
+     * @return the fraction of cache lookups that were hits, or NaN if there were none.
+     */
+    public double getCacheHitRate() {
+        long hits = getCacheHits();
+        long total = hits + getCacheMisses();
+        return total == 0 ? Double.NaN : hits / (double) total;
+    }
+
+    /**
+     * Registers a value, such as the size of a queue, to be polled whenever getGauges() is called.
+     * Replaces any gauge of the same name.
+     */
+    public void setGauge(String name, LongSupplier gauge) {
+        if (name == null || gauge == null) throw new NullPointerException();
+        gauges.put(name, gauge);
+    }
+
+    public void removeGauge(String name) {
+        gauges.remove(name);
+    }
+
+    /**
+     * @return the current value of each gauge, by name.
+     */
+    public Map<String, Long> getGauges() {
+        Map<String, Long> values = new LinkedHashMap<>();
+
+        for (String name : new ArrayList<>(gauges.keySet())) {
+            LongSupplier gauge = gauges.get(name);
+            if (gauge != null) values.put(name, gauge.getAsLong());
+        }
+
+        return values;
+    }
+
+    /**
+     * Clears all counts and times. Listeners, gauges and the progress interval are kept.
+     */
+    public void reset() {
+        for (LongAdder adder : tests) adder.reset();
+        for (LongAdder adder : scores) adder.reset();
+
+        for (int i = 0; i < caches.size(); i++) {
+            CachingScore score = caches.get(i).score;
+            caches.set(i, new CacheBaseline(score, score.getHits(), score.getMisses()));
+        }
+
+        synchronized (lock) {
+            phaseTimes.clear();
+            long now = System.nanoTime();
+            startTime = phases.isEmpty() ? -1 : now;
+            endTime = -1;
+            Collections.fill(phaseStarts, now);
+        }
+    }
+
+    public String toString() {
+        StringBuilder b = new StringBuilder();
+
+        String current = getCurrentPhase();
+        b.append("Elapsed ").append(getElapsedTime()).append(" ms");
+        if (current != null) b.append(", in ").append(current);
+        b.append("\n");
+
+        for (Map.Entry<String, Long> entry : getPhaseTimes().entrySet()) {
+            b.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append(" ms\n");
+        }
+
+        b.append("Tests: ").append(getNumTests()).append(" ").append(countsString(getTestCounts())).append("\n");
+        b.append("Scores: ").append(getNumScores()).append(" ").append(countsString(getScoreCounts())).append("\n");
+
+        if (!caches.isEmpty()) {
+            b.append("Cache hit rate: ").append(getCacheHitRate()).append("\n");
+        }
+
+        for (Map.Entry<String, Long> entry : getGauges().entrySet()) {
+            b.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+
+        return b.toString();
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    private String path(int depth) {
+        StringBuilder b = new StringBuilder(phases.get(0));
+
+        for (int i = 1; i < depth; i++) {
+            b.append('/').append(phases.get(i));
+        }
+
+        return b.toString();
+    }
+
+    private void startTimer() {
+        if (progressInterval == 0 || timer != null) return;
+
+        timer = new Timer("Search progress", true);
+
+        timer.scheduleAtFixedRate(new TimerTask() {
+            public void run() {
+                for (SearchListener listener : listeners) {
+                    listener.progress(SearchMetrics.this);
+                }
+            }
+        }, progressInterval, progressInterval);
+    }
+
+    private void stopTimer() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+    }
+
+    private boolean hasBaseline(CachingScore score) {
+        for (CacheBaseline cache : caches) {
+            if (cache.score == score) return true;
+        }
+
+        return false;
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) adders[i] = new LongAdder();
+        return adders;
+    }
+
+    private static long sum(LongAdder[] adders) {
+        long sum = 0;
+        for (LongAdder adder : adders) sum += adder.sum();
+        return sum;
+    }
+
+    private static long[] counts(LongAdder[] adders) {
+        long[] counts = new long[adders.length];
+        int length = 0;
+
+        for (int i = 0; i < adders.length; i++) {
+            counts[i] = adders[i].sum();
+            if (counts[i] > 0) length = i + 1;
+        }
+
+        long[] _counts = new long[length];
+        System.arraycopy(counts, 0, _counts, 0, length);
+        return _counts;
+    }
+
+    private static String countsString(long[] counts) {
+        StringBuilder b = new StringBuilder("[");
+
+        for (int i = 0; i < counts.length; i++) {
+            if (i > 0) b.append(", ");
+            b.append(i).append(": ").append(counts[i]);
+        }
+
+        return b.append("]").toString();
+    }
+
+    private static class CacheBaseline {
+        private final CachingScore score;
+        private final long hits;
+        private final long misses;
+
+        private CacheBaseline(CachingScore score, long hits, long misses) {
+            this.score = score;
+            this.hits = hits;
+            this.misses = misses;
+        }
+    }
+}
+
+
+
@@ -25,10 +25,8 @@ import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.data.ICovarianceMatrix;
 import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.util.DepthChoiceGenerator;
-import edu.cmu.tetrad.util.StatUtils;
 import edu.cmu.tetrad.util.TetradMatrix;
 import edu.cmu.tetrad.util.TetradVector;
-import org.apache.commons.math3.linear.SingularMatrixException;
 
 import java.io.PrintStream;
 import java.util.*;
@@ -42,7 +40,7 @@ import static java.lang.Math.log;
  *
  * @author Joseph Ramsey
  */
-public class SemBicScore implements Score {
+public class SemBicScore implements ISemBicScore, PenalizedScore {
 
     // The covariance matrix.
     private ICovarianceMatrix covariances;
@@ -71,6 +69,9 @@ public class SemBicScore implements Score {
 
     private Map<Node, Integer> indexMap;
 
+    // Per thread, a Cholesky factor for each node over the parents most recently scored for it.
+    private ThreadLocal<IncrementalCholesky[]> factors = new ThreadLocal<>();
+
 
     /**
      * Constructs the score using a covariance matrix.
@@ -90,8 +91,50 @@ public class SemBicScore implements Score {
      * Calculates the sample likelihood and BIC score for i given its parents in a simple SEM model
      */
     public double localScore(int i, int... parents) {
-        for (int p : parents) if (forbidden.contains(p)) return Double.NaN;
+        return localFit(i, parents) - getPenaltyDiscount() * localPenalty(i, parents);
+    }
+
+    /**
+     * @return -n log(s2), s2 the residual variance of i given its parents, or NaN if s2 isn't positive.
+     */
+    @Override
+    public double localFit(int i, int[] parents) {
+        if (!forbidden.isEmpty()) {
+            for (int p : parents) if (forbidden.contains(p)) return Double.NaN;
+        }
 
+        IncrementalCholesky factor = factor(i);
+
+        if (factor.setTo(parents)) {
+            double s2 = factor.residualVariance(i);
+
+            if (Double.isNaN(s2)) {
+                if (isVerbose()) {
+                    out.println("Nonpositive residual varianceY for " + variables.get(i));
+                }
+
+                return Double.NaN;
+            }
+
+            int n = getSampleSize();
+            return -(n) * log(s2);
+        }
+
+        // The parents are linearly dependent; the inversion below will find out which.
+        return localFitByInversion(i, parents);
+    }
+
+    /**
+     * @return log(n).
+     */
+    @Override
+    public double localPenalty(int i, int[] parents) {
+        return log(getSampleSize());
+    }
+
+    // Fits by inverting the parent covariance matrix, recording variables that cause linear
+    // dependence as forbidden.
+    private double localFitByInversion(int i, int... parents) {
         try {
             double s2 = getCovariances().getValue(i, i);
             int p = parents.length;
@@ -109,7 +152,7 @@ public class SemBicScore implements Score {
             }
 
             int n = getSampleSize();
-            return -(n) * log(s2) - getPenaltyDiscount() * log(n);
+            return -(n) * log(s2);
             // + getStructurePrior(parents.length);// - getStructurePrior(parents.length + 1);
         } catch (Exception e) {
             boolean removedOne = true;
@@ -142,17 +185,9 @@ public class SemBicScore implements Score {
 
     @Override
     public double localScoreDiff(int x, int y, int[] z) {
+        double r = partialCorrelation(x, y, z);
 
-        Node _x = variables.get(x);
-        Node _y = variables.get(y);
-        List<Node> _z = getVariableList(z);
-
-        double r;
-
-        try {
-            r = partialCorrelation(_x, _y, _z);
-        } catch (SingularMatrixException e) {
-//            System.out.println(SearchLogUtils.determinismDetected(_z, _x));
+        if (Double.isNaN(r)) {
             return Double.NaN;
         }
 
@@ -163,31 +198,53 @@ public class SemBicScore implements Score {
 //        return localScore(y, append(z, x)) - localScore(y, z);
     }
 
-    private List<Node> getVariableList(int[] indices) {
-        List<Node> variables = new ArrayList<>();
-        for (int i : indices) {
-            variables.add(this.variables.get(i));
+    /**
+     * @return -N log(1 - r^2), r the partial correlation of x and y given z.
+     */
+    @Override
+    public double localFitDiff(int x, int y, int[] z) {
+        double r = partialCorrelation(x, y, z);
+
+        if (Double.isNaN(r)) {
+            return Double.NaN;
         }
-        return variables;
+
+        return -covariances.getSampleSize() * Math.log(1.0 - r * r);
     }
 
-    private double partialCorrelation(Node x, Node y, List<Node> z) throws SingularMatrixException {
-//        if (z.isEmpty()) {
-//            double a = covariances.getValue(indexMap.get(x), indexMap.get(y));
-//            double b = covariances.getValue(indexMap.get(x), indexMap.get(x));
-//            double c = covariances.getValue(indexMap.get(y), indexMap.get(y));
-//
-//            if (b * c == 0) throw new SingularMatrixException();
-//
-//            return -a / Math.sqrt(b * c);
-//        } else {
-        int[] indices = new int[z.size() + 2];
-        indices[0] = indexMap.get(x);
-        indices[1] = indexMap.get(y);
-        for (int i = 0; i < z.size(); i++) indices[i + 2] = indexMap.get(z.get(i));
-        TetradMatrix submatrix = covariances.getSubmatrix(indices).getMatrix();
-        return StatUtils.partialCorrelation(submatrix);
-//        }
+    /**
+     * @return (2 + |z|) log(N).
+     */
+    @Override
+    public double localPenaltyDiff(int x, int y, int[] z) {
+        return (2 + z.length) * Math.log(covariances.getSampleSize());
+    }
+
+    // The partial correlation of x and y given z, or NaN if z is linearly dependent.
+    private double partialCorrelation(int x, int y, int[] z) {
+        IncrementalCholesky factor = factor(y);
+
+        if (!factor.setTo(z)) {
+            return Double.NaN;
+        }
+
+        return factor.partialCorrelation(x, y);
+    }
+
+    // The calling thread's factor for node i.
+    private IncrementalCholesky factor(int i) {
+        IncrementalCholesky[] factors = this.factors.get();
+
+        if (factors == null || factors.length != variables.size()) {
+            factors = new IncrementalCholesky[variables.size()];
+            this.factors.set(factors);
+        }
+
+        if (factors[i] == null) {
+            factors[i] = new IncrementalCholesky(covariances);
+        }
+
+        return factors[i];
     }
 
     private Map<Node, Integer> indexMap(List<Node> variables) {
@@ -26,6 +26,8 @@ import edu.cmu.tetrad.util.TetradSerializable;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -39,6 +41,10 @@ import java.util.concurrent.ConcurrentHashMap;
  * variable-like objects to Node to allow them either to be variables explicitly or else to be graph nodes that in some
  * model could be considered as variables. This allows us to use d-separation as a graphical indicator of what
  * independendence in models ideally should be.</p>
+ * <p>Internally, each node is given an index the first time it is seen, pairs are keyed by the two indices packed
+ * into a long, and sepsets are kept as arrays of node indices, so setting and getting sepsets doesn't allocate a
+ * set for the key each time. All of this may be read and written concurrently, as it is from the tasks in
+ * FasStableConcurrent. The serialized form is the same as before (maps keyed by sets of nodes).</p>
  *
  * @author Joseph Ramsey
  */
@@ -46,10 +52,36 @@ public final class SepsetMap implements TetradSerializable {
     static final long serialVersionUID = 23L;
 
     /**
-     * @serial
+     * The serialized form, kept as it was when sepsets were stored in maps keyed by sets of nodes.
+     *
+     * @serialField sepsets Map<Set<Node>, List<Node>>
+     * @serialField pValues Map<Set<Node>, Double>
+     * @serialField parents Map<Node, HashSet<Node>>
+     * @serialField correlations Set<Set<Node>>
+     * @serialField returnEmptyIfNotSet boolean
      */
-    private Map<Set<Node>, List<Node>> sepsets = new ConcurrentHashMap<>();
-    private Map<Set<Node>, Double> pValues = new ConcurrentHashMap<>();
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("sepsets", Map.class),
+            new ObjectStreamField("pValues", Map.class),
+            new ObjectStreamField("parents", Map.class),
+            new ObjectStreamField("correlations", Set.class),
+            new ObjectStreamField("returnEmptyIfNotSet", boolean.class)
+    };
+
+    // Index of each node seen so far.
+    private transient Map<Node, Integer> indices = new ConcurrentHashMap<>();
+
+    // Node for each index. Slots are filled in once; the array is replaced when it grows.
+    private transient volatile Node[] nodes = new Node[16];
+
+    // Number of nodes indexed.
+    private transient int numNodes = 0;
+
+    // Sepsets, as arrays of node indices, keyed by the packed pair of node indices.
+    private transient Map<Long, int[]> sepsets = new ConcurrentHashMap<>();
+
+    // P values keyed by the packed pair of node indices.
+    private transient Map<Long, Double> pValues = new ConcurrentHashMap<>();
 
     private Map<Node, HashSet<Node>> parents = new HashMap<>();
     private Set<Set<Node>> correlations;
@@ -61,8 +93,15 @@ public final class SepsetMap implements TetradSerializable {
     }
 
     public SepsetMap(SepsetMap map) {
-        this.sepsets = new HashMap<>(map.sepsets);
-        this.pValues = new HashMap<>(map.pValues);
+        synchronized (map) {
+            this.nodes = Arrays.copyOf(map.nodes, map.nodes.length);
+            this.numNodes = map.numNodes;
+            this.indices.putAll(map.indices);
+        }
+
+        // Sepset arrays are never modified once stored, so they can be shared.
+        this.sepsets.putAll(map.sepsets);
+        this.pValues.putAll(map.pValues);
     }
 
     /**
@@ -78,48 +117,60 @@ public final class SepsetMap implements TetradSerializable {
      * Sets the sepset for {x, y} to be z. Note that {x, y} is unordered.
      */
     public void set(Node x, Node y, List<Node> z) {
-        Set<Node> pair = new HashSet<>(2);
-        pair.add(x);
-        pair.add(y);
+        long pair = pair(index(x), index(y));
+
         if (z == null) {
             sepsets.remove(pair);
         } else {
-            sepsets.put(pair, z);
+            int[] set = new int[z.size()];
+            for (int i = 0; i < set.length; i++) set[i] = index(z.get(i));
+            sepsets.put(pair, set);
         }
     }
 
     public void setPValue(Node x, Node y, double p) {
-        Set<Node> pair = new HashSet<>(2);
-        pair.add(x);
-        pair.add(y);
-        pValues.put(pair, p);
+        pValues.put(pair(index(x), index(y)), p);
     }
 
     /**
-     * Retrieves the sepset previously set for {a, b}, or null if no such set was previously set.
+     * Retrieves the sepset previously set for {a, b}, or null if no such set was previously set. The list returned
+     * may not be modified.
      */
     public List<Node> get(Node a, Node b) {
-        Set<Node> pair = new HashSet<>(2);
-        pair.add(a);
-        pair.add(b);
+        if (correlations != null) {
+            Set<Node> pair = new HashSet<>(2);
+            pair.add(a);
+            pair.add(b);
+
+            if (!correlations.contains(pair)) {
+                return Collections.emptyList();
+            }
+        }
+
+        int[] set = null;
+        Integer i = indices.get(a);
+        Integer j = indices.get(b);
 
-        if (correlations != null && !correlations.contains(pair)) {
-            return Collections.emptyList();
+        if (i != null && j != null) {
+            set = sepsets.get(pair(i, j));
         }
 
-        if (returnEmptyIfNotSet && sepsets.get(pair) == null) {
-            return Collections.emptyList();
+        if (set == null) {
+            return returnEmptyIfNotSet ? Collections.<Node>emptyList() : null;
         }
 
-        return sepsets.get(pair);
+        return new NodeList(set, nodes);
     }
 
     public double getPValue(Node x, Node y) {
-        Set<Node> pair = new HashSet<>(2);
-        pair.add(x);
-        pair.add(y);
+        Integer i = indices.get(x);
+        Integer j = indices.get(y);
 
-        return pValues.get(pair);
+        if (i == null || j == null) {
+            throw new NullPointerException("No p value for " + x + " and " + y);
+        }
+
+        return pValues.get(pair(i, j));
     }
 
     public void set(Node x, LinkedHashSet<Node> z) {
@@ -144,32 +195,15 @@ public final class SepsetMap implements TetradSerializable {
         }
 
         SepsetMap _sepset = (SepsetMap) o;
-        return sepsets.equals(_sepset.sepsets);
-    }
-
-    /**
-     * Adds semantic checks to the default deserialization method. This method must have the standard signature for a
-     * readObject method, and the body of the method must begin with "s.defaultReadObject();". Other than that, any
-     * semantic checks can be specified and do not need to stay the same from version to version. A readObject method of
-     * this form may be added to any class, even if Tetrad sessions were previously saved out using a version of the
-     * class that didn't include it. (That's what the "s.defaultReadObject();" is for. See J. Bloch, Effective Java, for
-     * help.
-     */
-    private void readObject(ObjectInputStream s)
-            throws IOException, ClassNotFoundException {
-        s.defaultReadObject();
-
-        if (sepsets == null) {
-            throw new NullPointerException();
-        }
+        return sepsetsBySet().equals(_sepset.sepsetsBySet());
     }
 
     public int size() {
-        return sepsets.keySet().size();
+        return sepsets.size();
     }
 
     public String toString() {
-        return sepsets.toString();
+        return sepsetsBySet().toString();
     }
 
     /**
@@ -189,11 +223,150 @@ public final class SepsetMap implements TetradSerializable {
     }
 
     public void addAll(SepsetMap newSepsets) {
-        sepsets.putAll(newSepsets.sepsets);
+        for (Map.Entry<Long, int[]> entry : newSepsets.sepsets.entrySet()) {
+            Node[] newNodes = newSepsets.nodes;
+            long key = entry.getKey();
+            Node x = newNodes[(int) (key >>> 32)];
+            Node y = newNodes[(int) key];
+            set(x, y, new NodeList(entry.getValue(), newNodes));
+        }
+    }
+
+    //=============================PRIVATE METHODS========================//
+
+    // Returns the index of the node, giving it the next index if it hasn't been seen.
+    private int index(Node node) {
+        if (node == null) throw new NullPointerException();
+
+        Integer index = indices.get(node);
+        if (index != null) return index;
+
+        synchronized (this) {
+            index = indices.get(node);
+            if (index != null) return index;
+
+            Node[] nodes = this.nodes;
+
+            if (numNodes == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+            }
+
+            nodes[numNodes] = node;
+            this.nodes = nodes;
+            indices.put(node, numNodes);
+            return numNodes++;
+        }
+    }
+
+    // The unordered pair {i, j}, packed into a long, smaller index first.
+    private static long pair(int i, int j) {
+        return i < j ? ((long) i << 32) | j : ((long) j << 32) | i;
     }
-}
 
+    // The sepsets in the old form, keyed by sets of nodes.
+    private Map<Set<Node>, List<Node>> sepsetsBySet() {
+        Map<Set<Node>, List<Node>> map = new HashMap<>();
 
+        // The node array is read for each entry, so it covers the entry's indices.
+        for (Map.Entry<Long, int[]> entry : sepsets.entrySet()) {
+            Node[] nodes = this.nodes;
+            map.put(nodePair(entry.getKey(), nodes), new ArrayList<>(new NodeList(entry.getValue(), nodes)));
+        }
+
+        return map;
+    }
+
+    private static Set<Node> nodePair(long key, Node[] nodes) {
+        Set<Node> pair = new HashSet<>(2);
+        pair.add(nodes[(int) (key >>> 32)]);
+        pair.add(nodes[(int) key]);
+        return pair;
+    }
+
+    private void writeObject(ObjectOutputStream s) throws IOException {
+        Map<Set<Node>, Double> pValuesBySet = new HashMap<>();
+
+        for (Map.Entry<Long, Double> entry : pValues.entrySet()) {
+            pValuesBySet.put(nodePair(entry.getKey(), this.nodes), entry.getValue());
+        }
+
+        ObjectOutputStream.PutField fields = s.putFields();
+        fields.put("sepsets", sepsetsBySet());
+        fields.put("pValues", pValuesBySet);
+        fields.put("parents", parents);
+        fields.put("correlations", correlations);
+        fields.put("returnEmptyIfNotSet", returnEmptyIfNotSet);
+        s.writeFields();
+    }
+
+    /**
+     * Reads the maps keyed by sets of nodes, as serialized by this and earlier versions, into the indexed form.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream s)
+            throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = s.readFields();
+
+        Map<Set<Node>, List<Node>> sepsetsBySet = (Map<Set<Node>, List<Node>>) fields.get("sepsets", null);
+        Map<Set<Node>, Double> pValuesBySet = (Map<Set<Node>, Double>) fields.get("pValues", null);
+        parents = (Map<Node, HashSet<Node>>) fields.get("parents", null);
+        correlations = (Set<Set<Node>>) fields.get("correlations", null);
+        returnEmptyIfNotSet = fields.get("returnEmptyIfNotSet", false);
+
+        if (sepsetsBySet == null) {
+            throw new NullPointerException();
+        }
+
+        if (parents == null) {
+            parents = new HashMap<>();
+        }
+
+        indices = new ConcurrentHashMap<>();
+        nodes = new Node[16];
+        sepsets = new ConcurrentHashMap<>();
+        pValues = new ConcurrentHashMap<>();
+
+        for (Map.Entry<Set<Node>, List<Node>> entry : sepsetsBySet.entrySet()) {
+            Node[] pair = pairOf(entry.getKey());
+            set(pair[0], pair[1], entry.getValue());
+        }
 
+        if (pValuesBySet != null) {
+            for (Map.Entry<Set<Node>, Double> entry : pValuesBySet.entrySet()) {
+                Node[] pair = pairOf(entry.getKey());
+                setPValue(pair[0], pair[1], entry.getValue());
+            }
+        }
+    }
 
+    // The two nodes of a pair set; a one-element set is the pair {x, x}.
+    private static Node[] pairOf(Set<Node> set) {
+        Iterator<Node> it = set.iterator();
+        Node x = it.next();
+        Node y = it.hasNext() ? it.next() : x;
+        return new Node[]{x, y};
+    }
 
+    /**
+     * An unmodifiable view of a sepset stored as node indices.
+     */
+    private static class NodeList extends AbstractList<Node> implements RandomAccess {
+        private final int[] set;
+        private final Node[] nodes;
+
+        NodeList(int[] set, Node[] nodes) {
+            this.set = set;
+            this.nodes = nodes;
+        }
+
+        @Override
+        public Node get(int index) {
+            return nodes[set[index]];
+        }
+
+        @Override
+        public int size() {
+            return set.length;
+        }
+    }
+}
@@ -143,6 +143,12 @@ public class SepsetsGreedy implements SepsetProducer {
     }
 
     public Graph getDag() {
+        IndependenceTest independenceTest = this.independenceTest;
+
+        if (independenceTest instanceof InstrumentedIndependenceTest) {
+            independenceTest = ((InstrumentedIndependenceTest) independenceTest).getTest();
+        }
+
         if (independenceTest instanceof IndTestDSep) {
             return ((IndTestDSep) independenceTest).getGraph();
         } else {
@@ -809,6 +809,15 @@ public final class LargeScaleSimulation {
     public void setCoefSymmetric(boolean coefSymmetric) {
         this.coefSymmetric = coefSymmetric;
     }
+
+    /**
+     * Sets the seed the Gaussian and Beta error distributions are drawn from, so that simulations can
+     * be repeated. By default this is the time of construction. (Coefficients, variances and the
+     * so-called Poisson shocks come from RandomUtil, which is seeded separately.)
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
 }
 
 
@@ -0,0 +1,541 @@
+/*
+ * Copyright (C) 2016 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.cmu.tetrad.stat.correlation;
+
+import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes covariance and correlation matrices of column-major data--columns[j][i] is row i of
+ * variable j--in parallel. The lower triangle is cut into tiles of TILE x TILE variable pairs,
+ * each done by its own task on the ForkJoinPoolInstance pool; a task takes the rows a block at a
+ * time, copies the centered block of each of its columns into a contiguous scratch array, and
+ * accumulates the dot products of those, four columns at a time, much as a matrix multiply
+ * would. There are no divisions in the inner loops.
+ * <p>
+ * Missing values (NaN) are handled pairwise: each mean is over the values present in its
+ * column, and each covariance is over the rows where both values are present, divided by the
+ * number of those rows (less one, if bias corrected). Columns without missing values skip the
+ * checks. The float versions store and multiply floats, for half the memory traffic, but add
+ * up the sums for blocks of rows in double precision.
+ *
+ * @author Joseph Ramsey
+ */
+public final class BlockedCovariance {
+
+    /**
+     * The number of variables on a side of a tile.
+     */
+    private static final int TILE = 32;
+
+    /**
+     * The number of rows in a block.
+     */
+    private static final int ROWS = 512;
+
+    private BlockedCovariance() {
+    }
+
+    /**
+     * @return the mean of each column, over the values that are present.
+     */
+    public static double[] means(double[][] columns) {
+        double[] means = new double[columns.length];
+
+        for (int j = 0; j < columns.length; j++) {
+            double sum = 0.0;
+            int count = 0;
+
+            for (double value : columns[j]) {
+                if (Double.isNaN(value)) continue;
+                sum += value;
+                count++;
+            }
+
+            means[j] = sum / count;
+        }
+
+        return means;
+    }
+
+    /**
+     * @return the mean of each column, over the values that are present.
+     */
+    public static double[] means(float[][] columns) {
+        double[] means = new double[columns.length];
+
+        for (int j = 0; j < columns.length; j++) {
+            double sum = 0.0;
+            int count = 0;
+
+            for (float value : columns[j]) {
+                if (Float.isNaN(value)) continue;
+                sum += value;
+                count++;
+            }
+
+            means[j] = sum / count;
+        }
+
+        return means;
+    }
+
+    /**
+     * @return for each column, whether it has a missing value.
+     */
+    public static boolean[] hasMissing(double[][] columns) {
+        boolean[] missing = new boolean[columns.length];
+
+        for (int j = 0; j < columns.length; j++) {
+            for (double value : columns[j]) {
+                if (Double.isNaN(value)) {
+                    missing[j] = true;
+                    break;
+                }
+            }
+        }
+
+        return missing;
+    }
+
+    /**
+     * @return the variance of each column about the given means, or about zero if means is null.
+     */
+    public static double[] variances(final double[][] columns, final double[] means, final boolean biasCorrected) {
+        final double[] variances = new double[columns.length];
+
+        invokeAll(columns.length, new ColumnAction() {
+            public void compute(int j) {
+                double mean = means == null ? 0.0 : means[j];
+                double sum = 0.0;
+                int count = 0;
+
+                for (double value : columns[j]) {
+                    double d = value - mean;
+                    if (Double.isNaN(d)) continue;
+                    sum += d * d;
+                    count++;
+                }
+
+                variances[j] = sum / (biasCorrected ? count - 1 : count);
+            }
+        });
+
+        return variances;
+    }
+
+    /**
+     * @return the covariance matrix of the given columns.
+     */
+    public static double[][] compute(double[][] columns, boolean biasCorrected) {
+        return compute(columns, means(columns), biasCorrected);
+    }
+
+    /**
+     * @return the covariance matrix of the given columns about the given means, or about zero if
+     * means is null (for data already centered).
+     */
+    public static double[][] compute(final double[][] columns, final double[] means, final boolean biasCorrected) {
+        final int p = columns.length;
+        final int n = p == 0 ? 0 : columns[0].length;
+        final boolean[] missing = hasMissing(columns);
+        final double[][] covariances = new double[p][p];
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+
+        for (int ti = 0; ti * TILE < p; ti++) {
+            for (int tj = 0; tj <= ti; tj++) {
+                final int i0 = ti * TILE;
+                final int j0 = tj * TILE;
+
+                tasks.add(new RecursiveAction() {
+                    protected void compute() {
+                        int ni = Math.min(p, i0 + TILE) - i0;
+                        int nj = Math.min(p, j0 + TILE) - j0;
+                        boolean diagonal = i0 == j0;
+
+                        double[] a = new double[ni * ROWS];
+                        double[] b = diagonal ? a : new double[nj * ROWS];
+                        double[] sums = new double[ni * nj];
+                        long[] counts = new long[ni * nj];
+
+                        for (int r0 = 0; r0 < n; r0 += ROWS) {
+                            int rows = Math.min(ROWS, n - r0);
+                            pack(columns, means, i0, ni, r0, rows, a);
+                            if (!diagonal) pack(columns, means, j0, nj, r0, rows, b);
+
+                            for (int i = 0; i < ni; i++) {
+                                int jEnd = diagonal ? i + 1 : nj;
+                                int j = 0;
+
+                                if (!missing[i0 + i]) {
+                                    for (; j + 4 <= jEnd; j += 4) {
+                                        if (missing[j0 + j] || missing[j0 + j + 1]
+                                                || missing[j0 + j + 2] || missing[j0 + j + 3]) {
+                                            break;
+                                        }
+
+                                        dot4(a, i * ROWS, b, j * ROWS, rows, sums, i * nj + j);
+
+                                        for (int q = 0; q < 4; q++) {
+                                            counts[i * nj + j + q] += rows;
+                                        }
+                                    }
+                                }
+
+                                for (; j < jEnd; j++) {
+                                    if (missing[i0 + i] || missing[j0 + j]) {
+                                        double d = 0.0;
+                                        int count = 0;
+
+                                        for (int k = 0; k < rows; k++) {
+                                            double product = a[i * ROWS + k] * b[j * ROWS + k];
+                                            if (Double.isNaN(product)) continue;
+                                            d += product;
+                                            count++;
+                                        }
+
+                                        sums[i * nj + j] += d;
+                                        counts[i * nj + j] += count;
+                                    } else {
+                                        double d = 0.0;
+
+                                        for (int k = 0; k < rows; k++) {
+                                            d += a[i * ROWS + k] * b[j * ROWS + k];
+                                        }
+
+                                        sums[i * nj + j] += d;
+                                        counts[i * nj + j] += rows;
+                                    }
+                                }
+                            }
+                        }
+
+                        for (int i = 0; i < ni; i++) {
+                            int jEnd = diagonal ? i + 1 : nj;
+
+                            for (int j = 0; j < jEnd; j++) {
+                                long count = counts[i * nj + j];
+                                double v = sums[i * nj + j] / (biasCorrected ? count - 1 : count);
+                                covariances[i0 + i][j0 + j] = v;
+                                covariances[j0 + j][i0 + i] = v;
+                            }
+                        }
+                    }
+                });
+            }
+        }
+
+        ForkJoinPoolInstance.getInstance().getPool().invoke(new RecursiveAction() {
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+
+        return covariances;
+    }
+
+    /**
+     * @return the covariance matrix of the given columns.
+     */
+    public static float[][] compute(float[][] columns, boolean biasCorrected) {
+        return compute(columns, means(columns), biasCorrected);
+    }
+
+    /**
+     * @return the covariance matrix of the given columns about the given means, or about zero if
+     * means is null (for data already centered).
+     */
+    public static float[][] compute(final float[][] columns, final double[] means, final boolean biasCorrected) {
+        final int p = columns.length;
+        final int n = p == 0 ? 0 : columns[0].length;
+        final boolean[] missing = new boolean[p];
+        final float[][] covariances = new float[p][p];
+
+        for (int j = 0; j < p; j++) {
+            for (float value : columns[j]) {
+                if (Float.isNaN(value)) {
+                    missing[j] = true;
+                    break;
+                }
+            }
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+
+        for (int ti = 0; ti * TILE < p; ti++) {
+            for (int tj = 0; tj <= ti; tj++) {
+                final int i0 = ti * TILE;
+                final int j0 = tj * TILE;
+
+                tasks.add(new RecursiveAction() {
+                    protected void compute() {
+                        int ni = Math.min(p, i0 + TILE) - i0;
+                        int nj = Math.min(p, j0 + TILE) - j0;
+                        boolean diagonal = i0 == j0;
+
+                        float[] a = new float[ni * ROWS];
+                        float[] b = diagonal ? a : new float[nj * ROWS];
+                        double[] sums = new double[ni * nj];
+                        long[] counts = new long[ni * nj];
+
+                        for (int r0 = 0; r0 < n; r0 += ROWS) {
+                            int rows = Math.min(ROWS, n - r0);
+                            pack(columns, means, i0, ni, r0, rows, a);
+                            if (!diagonal) pack(columns, means, j0, nj, r0, rows, b);
+
+                            for (int i = 0; i < ni; i++) {
+                                int jEnd = diagonal ? i + 1 : nj;
+
+                                for (int j = 0; j < jEnd; j++) {
+                                    float d = 0.0f;
+
+                                    if (missing[i0 + i] || missing[j0 + j]) {
+                                        int count = 0;
+
+                                        for (int k = 0; k < rows; k++) {
+                                            float product = a[i * ROWS + k] * b[j * ROWS + k];
+                                            if (Float.isNaN(product)) continue;
+                                            d += product;
+                                            count++;
+                                        }
+
+                                        counts[i * nj + j] += count;
+                                    } else {
+                                        for (int k = 0; k < rows; k++) {
+                                            d += a[i * ROWS + k] * b[j * ROWS + k];
+                                        }
+
+                                        counts[i * nj + j] += rows;
+                                    }
+
+                                    sums[i * nj + j] += d;
+                                }
+                            }
+                        }
+
+                        for (int i = 0; i < ni; i++) {
+                            int jEnd = diagonal ? i + 1 : nj;
+
+                            for (int j = 0; j < jEnd; j++) {
+                                long count = counts[i * nj + j];
+                                float v = (float) (sums[i * nj + j] / (biasCorrected ? count - 1 : count));
+                                covariances[i0 + i][j0 + j] = v;
+                                covariances[j0 + j][i0 + i] = v;
+                            }
+                        }
+                    }
+                });
+            }
+        }
+
+        ForkJoinPoolInstance.getInstance().getPool().invoke(new RecursiveAction() {
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+
+        return covariances;
+    }
+
+    /**
+     * Converts the given covariance matrix to a correlation matrix, in place.
+     */
+    public static void toCorrelations(double[][] covariances) {
+        int p = covariances.length;
+        double[] sd = new double[p];
+
+        for (int i = 0; i < p; i++) {
+            sd[i] = Math.sqrt(covariances[i][i]);
+        }
+
+        for (int i = 0; i < p; i++) {
+            for (int j = 0; j < p; j++) {
+                covariances[i][j] = i == j ? 1.0 : covariances[i][j] / (sd[i] * sd[j]);
+            }
+        }
+    }
+
+    /**
+     * Converts the given covariance matrix to a correlation matrix, in place.
+     */
+    public static void toCorrelations(float[][] covariances) {
+        int p = covariances.length;
+        double[] sd = new double[p];
+
+        for (int i = 0; i < p; i++) {
+            sd[i] = Math.sqrt(covariances[i][i]);
+        }
+
+        for (int i = 0; i < p; i++) {
+            for (int j = 0; j < p; j++) {
+                covariances[i][j] = i == j ? 1.0f : (float) (covariances[i][j] / (sd[i] * sd[j]));
+            }
+        }
+    }
+
+    /**
+     * @return the transpose of row-major data, as columns.
+     */
+    public static double[][] toColumns(double[][] rows) {
+        int n = rows.length;
+        int p = n == 0 ? 0 : rows[0].length;
+        double[][] columns = new double[p][n];
+
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < p; j++) {
+                columns[j][i] = rows[i][j];
+            }
+        }
+
+        return columns;
+    }
+
+    /**
+     * @return the transpose of row-major data, as columns.
+     */
+    public static float[][] toColumns(float[][] rows) {
+        int n = rows.length;
+        int p = n == 0 ? 0 : rows[0].length;
+        float[][] columns = new float[p][n];
+
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < p; j++) {
+                columns[j][i] = rows[i][j];
+            }
+        }
+
+        return columns;
+    }
+
+    /**
+     * @return the lower triangle of the given symmetric matrix, row by row.
+     */
+    public static double[] lowerTriangle(double[][] matrix) {
+        double[] lower = new double[matrix.length * (matrix.length + 1) / 2];
+        int index = 0;
+
+        for (int i = 0; i < matrix.length; i++) {
+            for (int j = 0; j <= i; j++) {
+                lower[index++] = matrix[i][j];
+            }
+        }
+
+        return lower;
+    }
+
+    /**
+     * @return the lower triangle of the given symmetric matrix, row by row.
+     */
+    public static float[] lowerTriangle(float[][] matrix) {
+        float[] lower = new float[matrix.length * (matrix.length + 1) / 2];
+        int index = 0;
+
+        for (int i = 0; i < matrix.length; i++) {
+            for (int j = 0; j <= i; j++) {
+                lower[index++] = matrix[i][j];
+            }
+        }
+
+        return lower;
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    // Copies rows r0 to r0 + rows of columns c0 to c0 + count, centered, into scratch, one
+    // column after another, ROWS apart.
+    private static void pack(double[][] columns, double[] means, int c0, int count, int r0, int rows,
+                             double[] scratch) {
+        for (int c = 0; c < count; c++) {
+            double[] column = columns[c0 + c];
+            double mean = means == null ? 0.0 : means[c0 + c];
+            int offset = c * ROWS;
+
+            for (int k = 0; k < rows; k++) {
+                scratch[offset + k] = column[r0 + k] - mean;
+            }
+        }
+    }
+
+    private static void pack(float[][] columns, double[] means, int c0, int count, int r0, int rows,
+                             float[] scratch) {
+        for (int c = 0; c < count; c++) {
+            float[] column = columns[c0 + c];
+            float mean = means == null ? 0.0f : (float) means[c0 + c];
+            int offset = c * ROWS;
+
+            for (int k = 0; k < rows; k++) {
+                scratch[offset + k] = column[r0 + k] - mean;
+            }
+        }
+    }
+
+    // Adds the dot products of column x of a with columns y to y + 3 of b to sums[s] to
+    // sums[s + 3], loading each element of x once for all four.
+    private static void dot4(double[] a, int x, double[] b, int y, int rows, double[] sums, int s) {
+        double d0 = 0.0, d1 = 0.0, d2 = 0.0, d3 = 0.0;
+        int y1 = y + ROWS, y2 = y1 + ROWS, y3 = y2 + ROWS;
+
+        for (int k = 0; k < rows; k++) {
+            double v = a[x + k];
+            d0 += v * b[y + k];
+            d1 += v * b[y1 + k];
+            d2 += v * b[y2 + k];
+            d3 += v * b[y3 + k];
+        }
+
+        sums[s] += d0;
+        sums[s + 1] += d1;
+        sums[s + 2] += d2;
+        sums[s + 3] += d3;
+    }
+
+    private interface ColumnAction {
+        void compute(int j);
+    }
+
+    private static void invokeAll(final int numColumns, final ColumnAction action) {
+        final int chunk = Math.max(1, numColumns / (4 * ForkJoinPoolInstance.getInstance().getPool().getParallelism()));
+
+        class Task extends RecursiveAction {
+            private final int from;
+            private final int to;
+
+            private Task(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            protected void compute() {
+                if (to - from <= chunk) {
+                    for (int j = from; j < to; j++) action.compute(j);
+                } else {
+                    int mid = (from + to) / 2;
+                    invokeAll(new Task(from, mid), new Task(mid, to));
+                }
+            }
+        }
+
+        ForkJoinPoolInstance.getInstance().getPool().invoke(new Task(0, numColumns));
+    }
+}
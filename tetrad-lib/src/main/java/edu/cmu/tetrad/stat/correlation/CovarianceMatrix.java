@@ -38,68 +38,15 @@ public class CovarianceMatrix implements Covariance {
         this.numOfCols = data[0].length;
     }
 
-    private float[] computeMeans() {
-        float[] mean = new float[numOfCols];
-        for (int col = 0; col < numOfCols; col++) {
-            float sum = 0;
-            for (int row = 0; row < numOfRows; row++) {
-                sum += data[row][col];
-            }
-            mean[col] = sum / numOfRows;
-        }
-
-        return mean;
-    }
-
     @Override
     public float[] computeLowerTriangle(boolean biasCorrected) {
-        float[] covarianceMatrix = new float[(numOfCols * (numOfCols + 1)) / 2];
-
-        float[] mean = computeMeans();
-
-        int index = 0;
-        for (int col = 0; col < numOfCols; col++) {
-            for (int col2 = 0; col2 < col; col2++) {
-                float variance = 0;
-                for (int row = 0; row < numOfRows; row++) {
-                    variance += ((data[row][col] - mean[col]) * (data[row][col2] - mean[col2]) - variance) / (row + 1);
-                }
-                covarianceMatrix[index++] = biasCorrected ? variance * ((float) numOfRows / (float) (numOfRows - 1)) : variance;
-            }
-            float variance = 0;
-            for (int row = 0; row < numOfRows; row++) {
-                variance += ((data[row][col] - mean[col]) * (data[row][col] - mean[col]) - variance) / (row + 1);
-            }
-            covarianceMatrix[index++] = biasCorrected ? variance * ((float) numOfRows / (float) (numOfRows - 1)) : variance;
-        }
-
-        return covarianceMatrix;
+        return BlockedCovariance.lowerTriangle(compute(biasCorrected));
     }
 
     @Override
     public float[][] compute(boolean biasCorrected) {
-        float[][] covarianceMatrix = new float[numOfCols][numOfCols];
-
-        float[] mean = computeMeans();
-
-        for (int col = 0; col < numOfCols; col++) {
-            for (int col2 = 0; col2 < col; col2++) {
-                float variance = 0;
-                for (int row = 0; row < numOfRows; row++) {
-                    variance += ((data[row][col] - mean[col]) * (data[row][col2] - mean[col2]) - variance) / (row + 1);
-                }
-                variance = biasCorrected ? variance * ((float) numOfRows / (float) (numOfRows - 1)) : variance;
-                covarianceMatrix[col][col2] = variance;
-                covarianceMatrix[col2][col] = variance;
-            }
-            float variance = 0;
-            for (int row = 0; row < numOfRows; row++) {
-                variance += ((data[row][col] - mean[col]) * (data[row][col] - mean[col]) - variance) / (row + 1);
-            }
-            covarianceMatrix[col][col] = biasCorrected ? variance * ((float) numOfRows / (float) (numOfRows - 1)) : variance;
-        }
-
-        return covarianceMatrix;
+        float[][] columns = BlockedCovariance.toColumns(data);
+        return BlockedCovariance.compute(columns, BlockedCovariance.means(columns), biasCorrected);
     }
 
 }
@@ -40,57 +40,6 @@ public class CovarianceMatrixOnTheFly implements Covariance {
         this.numOfCols = data[0].length;
     }
 
-    @Override
-    public float[] computeLowerTriangle(boolean biasCorrected) {
-        float[] covarianceMatrix = new float[(numOfCols * (numOfCols + 1)) / 2];
-
-        computeMeans();
-
-        int index = 0;
-        for (int col = 0; col < numOfCols; col++) {
-            for (int col2 = 0; col2 < col; col2++) {
-                float variance = 0;
-                for (int row = 0; row < numOfRows; row++) {
-                    variance += ((data[row][col]) * (data[row][col2]) - variance) / (row + 1);
-                }
-                covarianceMatrix[index++] = biasCorrected ? variance * ((float) numOfRows / (float) (numOfRows - 1)) : variance;
-            }
-            float variance = 0;
-            for (int row = 0; row < numOfRows; row++) {
-                variance += ((data[row][col]) * (data[row][col]) - variance) / (row + 1);
-            }
-            covarianceMatrix[index++] = biasCorrected ? variance * ((float) numOfRows / (float) (numOfRows - 1)) : variance;
-        }
-
-        return covarianceMatrix;
-    }
-
-    @Override
-    public float[][] compute(boolean biasCorrected) {
-        float[][] covarianceMatrix = new float[numOfCols][numOfCols];
-
-        computeMeans();
-
-        for (int col = 0; col < numOfCols; col++) {
-            for (int col2 = 0; col2 < col; col2++) {
-                float variance = 0;
-                for (int row = 0; row < numOfRows; row++) {
-                    variance += ((data[row][col]) * (data[row][col2]) - variance) / (row + 1);
-                }
-                variance = biasCorrected ? variance * ((float) numOfRows / (float) (numOfRows - 1)) : variance;
-                covarianceMatrix[col][col2] = variance;
-                covarianceMatrix[col2][col] = variance;
-            }
-            float variance = 0;
-            for (int row = 0; row < numOfRows; row++) {
-                variance += ((data[row][col]) * (data[row][col]) - variance) / (row + 1);
-            }
-            covarianceMatrix[col][col] = biasCorrected ? variance * ((float) numOfRows / (float) (numOfRows - 1)) : variance;
-        }
-
-        return covarianceMatrix;
-    }
-
     private void computeMeans() {
         for (int col = 0; col < numOfCols; col++) {
             float mean = 0;
@@ -104,4 +53,16 @@ public class CovarianceMatrixOnTheFly implements Covariance {
         }
     }
 
+    @Override
+    public float[] computeLowerTriangle(boolean biasCorrected) {
+        return BlockedCovariance.lowerTriangle(compute(biasCorrected));
+    }
+
+    @Override
+    public float[][] compute(boolean biasCorrected) {
+        computeMeans();
+        float[][] columns = BlockedCovariance.toColumns(data);
+        return BlockedCovariance.compute(columns, null, biasCorrected);
+    }
+
 }
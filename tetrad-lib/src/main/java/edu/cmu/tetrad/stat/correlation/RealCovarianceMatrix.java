@@ -38,68 +38,15 @@ public class RealCovarianceMatrix implements RealCovariance {
         this.numOfCols = data[0].length;
     }
 
-    private double[] computeMeans() {
-        double[] mean = new double[numOfCols];
-        for (int col = 0; col < numOfCols; col++) {
-            double sum = 0;
-            for (int row = 0; row < numOfRows; row++) {
-                sum += data[row][col];
-            }
-            mean[col] = sum / numOfRows;
-        }
-
-        return mean;
-    }
-
     @Override
     public double[] computeLowerTriangle(boolean biasCorrected) {
-        double[] covarianceMatrix = new double[(numOfCols * (numOfCols + 1)) / 2];
-
-        double[] mean = computeMeans();
-
-        int index = 0;
-        for (int col = 0; col < numOfCols; col++) {
-            for (int col2 = 0; col2 < col; col2++) {
-                double variance = 0;
-                for (int row = 0; row < numOfRows; row++) {
-                    variance += ((data[row][col] - mean[col]) * (data[row][col2] - mean[col2]) - variance) / (row + 1);
-                }
-                covarianceMatrix[index++] = biasCorrected ? variance * ((double) numOfRows / (double) (numOfRows - 1)) : variance;
-            }
-            double variance = 0;
-            for (int row = 0; row < numOfRows; row++) {
-                variance += ((data[row][col] - mean[col]) * (data[row][col] - mean[col]) - variance) / (row + 1);
-            }
-            covarianceMatrix[index++] = biasCorrected ? variance * ((double) numOfRows / (double) (numOfRows - 1)) : variance;
-        }
-
-        return covarianceMatrix;
+        return BlockedCovariance.lowerTriangle(compute(biasCorrected));
     }
 
     @Override
     public double[][] compute(boolean biasCorrected) {
-        double[][] covarianceMatrix = new double[numOfCols][numOfCols];
-
-        double[] mean = computeMeans();
-
-        for (int col = 0; col < numOfCols; col++) {
-            for (int col2 = 0; col2 < col; col2++) {
-                double variance = 0;
-                for (int row = 0; row < numOfRows; row++) {
-                    variance += ((data[row][col] - mean[col]) * (data[row][col2] - mean[col2]) - variance) / (row + 1);
-                }
-                variance = biasCorrected ? variance * ((double) numOfRows / (double) (numOfRows - 1)) : variance;
-                covarianceMatrix[col][col2] = variance;
-                covarianceMatrix[col2][col] = variance;
-            }
-            double variance = 0;
-            for (int row = 0; row < numOfRows; row++) {
-                variance += ((data[row][col] - mean[col]) * (data[row][col] - mean[col]) - variance) / (row + 1);
-            }
-            covarianceMatrix[col][col] = biasCorrected ? variance * ((double) numOfRows / (double) (numOfRows - 1)) : variance;
-        }
-
-        return covarianceMatrix;
+        double[][] columns = BlockedCovariance.toColumns(data);
+        return BlockedCovariance.compute(columns, BlockedCovariance.means(columns), biasCorrected);
     }
 
 }
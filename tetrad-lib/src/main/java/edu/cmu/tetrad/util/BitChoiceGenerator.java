@@ -0,0 +1,281 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.util;
+
+/**
+ * Generates the combinations of a choose b, for each b in a range, without allocating anything per
+ * combination. The combinations come in the same order as from ChoiceGenerator (and, over a range
+ * of sizes, DepthChoiceGenerator): by size, then lexicographically. For a <= 64 each combination
+ * is also available as a bitmask, bit i set if object i is chosen, and the series is stepped with
+ * Gosper's hack; for larger a, the positions are stepped as in ChoiceGenerator.
+ * <p>
+ * Typical use, to enumerate conditioning sets of size d drawn from a list of variable indices:
+ * <pre>
+ * BitChoiceGenerator gen = new BitChoiceGenerator(candidates.length, d);
+ *
+ * while (gen.next()) {
+ *     int[] z = gen.select(candidates);
+ *     ...
+ * }
+ * </pre>
+ * The arrays returned by choice() and select() are reused, one per size, so they are only good
+ * until the next call to next(). Not thread safe.
+ *
+ * @author Joseph Ramsey
+ */
+public final class BitChoiceGenerator {
+
+    /**
+     * The number of objects being selected from.
+     */
+    private final int a;
+
+    /**
+     * The smallest and largest number of objects in a selection.
+     */
+    private final int minB;
+    private final int maxB;
+
+    /**
+     * The number of objects in the current selection.
+     */
+    private int b;
+
+    /**
+     * For a <= 64, the unchosen objects of the current selection, bit a - 1 - i set if object i is
+     * not chosen. Stepping these through increasing values steps the selection lexicographically.
+     */
+    private long unchosen;
+
+    /**
+     * For a > 64, the current selection, in increasing order.
+     */
+    private final int[] positions;
+
+    /**
+     * Whether next() has been called and whether the series is done.
+     */
+    private boolean begun = false;
+    private boolean done = false;
+
+    /**
+     * The arrays returned by choice() and select(), by size.
+     */
+    private final int[][] choices;
+    private final int[][] selections;
+
+    /**
+     * Constructs a generator for the combinations of a choose b.
+     *
+     * @param a the number of objects being selected from.
+     * @param b the number of objects in the desired selection.
+     */
+    public BitChoiceGenerator(int a, int b) {
+        this(a, b, b);
+    }
+
+    /**
+     * Constructs a generator for the combinations of a choose b for each b from minB to maxB, in
+     * that order. A maxB of -1, or larger than a, means up to a, so that new BitChoiceGenerator(a,
+     * 0, depth) gives the series of DepthChoiceGenerator(a, depth).
+     *
+     * @param a    the number of objects being selected from.
+     * @param minB the smallest number of objects selected.
+     * @param maxB the largest number of objects selected, or -1 for a.
+     */
+    public BitChoiceGenerator(int a, int minB, int maxB) {
+        if (a < 0 || minB < 0 || maxB < -1 || minB > a) {
+            throw new IllegalArgumentException("For 'a choose b', a and b must be nonnegative with "
+                    + "a >= b: a = " + a + ", b = " + minB);
+        }
+
+        if (maxB == -1 || maxB > a) maxB = a;
+
+        this.a = a;
+        this.minB = minB;
+        this.maxB = maxB;
+        this.positions = a > 64 ? new int[maxB] : null;
+        this.choices = new int[maxB + 1][];
+        this.selections = new int[maxB + 1][];
+
+        for (int b = minB; b <= maxB; b++) {
+            choices[b] = new int[b];
+            selections[b] = new int[b];
+        }
+
+        reset();
+    }
+
+    /**
+     * Starts the series over.
+     */
+    public void reset() {
+        begun = false;
+        done = minB > maxB;
+        start(minB);
+    }
+
+    /**
+     * Steps to the next combination.
+     *
+     * @return false if the series is finished.
+     */
+    public boolean next() {
+        if (done) return false;
+
+        if (!begun) {
+            begun = true;
+            return true;
+        }
+
+        if (a <= 64 ? stepMask() : stepPositions()) {
+            return true;
+        }
+
+        if (b == maxB) {
+            done = true;
+            return false;
+        }
+
+        start(b + 1);
+        return true;
+    }
+
+    /**
+     * @return the number of objects in the current combination.
+     */
+    public int size() {
+        return b;
+    }
+
+    /**
+     * @return the current combination as a bitmask, bit i set if object i is chosen.
+     * @throws IllegalStateException if a > 64.
+     */
+    public long mask() {
+        if (a > 64) throw new IllegalStateException("No bitmask for more than 64 objects: " + a);
+        if (a == 0) return 0L;
+        return Long.reverse(~unchosen) >>> (64 - a);
+    }
+
+    /**
+     * @return the current combination, the chosen objects in increasing order. The array is reused.
+     */
+    public int[] choice() {
+        int[] choice = choices[b];
+
+        if (a > 64) {
+            System.arraycopy(positions, 0, choice, 0, b);
+        } else {
+            long mask = mask();
+
+            for (int k = 0; k < b; k++) {
+                choice[k] = Long.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+            }
+        }
+
+        return choice;
+    }
+
+    /**
+     * @param from An array of length a.
+     * @return from[i] for each chosen object i, in increasing order of i. The array is reused.
+     */
+    public int[] select(int[] from) {
+        if (from.length != a) throw new IllegalArgumentException("Expecting " + a + " values: " + from.length);
+
+        int[] selection = selections[b];
+
+        if (a > 64) {
+            for (int k = 0; k < b; k++) {
+                selection[k] = from[positions[k]];
+            }
+        } else {
+            long mask = mask();
+
+            for (int k = 0; k < b; k++) {
+                selection[k] = from[Long.numberOfTrailingZeros(mask)];
+                mask &= mask - 1;
+            }
+        }
+
+        return selection;
+    }
+
+    /**
+     * @return Ibid.
+     */
+    public int getA() {
+        return a;
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    // Sets up the first combination of the given size.
+    private void start(int b) {
+        this.b = b;
+
+        if (a > 64) {
+            for (int i = 0; i < b; i++) positions[i] = i;
+        } else {
+            int k = a - b;
+            unchosen = k == 64 ? -1L : (1L << k) - 1;
+        }
+    }
+
+    // Gosper's hack: the next larger long with the same number of bits set.
+    private boolean stepMask() {
+        long g = unchosen;
+        if (g == 0) return false;
+
+        long u = g & -g;
+        long v = g + u;
+
+        if (v == 0 || (a < 64 && (v >>> a) != 0)) return false;
+
+        unchosen = v | (((g ^ v) >>> 2) >>> Long.numberOfTrailingZeros(u));
+        return true;
+    }
+
+    // As in ChoiceGenerator.
+    private boolean stepPositions() {
+        int diff = a - b;
+
+        for (int i = b - 1; i >= 0; i--) {
+            if (positions[i] < i + diff) {
+                positions[i]++;
+
+                for (int j = i + 1; j < b; j++) {
+                    positions[j] = positions[j - 1] + 1;
+                }
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
+
+
+
@@ -0,0 +1,111 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+
+package edu.cmu.tetrad.util;
+
+import org.apache.commons.math3.special.Gamma;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches logGamma(a + n) for integer counts n, for each of the offsets a it is asked about. Discrete scores such as
+ * BDeu evaluate logGamma at a prior plus a cell count for every cell of every table they score, but the priors take
+ * only a few values and the counts are bounded by the sample size, so nearly all of these are repeats. Values are
+ * as computed by Apache's Gamma.logGamma. Safe to use from several threads at once.
+ *
+ * @author Joseph Ramsey
+ */
+public final class LogGammaCache {
+
+    // Past this many offsets, the cache is cleared and started over.
+    private static final int MAX_OFFSETS = 4096;
+
+    // For each offset a (keyed by its bits), logGamma(a + n) for n = 0, ..., length - 1.
+    private final Map<Long, double[]> tables = new ConcurrentHashMap<>();
+
+    // The largest n that will be cached; larger ones are computed directly.
+    private final int maxCount;
+
+    /**
+     * @param maxCount The largest count that will be cached--usually the sample size.
+     */
+    public LogGammaCache(int maxCount) {
+        if (maxCount < 0) throw new IllegalArgumentException("Max count must be >= 0: " + maxCount);
+        this.maxCount = maxCount;
+    }
+
+    /**
+     * @return logGamma(a + n).
+     */
+    public double logGamma(double a, int n) {
+        if (n < 0 || n > maxCount) return Gamma.logGamma(a + n);
+
+        Long key = Double.doubleToLongBits(a);
+        double[] table = tables.get(key);
+
+        if (table == null || n >= table.length) {
+            table = grow(key, a, n);
+        }
+
+        return table[n];
+    }
+
+    /**
+     * @return logGamma(a + n) - logGamma(a).
+     */
+    public double logGammaRatio(double a, int n) {
+        return logGamma(a, n) - logGamma(a, 0);
+    }
+
+    /**
+     * Empties the cache.
+     */
+    public void clear() {
+        tables.clear();
+    }
+
+    // Extends the table for a to include n, doubling to amortize the copying.
+    private synchronized double[] grow(Long key, double a, int n) {
+        double[] table = tables.get(key);
+        if (table != null && n < table.length) return table;
+
+        if (table == null && tables.size() >= MAX_OFFSETS) {
+            tables.clear();
+        }
+
+        int oldLength = table == null ? 0 : table.length;
+        int newLength = Math.min(maxCount + 1, Math.max(n + 1, Math.max(16, 2 * oldLength)));
+        double[] newTable = new double[newLength];
+
+        if (table != null) {
+            System.arraycopy(table, 0, newTable, 0, oldLength);
+        }
+
+        for (int i = oldLength; i < newLength; i++) {
+            newTable[i] = Gamma.logGamma(a + i);
+        }
+
+        tables.put(key, newTable);
+        return newTable;
+    }
+}
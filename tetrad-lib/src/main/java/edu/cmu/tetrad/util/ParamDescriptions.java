@@ -151,6 +151,7 @@ public class ParamDescriptions {
         map.put("twoCycleAlpha", new ParamDescription("Alpha orienting 2-cycles (min = 0.0)", 1e-6, 0.0, 1.0));
 
         map.put("symmetricFirstStep", new ParamDescription("Yes if the first step step for FGES should do scoring for both X->Y and Y->X", false));
+        map.put("cacheScores", new ParamDescription("Yes if local scores should be cached for reuse during the search", false));
 
         map.put("discretize", new ParamDescription(
                 "Yes if continuous variables should be discretized when child is discrete",
@@ -0,0 +1,132 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.bayes.BayesPm;
+import edu.cmu.tetrad.bayes.MlBayesIm;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DiscreteVariable;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.search.AdLeafTree;
+import edu.cmu.tetrad.search.AdTrees;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the AD tree cache.
+ *
+ * @author Joseph Ramsey
+ */
+public class TestAdTrees {
+
+    @Test
+    public void testHitsAndIdentity() {
+        AdTrees trees = new AdTrees(AdTrees.DEFAULT_MAX_BYTES);
+        DataSet data = simulate(500);
+        DataSet copy = data.copy();
+
+        AdLeafTree tree = trees.get(data);
+        assertSame(tree, trees.get(data));
+        assertNotSame(tree, trees.get(copy));
+
+        assertEquals(1, trees.getHits());
+        assertEquals(2, trees.getMisses());
+        assertEquals(2, trees.size());
+        assertTrue(trees.getBytes() > 0);
+    }
+
+    @Test
+    public void testBudget() {
+        DataSet data1 = simulate(1000);
+        DataSet data2 = simulate(1000);
+
+        AdTrees trees = new AdTrees(AdTrees.DEFAULT_MAX_BYTES);
+        AdLeafTree tree1 = trees.get(data1);
+        tree1.getCellLeaves(discrete(data1, 0, 1, 2));
+        trees.setMaxBytes(tree1.getEstimatedBytes());
+
+        // Adding a second tree pushes out the first.
+        trees.get(data2);
+        assertEquals(1, trees.size());
+        assertEquals(1, trees.getEvictions());
+        assertNotSame(tree1, trees.get(data1));
+    }
+
+    @Test
+    public void testConcurrentCells() throws Exception {
+        final DataSet data = simulate(2000);
+        final AdLeafTree serial = new AdLeafTree(data);
+        final AdLeafTree shared = new AdLeafTree(data);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> futures = new ArrayList<>();
+
+        for (int t = 0; t < 40; t++) {
+            final int a = t % 6;
+            final int b = (t + 1) % 6;
+            final int c = (t + 3) % 6;
+
+            futures.add(executor.submit(new Callable<Boolean>() {
+                public Boolean call() {
+                    List<List<Integer>> expected;
+
+                    synchronized (serial) {
+                        expected = serial.getCellLeaves(discrete(data, a, b, c));
+                    }
+
+                    return expected.equals(shared.getCellLeaves(discrete(data, a, b, c)));
+                }
+            }));
+        }
+
+        for (Future<Boolean> future : futures) {
+            assertTrue(future.get());
+        }
+
+        executor.shutdown();
+    }
+
+    private List<DiscreteVariable> discrete(DataSet data, int... columns) {
+        List<DiscreteVariable> variables = new ArrayList<>();
+
+        for (int j : columns) {
+            DiscreteVariable v = (DiscreteVariable) data.getVariable(j);
+            if (!variables.contains(v)) variables.add(v);
+        }
+
+        return variables;
+    }
+
+    private DataSet simulate(int sampleSize) {
+        RandomUtil.getInstance().setSeed(394820398L);
+        Graph dag = GraphUtils.randomGraph(6, 0, 6, 10, 10, 10, false);
+        return new MlBayesIm(new BayesPm(dag, 3, 3), MlBayesIm.RANDOM).simulateData(sampleSize, false);
+    }
+}
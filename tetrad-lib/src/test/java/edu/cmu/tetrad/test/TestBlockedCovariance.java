@@ -0,0 +1,124 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.stat.correlation.BlockedCovariance;
+import edu.cmu.tetrad.stat.correlation.RealCovarianceMatrix;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the blocked covariance kernel against covariances computed one pair at a time.
+ *
+ * @author Joseph Ramsey
+ */
+public class TestBlockedCovariance {
+
+    @Test
+    public void testAgainstPairwise() {
+        double[][] columns = randomColumns(70, 1300);
+
+        // Some missing values, in columns on either side of tile boundaries.
+        columns[3][17] = Double.NaN;
+        columns[31][1200] = Double.NaN;
+        columns[32][5] = Double.NaN;
+        columns[32][600] = Double.NaN;
+        columns[69][0] = Double.NaN;
+
+        double[][] cov = BlockedCovariance.compute(columns, true);
+        double[] means = BlockedCovariance.means(columns);
+
+        for (int i = 0; i < 70; i++) {
+            for (int j = 0; j < 70; j++) {
+                assertEquals(covariance(columns, means, i, j), cov[i][j], 1e-10);
+            }
+        }
+
+        double[] variances = BlockedCovariance.variances(columns, means, true);
+
+        for (int i = 0; i < 70; i++) {
+            assertEquals(cov[i][i], variances[i], 1e-10);
+        }
+
+        BlockedCovariance.toCorrelations(cov);
+        assertEquals(1.0, cov[40][40], 0.0);
+        assertEquals(cov[40][7], cov[7][40], 0.0);
+        assertEquals(covariance(columns, means, 40, 7) / Math.sqrt(variances[40] * variances[7]), cov[40][7], 1e-10);
+    }
+
+    @Test
+    public void testFloatAndRowMajor() {
+        double[][] columns = randomColumns(40, 700);
+        double[][] expected = BlockedCovariance.compute(columns, false);
+
+        float[][] floats = new float[40][700];
+        double[][] rows = new double[700][40];
+
+        for (int j = 0; j < 40; j++) {
+            for (int i = 0; i < 700; i++) {
+                floats[j][i] = (float) columns[j][i];
+                rows[i][j] = columns[j][i];
+            }
+        }
+
+        float[][] actual = BlockedCovariance.compute(floats, false);
+        double[][] fromRows = new RealCovarianceMatrix(rows).compute(false);
+
+        for (int i = 0; i < 40; i++) {
+            for (int j = 0; j < 40; j++) {
+                assertEquals(expected[i][j], actual[i][j], 1e-4);
+                assertEquals(expected[i][j], fromRows[i][j], 1e-12);
+            }
+        }
+    }
+
+    private double covariance(double[][] columns, double[] means, int i, int j) {
+        double sum = 0.0;
+        int count = 0;
+
+        for (int k = 0; k < columns[i].length; k++) {
+            if (Double.isNaN(columns[i][k]) || Double.isNaN(columns[j][k])) continue;
+            sum += (columns[i][k] - means[i]) * (columns[j][k] - means[j]);
+            count++;
+        }
+
+        return sum / (count - 1);
+    }
+
+    private double[][] randomColumns(int p, int n) {
+        RandomUtil random = RandomUtil.getInstance();
+        random.setSeed(38203948L);
+        double[][] columns = new double[p][n];
+
+        for (int i = 0; i < n; i++) {
+            double common = random.nextNormal(0, 1);
+
+            for (int j = 0; j < p; j++) {
+                columns[j][i] = 2.0 + (j % 5) * common + random.nextNormal(0, 1);
+            }
+        }
+
+        return columns;
+    }
+}
@@ -0,0 +1,183 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.*;
+import edu.cmu.tetrad.graph.EdgeTypeProbability.EdgeType;
+import edu.cmu.tetrad.search.BootstrapSearch;
+import edu.cmu.tetrad.search.Fges;
+import edu.cmu.tetrad.search.SemBicScore;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests edge frequency counting and the bootstrap search that uses it.
+ *
+ * @author Joseph Ramsey
+ */
+public class TestBootstrapSearch {
+
+    @Test
+    public void testFrequencies() {
+        List<Node> vars = new ArrayList<>();
+        for (int i = 0; i < 3; i++) vars.add(new ContinuousVariable("X" + i));
+        Node x0 = vars.get(0), x1 = vars.get(1), x2 = vars.get(2);
+
+        EdgeFrequencies frequencies = new EdgeFrequencies(vars);
+
+        Graph g1 = new EdgeListGraph(vars);
+        g1.addDirectedEdge(x0, x1);
+        frequencies.add(g1);
+
+        Graph g2 = new EdgeListGraph(vars);
+        g2.addDirectedEdge(x0, x1);
+        g2.addBidirectedEdge(x2, x1);
+        frequencies.add(g2);
+
+        Graph g3 = new EdgeListGraph(vars);
+        g3.addDirectedEdge(x1, x0);
+        frequencies.add(g3);
+
+        assertEquals(3, frequencies.getNumGraphs());
+        assertEquals(2 / 3.0, frequencies.getProbability(x0, x1, EdgeType.ta), 1e-12);
+        assertEquals(2 / 3.0, frequencies.getProbability(x1, x0, EdgeType.at), 1e-12);
+        assertEquals(1 / 3.0, frequencies.getProbability(x1, x0, EdgeType.ta), 1e-12);
+        assertEquals(0.0, frequencies.getProbability(x0, x1, EdgeType.nil), 1e-12);
+        assertEquals(1 / 3.0, frequencies.getProbability(x1, x2, EdgeType.aa), 1e-12);
+        assertEquals(2 / 3.0, frequencies.getProbability(x1, x2, EdgeType.nil), 1e-12);
+        assertEquals(1.0, frequencies.getProbability(x0, x2, EdgeType.nil), 1e-12);
+
+        Graph highest = frequencies.getGraph(EdgeFrequencies.Ensemble.Highest);
+        assertEquals(1, highest.getNumEdges());
+        assertTrue(highest.isParentOf(x0, x1));
+        assertEquals(EdgeType.values().length, highest.getEdge(x0, x1).getEdgeTypeProbabilities().size());
+
+        Graph preserved = frequencies.getGraph(EdgeFrequencies.Ensemble.Preserved);
+        assertEquals(2, preserved.getNumEdges());
+        assertTrue(preserved.getEdge(x1, x2).equals(Edges.bidirectedEdge(x1, x2)));
+
+        Graph majority = frequencies.getGraph(EdgeFrequencies.Ensemble.Majority);
+        assertEquals(1, majority.getNumEdges());
+
+        assertEquals(0.0, EdgeFrequencies.maxChange(frequencies.snapshot(), frequencies.snapshot()), 0.0);
+    }
+
+    @Test
+    public void testSearch() {
+        RandomUtil.getInstance().setSeed(3829483L);
+        DataSet data = simulate(10, 500);
+
+        BootstrapSearch bootstrap = new BootstrapSearch(data, new FgesReplicate());
+        bootstrap.setNumReplicates(12);
+        Graph graph = bootstrap.search();
+
+        EdgeFrequencies frequencies = bootstrap.getFrequencies();
+        assertEquals(12, bootstrap.getNumReplicatesRun());
+        assertTrue(graph.getNumEdges() > 0);
+
+        List<Node> vars = data.getVariables();
+
+        for (int i = 0; i < vars.size(); i++) {
+            for (int j = i + 1; j < vars.size(); j++) {
+                double sum = 0.0;
+
+                for (EdgeType type : EdgeType.values()) {
+                    sum += frequencies.getProbability(vars.get(i), vars.get(j), type);
+                }
+
+                assertEquals(1.0, sum, 1e-12);
+            }
+        }
+
+        // The same seed gives the same samples and so the same frequencies.
+        RandomUtil.getInstance().setSeed(3829483L);
+        data = simulate(10, 500);
+        BootstrapSearch again = new BootstrapSearch(data, new FgesReplicate());
+        again.setNumReplicates(12);
+        again.setMaxBytes(1);
+        assertEquals(1, again.getMaxInFlight());
+        again.search();
+
+        assertEquals(0.0, EdgeFrequencies.maxChange(frequencies.snapshot(), again.getFrequencies().snapshot()), 0.0);
+    }
+
+    @Test
+    public void testEarlyStopping() throws Exception {
+        RandomUtil.getInstance().setSeed(93824L);
+        DataSet data = simulate(8, 1000);
+
+        BootstrapSearch bootstrap = new BootstrapSearch(data, new FgesReplicate());
+        bootstrap.setNumReplicates(1000);
+        bootstrap.setCheckInterval(5);
+        bootstrap.setEpsilon(0.2);
+        bootstrap.search();
+
+        assertTrue(bootstrap.getNumReplicatesRun() >= 10);
+        assertTrue(bootstrap.getNumReplicatesRun() < 1000);
+        assertEquals(0, bootstrap.getNumReplicatesRun() % 5);
+
+        // Stopping is decided at fixed counts, so it is repeatable, here from inside a pool task.
+        RandomUtil.getInstance().setSeed(93824L);
+        final BootstrapSearch again = new BootstrapSearch(simulate(8, 1000), new FgesReplicate());
+        again.setNumReplicates(1000);
+        again.setCheckInterval(5);
+        again.setEpsilon(0.2);
+
+        ForkJoinPoolInstance.getInstance().getPool().submit(new Runnable() {
+            public void run() {
+                again.search();
+            }
+        }).get(5, TimeUnit.MINUTES);
+
+        assertEquals(bootstrap.getNumReplicatesRun(), again.getNumReplicatesRun());
+        assertEquals(0.0, EdgeFrequencies.maxChange(bootstrap.getFrequencies().snapshot(),
+                again.getFrequencies().snapshot()), 0.0);
+    }
+
+    private static DataSet simulate(int numVars, int sampleSize) {
+        List<Node> vars = new ArrayList<>();
+        for (int i = 0; i < numVars; i++) vars.add(new ContinuousVariable("X" + i));
+        Graph dag = GraphUtils.randomGraphRandomForwardEdges(vars, 0, numVars, 30, 15, 15, false, true);
+        return new SemIm(new SemPm(dag)).simulateData(sampleSize, false);
+    }
+
+    private static class FgesReplicate implements BootstrapSearch.ReplicateSearch {
+        public Graph search(DataSet sample) {
+            Fges fges = new Fges(new SemBicScore(new CovarianceMatrix(sample)));
+            fges.setVerbose(false);
+            return fges.search();
+        }
+    }
+}
@@ -273,9 +273,71 @@ public final class TestBoxDataSet {
             fail("Missing row in permutation.");
         }
     }
-}
 
+    @Test
+    public void testPrimitiveAccessors() {
+        DataBox[] boxes = {new DoubleDataBox(4, 3), new VerticalDoubleDataBox(4, 3), new IntDataBox(4, 3),
+                new ShortDataBox(4, 3), new ByteDataBox(4, 3), new VerticalIntDataBox(4, 3)};
+
+        for (DataBox box : boxes) {
+            box.setDouble(0, 0, 3);
+            box.setDouble(1, 2, Double.NaN);
+            box.set(2, 1, 5);
+            box.set(3, 1, null);
+
+            assertEquals(3.0, box.getDouble(0, 0), 0.0);
+            assertEquals(3, box.getInt(0, 0));
+            assertTrue(Double.isNaN(box.getDouble(1, 2)));
+            assertEquals(DiscreteVariable.MISSING_VALUE, box.getInt(1, 2));
+            assertEquals(5.0, box.getDouble(2, 1), 0.0);
+            assertEquals(DiscreteVariable.MISSING_VALUE, box.getInt(3, 1));
+
+            DataBox copy = box.copy();
+            assertEquals(3.0, copy.getDouble(0, 0), 0.0);
+            assertTrue(Double.isNaN(copy.getDouble(1, 2)));
+
+            box.setDouble(0, 0, 4);
+            assertEquals(3.0, copy.getDouble(0, 0), 0.0);
+
+            DataBox selection = box.viewSelection(new int[]{2, 0}, new int[]{1, 0});
+            assertEquals(5.0, selection.getDouble(0, 0), 0.0);
+            assertEquals(4.0, selection.getDouble(1, 1), 0.0);
+        }
+    }
 
+    @Test
+    public void testColumns() {
+        List<Node> variables = new ArrayList<>();
+        variables.add(new ContinuousVariable("X"));
+        variables.add(new DiscreteVariable("Y", 3));
+
+        DataSet mixed = new BoxDataSet(new MixedDataBox(variables, 5), variables);
 
+        for (int i = 0; i < 5; i++) {
+            mixed.setDouble(i, 0, i * 0.5);
+            mixed.setInt(i, 1, i % 3);
+        }
 
+        mixed.setInt(4, 1, DiscreteVariable.MISSING_VALUE);
 
+        assertEquals(1.5, mixed.getDoubleColumn(0)[3], 0.0);
+        assertEquals(2, mixed.getIntColumn(1)[2]);
+        assertEquals(DiscreteVariable.MISSING_VALUE, mixed.getIntColumn(1)[4]);
+        assertTrue(Double.isNaN(mixed.getDoubleColumn(1)[4]));
+        assertSame(mixed.getDoubleColumn(0), mixed.getDoubleColumn(0));
+
+        DataSet copy = mixed.copy();
+        assertEquals(DiscreteVariable.MISSING_VALUE, copy.getInt(4, 1));
+
+        variables = new ArrayList<>();
+        variables.add(new ContinuousVariable("X"));
+        variables.add(new ContinuousVariable("Y"));
+
+        DataSet vertical = new BoxDataSet(new VerticalDoubleDataBox(new double[][]{{1, 2, 3}, {4, 5, 6}}), variables);
+        assertSame(vertical.getDoubleColumn(1), vertical.getDoubleColumn(1));
+        assertEquals(5.0, vertical.getDoubleColumn(1)[1], 0.0);
+
+        DataSet horizontal = new BoxDataSet(new DoubleDataBox(new double[][]{{1, 4}, {2, 5}, {3, 6}}), variables);
+        assertArrayEquals(vertical.getDoubleColumn(1), horizontal.getDoubleColumn(1), 0.0);
+    }
+}
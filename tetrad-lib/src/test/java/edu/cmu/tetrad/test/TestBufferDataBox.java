@@ -0,0 +1,128 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.*;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.Fges;
+import edu.cmu.tetrad.search.IndTestFisherZ;
+import edu.cmu.tetrad.search.Pc;
+import edu.cmu.tetrad.search.SemBicScore;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests data boxes held in direct memory and mapped files.
+ *
+ * @author Joseph Ramsey
+ */
+public class TestBufferDataBox {
+
+    @Test
+    public void testSearchesOffHeap() throws IOException {
+        RandomUtil.getInstance().setSeed(2938402L);
+
+        List<Node> vars = new ArrayList<>();
+        for (int i = 0; i < 10; i++) vars.add(new ContinuousVariable("X" + i));
+
+        Graph dag = GraphUtils.randomGraphRandomForwardEdges(vars, 0, 10, 30, 15, 15, false, true);
+        DataSet data = new SemIm(new SemPm(dag)).simulateData(1000, false);
+
+        for (BufferDataBox box : new BufferDataBox[]{BufferDataBox.allocateDirect(data.getVariables(), 1000),
+                BufferDataBox.allocateMapped(data.getVariables(), 1000)}) {
+            assertTrue(box.isOffHeap());
+            assertTrue(Double.isNaN(box.getDouble(5, 5)));
+
+            for (int i = 0; i < 1000; i++) {
+                for (int j = 0; j < 10; j++) {
+                    box.setDouble(i, j, data.getDouble(i, j));
+                }
+            }
+
+            DataSet offHeap = new BoxDataSet(box, data.getVariables());
+
+            ICovarianceMatrix expected = new CovarianceMatrix(data);
+            ICovarianceMatrix actual = new CovarianceMatrix(offHeap);
+
+            for (int i = 0; i < 10; i++) {
+                for (int j = 0; j < 10; j++) {
+                    assertEquals(expected.getValue(i, j), actual.getValue(i, j), 1e-10);
+                }
+            }
+
+            assertEquals(new Fges(new SemBicScore(expected)).search(), new Fges(new SemBicScore(actual)).search());
+            assertEquals(new Pc(new IndTestFisherZ(data, 0.01)).search(),
+                    new Pc(new IndTestFisherZ(offHeap, 0.01)).search());
+
+            box.close();
+            assertTrue(box.isClosed());
+
+            try {
+                box.getDouble(0, 0);
+                fail("A closed box shouldn't be readable.");
+            } catch (IllegalStateException e) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void testMixedCopies() throws IOException {
+        List<Node> variables = new ArrayList<>();
+        variables.add(new ContinuousVariable("X"));
+        variables.add(new DiscreteVariable("Y", 3));
+
+        BufferDataBox box = BufferDataBox.allocateMapped(variables, 100);
+
+        for (int i = 0; i < 100; i++) {
+            box.setDouble(i, 0, i % 9 == 0 ? Double.NaN : i / 10.0);
+            box.set(i, 1, i % 7 == 0 ? null : i % 3);
+        }
+
+        assertEquals(-99, box.getInt(0, 1));
+        assertNull(box.get(0, 0));
+
+        DataBox copy = box.copy();
+        DataBox selection = box.viewSelection(new int[]{3, 4, 5}, new int[]{1, 0});
+        box.close();
+
+        assertTrue(copy instanceof BufferDataBox);
+        assertTrue(((BufferDataBox) copy).isOffHeap());
+        assertEquals(5.5, copy.getDouble(55, 0), 0.0);
+        assertEquals(1, copy.getInt(55, 1));
+        assertEquals(2, selection.getInt(2, 0));
+        assertEquals(0.4, selection.getDouble(1, 1), 0.0);
+
+        ((BufferDataBox) copy).close();
+        ((BufferDataBox) selection).close();
+    }
+}
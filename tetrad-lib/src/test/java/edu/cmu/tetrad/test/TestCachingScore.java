@@ -0,0 +1,110 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.CachingScore;
+import edu.cmu.tetrad.search.Fges;
+import edu.cmu.tetrad.search.LocalScoreCache;
+import edu.cmu.tetrad.search.SemBicScore;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the local score cache and the caching score wrapper.
+ *
+ * @author Joseph Ramsey
+ */
+public class TestCachingScore {
+
+    @Test
+    public void testParentOrderIgnored() {
+        LocalScoreCache cache = new LocalScoreCache();
+        cache.add(3, new int[]{5, 1, 2}, -10.0);
+
+        assertEquals(-10.0, cache.get(3, new int[]{1, 2, 5}), 0.0);
+        assertEquals(-10.0, cache.get(3, new int[]{2, 5, 1}), 0.0);
+        assertTrue(Double.isNaN(cache.get(3, new int[]{1, 2})));
+        assertNull(cache.lookup(3, 4, new int[]{1, 2, 5}));
+
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testBounded() {
+        LocalScoreCache cache = new LocalScoreCache(64 * 1024);
+
+        for (int i = 0; i < 100000; i++) {
+            cache.add(i, new int[]{i + 1, i + 2}, i);
+        }
+
+        assertTrue(cache.getBytes() <= cache.getMaxBytes());
+        assertTrue(cache.getEvictions() > 0);
+        assertEquals(99999.0, cache.get(99999, new int[]{100000, 100001}), 0.0);
+    }
+
+    @Test
+    public void testSameAsUncached() {
+        RandomUtil.getInstance().setSeed(4938204938L);
+
+        List<Node> vars = new ArrayList<>();
+
+        for (int i = 0; i < 20; i++) {
+            vars.add(new ContinuousVariable("X" + i));
+        }
+
+        Graph dag = GraphUtils.randomGraphRandomForwardEdges(vars, 0, 20, 30, 15, 15, false, true);
+        SemIm im = new SemIm(new SemPm(dag));
+        DataSet data = im.simulateData(1000, false);
+
+        SemBicScore score = new SemBicScore(new CovarianceMatrix(data));
+        score.setPenaltyDiscount(2);
+        CachingScore cachingScore = new CachingScore(score);
+
+        assertEquals(score.localScore(3, 1, 2), cachingScore.localScore(3, 1, 2), 0.0);
+        assertEquals(score.localScore(3, 1, 2), cachingScore.localScore(3, 2, 1), 0.0);
+        assertEquals(score.localScoreDiff(1, 3, new int[]{2}), cachingScore.localScoreDiff(1, 3, new int[]{2}), 0.0);
+        assertEquals(score.localScoreDiff(1, 3), cachingScore.localScoreDiff(1, 3), 0.0);
+        assertEquals(1, cachingScore.getHits());
+
+        Graph expected = new Fges(score).search();
+        Graph actual = new Fges(cachingScore).search();
+
+        assertEquals(expected, actual);
+        assertTrue(cachingScore.getHits() > 0);
+    }
+}
@@ -21,13 +21,19 @@
 
 package edu.cmu.tetrad.test;
 
+import edu.cmu.tetrad.util.BitChoiceGenerator;
 import edu.cmu.tetrad.util.ChoiceGenerator;
 import edu.cmu.tetrad.util.DepthChoiceGenerator;
 import edu.cmu.tetrad.util.PermutationGenerator;
 import edu.cmu.tetrad.util.SelectionGenerator;
 import org.junit.Test;
 
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -118,6 +124,78 @@ public class TestChoiceGenerator {
         }
     }
 
+    /**
+     * The bitmask generator should give the same series as the choice generator, on both sides of
+     * the 64 object limit for bitmasks.
+     */
+    @Test
+    public void testBitChoiceGenerator() {
+        int[][] cases = {{0, 0}, {1, 0}, {1, 1}, {5, 2}, {10, 3}, {12, 12}, {64, 0}, {64, 1}, {64, 2}, {64, 63}, {70, 2}};
+
+        for (int[] c : cases) {
+            int a = c[0];
+            int b = c[1];
+
+            ChoiceGenerator expected = new ChoiceGenerator(a, b);
+            BitChoiceGenerator actual = new BitChoiceGenerator(a, b);
+            int[] choice;
+
+            while ((choice = expected.next()) != null) {
+                assertTrue(actual.next());
+                assertArrayEquals("a = " + a + " b = " + b, choice, actual.choice());
+
+                if (a <= 64) {
+                    long mask = 0L;
+                    for (int i : choice) mask |= 1L << i;
+                    assertEquals(mask, actual.mask());
+                }
+            }
+
+            assertFalse(actual.next());
+        }
+    }
+
+    @Test
+    public void testBitDepthChoiceGenerator() {
+        for (int a = 0; a <= 8; a++) {
+            for (int depth = -1; depth <= a + 1; depth++) {
+                DepthChoiceGenerator expected = new DepthChoiceGenerator(a, depth);
+                BitChoiceGenerator actual = new BitChoiceGenerator(a, 0, depth);
+                int[] choice;
+
+                while ((choice = expected.next()) != null) {
+                    assertTrue(actual.next());
+                    assertArrayEquals(choice, actual.choice());
+                }
+
+                assertFalse(actual.next());
+            }
+        }
+    }
+
+    @Test
+    public void testBitChoiceGeneratorSelect() {
+        int[] from = {7, 3, 9, 4, 1};
+        BitChoiceGenerator gen = new BitChoiceGenerator(from.length, 2, 3);
+        int count = 0;
+
+        while (gen.next()) {
+            int[] choice = gen.choice();
+            int[] selection = gen.select(from);
+
+            assertEquals(gen.size(), selection.length);
+            for (int k = 0; k < choice.length; k++) assertEquals(from[choice[k]], selection[k]);
+
+            count++;
+        }
+
+        assertEquals(10 + 10, count);
+
+        gen.reset();
+        gen.next();
+        assertEquals("[7, 3]", Arrays.toString(gen.select(from)));
+    }
+
 
 }
 
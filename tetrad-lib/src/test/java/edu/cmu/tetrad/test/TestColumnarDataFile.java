@@ -0,0 +1,210 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.*;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.Fges;
+import edu.cmu.tetrad.search.SemBicScore;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests writing data and covariances to the binary columnar format and reading them back
+ * through mapped buffers.
+ *
+ * @author Joseph Ramsey
+ */
+public class TestColumnarDataFile {
+
+    @Test
+    public void testMixedData() throws IOException {
+        DataSet data = simulate(8, 301);
+        List<Node> variables = new ArrayList<>(data.getVariables());
+        variables.set(2, new DiscreteVariable("X2", 3));
+        variables.set(5, new DiscreteVariable("X5", 2));
+
+        DataSet mixed = new BoxDataSet(new MixedDataBox(variables, data.getNumRows()), variables);
+
+        for (int i = 0; i < data.getNumRows(); i++) {
+            for (int j = 0; j < variables.size(); j++) {
+                if (variables.get(j) instanceof DiscreteVariable) {
+                    mixed.setInt(i, j, i % 7 == 0 ? -99 : i % ((DiscreteVariable) variables.get(j)).getNumCategories());
+                } else {
+                    mixed.setDouble(i, j, i % 11 == 0 ? Double.NaN : data.getDouble(i, j));
+                }
+            }
+        }
+
+        File file = File.createTempFile("mixed", ".tdc");
+        file.deleteOnExit();
+        ColumnarDataFile.write(mixed, file);
+
+        ColumnarDataFile columnar = ColumnarDataFile.open(file);
+        assertFalse(columnar.hasCovarianceMatrix());
+
+        DataSet read = columnar.getDataSet();
+        assertEquals(mixed.getVariables(), read.getVariables());
+        assertEquals(((DiscreteVariable) variables.get(2)).getCategories(),
+                ((DiscreteVariable) read.getVariable(2)).getCategories());
+
+        for (int i = 0; i < mixed.getNumRows(); i++) {
+            for (int j = 0; j < mixed.getNumColumns(); j++) {
+                assertEquals(mixed.getDouble(i, j), read.getDouble(i, j), 0.0);
+                assertEquals(mixed.getInt(i, j), read.getInt(i, j));
+            }
+        }
+
+        DataSet copy = (DataSet) serialize(read);
+        assertEquals(read.getDouble(1, 0), copy.getDouble(1, 0), 0.0);
+        assertEquals(read.getInt(1, 2), copy.getInt(1, 2));
+
+        // Copies of file backed data are held in direct memory, not in another mapped file.
+        DataBox copyBox = ((BoxDataSet) read.copy()).getDataBox();
+        assertTrue(copyBox instanceof BufferDataBox);
+        assertTrue(((BufferDataBox) copyBox).isOffHeap());
+        assertEquals(read.getDouble(1, 0), copyBox.getDouble(1, 0), 0.0);
+        ((BufferDataBox) copyBox).close();
+
+        // Closing the file leaves the data sets already handed out readable.
+        columnar.close();
+        assertEquals(mixed.getDouble(1, 0), read.getDouble(1, 0), 0.0);
+
+        try {
+            columnar.getDataSet();
+            fail("A closed file shouldn't hand out data sets.");
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testCovariances() throws IOException {
+        DataSet data = simulate(10, 500);
+
+        File file = File.createTempFile("continuous", ".tdc");
+        file.deleteOnExit();
+        ColumnarDataFile.write(data, true, file);
+
+        ColumnarDataFile columnar = ColumnarDataFile.open(file);
+        ICovarianceMatrix expected = new CovarianceMatrix(data);
+        ICovarianceMatrix stored = columnar.getCovarianceMatrix();
+        ICovarianceMatrix computed = new CovarianceMatrix(columnar.getDataSet());
+
+        assertEquals(500, stored.getSampleSize());
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(mean(data.getDoubleColumn(i)), columnar.getMeans()[i], 1e-12);
+
+            for (int j = 0; j < 10; j++) {
+                assertEquals(expected.getValue(i, j), stored.getValue(i, j), 0.0);
+                assertEquals(expected.getValue(i, j), computed.getValue(i, j), 1e-12);
+            }
+        }
+
+        Graph fromData = new Fges(new SemBicScore(expected)).search();
+        Graph fromFile = new Fges(new SemBicScore(stored)).search();
+        assertEquals(fromData, fromFile);
+
+        File covFile = File.createTempFile("covariance", ".tdc");
+        covFile.deleteOnExit();
+        ColumnarDataFile.write(expected, null, covFile);
+
+        ColumnarDataFile covOnly = ColumnarDataFile.open(covFile);
+        assertFalse(covOnly.hasData());
+        assertNull(covOnly.getMeans());
+        assertEquals(expected.getValue(3, 4), covOnly.getCovarianceMatrix().getValue(3, 4), 0.0);
+    }
+
+    @Test
+    public void testCovariancesWithMissingValue() throws IOException {
+        DataSet data = simulate(5, 200);
+        data.setDouble(17, 2, Double.NaN);
+
+        File file = File.createTempFile("missing", ".tdc");
+        file.deleteOnExit();
+        ColumnarDataFile.write(data, true, file);
+
+        ColumnarDataFile columnar = ColumnarDataFile.open(file);
+        ICovarianceMatrix expected = new CovarianceMatrix(data);
+        ICovarianceMatrix stored = columnar.getCovarianceMatrix();
+
+        // The means skip the missing value, as the covariances do.
+        assertFalse(Double.isNaN(columnar.getMeans()[2]));
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(mean(data.getDoubleColumn(i)), columnar.getMeans()[i], 1e-12);
+
+            for (int j = 0; j < 5; j++) {
+                assertEquals(expected.getValue(i, j), stored.getValue(i, j), 0.0);
+            }
+        }
+    }
+
+    private DataSet simulate(int numVars, int sampleSize) {
+        RandomUtil.getInstance().setSeed(3920492L);
+
+        List<Node> vars = new ArrayList<>();
+        for (int i = 0; i < numVars; i++) vars.add(new ContinuousVariable("X" + i));
+
+        Graph dag = GraphUtils.randomGraphRandomForwardEdges(vars, 0, numVars, 30, 15, 15, false, true);
+        return new SemIm(new SemPm(dag)).simulateData(sampleSize, false);
+    }
+
+    // Over the values that aren't missing.
+    private double mean(double[] values) {
+        double sum = 0.0;
+        int count = 0;
+
+        for (double value : values) {
+            if (Double.isNaN(value)) continue;
+            sum += value;
+            count++;
+        }
+
+        return sum / count;
+    }
+
+    private Object serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.algcomparison.Comparison;
+import edu.cmu.tetrad.algcomparison.algorithm.Algorithm;
+import edu.cmu.tetrad.algcomparison.algorithm.Algorithms;
+import edu.cmu.tetrad.algcomparison.algorithm.oracle.pattern.Pc;
+import edu.cmu.tetrad.algcomparison.graph.RandomForward;
+import edu.cmu.tetrad.algcomparison.independence.FisherZ;
+import edu.cmu.tetrad.algcomparison.simulation.SemSimulation;
+import edu.cmu.tetrad.algcomparison.simulation.Simulations;
+import edu.cmu.tetrad.algcomparison.statistic.AdjacencyPrecision;
+import edu.cmu.tetrad.algcomparison.statistic.AdjacencyRecall;
+import edu.cmu.tetrad.algcomparison.statistic.ArrowheadPrecision;
+import edu.cmu.tetrad.algcomparison.statistic.Statistics;
+import edu.cmu.tetrad.data.DataModel;
+import edu.cmu.tetrad.data.DataType;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.util.Parameters;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests running comparisons in parallel and resuming them from checkpoints.
+ *
+ * @author Joseph Ramsey
+ */
+public class TestComparison {
+
+    private static final long SEED = 39420394L;
+
+    @Test
+    public void testParallelSameAsSerial() throws IOException {
+        File serial = Files.createTempDirectory("comparison").toFile();
+        File parallel = Files.createTempDirectory("comparison").toFile();
+
+        compare(serial, false, SEED);
+        compare(parallel, true, SEED);
+
+        for (int algSim = 1; algSim <= 2; algSim++) {
+            for (int run = 1; run <= 3; run++) {
+                assertEquals(stats(serial, algSim, run), stats(parallel, algSim, run));
+            }
+        }
+    }
+
+    @Test
+    public void testResume() throws IOException {
+        File dir = Files.createTempDirectory("comparison").toFile();
+
+        assertEquals(6, compare(dir, true, SEED));
+        assertEquals(0, compare(dir, true, SEED));
+
+        assertTrue(new File(dir, "checkpoints/2/stats.3.txt").delete());
+        assertTrue(new File(dir, "checkpoints/1/stats.1.txt").delete());
+        assertEquals(2, compare(dir, true, SEED));
+        assertTrue(new File(dir, "checkpoints/1/graph.1.txt").exists());
+
+        // Restored runs still leave their graphs and times in the results directory.
+        for (String alpha : new String[]{"0.01", "0.001"}) {
+            for (int run = 1; run <= 3; run++) {
+                String name = "Counting_PC,_alpha_=_" + alpha + "/1/graph." + run + ".txt";
+                assertTrue(name, new File(dir, "results/" + name).exists());
+                assertTrue(name, new File(dir, "elapsed/" + name).exists());
+            }
+        }
+
+        // Data simulated from another seed isn't restored from the old checkpoints.
+        assertEquals(6, compare(dir, true, SEED + 1));
+    }
+
+    // Returns the number of searches done.
+    private int compare(File dir, boolean parallelized, long seed) {
+        RandomUtil.getInstance().setSeed(seed);
+
+        Parameters parameters = new Parameters();
+        parameters.set("numRuns", 3);
+        parameters.set("numMeasures", 10);
+        parameters.set("avgDegree", 2);
+        parameters.set("sampleSize", 500);
+        parameters.set("alpha", 0.01, 0.001);
+
+        Statistics statistics = new Statistics();
+        statistics.add(new AdjacencyPrecision());
+        statistics.add(new AdjacencyRecall());
+        statistics.add(new ArrowheadPrecision());
+
+        CountingAlgorithm algorithm = new CountingAlgorithm(new Pc(new FisherZ()));
+        Algorithms algorithms = new Algorithms();
+        algorithms.add(algorithm);
+
+        Simulations simulations = new Simulations();
+        simulations.add(new SemSimulation(new RandomForward()));
+
+        Comparison comparison = new Comparison();
+        comparison.setParallelized(parallelized);
+        comparison.setNumThreads(4);
+        comparison.setSaveCheckpoints(true);
+        comparison.setSaveGraphs(true);
+        comparison.compareFromSimulations(dir.getAbsolutePath(), simulations, algorithms, statistics, parameters);
+
+        return algorithm.searches.get();
+    }
+
+    private List<String> stats(File dir, int algSim, int run) throws IOException {
+        List<String> lines = new ArrayList<>();
+
+        for (String line : Files.readAllLines(new File(dir, "checkpoints/" + algSim + "/stats." + run + ".txt").toPath())) {
+            if (!line.startsWith("elapsed") && !line.startsWith("searchElapsed")) lines.add(line);
+        }
+
+        return lines;
+    }
+
+    private static class CountingAlgorithm implements Algorithm {
+        private final Algorithm algorithm;
+        private final AtomicInteger searches = new AtomicInteger();
+
+        CountingAlgorithm(Algorithm algorithm) {
+            this.algorithm = algorithm;
+        }
+
+        @Override
+        public Graph search(DataModel dataSet, Parameters parameters) {
+            searches.incrementAndGet();
+            return algorithm.search(dataSet, parameters);
+        }
+
+        @Override
+        public Graph getComparisonGraph(Graph graph) {
+            return algorithm.getComparisonGraph(graph);
+        }
+
+        @Override
+        public String getDescription() {
+            // The Fisher Z description reports the last alpha used, so don't let it name results directories.
+            return "Counting PC";
+        }
+
+        @Override
+        public DataType getDataType() {
+            return algorithm.getDataType();
+        }
+
+        @Override
+        public List<String> getParameters() {
+            return algorithm.getParameters();
+        }
+    }
+}
@@ -24,6 +24,7 @@ package edu.cmu.tetrad.test;
 import edu.cmu.tetrad.data.*;
 import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.util.RandomUtil;
+import edu.cmu.tetrad.util.StatUtils;
 import edu.cmu.tetrad.util.TetradMatrix;
 import org.junit.Test;
 
@@ -31,6 +32,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 /**
  * Tests CovarianceMatrix.
@@ -83,9 +85,151 @@ public final class TestCovarianceMatrix {
         assertEquals(-.051, c2.getValue(0, 1), 0.001);
         assertEquals(-.609, c3.getValue(0, 1), 0.001);
     }
-}
 
+    @Test
+    public void testOnTheFlySelection() {
+        RandomUtil.getInstance().setSeed(4828384834L);
+
+        List<Node> variables = new LinkedList<>();
+
+        for (int i = 0; i < 8; i++) {
+            variables.add(new ContinuousVariable("X" + i));
+        }
+
+        // Not a multiple of the kernel's block size.
+        DataSet dataSet = new ColtDataSet(1234, variables);
+
+        for (int i = 0; i < dataSet.getNumRows(); i++) {
+            for (int j = 0; j < 8; j++) {
+                dataSet.setDouble(i, j, RandomUtil.getInstance().nextDouble());
+            }
+        }
+
+        ICovarianceMatrix expected = new CovarianceMatrix(dataSet);
+
+        CovarianceMatrixOnTheFly uncached = new CovarianceMatrixOnTheFly(dataSet);
+        CovarianceMatrixOnTheFly cached = new CovarianceMatrixOnTheFly(dataSet);
+        cached.setCacheSize(1000);
+
+        int[] indices = {6, 1, 3, 0, 4};
+
+        for (int rep = 0; rep < 2; rep++) {
+            TetradMatrix m1 = uncached.getSelection(indices, indices);
+            TetradMatrix m2 = cached.getSelection(indices, indices);
+
+            for (int i = 0; i < indices.length; i++) {
+                for (int j = 0; j < indices.length; j++) {
+                    assertEquals(expected.getValue(indices[i], indices[j]), m1.get(i, j), 1e-10);
+                    assertEquals(m1.get(i, j), m2.get(i, j), 0.0);
+                    assertEquals(uncached.getValue(indices[i], indices[j]), m1.get(i, j), 0.0);
+                }
+            }
+        }
+
+        assertEquals(10, cached.getCacheSize());
+
+        // A column with missing values takes the NaN-checking path.
+        dataSet.setDouble(5, 2, Double.NaN);
+        CovarianceMatrixOnTheFly missing = new CovarianceMatrixOnTheFly(dataSet);
+        int[] withMissing = {2, 3};
+        TetradMatrix m3 = missing.getSelection(withMissing, withMissing);
+        assertEquals(missing.getValue(2, 3), m3.get(0, 1), 0.0);
+        assertFalse(Double.isNaN(m3.get(0, 1)));
+    }
+
+    @Test
+    public void testBootstrapWeights() {
+        RandomUtil.getInstance().setSeed(2938492834L);
+
+        List<Node> variables = new LinkedList<>();
+
+        for (int i = 0; i < 5; i++) {
+            variables.add(new ContinuousVariable("X" + i));
+        }
+
+        DataSet dataSet = new BoxDataSet(new VerticalDoubleDataBox(300, 5), variables);
+
+        for (int i = 0; i < dataSet.getNumRows(); i++) {
+            for (int j = 0; j < 5; j++) {
+                dataSet.setDouble(i, j, RandomUtil.getInstance().nextDouble() + j);
+            }
+        }
+
+        dataSet.setDouble(7, 3, Double.NaN);
+
+        // The weights, the view and the copy should all be of the same sample.
+        RandomUtil.getInstance().setSeed(3938493L);
+        int[] weights = DataUtils.getBootstrapWeights(dataSet.getNumRows(), 250);
+        RandomUtil.getInstance().setSeed(3938493L);
+        DataSet view = DataUtils.getBootstrapView(dataSet, 250);
+        RandomUtil.getInstance().setSeed(3938493L);
+        DataSet sample = DataUtils.getBootstrapSample(dataSet, 250);
+
+        assertEquals(250, view.getNumRows());
+
+        for (int i = 0; i < sample.getNumRows(); i++) {
+            for (int j = 0; j < 5; j++) {
+                assertEquals(sample.getDouble(i, j), view.getDouble(i, j), 0.0);
+            }
+        }
+
+        ICovarianceMatrix expected = new CovarianceMatrix(sample);
+        ICovarianceMatrix weighted = new CovarianceMatrix(dataSet, weights);
+
+        assertEquals(250, weighted.getSampleSize());
+
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 5; j++) {
+                assertEquals(expected.getValue(i, j), weighted.getValue(i, j), 1e-10);
+            }
+        }
+    }
+
+    @Test
+    public void testNonzeroMeans() {
+        RandomUtil.getInstance().setSeed(392834982L);
+
+        List<Node> variables = new LinkedList<>();
+
+        for (int i = 0; i < 4; i++) {
+            variables.add(new ContinuousVariable("X" + i));
+        }
+
+        DataSet vertical = new BoxDataSet(new VerticalDoubleDataBox(200, 4), variables);
+
+        for (int i = 0; i < vertical.getNumRows(); i++) {
+            for (int j = 0; j < 4; j++) {
+                vertical.setDouble(i, j, RandomUtil.getInstance().nextDouble() + 10 * j);
+            }
+        }
+
+        vertical.setDouble(11, 2, Double.NaN);
 
+        DataSet horizontal = new BoxDataSet(new DoubleDataBox(vertical.getDoubleData().toArray()), variables);
+        double before = vertical.getDouble(5, 3);
 
+        ICovarianceMatrix cov1 = new CovarianceMatrix(vertical);
+        ICovarianceMatrix cov2 = new CovarianceMatrix(horizontal);
 
+        // The data aren't demeaned in place.
+        assertEquals(before, vertical.getDouble(5, 3), 0.0);
 
+        double[] x = vertical.getDoubleColumn(0);
+        double[] y = vertical.getDoubleColumn(3);
+        double mx = StatUtils.mean(x);
+        double my = StatUtils.mean(y);
+        double sxy = 0.0;
+
+        for (int i = 0; i < x.length; i++) {
+            sxy += (x[i] - mx) * (y[i] - my);
+        }
+
+        assertEquals(sxy / (x.length - 1), cov1.getValue(0, 3), 1e-10);
+
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                assertEquals(cov2.getValue(i, j), cov1.getValue(i, j), 1e-10);
+            }
+        }
+    }
+}
@@ -22,15 +22,17 @@
 package edu.cmu.tetrad.test;
 
 import edu.cmu.tetrad.data.*;
+import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.util.TetradLogger;
 import org.junit.Test;
 
-import java.io.CharArrayWriter;
-import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
+import java.io.*;
+import java.util.Arrays;
+import java.util.Collections;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public final class TestDataReader {
 
@@ -91,6 +93,164 @@ public final class TestDataReader {
 
     }
 
+    @Test
+    public void testChunkedSameAsTwoPass() throws IOException {
+        // Unix, Windows and old Mac line ends, as BufferedReader.readLine() accepts.
+        for (String lineEnd : new String[]{"\n", "\r\n", "\r"}) {
+            File file = File.createTempFile("chunked", ".txt");
+            file.deleteOnExit();
+
+            try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+                out.print("// A comment" + lineEnd);
+                out.print("X1,X2,X3,X4,X5" + lineEnd);
+
+                for (int i = 0; i < 3000; i++) {
+                    if (i % 500 == 7) out.print(lineEnd);
+                    String x1 = i % 97 == 0 ? "*" : Double.toString(Math.sin(i) * 1e3);
+                    String x2 = Integer.toString(i % 3);
+                    String x3 = i % 11 == 0 ? "" : (i % 2 == 0 ? "\"a b\"" : "c");
+                    String x4 = i < 2500 ? Integer.toString(i % 4) : "high";
+                    String x5 = i < 2500 ? "1.5e" + (i % 30 - 15) : "oops";
+                    out.print(x1 + "," + x2 + "," + x3 + "," + x4 + "," + x5 + lineEnd);
+                }
+            }
+
+            DataReader reader = new DataReader();
+            reader.setDelimiter(DelimiterType.COMMA);
+            reader.setMaxIntegralDiscrete(5);
+            DataSet expected = reader.parseTabular(file);
+
+            reader.setChunkedParsing(true);
+            DataSet actual = reader.parseTabular(file);
+
+            ChunkedTabularReader chunked = new ChunkedTabularReader();
+            chunked.setDelimiter(DelimiterType.COMMA);
+            chunked.setMaxIntegralDiscrete(5);
+            chunked.setChunkSize(1000);
+            DataSet small = chunked.read(file);
+
+            assertEquals(3000, expected.getNumRows());
+
+            for (DataSet data : new DataSet[]{actual, small}) {
+                assertTrue(data.getVariable(0) instanceof ContinuousVariable);
+                assertTrue(data.getVariable(3) instanceof DiscreteVariable);
+                assertTrue(data.getVariable(4) instanceof DiscreteVariable);
+                assertSameData(expected, data);
+            }
+        }
+    }
+
+    @Test
+    public void testChunkedOldMacLineEnds() throws IOException {
+        // This file ends its lines with \r alone.
+        File file = new File("src/test/resources/Calibration data.csv");
+
+        for (DelimiterType delimiter : new DelimiterType[]{DelimiterType.COMMA, DelimiterType.TAB,
+                DelimiterType.WHITESPACE}) {
+            DataReader reader = new DataReader();
+            reader.setDelimiter(delimiter);
+            DataSet expected = reader.parseTabular(file);
+
+            reader.setChunkedParsing(true);
+            assertSameData(expected, reader.parseTabular(file));
+        }
+    }
+
+    /**
+     * The ways in which the chunked reader knowingly differs from the two-pass reader, and the
+     * edge cases in which they agree.
+     */
+    @Test
+    public void testChunkedDifferences() throws IOException {
+        File file = File.createTempFile("chunked", ".txt");
+        file.deleteOnExit();
+
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.println("X1,X2,X3");
+            out.println("1.5,a,b");
+            out.println("2.5, ,c,extra");
+            out.println("3.5,a,z");
+        }
+
+        DiscreteVariable x3 = new DiscreteVariable("X3", Arrays.asList("b", "c"));
+
+        DataReader reader = new DataReader();
+        reader.setDelimiter(DelimiterType.COMMA);
+        reader.setKnownVariables(Collections.<Node>singletonList(x3));
+        DataSet expected = reader.parseTabular(file);
+
+        reader.setChunkedParsing(true);
+        DataSet actual = reader.parseTabular(file);
+
+        // A field of only spaces is missing, where the two-pass reader makes it a category.
+        assertEquals(Arrays.asList(" ", "a"), ((DiscreteVariable) expected.getVariable(1)).getCategories());
+        assertEquals(Collections.singletonList("a"),
+                ((DiscreteVariable) actual.getVariable(1)).getCategories());
+        assertEquals(-99, actual.getInt(1, 1));
+
+        // Both store a value that isn't a category of a known discrete variable as missing, and
+        // both ignore extra tokens.
+        assertEquals(3, actual.getNumColumns());
+        assertEquals(-99, expected.getInt(2, 2));
+        assertEquals(-99, actual.getInt(2, 2));
+        assertEquals(1, actual.getInt(1, 2));
+
+        // Both catch names that are the same once lowercased.
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.println("X1,x1");
+            out.println("1.5,2.5");
+        }
+
+        reader = new DataReader();
+        reader.setDelimiter(DelimiterType.COMMA);
+        reader.setReadVariablesLowercase(true);
+
+        for (boolean chunkedParsing : new boolean[]{false, true}) {
+            reader.setChunkedParsing(chunkedParsing);
+
+            try {
+                reader.parseTabular(file);
+                fail("Expected a duplicate variable name.");
+            } catch (RuntimeException e) {
+                // The two-pass reader wraps the error.
+                Throwable cause = e.getCause() instanceof IllegalArgumentException ? e.getCause() : e;
+                assertTrue(cause.getMessage(), cause.getMessage().contains("Duplicate variable name"));
+            }
+        }
+    }
+
+    private void assertSameData(DataSet expected, DataSet data) {
+        assertEquals(expected.getNumRows(), data.getNumRows());
+        assertEquals(expected.getVariables(), data.getVariables());
+
+        for (int j = 0; j < expected.getNumColumns(); j++) {
+            assertEquals(expected.getVariable(j).getClass(), data.getVariable(j).getClass());
+
+            for (int i = 0; i < expected.getNumRows(); i++) {
+                if (expected.getVariable(j) instanceof DiscreteVariable) {
+                    assertEquals(expected.getInt(i, j), data.getInt(i, j));
+                } else {
+                    assertEquals(expected.getDouble(i, j), data.getDouble(i, j), 0.0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testChunkedSections() throws IOException {
+        File file = File.createTempFile("chunked", ".txt");
+        file.deleteOnExit();
+
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.println("X1 X2");
+            out.println("1.0 2.0");
+            out.println("/knowledge");
+        }
+
+        ChunkedTabularReader reader = new ChunkedTabularReader();
+        assertEquals(null, reader.read(file));
+    }
+
     private char[] fileToCharArray(File file) {
         try {
             FileReader reader = new FileReader(file);
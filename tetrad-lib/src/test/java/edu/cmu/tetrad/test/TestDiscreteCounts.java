@@ -0,0 +1,145 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.DiscreteCounts;
+import edu.cmu.tetrad.data.DiscreteVariable;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the sparse counts against counts taken by brute force.
+ *
+ * @author Joseph Ramsey
+ */
+public class TestDiscreteCounts {
+
+    @Test
+    public void testFewConfigurations() {
+        checkCounts(randomData(6, 3, 200), new int[]{2, 4}, new int[]{0, 1});
+        checkCounts(randomData(6, 3, 200), new int[0], new int[]{5});
+    }
+
+    @Test
+    public void testManyConfigurations() {
+
+        // 10^25 configurations of the row variables, more than a long can index.
+        int[][] data = randomData(30, 10, 500);
+        int[] rowVars = new int[25];
+        for (int i = 0; i < rowVars.length; i++) rowVars[i] = i + 1;
+        checkCounts(data, rowVars, new int[]{0});
+    }
+
+    @Test
+    public void testMissingValues() {
+        int[][] data = randomData(4, 3, 100);
+        data[1][7] = DiscreteVariable.MISSING_VALUE;
+        data[3][9] = DiscreteVariable.MISSING_VALUE;
+
+        DiscreteCounts counts = new DiscreteCounts(data, dims(4, 3));
+        assertEquals(1, counts.count(new int[]{1}, 0).getNumMissing());
+        assertEquals(2, counts.count(new int[]{1, 3}, 0).getNumMissing());
+        assertEquals(98, counts.count(new int[]{1, 3}, 0).getTotal());
+        checkCounts(data, new int[]{1, 3}, new int[]{0, 2});
+    }
+
+    private void checkCounts(int[][] data, int[] rowVars, int[] colVars) {
+        int[] dims = dims(data.length, 0);
+        for (int j = 0; j < data.length; j++) dims[j] = max(data[j]) + 1;
+
+        DiscreteCounts.Table table = new DiscreteCounts(data, dims).count(rowVars, colVars);
+
+        // Brute force, keyed by the values of the row variables.
+        Map<String, int[]> expected = new TreeMap<>();
+        int numCols = table.getNumCols();
+
+        ROW:
+        for (int i = 0; i < data[0].length; i++) {
+            int[] rowValues = new int[rowVars.length];
+            int col = 0;
+
+            for (int v = 0; v < rowVars.length; v++) {
+                rowValues[v] = data[rowVars[v]][i];
+                if (rowValues[v] == DiscreteVariable.MISSING_VALUE) continue ROW;
+            }
+
+            for (int v : colVars) {
+                if (data[v][i] == DiscreteVariable.MISSING_VALUE) continue ROW;
+                col = col * dims[v] + data[v][i];
+            }
+
+            String key = Arrays.toString(rowValues);
+            if (!expected.containsKey(key)) expected.put(key, new int[numCols]);
+            expected.get(key)[col]++;
+        }
+
+        assertEquals(expected.size(), table.getNumRows());
+
+        // The rows should come in lexicographic order of the row values, which (with single digit values) is the
+        // order of the keys.
+        int j = 0;
+
+        for (int[] cells : expected.values()) {
+            int sum = 0;
+
+            for (int k = 0; k < numCols; k++) {
+                assertEquals(cells[k], table.getCount(j, k));
+                sum += cells[k];
+            }
+
+            assertEquals(sum, table.getRowCount(j));
+            j++;
+        }
+    }
+
+    private int[][] randomData(int numVars, int numCategories, int sampleSize) {
+        RandomUtil.getInstance().setSeed(28349284L);
+        int[][] data = new int[numVars][sampleSize];
+
+        for (int j = 0; j < numVars; j++) {
+            for (int i = 0; i < sampleSize; i++) {
+                data[j][i] = RandomUtil.getInstance().nextInt(numCategories);
+            }
+        }
+
+        return data;
+    }
+
+    private int[] dims(int numVars, int numCategories) {
+        int[] dims = new int[numVars];
+        Arrays.fill(dims, numCategories);
+        return dims;
+    }
+
+    private int max(int[] values) {
+        int max = 0;
+        for (int v : values) max = Math.max(max, v);
+        return max;
+    }
+}
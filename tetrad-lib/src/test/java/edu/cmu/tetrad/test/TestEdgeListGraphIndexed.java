@@ -0,0 +1,139 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.graph.*;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the bitset queries of EdgeListGraphIndexed against those of EdgeListGraph, for DAGs and for graphs
+ * with circles and bidirected edges, as edges are removed and reoriented.
+ *
+ * @author Joseph Ramsey
+ */
+public final class TestEdgeListGraphIndexed {
+
+    @Test
+    public void testDag() {
+        RandomUtil.getInstance().setSeed(3928472938L);
+
+        for (int trial = 0; trial < 5; trial++) {
+            Graph dag = GraphUtils.randomGraph(20, 0, 30, 10, 10, 10, false);
+            Graph indexed = new EdgeListGraphIndexed(dag);
+            compare(new EdgeListGraph(dag), indexed);
+
+            // Remove some edges, and reverse some others.
+            List<Edge> edges = new ArrayList<>(dag.getEdges());
+
+            for (int i = 0; i < edges.size(); i += 3) {
+                Edge edge = edges.get(i);
+                indexed.removeEdge(edge);
+
+                if (i % 2 == 0) {
+                    indexed.addDirectedEdge(edge.getNode2(), edge.getNode1());
+                }
+            }
+
+            compare(new EdgeListGraph(indexed), indexed);
+        }
+    }
+
+    @Test
+    public void testPag() {
+        RandomUtil.getInstance().setSeed(2938472934L);
+        Endpoint[] endpoints = {Endpoint.TAIL, Endpoint.ARROW, Endpoint.CIRCLE};
+
+        for (int trial = 0; trial < 5; trial++) {
+            Graph indexed = new EdgeListGraphIndexed(GraphUtils.randomGraph(15, 0, 25, 10, 10, 10, false));
+
+            for (Edge edge : new ArrayList<>(indexed.getEdges())) {
+                Endpoint e1 = endpoints[RandomUtil.getInstance().nextInt(3)];
+                Endpoint e2 = endpoints[RandomUtil.getInstance().nextInt(3)];
+                indexed.removeEdge(edge);
+                indexed.addEdge(new Edge(edge.getNode1(), edge.getNode2(), e1, e2));
+            }
+
+            compare(new EdgeListGraph(indexed), indexed);
+
+            for (Edge edge : new ArrayList<>(indexed.getEdges())) {
+                if (RandomUtil.getInstance().nextInt(2) == 0) {
+                    indexed.setEndpoint(edge.getNode1(), edge.getNode2(), Endpoint.ARROW);
+                }
+            }
+
+            compare(new EdgeListGraph(indexed), indexed);
+        }
+    }
+
+    @Test
+    public void testAddNode() {
+        Graph indexed = new EdgeListGraphIndexed(GraphUtils.randomGraph(5, 0, 5, 10, 10, 10, false));
+        Node node = new GraphNode("New");
+        Node x = indexed.getNodes().get(0);
+
+        assertEquals(false, indexed.isAdjacentTo(x, node));
+        indexed.addNode(node);
+        indexed.addDirectedEdge(x, node);
+        compare(new EdgeListGraph(indexed), indexed);
+    }
+
+    private void compare(Graph expected, Graph actual) {
+        List<Node> nodes = expected.getNodes();
+
+        for (Node x : nodes) {
+            for (Node y : nodes) {
+                if (x == y) continue;
+                assertEquals(expected.isAdjacentTo(x, y), actual.isAdjacentTo(x, y));
+                assertEquals(expected.isParentOf(x, y), actual.isParentOf(x, y));
+                assertEquals(expected.isChildOf(x, y), actual.isChildOf(x, y));
+                assertEquals(expected.isDirectedFromTo(x, y), actual.isDirectedFromTo(x, y));
+                assertEquals(expected.isAncestorOf(x, y), actual.isAncestorOf(x, y));
+                assertEquals(expected.isAncestorOf(y, x), actual.isDescendentOf(x, y));
+
+                for (Node w : nodes) {
+                    if (w == x || w == y) continue;
+                    assertEquals(expected.isDefCollider(x, w, y), actual.isDefCollider(x, w, y));
+                }
+            }
+        }
+
+        for (int i = 0; i < 200; i++) {
+            Node x = nodes.get(RandomUtil.getInstance().nextInt(nodes.size()));
+            Node y = nodes.get(RandomUtil.getInstance().nextInt(nodes.size()));
+            List<Node> z = new ArrayList<>();
+
+            for (Node node : nodes) {
+                if (node != x && node != y && RandomUtil.getInstance().nextInt(5) == 0) z.add(node);
+            }
+
+            assertEquals(GraphUtils.isDConnectedTo(x, y, z, expected), GraphUtils.isDConnectedTo(x, y, z, actual));
+            assertEquals(expected.isDConnectedTo(x, y, z), actual.isDConnectedTo(x, y, z));
+        }
+    }
+}
@@ -27,6 +27,7 @@ import edu.cmu.tetrad.search.*;
 import edu.cmu.tetrad.sem.SemIm;
 import edu.cmu.tetrad.sem.SemPm;
 import edu.cmu.tetrad.util.ChoiceGenerator;
+import edu.cmu.tetrad.util.RandomUtil;
 import edu.cmu.tetrad.util.TextTable;
 import org.junit.Test;
 
@@ -34,8 +35,10 @@ import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -224,6 +227,170 @@ public class TestFci {
         search.search();
     }
 
+    /**
+     * Incremental orientation should give the same PAG as sweeping every rule over the whole graph.
+     */
+    @Test
+    public void testIncrementalOrientation() {
+        RandomUtil.getInstance().setSeed(30293840L);
+
+        for (int run = 0; run < 10; run++) {
+            List<Node> nodes = new ArrayList<>();
+
+            for (int i = 0; i < 30; i++) {
+                nodes.add(new ContinuousVariable("X" + (i + 1)));
+            }
+
+            Dag trueGraph = new Dag(GraphUtils.randomGraph(nodes, 8, 70, 10, 10, 10, false));
+            DataSet dataSet = new SemIm(new SemPm(trueGraph)).simulateData(300, false);
+            IndependenceTest test = new IndTestFisherZ(dataSet, 0.05);
+
+            Fas fas = new Fas(test);
+            Graph skeleton = fas.search();
+            SepsetProducer sepsets = new SepsetsSet(fas.getSepsets(), test);
+
+            for (boolean complete : new boolean[]{false, true}) {
+                FciOrient incremental = new FciOrient(sepsets);
+                incremental.setCompleteRuleSetUsed(complete);
+                Graph graph1 = new EdgeListGraph(skeleton);
+                incremental.ruleR0(graph1);
+                incremental.doFinalOrientation(graph1);
+
+                FciOrient sweeping = new FciOrient(sepsets);
+                sweeping.setCompleteRuleSetUsed(complete);
+                Graph graph2 = new EdgeListGraph(skeleton);
+                sweeping.ruleR0(graph2);
+                sweepFinalOrientation(sweeping, graph2, complete);
+
+                assertEquals(graph2, graph1);
+            }
+        }
+    }
+
+    /**
+     * Starting from a complete graph, the parallel possible dsep step with an oracle should leave
+     * exactly the adjacencies of the true PAG, and the same adjacencies and sepsets however often
+     * it is run and in whatever order the edges are listed. PossibleDsepFci should agree when set
+     * to be concurrent.
+     */
+    @Test
+    public void testPossibleDsepConcurrent() {
+        RandomUtil.getInstance().setSeed(49382049L);
+        Random random = new Random(49382049L);
+
+        for (int run = 0; run < 5; run++) {
+            List<Node> nodes = new ArrayList<>();
+
+            for (int i = 0; i < 12; i++) {
+                nodes.add(new ContinuousVariable("X" + (i + 1)));
+            }
+
+            Dag trueGraph = new Dag(GraphUtils.randomGraph(nodes, 3, 18, 10, 10, 10, false));
+            IndependenceTest test = new IndTestDSep(trueGraph);
+            Graph truePag = new DagToPag(trueGraph).convert();
+
+            Graph graph = completeGraph(test.getVariables(), null);
+            SepsetMap sepsets = new PossibleDsepConcurrent(graph, test).search();
+
+            for (Node x : test.getVariables()) {
+                for (Node y : test.getVariables()) {
+                    if (x == y) continue;
+
+                    Node x2 = truePag.getNode(x.getName());
+                    Node y2 = truePag.getNode(y.getName());
+                    assertEquals(truePag.isAdjacentTo(x2, y2), graph.isAdjacentTo(x, y));
+
+                    if (!graph.isAdjacentTo(x, y)) {
+                        assertTrue(test.isIndependent(x, y, sepsets.get(x, y)));
+                    }
+                }
+            }
+
+            for (int rep = 0; rep < 5; rep++) {
+                Graph graph2 = completeGraph(test.getVariables(), rep == 0 ? null : random);
+                SepsetMap sepsets2 = new PossibleDsepConcurrent(graph2, test).search();
+
+                assertEquals(graph, graph2);
+                assertSameSepsets(test.getVariables(), graph, sepsets, sepsets2);
+            }
+
+            Graph graph3 = completeGraph(test.getVariables(), random);
+            PossibleDsepFci possibleDsepFci = new PossibleDsepFci(graph3, test);
+            possibleDsepFci.setConcurrent(true);
+            SepsetMap sepsets3 = possibleDsepFci.search();
+
+            assertEquals(graph, graph3);
+            assertSameSepsets(test.getVariables(), graph, sepsets, sepsets3);
+        }
+    }
+
+    // A complete o-o graph over the given nodes, with nodes and edges listed in a shuffled order if
+    // random is not null.
+    private Graph completeGraph(List<Node> nodes, Random random) {
+        List<Node> _nodes = new ArrayList<>(nodes);
+        List<Edge> edges = new ArrayList<>();
+
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int j = i + 1; j < nodes.size(); j++) {
+                edges.add(Edges.nondirectedEdge(nodes.get(i), nodes.get(j)));
+            }
+        }
+
+        if (random != null) {
+            Collections.shuffle(_nodes, random);
+            Collections.shuffle(edges, random);
+        }
+
+        Graph graph = new EdgeListGraph(_nodes);
+
+        for (Edge edge : edges) {
+            graph.addEdge(edge);
+        }
+
+        return graph;
+    }
+
+    private void assertSameSepsets(List<Node> nodes, Graph graph, SepsetMap sepsets1, SepsetMap sepsets2) {
+        for (Node x : nodes) {
+            for (Node y : nodes) {
+                if (x == y || graph.isAdjacentTo(x, y)) continue;
+                assertEquals(new HashSet<>(sepsets1.get(x, y)), new HashSet<>(sepsets2.get(x, y)));
+            }
+        }
+    }
+
+    // The rules of FciOrient.doFinalOrientation, each applied to the whole graph.
+    private void sweepFinalOrientation(FciOrient orient, Graph graph, boolean complete) {
+        orient.setChangeFlag(true);
+
+        while (orient.isChangeFlag()) {
+            orient.setChangeFlag(false);
+            orient.rulesR1R2cycle(graph);
+            orient.ruleR3(graph);
+
+            if (orient.isChangeFlag()) {
+                orient.ruleR4B(graph);
+            }
+        }
+
+        if (complete) {
+            orient.ruleR5(graph);
+            orient.setChangeFlag(true);
+
+            while (orient.isChangeFlag()) {
+                orient.setChangeFlag(false);
+                orient.ruleR6R7(graph);
+            }
+
+            orient.setChangeFlag(true);
+
+            while (orient.isChangeFlag()) {
+                orient.setChangeFlag(false);
+                orient.rulesR8R9R10(graph);
+            }
+        }
+    }
+
     /**
      * Presents the input graph to FCI and checks to make sure the output of FCI is equivalent to the given output
      * graph.
@@ -0,0 +1,129 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.IncrementalCholesky;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
+import edu.cmu.tetrad.util.StatUtils;
+import edu.cmu.tetrad.util.TetradMatrix;
+import edu.cmu.tetrad.util.TetradVector;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the incrementally updated Cholesky factor against direct inversion.
+ *
+ * @author Joseph Ramsey
+ */
+public class TestIncrementalCholesky {
+
+    @Test
+    public void testAgainstInversion() {
+        ICovarianceMatrix cov = randomCov(15, 1000);
+        IncrementalCholesky factor = new IncrementalCholesky(cov);
+
+        // Each set differs from the last by adding or removing a few variables.
+        int[][] sets = {{}, {1}, {1, 2}, {1, 2, 3, 4}, {2, 3, 4}, {4, 2, 5}, {5, 6, 7, 8, 9}, {9, 7}, {3}};
+
+        for (int[] set : sets) {
+            assertTrue(factor.setTo(set));
+            assertEquals(set.length, factor.size());
+            assertEquals(residualVariance(cov, 0, set), factor.residualVariance(0), 1e-8);
+
+            int[] selection = new int[set.length + 2];
+            selection[0] = 0;
+            selection[1] = 10;
+            System.arraycopy(set, 0, selection, 2, set.length);
+            double r = StatUtils.partialCorrelation(cov.getSelection(selection, selection));
+
+            assertEquals(r, factor.partialCorrelation(0, 10), 1e-8);
+        }
+    }
+
+    @Test
+    public void testRemoveEachPosition() {
+        ICovarianceMatrix cov = randomCov(10, 500);
+        int[] set = {1, 2, 3, 4, 5, 6};
+
+        for (int k = 0; k < set.length; k++) {
+            IncrementalCholesky factor = new IncrementalCholesky(cov);
+            assertTrue(factor.setTo(set));
+            factor.remove(k);
+
+            int[] rest = new int[set.length - 1];
+            for (int i = 0, j = 0; i < set.length; i++) if (i != k) rest[j++] = set[i];
+
+            assertEquals(residualVariance(cov, 0, rest), factor.residualVariance(0), 1e-8);
+        }
+    }
+
+    @Test
+    public void testLinearDependence() {
+        RandomUtil.getInstance().setSeed(29348203L);
+
+        List<Node> vars = new ArrayList<>();
+        for (int i = 0; i < 4; i++) vars.add(new ContinuousVariable("X" + i));
+
+        Graph dag = GraphUtils.randomGraphRandomForwardEdges(vars, 0, 3, 30, 15, 15, false, true);
+        DataSet data = new SemIm(new SemPm(dag)).simulateData(100, false);
+
+        for (int i = 0; i < data.getNumRows(); i++) {
+            data.setDouble(i, 3, data.getDouble(i, 1) + data.getDouble(i, 2));
+        }
+
+        IncrementalCholesky factor = new IncrementalCholesky(new CovarianceMatrix(data));
+        assertFalse(factor.setTo(new int[]{1, 2, 3}));
+        assertEquals(2, factor.size());
+    }
+
+    private ICovarianceMatrix randomCov(int numVars, int sampleSize) {
+        RandomUtil.getInstance().setSeed(49382049L);
+
+        List<Node> vars = new ArrayList<>();
+        for (int i = 0; i < numVars; i++) vars.add(new ContinuousVariable("X" + i));
+
+        Graph dag = GraphUtils.randomGraphRandomForwardEdges(vars, 0, numVars, 30, 15, 15, false, true);
+        DataSet data = new SemIm(new SemPm(dag)).simulateData(sampleSize, false);
+        return new CovarianceMatrix(data);
+    }
+
+    private double residualVariance(ICovarianceMatrix cov, int i, int[] parents) {
+        TetradMatrix covxx = cov.getSelection(parents, parents);
+        TetradVector covxy = cov.getSelection(parents, new int[]{i}).getColumn(0);
+        return cov.getValue(i, i) - covxx.inverse().times(covxy).dotProduct(covxy);
+    }
+}
@@ -24,6 +24,7 @@ package edu.cmu.tetrad.test;
 import edu.cmu.tetrad.data.*;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.search.IndTestFisherZ;
+import edu.cmu.tetrad.search.IndependenceResult;
 import edu.cmu.tetrad.search.IndependenceTest;
 import edu.cmu.tetrad.sem.SemIm;
 import edu.cmu.tetrad.sem.SemPm;
@@ -33,6 +34,8 @@ import edu.cmu.tetrad.util.StatUtils;
 import edu.cmu.tetrad.util.TetradMatrix;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static java.lang.Math.*;
@@ -99,6 +102,55 @@ public class TestIndTestFisherZ {
         assertEquals(0.38, p3, 0.01);
     }
 
+    @Test
+    public void testCheckIndependence() {
+        RandomUtil.getInstance().setSeed(48285934L);
+
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 6; i++) nodes.add(new ContinuousVariable("X" + i));
+
+        Graph graph = GraphUtils.randomGraphRandomForwardEdges(nodes, 0, 6, 30, 15, 15, false, true);
+        DataSet data = new SemIm(new SemPm(graph)).simulateData(500, false);
+        IndependenceTest test = new IndTestFisherZ(data, 0.05);
+
+        List<Node> vars = data.getVariables();
+        List<Node> z = Arrays.asList(vars.get(2), vars.get(3));
+
+        IndependenceResult result = test.checkIndependence(vars.get(0), vars.get(1), z);
+        boolean independent = test.isIndependent(vars.get(0), vars.get(1), z);
+
+        assertEquals(independent, result.isIndependent());
+        assertEquals(test.getPValue(), result.getPValue(), 1e-12);
+        assertEquals(test.getScore(), result.getScore(), 1e-12);
+    }
+
+    @Test
+    public void testIndices() {
+        RandomUtil.getInstance().setSeed(48285934L);
+
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 6; i++) nodes.add(new ContinuousVariable("X" + i));
+
+        Graph graph = GraphUtils.randomGraphRandomForwardEdges(nodes, 0, 6, 30, 15, 15, false, true);
+        DataSet data = new SemIm(new SemPm(graph)).simulateData(500, false);
+        IndependenceTest test = new IndTestFisherZ(data, 0.05);
+
+        List<Node> vars = test.getVariables();
+        int[][] sets = {{}, {2}, {2, 3}, {5, 3, 4}};
+
+        for (int[] set : sets) {
+            List<Node> z = new ArrayList<>();
+            for (int i : set) z.add(vars.get(i));
+
+            boolean independent = test.isIndependent(vars.get(0), vars.get(1), z);
+            double pValue = test.getPValue();
+
+            assertEquals(independent, test.isIndependent(0, 1, set));
+            assertEquals(pValue, test.getPValue(), 0.0);
+            assertEquals(pValue, test.checkIndependence(0, 1, set).getPValue(), 1e-12);
+        }
+    }
+
     @Test
     public void test2() {
 //        for (int p = 0; p < 50; p++) {
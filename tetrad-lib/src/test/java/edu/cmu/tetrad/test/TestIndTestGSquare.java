@@ -24,14 +24,23 @@ package edu.cmu.tetrad.test;
 import edu.cmu.tetrad.data.DataReader;
 import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.IndTestChiSquare;
 import edu.cmu.tetrad.search.IndTestGSquare;
+import edu.cmu.tetrad.search.IndependenceResult;
+import edu.cmu.tetrad.search.IndependenceTest;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -86,6 +95,66 @@ public class TestIndTestGSquare {
         }
     }
 
+    @Test
+    public void testCheckIndependenceConcurrent() throws Exception {
+        DataSet dataSet = getDataSet(1);
+
+        checkConcurrent(new IndTestGSquare(dataSet, 0.05));
+        checkConcurrent(new IndTestChiSquare(dataSet, 0.05));
+    }
+
+    // Tests from several threads at once must agree with the same tests done one at a time.
+    private void checkConcurrent(final IndependenceTest test) throws Exception {
+        List<Node> v = test.getVariables();
+        final List<List<Node>> facts = new ArrayList<>();
+
+        for (Node x : v) {
+            for (Node y : v) {
+                if (x == y) continue;
+
+                for (Node z : v) {
+                    if (z == x || z == y) continue;
+                    facts.add(Arrays.asList(x, y, z));
+                }
+            }
+        }
+
+        List<Boolean> independent = new ArrayList<>();
+        List<Double> pValues = new ArrayList<>();
+
+        for (List<Node> fact : facts) {
+            independent.add(test.isIndependent(fact.get(0), fact.get(1), fact.subList(2, 3)));
+            pValues.add(test.getPValue());
+        }
+
+        List<Callable<IndependenceResult>> tasks = new ArrayList<>();
+
+        for (final List<Node> fact : facts) {
+            tasks.add(new Callable<IndependenceResult>() {
+                public IndependenceResult call() {
+                    return test.checkIndependence(fact.get(0), fact.get(1),
+                            Collections.singletonList(fact.get(2)));
+                }
+            });
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            for (int rep = 0; rep < 5; rep++) {
+                List<Future<IndependenceResult>> results = pool.invokeAll(tasks);
+
+                for (int i = 0; i < facts.size(); i++) {
+                    IndependenceResult result = results.get(i).get();
+                    assertEquals(independent.get(i), result.isIndependent());
+                    assertEquals(pValues.get(i), result.getPValue(), 1e-12);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
     private DataSet getDataSet(int i) throws IOException {
         String filename = discreteFiles[i];
         System.out.println("Loading " + filename);
@@ -0,0 +1,182 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.IKnowledge;
+import edu.cmu.tetrad.data.Knowledge2;
+import edu.cmu.tetrad.graph.*;
+import edu.cmu.tetrad.search.MeekRules;
+import edu.cmu.tetrad.search.SearchGraphUtils;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the Meek rules against patterns of random DAGs, and the knowledge, cycle and undirecting options.
+ *
+ * @author Joseph Ramsey
+ */
+public class TestMeekRules {
+
+    @Test
+    public void testPattern() {
+        RandomUtil.getInstance().setSeed(3928402L);
+
+        for (int numNodes : new int[]{10, 20, 50, 500}) {
+            for (int i = 0; i < 5; i++) {
+                Graph dag = randomDag(numNodes, 2 * numNodes);
+
+                Graph graph = collidersOnly(dag);
+                new MeekRules().orientImplied(graph);
+
+                assertEquals(SearchGraphUtils.patternForDag(dag), graph);
+            }
+        }
+    }
+
+    @Test
+    public void testReused() {
+        RandomUtil.getInstance().setSeed(58203948L);
+
+        // One instance, whose rows are reused from graph to graph, sparse and dense, large and small.
+        MeekRules rules = new MeekRules();
+
+        for (int numNodes : new int[]{50, 10, 200, 20, 100}) {
+            for (int density : new int[]{1, 3}) {
+                Graph dag = randomDag(numNodes, density * numNodes);
+
+                Graph graph = collidersOnly(dag);
+                rules.orientImplied(graph);
+
+                assertEquals(SearchGraphUtils.patternForDag(dag), graph);
+            }
+        }
+    }
+
+    @Test
+    public void testSeededByColliders() {
+        RandomUtil.getInstance().setSeed(29384023L);
+
+        for (int i = 0; i < 10; i++) {
+            Graph dag = randomDag(100, 200);
+            Graph graph = collidersOnly(dag);
+
+            // Every orientation is implied from the colliders, so propagating from their heads suffices.
+            List<Node> heads = new ArrayList<>();
+
+            for (Node node : graph.getNodes()) {
+                if (!graph.getParents(node).isEmpty()) heads.add(node);
+            }
+
+            MeekRules rules = new MeekRules();
+            rules.orientImplied(graph, heads);
+
+            assertEquals(SearchGraphUtils.patternForDag(dag), graph);
+            assertTrue(rules.getVisited().containsAll(heads));
+        }
+    }
+
+    @Test
+    public void testKnowledge() {
+        Graph graph = GraphConverter.convert("X1-->X2,X2---X3,X3---X4");
+
+        IKnowledge knowledge = new Knowledge2();
+        knowledge.setForbidden("X2", "X3");
+
+        MeekRules rules = new MeekRules();
+        rules.setKnowledge(knowledge);
+        rules.orientImplied(graph);
+
+        assertTrue(graph.isUndirectedFromTo(graph.getNode("X2"), graph.getNode("X3")));
+        assertTrue(graph.isUndirectedFromTo(graph.getNode("X3"), graph.getNode("X4")));
+
+        graph = GraphConverter.convert("X1-->X2,X2---X3,X3---X4");
+        new MeekRules().orientImplied(graph);
+
+        assertTrue(graph.isDirectedFromTo(graph.getNode("X2"), graph.getNode("X3")));
+        assertTrue(graph.isDirectedFromTo(graph.getNode("X3"), graph.getNode("X4")));
+    }
+
+    @Test
+    public void testAggressivelyPreventCycles() {
+        // R1 would orient B-->C, closing B-->C-->D-->B.
+        Graph graph = GraphConverter.convert("A-->B,B---C,C-->D,D-->B");
+
+        MeekRules rules = new MeekRules();
+        rules.setAggressivelyPreventCycles(true);
+        rules.orientImplied(graph);
+
+        assertFalse(graph.existsDirectedCycle());
+        assertTrue(graph.isDirectedFromTo(graph.getNode("C"), graph.getNode("B")));
+    }
+
+    @Test
+    public void testUndirectUnforcedEdges() {
+        Graph graph = GraphConverter.convert("X1-->X2,X3-->X2,X4-->X5,X5-->X6");
+
+        MeekRules rules = new MeekRules();
+        rules.setKnowledge(new Knowledge2());
+        rules.setUndirectUnforcedEdges(true);
+        rules.orientImplied(graph);
+
+        assertTrue(graph.isDirectedFromTo(graph.getNode("X1"), graph.getNode("X2")));
+        assertTrue(graph.isDirectedFromTo(graph.getNode("X3"), graph.getNode("X2")));
+        assertTrue(graph.isUndirectedFromTo(graph.getNode("X4"), graph.getNode("X5")));
+        assertTrue(graph.isUndirectedFromTo(graph.getNode("X5"), graph.getNode("X6")));
+    }
+
+    private Graph randomDag(int numNodes, int numEdges) {
+        List<Node> nodes = new ArrayList<>();
+
+        for (int i = 0; i < numNodes; i++) {
+            nodes.add(new ContinuousVariable("X" + (i + 1)));
+        }
+
+        return GraphUtils.randomGraphRandomForwardEdges(nodes, 0, numEdges, 30, 15, 15, false, true);
+    }
+
+    // The skeleton of the DAG with just its unshielded colliders oriented.
+    private Graph collidersOnly(Graph dag) {
+        Graph graph = GraphUtils.undirectedGraph(dag);
+
+        for (Node b : dag.getNodes()) {
+            List<Node> parents = dag.getParents(b);
+
+            for (Node a : parents) {
+                for (Node c : parents) {
+                    if (a != c && !dag.isAdjacentTo(a, c)) {
+                        graph.setEndpoint(a, b, Endpoint.ARROW);
+                    }
+                }
+            }
+        }
+
+        return graph;
+    }
+}
@@ -0,0 +1,180 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.bayes.BayesIm;
+import edu.cmu.tetrad.bayes.BayesPm;
+import edu.cmu.tetrad.bayes.MlBayesIm;
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.BicScore;
+import edu.cmu.tetrad.search.Fges;
+import edu.cmu.tetrad.search.PenalizedScore;
+import edu.cmu.tetrad.search.PenaltyPathScore;
+import edu.cmu.tetrad.search.SemBicScore;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the split of penalized scores into fit and penalty terms, and FGES over a path of penalty
+ * discounts.
+ *
+ * @author Joseph Ramsey
+ */
+public class TestPenaltyPath {
+
+    @Test
+    public void testSemBicScore() {
+        SemBicScore score = new SemBicScore(randomCov(10, 500));
+        score.setPenaltyDiscount(3);
+        checkSplit(score);
+    }
+
+    @Test
+    public void testBicScore() {
+        RandomUtil.getInstance().setSeed(2938402943L);
+
+        List<Node> vars = new ArrayList<>();
+        for (int i = 0; i < 10; i++) vars.add(new ContinuousVariable("X" + i));
+
+        Graph dag = GraphUtils.randomGraphRandomForwardEdges(vars, 0, 10, 30, 15, 15, false, true);
+        BayesIm im = new MlBayesIm(new BayesPm(dag, 2, 3), MlBayesIm.RANDOM);
+        DataSet data = im.simulateData(500, false);
+
+        BicScore score = new BicScore(data);
+        score.setPenaltyDiscount(3);
+        checkSplit(score);
+    }
+
+    @Test
+    public void testPath() {
+        ICovarianceMatrix cov = randomCov(30, 1000);
+        double[] penaltyDiscounts = {1, 8, 2, 4};
+
+        CountingScore score = new CountingScore(cov);
+        List<Graph> patterns = new Fges(score).searchPath(penaltyDiscounts);
+        long pathFits = score.fits.get();
+
+        long coldFits = 0;
+
+        for (int i = 0; i < penaltyDiscounts.length; i++) {
+            CountingScore coldScore = new CountingScore(cov);
+            coldScore.setPenaltyDiscount(penaltyDiscounts[i]);
+            Graph expected = new Fges(coldScore).search();
+            coldFits += coldScore.fits.get();
+
+            assertEquals(expected.getNumEdges(), patterns.get(i).getNumEdges(), 2);
+        }
+
+        // Larger penalties, sparser patterns.
+        assertTrue(patterns.get(0).getNumEdges() >= patterns.get(2).getNumEdges());
+        assertTrue(patterns.get(2).getNumEdges() >= patterns.get(3).getNumEdges());
+        assertTrue(patterns.get(3).getNumEdges() >= patterns.get(1).getNumEdges());
+
+        assertTrue(pathFits < coldFits / 2);
+    }
+
+    @Test
+    public void testSinglePenalty() {
+        ICovarianceMatrix cov = randomCov(20, 1000);
+
+        SemBicScore score = new SemBicScore(cov);
+        score.setPenaltyDiscount(2);
+        Graph expected = new Fges(score).search();
+
+        List<Graph> patterns = new Fges(new SemBicScore(cov)).searchPath(new double[]{2});
+        assertEquals(expected, patterns.get(0));
+    }
+
+    private static void checkSplit(PenalizedScore score) {
+        double c = score.getPenaltyDiscount();
+        PenaltyPathScore pathScore = new PenaltyPathScore(score);
+        int[][] sets = {{}, {1}, {1, 2}, {3, 1, 2}};
+
+        for (int[] z : sets) {
+            double s = score.localScore(0, z);
+            assertEquals(s, score.localFit(0, z) - c * score.localPenalty(0, z), 1e-9 * Math.abs(s));
+            assertEquals(s, pathScore.localScore(0, z), 1e-9 * Math.abs(s));
+
+            double d = score.localScoreDiff(4, 0, z);
+            assertEquals(d, score.localFitDiff(4, 0, z) - c * score.localPenaltyDiff(4, 0, z), 1e-9 * Math.abs(d));
+            assertEquals(d, pathScore.localScoreDiff(4, 0, z), 1e-9 * Math.abs(d));
+        }
+
+        // The fits are cached across penalty discounts.
+        pathScore.setPenaltyDiscount(c + 1);
+        double s = pathScore.localScore(0, 1, 2);
+        assertEquals(score.localFit(0, new int[]{1, 2}) - (c + 1) * score.localPenalty(0, new int[]{1, 2}), s, 1e-9 * Math.abs(s));
+        assertTrue(pathScore.getHits() > 0);
+    }
+
+    private static ICovarianceMatrix randomCov(int numVars, int sampleSize) {
+        RandomUtil.getInstance().setSeed(2938402943L);
+
+        List<Node> vars = new ArrayList<>();
+        for (int i = 0; i < numVars; i++) vars.add(new ContinuousVariable("X" + i));
+
+        Graph dag = GraphUtils.randomGraphRandomForwardEdges(vars, 0, numVars, 30, 15, 15, false, true);
+        return new CovarianceMatrix(new SemIm(new SemPm(dag)).simulateData(sampleSize, false));
+    }
+
+    // Counts the fits computed, directly or as part of a local score.
+    private static class CountingScore extends SemBicScore {
+        private final AtomicLong fits = new AtomicLong();
+
+        CountingScore(ICovarianceMatrix cov) {
+            super(cov);
+        }
+
+        @Override
+        public double localFit(int i, int[] parents) {
+            fits.incrementAndGet();
+            return super.localFit(i, parents);
+        }
+
+        @Override
+        public double localFitDiff(int x, int y, int[] z) {
+            fits.incrementAndGet();
+            return super.localFitDiff(x, y, z);
+        }
+
+        @Override
+        public double localScoreDiff(int x, int y, int[] z) {
+            fits.incrementAndGet();
+            return super.localScoreDiff(x, y, z);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.Edge;
+import edu.cmu.tetrad.graph.Edges;
+import edu.cmu.tetrad.graph.Endpoint;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.FasStableConcurrent;
+import edu.cmu.tetrad.search.Fci;
+import edu.cmu.tetrad.search.Fges;
+import edu.cmu.tetrad.search.GFci;
+import edu.cmu.tetrad.search.IndTestFisherZ;
+import edu.cmu.tetrad.search.PcAll;
+import edu.cmu.tetrad.search.SearchContext;
+import edu.cmu.tetrad.search.SemBicScore;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that searches stop when their context says to, returning partial graphs, and are
+ * unaffected by a context with no limits.
+ *
+ * @author Joseph Ramsey
+ */
+public class TestSearchContext {
+
+    @Test
+    public void testNoLimits() {
+        ICovarianceMatrix cov = randomCov(20, 1000);
+
+        Graph expected = new Fges(new SemBicScore(cov)).search();
+
+        SearchContext context = new SearchContext();
+        Fges fges = new Fges(new SemBicScore(cov));
+        fges.setContext(context);
+        Graph actual = fges.search();
+
+        assertEquals(expected, actual);
+        assertFalse(context.isStopped());
+        assertNull(context.getStopReason());
+        assertTrue(context.getNumOperations() > 0);
+    }
+
+    @Test
+    public void testCancelled() {
+        ICovarianceMatrix cov = randomCov(20, 1000);
+
+        SearchContext context = new SearchContext();
+        context.cancel();
+
+        Fges fges = new Fges(new SemBicScore(cov));
+        fges.setContext(context);
+        Graph graph = fges.search();
+
+        assertTrue(context.isStopped());
+        assertEquals(SearchContext.StopReason.CANCELLED, context.getStopReason());
+        assertEquals(20, graph.getNumNodes());
+        assertEquals(0, graph.getNumEdges());
+    }
+
+    @Test
+    public void testOperationLimit() {
+        ICovarianceMatrix cov = randomCov(15, 1000);
+
+        Fci plain = new Fci(new IndTestFisherZ(cov, 0.01));
+        Graph expected = plain.search(new FasStableConcurrent(plain.getIndependenceTest()));
+
+        SearchContext context = new SearchContext();
+        context.setMaxOperations(150);
+
+        Fci fci = new Fci(new IndTestFisherZ(cov, 0.01));
+        fci.setContext(context);
+        Graph actual = fci.search(new FasStableConcurrent(fci.getIndependenceTest()));
+
+        assertTrue(context.isStopped());
+        assertEquals(SearchContext.StopReason.OPERATION_LIMIT, context.getStopReason());
+        assertTrue(context.getNumOperations() >= 150);
+        assertTrue(actual.isPag());
+
+        // A partial adjacency search has removed no more edges than a finished one.
+        for (Edge edge : expected.getEdges()) {
+            Node x = actual.getNode(edge.getNode1().getName());
+            Node y = actual.getNode(edge.getNode2().getName());
+            assertTrue(actual.isAdjacentTo(x, y));
+        }
+
+        for (Edge edge : actual.getEdges()) {
+            assertEquals(Endpoint.CIRCLE, edge.getEndpoint1());
+            assertEquals(Endpoint.CIRCLE, edge.getEndpoint2());
+        }
+    }
+
+    @Test
+    public void testTimeLimit() {
+        ICovarianceMatrix cov = randomCov(15, 1000);
+
+        SearchContext context = new SearchContext();
+        context.setTimeLimit(0);
+
+        GFci gFci = new GFci(new IndTestFisherZ(cov, 0.01), new SemBicScore(cov));
+        gFci.setContext(context);
+        Graph graph = gFci.search();
+
+        assertTrue(context.isStopped());
+        assertEquals(SearchContext.StopReason.TIME_LIMIT, context.getStopReason());
+        assertEquals(15, graph.getNumNodes());
+    }
+
+    @Test
+    public void testPcAll() {
+        ICovarianceMatrix cov = randomCov(15, 1000);
+
+        SearchContext context = new SearchContext();
+        context.setMaxOperations(100);
+
+        PcAll pc = new PcAll(new IndTestFisherZ(cov, 0.01), null);
+        pc.setContext(context);
+        Graph graph = pc.search();
+
+        assertTrue(context.isStopped());
+
+        for (Edge edge : graph.getEdges()) {
+            assertTrue(Edges.isUndirectedEdge(edge));
+        }
+    }
+
+    private static ICovarianceMatrix randomCov(int numVars, int sampleSize) {
+        RandomUtil.getInstance().setSeed(2938402943L);
+
+        List<Node> vars = new ArrayList<>();
+        for (int i = 0; i < numVars; i++) vars.add(new ContinuousVariable("X" + i));
+
+        Graph dag = GraphUtils.randomGraphRandomForwardEdges(vars, 0, numVars, 30, 15, 15, false, true);
+        return new CovarianceMatrix(new SemIm(new SemPm(dag)).simulateData(sampleSize, false));
+    }
+}
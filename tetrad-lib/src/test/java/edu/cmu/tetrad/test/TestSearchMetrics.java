@@ -0,0 +1,243 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.CachingScore;
+import edu.cmu.tetrad.search.FasStableConcurrent;
+import edu.cmu.tetrad.search.Fci;
+import edu.cmu.tetrad.search.Fges;
+import edu.cmu.tetrad.search.GFci;
+import edu.cmu.tetrad.search.IndTestFisherZ;
+import edu.cmu.tetrad.search.Score;
+import edu.cmu.tetrad.search.SearchListener;
+import edu.cmu.tetrad.search.SearchMetrics;
+import edu.cmu.tetrad.search.SemBicScore;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that searches report phases, tests and scores to their metrics, and give the same
+ * results with metrics attached as without.
+ *
+ * @author Joseph Ramsey
+ */
+public class TestSearchMetrics {
+
+    @Test
+    public void testFges() {
+        ICovarianceMatrix cov = randomCov(20, 1000);
+
+        Graph expected = new Fges(new SemBicScore(cov)).search();
+
+        SearchMetrics metrics = new SearchMetrics();
+        CachingScore score = new CachingScore(new SemBicScore(cov));
+        Fges fges = new Fges(score);
+        fges.setMetrics(metrics);
+        Graph actual = fges.search();
+
+        assertEquals(expected, actual);
+
+        Map<String, Long> times = metrics.getPhaseTimes();
+        assertTrue(times.containsKey("Fges"));
+        assertTrue(times.containsKey("Fges/initialize"));
+        assertTrue(times.containsKey("Fges/fes"));
+        assertTrue(times.containsKey("Fges/bes"));
+        assertNull(metrics.getCurrentPhase());
+        assertTrue(metrics.getGauges().isEmpty());
+
+        assertTrue(metrics.getNumScores() > 0);
+        assertEquals(metrics.getNumScores(), sum(metrics.getScoreCounts()));
+        assertEquals(metrics.getNumScores(), metrics.getCacheHits() + metrics.getCacheMisses());
+        assertEquals(0, metrics.getNumTests());
+    }
+
+    @Test
+    public void testGFci() {
+        ICovarianceMatrix cov = randomCov(15, 1000);
+
+        Graph expected = new GFci(new IndTestFisherZ(cov, 0.01), new SemBicScore(cov)).search();
+
+        SearchMetrics metrics = new SearchMetrics();
+        GFci gFci = new GFci(new IndTestFisherZ(cov, 0.01), new SemBicScore(cov));
+        gFci.setMetrics(metrics);
+        Graph actual = gFci.search();
+
+        assertEquals(expected, actual);
+
+        Map<String, Long> times = metrics.getPhaseTimes();
+        assertTrue(times.containsKey("GFci/Fges/fes"));
+        assertTrue(times.containsKey("GFci/sepsets"));
+        assertTrue(times.containsKey("GFci/orientation"));
+
+        assertTrue(metrics.getNumScores() > 0);
+        assertTrue(metrics.getNumTests() > 0);
+        assertEquals(metrics.getNumTests(), sum(metrics.getTestCounts()));
+        assertTrue(Double.isNaN(metrics.getCacheHitRate()));
+    }
+
+    @Test
+    public void testFci() {
+        ICovarianceMatrix cov = randomCov(15, 1000);
+
+        Fci plain = new Fci(new IndTestFisherZ(cov, 0.01));
+        Graph expected = plain.search(new FasStableConcurrent(plain.getIndependenceTest()));
+
+        SearchMetrics metrics = new SearchMetrics();
+        Fci fci = new Fci(new IndTestFisherZ(cov, 0.01));
+        fci.setMetrics(metrics);
+        Graph actual = fci.search(new FasStableConcurrent(fci.getIndependenceTest()));
+
+        assertEquals(expected, actual);
+
+        Map<String, Long> times = metrics.getPhaseTimes();
+        assertTrue(times.containsKey("Fci/adjacencies/FasStableConcurrent/depth 0"));
+        assertTrue(times.containsKey("Fci/possible dsep"));
+        assertTrue(times.containsKey("Fci/orientation"));
+
+        long[] counts = metrics.getTestCounts();
+        assertTrue(counts[0] >= 15 * 14 / 2);
+        assertEquals(metrics.getNumTests(), sum(counts));
+    }
+
+    @Test
+    public void testCachingScoreInstrumentedTwice() {
+        ICovarianceMatrix cov = randomCov(10, 1000);
+
+        SearchMetrics metrics = new SearchMetrics();
+        CachingScore score = new CachingScore(new SemBicScore(cov));
+
+        // Two searches sharing the same cache should count its hits and misses once.
+        Score first = metrics.instrument(score);
+        Score second = metrics.instrument(score);
+
+        first.localScore(0, 1, 2);
+        second.localScore(0, 1, 2);
+        second.localScore(3);
+
+        assertEquals(3, metrics.getNumScores());
+        assertEquals(1, metrics.getCacheHits());
+        assertEquals(2, metrics.getCacheMisses());
+    }
+
+    @Test
+    public void testPhases() {
+        SearchMetrics metrics = new SearchMetrics();
+        final List<String> events = new ArrayList<>();
+
+        metrics.addListener(new SearchListener() {
+            public void phaseStarted(SearchMetrics metrics, String phase) {
+                events.add("+" + phase);
+            }
+
+            public void phaseFinished(SearchMetrics metrics, String phase, long elapsedMillis) {
+                events.add("-" + phase);
+            }
+        });
+
+        metrics.startPhase("a");
+        metrics.startPhase("b");
+        metrics.startPhase("c");
+        assertEquals("a/b/c", metrics.getCurrentPhase());
+
+        // Ending an outer phase ends those left open inside it.
+        metrics.endPhase("a");
+        assertNull(metrics.getCurrentPhase());
+
+        assertEquals("[+a, +a/b, +a/b/c, -a/b/c, -a/b, -a]", events.toString());
+        assertEquals(3, metrics.getPhaseTimes().size());
+
+        metrics.endPhase("a");
+        assertEquals(6, events.size());
+    }
+
+    @Test
+    public void testProgress() throws InterruptedException {
+        SearchMetrics metrics = new SearchMetrics();
+        metrics.setProgressInterval(5);
+
+        final AtomicInteger progress = new AtomicInteger();
+
+        metrics.addListener(new SearchListener() {
+            public void progress(SearchMetrics metrics) {
+                progress.incrementAndGet();
+            }
+        });
+
+        metrics.setGauge("queue", new LongSupplier() {
+            public long getAsLong() {
+                return 7;
+            }
+        });
+
+        metrics.startPhase("search");
+        Thread.sleep(100);
+        metrics.endPhase("search");
+
+        int count = progress.get();
+        assertTrue(count > 0);
+        assertEquals(7L, (long) metrics.getGauges().get("queue"));
+        assertTrue(metrics.getElapsedTime() >= 100);
+
+        // The timer stops with the search.
+        Thread.sleep(50);
+        assertEquals(count, progress.get());
+
+        metrics.reset();
+        assertEquals(0, metrics.getElapsedTime());
+        assertFalse(metrics.getPhaseTimes().containsKey("search"));
+    }
+
+    private static long sum(long[] counts) {
+        long sum = 0;
+        for (long count : counts) sum += count;
+        return sum;
+    }
+
+    private static ICovarianceMatrix randomCov(int numVars, int sampleSize) {
+        RandomUtil.getInstance().setSeed(2938402943L);
+
+        List<Node> vars = new ArrayList<>();
+        for (int i = 0; i < numVars; i++) vars.add(new ContinuousVariable("X" + i));
+
+        Graph dag = GraphUtils.randomGraphRandomForwardEdges(vars, 0, numVars, 30, 15, 15, false, true);
+        return new CovarianceMatrix(new SemIm(new SemPm(dag)).simulateData(sampleSize, false));
+    }
+}
@@ -0,0 +1,124 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.SepsetMap;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the indexed storage of SepsetMap.
+ *
+ * @author Joseph Ramsey
+ */
+public class TestSepsetMap {
+
+    @Test
+    public void testSetAndGet() {
+        List<Node> nodes = nodes(5);
+        SepsetMap map = new SepsetMap();
+
+        map.set(nodes.get(0), nodes.get(1), Arrays.asList(nodes.get(3), nodes.get(2)));
+        map.set(nodes.get(2), nodes.get(4), Collections.<Node>emptyList());
+        map.setPValue(nodes.get(1), nodes.get(0), 0.25);
+
+        assertEquals(Arrays.asList(nodes.get(3), nodes.get(2)), map.get(nodes.get(1), nodes.get(0)));
+        assertEquals(Collections.emptyList(), map.get(nodes.get(4), nodes.get(2)));
+        assertNull(map.get(nodes.get(0), nodes.get(4)));
+        assertEquals(0.25, map.getPValue(nodes.get(0), nodes.get(1)), 0.0);
+        assertEquals(2, map.size());
+
+        map.set(nodes.get(1), nodes.get(0), null);
+        assertNull(map.get(nodes.get(0), nodes.get(1)));
+
+        map.setReturnEmptyIfNotSet(true);
+        assertEquals(Collections.emptyList(), map.get(nodes.get(0), nodes.get(1)));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        List<Node> nodes = nodes(4);
+        SepsetMap map = new SepsetMap();
+        map.set(nodes.get(0), nodes.get(3), Arrays.asList(nodes.get(1), nodes.get(2)));
+        map.set(nodes.get(1), nodes.get(2), Collections.<Node>emptyList());
+        map.setPValue(nodes.get(0), nodes.get(3), 0.5);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(map);
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        SepsetMap copy = (SepsetMap) in.readObject();
+
+        assertEquals(map, copy);
+        assertEquals(0.5, copy.getPValue(nodes.get(3), nodes.get(0)), 0.0);
+    }
+
+    @Test
+    public void testConcurrentSets() throws Exception {
+        final List<Node> nodes = nodes(200);
+        final SepsetMap map = new SepsetMap();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int t = 0; t < 4; t++) {
+            final int offset = t;
+
+            threads.add(new Thread(new Runnable() {
+                public void run() {
+                    for (int i = offset; i < nodes.size(); i += 4) {
+                        for (int j = 0; j < i; j++) {
+                            map.set(nodes.get(i), nodes.get(j), Collections.singletonList(nodes.get((i + j) % nodes.size())));
+                        }
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(200 * 199 / 2, map.size());
+
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int j = 0; j < i; j++) {
+                assertEquals(nodes.get((i + j) % nodes.size()), map.get(nodes.get(j), nodes.get(i)).get(0));
+            }
+        }
+    }
+
+    private List<Node> nodes(int n) {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < n; i++) nodes.add(new ContinuousVariable("X" + i));
+        return nodes;
+    }
+}
@@ -0,0 +1,162 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.*;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.Fges;
+import edu.cmu.tetrad.search.SemBicScore;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the streaming covariance matrix against covariance matrices computed from scratch.
+ *
+ * @author Joseph Ramsey
+ */
+public class TestStreamingCovarianceMatrix {
+
+    @Test
+    public void testAddInBatches() {
+        DataSet data = simulate(1000);
+        StreamingCovarianceMatrix streaming = new StreamingCovarianceMatrix(data.getVariables());
+
+        for (int start = 0; start < 1000; start += 250) {
+            streaming.addRows(rows(data, start, start + 250));
+        }
+
+        assertEquals(1000, streaming.getSampleSize());
+        assertSame(new CovarianceMatrix(data), streaming);
+        assertEquals(new Fges(new SemBicScore(new CovarianceMatrix(data))).search(),
+                new Fges(new SemBicScore(streaming)).search());
+    }
+
+    @Test
+    public void testRemoveAndMerge() {
+        DataSet data = simulate(1000);
+
+        StreamingCovarianceMatrix streaming = new StreamingCovarianceMatrix(data);
+        streaming.removeRows(rows(data, 0, 300));
+        assertEquals(700, streaming.getSampleSize());
+        assertSame(new CovarianceMatrix(rows(data, 300, 1000)), streaming);
+
+        StreamingCovarianceMatrix shard1 = new StreamingCovarianceMatrix(rows(data, 0, 400));
+        StreamingCovarianceMatrix shard2 = new StreamingCovarianceMatrix(rows(data, 400, 1000));
+        shard1.merge(shard2);
+        assertSame(new CovarianceMatrix(data), shard1);
+
+        double[] means = shard1.getMeans();
+
+        for (int j = 0; j < data.getNumColumns(); j++) {
+            double sum = 0.0;
+            for (int i = 0; i < 1000; i++) sum += data.getDouble(i, j);
+            assertEquals(sum / 1000, means[j], 1e-10);
+        }
+    }
+
+    @Test
+    public void testMissingValues() {
+        DataSet data = simulate(200);
+        data.setDouble(5, 2, Double.NaN);
+        data.setDouble(9, 0, Double.NaN);
+
+        StreamingCovarianceMatrix streaming = new StreamingCovarianceMatrix(data);
+        assertEquals(198, streaming.getSampleSize());
+        assertEquals(2, streaming.getNumSkipped());
+
+        streaming.removeRows(rows(data, 0, 100));
+        assertEquals(100, streaming.getSampleSize());
+        assertEquals(0, streaming.getNumSkipped());
+        assertSame(new CovarianceMatrix(rows(data, 100, 200)), streaming);
+    }
+
+    @Test
+    public void testReadsDuringUpdates() throws InterruptedException {
+        final DataSet data = simulate(2000);
+        final StreamingCovarianceMatrix streaming = new StreamingCovarianceMatrix(rows(data, 0, 100));
+        final AtomicBoolean consistent = new AtomicBoolean(true);
+        final AtomicBoolean done = new AtomicBoolean(false);
+
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                while (!done.get()) {
+                    ICovarianceMatrix snapshot = streaming.getSubmatrix(new int[]{0, 1, 2});
+
+                    for (int i = 0; i < 3; i++) {
+                        for (int j = 0; j < 3; j++) {
+                            double value = snapshot.getValue(i, j);
+                            if (Double.isNaN(value) || value != snapshot.getValue(j, i)) consistent.set(false);
+                        }
+                    }
+                }
+            }
+        });
+
+        reader.start();
+
+        for (int start = 100; start < 2000; start += 100) {
+            streaming.addRows(rows(data, start, start + 100));
+        }
+
+        done.set(true);
+        reader.join();
+
+        assertTrue(consistent.get());
+        assertSame(new CovarianceMatrix(data), streaming);
+    }
+
+    private void assertSame(ICovarianceMatrix expected, ICovarianceMatrix actual) {
+        assertEquals(expected.getDimension(), actual.getDimension());
+
+        for (int i = 0; i < expected.getDimension(); i++) {
+            for (int j = 0; j < expected.getDimension(); j++) {
+                assertEquals(expected.getValue(i, j), actual.getValue(i, j), 1e-9);
+            }
+        }
+    }
+
+    private DataSet rows(DataSet data, int from, int to) {
+        int[] rows = new int[to - from];
+        for (int i = 0; i < rows.length; i++) rows[i] = from + i;
+        return data.subsetRows(rows);
+    }
+
+    private DataSet simulate(int sampleSize) {
+        RandomUtil.getInstance().setSeed(50392049L);
+
+        List<Node> vars = new ArrayList<>();
+        for (int i = 0; i < 10; i++) vars.add(new ContinuousVariable("X" + i));
+
+        Graph dag = GraphUtils.randomGraphRandomForwardEdges(vars, 0, 10, 30, 15, 15, false, true);
+        return new SemIm(new SemPm(dag)).simulateData(sampleSize, false);
+    }
+}